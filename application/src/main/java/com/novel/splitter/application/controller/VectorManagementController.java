@@ -3,12 +3,14 @@ package com.novel.splitter.application.controller;
 import com.novel.splitter.domain.model.embedding.VectorRecord;
 import com.novel.splitter.embedding.api.EmbeddingService;
 import com.novel.splitter.embedding.api.VectorStore;
+import com.novel.splitter.embedding.service.CachingEmbeddingService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,10 +26,13 @@ public class VectorManagementController {
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getStats() {
         try {
-            return ResponseEntity.ok(Map.of(
-                "count", vectorStore.count(),
-                "type", vectorStore.getClass().getSimpleName()
-            ));
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", vectorStore.count());
+            stats.put("type", vectorStore.getClass().getSimpleName());
+            if (embeddingService instanceof CachingEmbeddingService cachingService) {
+                stats.put("queryEmbeddingCache", cachingService.getStats());
+            }
+            return ResponseEntity.ok(stats);
         } catch (Exception e) {
             log.error("Failed to get vector stats", e);
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
@@ -8,6 +8,7 @@ import com.novel.splitter.embedding.api.VectorStore;
 import com.novel.splitter.repository.api.SceneRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.Path;
@@ -38,8 +39,10 @@ public class NovelIngestionService {
     // 实例化切分器 (也可配置为 Bean)
     private final SceneAssembler sceneAssembler = new SceneAssembler();
     
-    // 批处理大小 (根据显存和 Chroma 性能调整)
-    private static final int BATCH_SIZE = 10; 
+    // 批处理大小 (根据内存和 Chroma 性能调整)
+    // 每批文本整体交给 embedBatch，由 EmbeddingService 按 embedding.onnx.batch-size 拆分为单次推理
+    @Value("${embedding.ingest.batch-size:64}")
+    private int batchSize = 64;
 
     /**
      * 执行入库流程 (兼容旧接口)
@@ -106,8 +109,8 @@ public class NovelIngestionService {
         
         log.info("Starting embedding and storage for {} scenes...", total);
         
-        for (int i = 0; i < total; i += BATCH_SIZE) {
-            int end = Math.min(i + BATCH_SIZE, total);
+        for (int i = 0; i < total; i += batchSize) {
+            int end = Math.min(i + batchSize, total);
             List<Scene> batchScenes = scenes.subList(i, end);
             
             try {
@@ -118,7 +121,7 @@ public class NovelIngestionService {
                 }
                 
                 // 3.2 Embed (Batch)
-                // 注意：embeddingService.embedBatch 需要底层支持 (目前 OnnxEmbeddingService 支持)
+                // OnnxEmbeddingService 会将整批文本堆叠为 [N, seqLen] 张量执行批量推理
                 List<float[]> embeddings = embeddingService.embedBatch(texts);
                 
                 // 3.3 Store (Batch)
@@ -43,6 +43,40 @@ public interface VectorStore {
         return search(queryEmbedding, topK, java.util.Collections.emptyMap());
     }
 
+    /**
+     * 异步相似度检索
+     * <p>
+     * 远程存储可以覆盖为非阻塞实现 (等待响应期间不占用调用线程)；默认在调用线程上同步检索，返回已完成的 Future。
+     * </p>
+     */
+    default java.util.concurrent.CompletableFuture<List<VectorRecord>> searchAsync(float[] queryEmbedding, int topK,
+                                                                                  java.util.Map<String, Object> filter) {
+        try {
+            return java.util.concurrent.CompletableFuture.completedFuture(search(queryEmbedding, topK, filter));
+        } catch (RuntimeException e) {
+            return java.util.concurrent.CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 批量相似度检索 (多条查询共用同一过滤条件)
+     * <p>
+     * 用于多查询扩展与离线评测；默认逐条调用 {@link #search}，实现可以一次扫描同时为全部查询计算分数。
+     * </p>
+     *
+     * @param queryEmbeddings 查询向量
+     * @param topK            每条查询返回的结果数量
+     * @param filter          元数据过滤条件 (Key -> Value)
+     * @return 与 queryEmbeddings 一一对应的匹配结果
+     */
+    default List<List<VectorRecord>> searchBatch(float[][] queryEmbeddings, int topK, java.util.Map<String, Object> filter) {
+        List<List<VectorRecord>> results = new java.util.ArrayList<>(queryEmbeddings.length);
+        for (float[] queryEmbedding : queryEmbeddings) {
+            results.add(search(queryEmbedding, topK, filter));
+        }
+        return results;
+    }
+
     /**
      * 删除匹配条件的向量
      *
@@ -0,0 +1,85 @@
+package com.novel.splitter.embedding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * ChromaDB 存储配置
+ * <p>
+ * 对应 application.yml 中的 chroma 前缀 (embedding.store.type 为 chroma 时生效)。
+ * embedded.enabled 为 true 时在本进程内启动兼容 Chroma 接口的替身服务 (监听 url 中的地址)，用于没有 ChromaDB 的离线环境。
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "chroma")
+public class ChromaProperties {
+
+    /**
+     * 服务地址
+     */
+    private String url = "http://localhost:8081";
+
+    /**
+     * 集合名称
+     */
+    private String collection = "novel-splitter";
+
+    /**
+     * HTTP 连接
+     */
+    private HttpConfig http = new HttpConfig();
+
+    /**
+     * 批量写入
+     */
+    private WriteConfig write = new WriteConfig();
+
+    /**
+     * 嵌入式替身服务
+     */
+    private EmbeddedConfig embedded = new EmbeddedConfig();
+
+    @Data
+    public static class HttpConfig {
+        /**
+         * 建立连接的超时 (毫秒)
+         */
+        private long connectTimeoutMs = 5_000;
+
+        /**
+         * 等待响应的超时 (毫秒)
+         */
+        private long readTimeoutMs = 30_000;
+    }
+
+    @Data
+    public static class WriteConfig {
+        /**
+         * 单次 add 请求的条数 (不超过服务端的 max_batch_size)
+         */
+        private int batchSize = 1_000;
+
+        /**
+         * 同时进行的 add 请求数
+         */
+        private int maxInFlight = 4;
+    }
+
+    @Data
+    public static class EmbeddedConfig {
+        /**
+         * 是否在本进程内启动替身服务
+         */
+        private boolean enabled = false;
+
+        /**
+         * 数据目录 (每个集合一个子目录，其余参数沿用 embedding.store.memory)
+         */
+        private String path = "data/chroma";
+
+        /**
+         * 处理请求的线程数
+         */
+        private int threads = 4;
+    }
+}
@@ -0,0 +1,61 @@
+package com.novel.splitter.embedding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 嵌入缓存配置
+ * <p>
+ * 对应 application.yml 中的 embedding.cache 前缀。
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "embedding.cache")
+public class EmbeddingCacheProperties {
+
+    /**
+     * 查询向量缓存 (内存 LRU)
+     */
+    private QueryConfig query = new QueryConfig();
+
+    /**
+     * 入库向量缓存 (磁盘，按文本内容寻址)
+     */
+    private PersistentConfig persistent = new PersistentConfig();
+
+    @Data
+    public static class QueryConfig {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最大条目数
+         */
+        private int maxEntries = 10_000;
+
+        /**
+         * 最大占用内存 (字节，按向量与文本的实际大小估算)
+         */
+        private long maxBytes = 32L * 1024 * 1024;
+    }
+
+    @Data
+    public static class PersistentConfig {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = true;
+
+        /**
+         * 缓存目录，每个模型一个文件
+         */
+        private String path = "data/embedding-cache";
+
+        /**
+         * 条目上限：缓存文件只追加且整体加载到内存 (512 维约 2KB / 条)，达到上限后不再缓存新向量
+         */
+        private int maxEntries = 200_000;
+    }
+}
@@ -1,14 +1,81 @@
 package com.novel.splitter.embedding.config;
 
 import com.novel.splitter.embedding.onnx.OnnxModelHolder;
+import com.novel.splitter.embedding.store.EmbeddedChromaServer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Paths;
+import java.time.Duration;
 
 @Configuration
+@EnableConfigurationProperties({VectorStoreProperties.class, ChromaProperties.class})
 public class EmbeddingConfig {
 
     // @Bean
     // public OnnxModelHolder onnxModelHolder() {
     //     return new OnnxModelHolder();
     // }
+
+    /**
+     * 本进程内的 ChromaDB 替身服务，监听 chroma.url 中的地址 (未写端口时为 80)，数据由内存向量存储保存
+     * <p>
+     * 端口为 0 时绑定任意空闲端口，并把 chroma.url 改写为实际地址 (供测试使用)。
+     * </p>
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "chroma.embedded.enabled", havingValue = "true")
+    public EmbeddedChromaServer embeddedChromaServer(ChromaProperties properties, VectorStoreProperties storeProperties) throws IOException {
+        VectorStoreProperties collectionProperties = new VectorStoreProperties();
+        collectionProperties.setMemory(storeProperties.getMemory());
+        URI url = URI.create(properties.getUrl());
+        if (!"http".equalsIgnoreCase(url.getScheme()) || url.getHost() == null) {
+            throw new IllegalStateException("chroma.embedded.enabled requires chroma.url of the form http://host[:port], got " + properties.getUrl());
+        }
+        int port = url.getPort() != -1 ? url.getPort() : 80;
+        EmbeddedChromaServer server = new EmbeddedChromaServer(collectionProperties, Paths.get(properties.getEmbedded().getPath()))
+                .start(new InetSocketAddress(url.getHost(), port), properties.getEmbedded().getThreads());
+        if (port == 0) {
+            properties.setUrl(server.getUrl());
+        }
+        return server;
+    }
+
+    /**
+     * ChromaDB 的 HTTP 客户端：内部维护 keep-alive 连接池，同步 (RestClient) 与异步检索共用
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(name = "embedding.store.type", havingValue = "chroma")
+    static class ChromaClientConfig {
+
+        @Bean
+        @ConditionalOnProperty(name = "chroma.embedded.enabled", havingValue = "false", matchIfMissing = true)
+        public HttpClient chromaHttpClient(ChromaProperties properties) {
+            return newHttpClient(properties);
+        }
+
+        /**
+         * 启用了嵌入式替身服务时，客户端 (以及依赖它的 ChromaVectorStore) 在服务启动之后创建，启动时即可解析集合
+         */
+        @Bean(name = "chromaHttpClient")
+        @DependsOn("embeddedChromaServer")
+        @ConditionalOnProperty(name = "chroma.embedded.enabled", havingValue = "true")
+        public HttpClient embeddedChromaHttpClient(ChromaProperties properties) {
+            return newHttpClient(properties);
+        }
+
+        private static HttpClient newHttpClient(ChromaProperties properties) {
+            return HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofMillis(properties.getHttp().getConnectTimeoutMs()))
+                    .build();
+        }
+    }
 }
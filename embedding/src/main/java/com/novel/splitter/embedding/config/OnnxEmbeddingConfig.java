@@ -0,0 +1,63 @@
+package com.novel.splitter.embedding.config;
+
+import ai.onnxruntime.OrtSession;
+import com.novel.splitter.embedding.api.EmbeddingService;
+import com.novel.splitter.embedding.onnx.InferenceExecutor;
+import com.novel.splitter.embedding.onnx.OnnxModelHolder;
+import com.novel.splitter.embedding.service.CachingEmbeddingService;
+import com.novel.splitter.embedding.service.OnnxEmbeddingService;
+import com.novel.splitter.embedding.service.PersistentEmbeddingCache;
+import com.novel.splitter.embedding.tokenizer.Tokenizer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * ONNX 嵌入相关的 Bean (推理执行器、向量缓存)
+ * <p>
+ * 与向量存储的配置 ({@link EmbeddingConfig}) 分开，只加载存储配置的上下文不需要模型文件。
+ * </p>
+ */
+@Configuration
+@EnableConfigurationProperties({OnnxProperties.class, EmbeddingCacheProperties.class})
+public class OnnxEmbeddingConfig {
+
+    /**
+     * 推理执行器：每个 OrtSession 对应一个工作线程，查询优先于入库批次
+     */
+    @Bean(destroyMethod = "close")
+    public InferenceExecutor<OrtSession> inferenceExecutor(OnnxModelHolder modelHolder, OnnxProperties properties) {
+        return new InferenceExecutor<>("onnx-inference", modelHolder.getSessions(), properties.getQueueCapacity());
+    }
+
+    /**
+     * 入库向量的持久化缓存，按模型标识与分词器标识区分文件 (向量同时取决于模型和分词结果)
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "embedding.cache.persistent", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public PersistentEmbeddingCache persistentEmbeddingCache(OnnxModelHolder modelHolder, Tokenizer tokenizer,
+                                                             EmbeddingCacheProperties properties) throws IOException {
+        String embeddingId = modelHolder.getModelId() + "-" + tokenizer.getTokenizerId();
+        EmbeddingCacheProperties.PersistentConfig persistent = properties.getPersistent();
+        return PersistentEmbeddingCache.open(Paths.get(persistent.getPath()), embeddingId, persistent.getMaxEntries());
+    }
+
+    /**
+     * 默认的嵌入服务：在 ONNX 推理外包一层缓存 (查询 LRU + 入库持久化缓存)
+     */
+    @Bean
+    @Primary
+    public EmbeddingService cachingEmbeddingService(OnnxEmbeddingService onnxEmbeddingService,
+                                                    EmbeddingCacheProperties properties,
+                                                    ObjectProvider<PersistentEmbeddingCache> persistentCache) {
+        EmbeddingCacheProperties.QueryConfig query = properties.getQuery();
+        int maxEntries = query.isEnabled() ? query.getMaxEntries() : 0;
+        return new CachingEmbeddingService(onnxEmbeddingService, maxEntries, query.getMaxBytes(), persistentCache.getIfAvailable());
+    }
+}
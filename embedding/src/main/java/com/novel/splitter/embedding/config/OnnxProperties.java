@@ -0,0 +1,126 @@
+package com.novel.splitter.embedding.config;
+
+import ai.onnxruntime.OrtSession;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * ONNX 推理配置
+ * <p>
+ * 对应 application.yml 中的 embedding.onnx 前缀。
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "embedding.onnx")
+public class OnnxProperties {
+
+    /**
+     * 外部模型文件路径，为空时使用 classpath 中打包的模型
+     */
+    private String modelPath;
+
+    /**
+     * 模型精度：FP32 使用原始模型，INT8 使用动态量化模型
+     * <p>
+     * 动态量化 (权重 INT8、激活运行时量化) 在纯 CPU 环境下推理速度约为 FP32 的 2-3 倍，
+     * 切换前应先用离线评估 (QuantizedModelEvaluationTest) 确认召回率损失可接受。
+     * 不同精度的模型标识不同，持久化向量缓存互不干扰。
+     * </p>
+     */
+    private ModelPrecision precision = ModelPrecision.FP32;
+
+    /**
+     * 外部 INT8 量化模型路径，为空时使用 classpath 中的 embedding/model_int8.onnx
+     */
+    private String quantizedModelPath;
+
+    /**
+     * 单次推理的最大样本数 (Batch Size)
+     */
+    private int batchSize = 16;
+
+    /**
+     * 单次推理允许的最大 Token 总数 (batch * seqLen)
+     * <p>
+     * 输出张量 [batch, seqLen, hidden] 的内存占用与该值成正比，
+     * 用于在长文本批次中自动缩小 Batch，避免内存峰值过高。
+     * </p>
+     */
+    private int maxBatchTokens = 8192;
+
+    /**
+     * 推理会话 (OrtSession) 数量，即可同时执行的推理批次数
+     * <p>
+     * 每个会话单独加载一份模型权重。大于 1 时查询可以与入库批次并行执行。
+     * </p>
+     */
+    private int sessionCount = 1;
+
+    /**
+     * 单个会话的算子内并行线程数，0 表示使用 ONNX Runtime 默认值 (CPU 核数)
+     * <p>
+     * 多会话时建议设置为 CPU 核数 / sessionCount，避免线程争抢。
+     * </p>
+     */
+    private int intraOpThreads = 0;
+
+    /**
+     * 单个会话的算子间并行线程数，0 表示使用 ONNX Runtime 默认值
+     */
+    private int interOpThreads = 0;
+
+    /**
+     * 入库推理任务的最大排队数，队列满时提交方阻塞
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * 图优化级别，ALL_OPT 包含与 CPU 指令集相关的布局优化
+     */
+    private OrtSession.SessionOptions.OptLevel optimizationLevel = OrtSession.SessionOptions.OptLevel.ALL_OPT;
+
+    /**
+     * 算子执行模式：SEQUENTIAL 顺序执行；PARALLEL 允许无依赖的算子并行 (配合 interOpThreads)
+     * <p>
+     * BERT 类模型的计算图基本是线性的，通常 SEQUENTIAL 更快。
+     * </p>
+     */
+    private OrtSession.SessionOptions.ExecutionMode executionMode = OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL;
+
+    /**
+     * 内存复用规划 (Memory Pattern)：按输入形状预先规划中间张量内存
+     */
+    private boolean memoryPattern = true;
+
+    /**
+     * CPU 内存池 (Arena)：复用推理过程中分配的内存块，关闭后每次推理按需分配和释放
+     */
+    private boolean cpuArena = true;
+
+    /**
+     * 是否缓存优化后的计算图
+     * <p>
+     * 首次启动时将优化后的图写入 cacheDir，之后直接加载并跳过图优化，缩短冷启动时间。
+     * </p>
+     */
+    private boolean optimizedModelCache = true;
+
+    /**
+     * 是否以内存映射方式加载外部权重文件 (model.onnx_data)
+     * <p>
+     * 权重页由操作系统按需加载，多个会话共享同一份物理内存，启动时不再整体读取数据文件。
+     * 加载缓存的优化图时权重已内嵌在图文件中，此选项只在首次生成优化图或关闭优化图缓存时生效。
+     * </p>
+     */
+    private boolean mmapExternalData = false;
+
+    /**
+     * 模型解压及优化图缓存目录，为空时使用 ${java.io.tmpdir}/novel-splitter-embedding
+     */
+    private String cacheDir;
+
+    public enum ModelPrecision {
+        FP32,
+        INT8
+    }
+}
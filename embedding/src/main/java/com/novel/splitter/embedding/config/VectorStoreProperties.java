@@ -0,0 +1,238 @@
+package com.novel.splitter.embedding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 向量存储配置
+ * <p>
+ * 对应 application.yml 中的 embedding.store 前缀。
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "embedding.store")
+public class VectorStoreProperties {
+
+    /**
+     * 存储类型: memory / ivf / chroma (ivf 即 searchMode 固定为 IVF 的内存存储)
+     */
+    private String type = "memory";
+
+    /**
+     * 内存存储配置
+     */
+    private MemoryConfig memory = new MemoryConfig();
+
+    /**
+     * 内存存储的检索方式
+     */
+    public enum SearchMode {
+        /**
+         * 向量数超过 bruteForceThreshold 时使用 HNSW 近似检索，否则精确扫描
+         */
+        AUTO,
+        /**
+         * 始终精确扫描 (并行)，结果与逐条比较完全一致；不构建 HNSW 图
+         */
+        EXACT,
+        /**
+         * 分区向量数达到 pq.minTrainRows 后训练 PQ 码本，扫描每行几十字节的编码，近似分数最高的若干行再用完整向量
+         * (内存映射的段文件) 精确重排；未训练的分区精确扫描。不构建 HNSW 图
+         */
+        PQ,
+        /**
+         * 分区向量数达到 ivf.minTrainRows 后训练 k-means 粗聚类，检索只精确扫描最接近的 nprobe 个簇；
+         * 新写入的向量直接分配到最近的簇，未训练的分区精确扫描。不构建 HNSW 图，批量导入耗时稳定
+         */
+        IVF
+    }
+
+    /**
+     * 预写日志的 fsync 策略 (无论哪种策略，写入方法返回前记录都已写入操作系统，进程被杀不会丢失)
+     */
+    public enum FsyncPolicy {
+        /**
+         * 每次写入返回前 fsync (并发写入共享一次 fsync)，断电也不丢失已返回的写入
+         */
+        ALWAYS,
+        /**
+         * 后台每 syncIntervalMs fsync 一次，断电最多丢失最近一个间隔内的写入
+         */
+        INTERVAL,
+        /**
+         * 只在检查点与关闭时 fsync，由操作系统决定何时落盘
+         */
+        NEVER
+    }
+
+    @Data
+    public static class MemoryConfig {
+        /**
+         * 段文件目录
+         */
+        private String path = "data/vector-store";
+
+        /**
+         * 旧版 JSON 存储 (vector_store.json / vector_metadata.json) 所在目录，首次启动 (没有任何段文件) 时导入；
+         * 默认为进程工作目录，为空时不导入
+         */
+        private String legacyJsonDir = ".";
+
+        /**
+         * 检索方式
+         */
+        private SearchMode searchMode = SearchMode.AUTO;
+
+        /**
+         * 有效向量数不超过该值时使用精确扫描 (小集合建图收益很小)
+         */
+        private int bruteForceThreshold = 1_000;
+
+        /**
+         * 过滤后的行数低于有效向量数的该比例时直接精确扫描这些行 (图上过滤大部分节点时召回与效率都会下降)
+         */
+        private double filteredScanRatio = 0.1;
+
+        /**
+         * 精确扫描时每个并行任务负责的行数，总行数不超过该值时单线程扫描
+         */
+        private int scanPartitionRows = 16_384;
+
+        /**
+         * 单次 saveBatch 超过该条数时并行写入索引
+         */
+        private int parallelInsertThreshold = 256;
+
+        /**
+         * 分区 (小说 + 版本) 无访问超过该时长 (秒) 且已写入段文件时卸载，下次访问时重新映射；0 表示不卸载
+         */
+        private long partitionIdleSeconds = 1_800;
+
+        /**
+         * HNSW 索引参数
+         */
+        private HnswConfig hnsw = new HnswConfig();
+
+        /**
+         * 预写日志与检查点
+         */
+        private WalConfig wal = new WalConfig();
+
+        /**
+         * 乘积量化 (searchMode 为 PQ 时生效)
+         */
+        private PqConfig pq = new PqConfig();
+
+        /**
+         * 倒排文件索引 (searchMode 为 IVF 时生效)
+         */
+        private IvfConfig ivf = new IvfConfig();
+    }
+
+    @Data
+    public static class HnswConfig {
+        /**
+         * 每个节点每层的邻居上限 (第 0 层为 2M)，越大召回越高、内存与建图耗时越大
+         */
+        private int m = 16;
+
+        /**
+         * 建图时的候选集大小
+         */
+        private int efConstruction = 200;
+
+        /**
+         * 检索时的候选集大小 (实际取 max(efSearch, topK))，越大召回越高、延迟越大
+         */
+        private int efSearch = 64;
+    }
+
+    @Data
+    public static class PqConfig {
+        /**
+         * 每条编码的字节数 (向量切分的段数)，512 维时 64 字节约为原始向量的 1/32
+         */
+        private int subspaces = 64;
+
+        /**
+         * 是否训练 OPQ 旋转 (按主成分均衡各段方差，同样字节数下召回更高，训练更慢)
+         */
+        private boolean rotation = false;
+
+        /**
+         * 分区有效向量数达到该值时在检查点训练码本
+         */
+        private int minTrainRows = 10_000;
+
+        /**
+         * 训练采样的最大向量数
+         */
+        private int trainSampleRows = 16_384;
+
+        /**
+         * 每段 k-means 迭代次数
+         */
+        private int iterations = 12;
+
+        /**
+         * 进入精确重排的候选数 (实际取 max(rerankCandidates, topK))，越大召回越高
+         */
+        private int rerankCandidates = 200;
+    }
+
+    @Data
+    public static class IvfConfig {
+        /**
+         * 簇数上限；实际取 min(nlist, 分区向量数 / 40)，常用取值约为 4 * sqrt(向量数)
+         */
+        private int nlist = 1_024;
+
+        /**
+         * 检索时扫描的簇数，越大召回越高、延迟越大
+         */
+        private int nprobe = 32;
+
+        /**
+         * 分区有效向量数达到该值时在检查点训练 (之后向量数翻倍时重新训练)
+         */
+        private int minTrainRows = 10_000;
+
+        /**
+         * 训练采样的最大向量数
+         */
+        private int trainSampleRows = 32_768;
+
+        /**
+         * k-means 迭代次数
+         */
+        private int iterations = 10;
+    }
+
+    @Data
+    public static class WalConfig {
+        /**
+         * 是否启用；关闭时只在应用关闭时写段文件
+         */
+        private boolean enabled = true;
+
+        /**
+         * fsync 策略
+         */
+        private FsyncPolicy fsync = FsyncPolicy.INTERVAL;
+
+        /**
+         * INTERVAL 策略下的 fsync 间隔 (毫秒)
+         */
+        private long syncIntervalMs = 1_000;
+
+        /**
+         * 后台检查点间隔 (秒)，日志为空时跳过
+         */
+        private long checkpointIntervalSeconds = 300;
+
+        /**
+         * 日志超过该大小 (字节) 时提前做检查点
+         */
+        private long checkpointBytes = 256L * 1024 * 1024;
+    }
+}
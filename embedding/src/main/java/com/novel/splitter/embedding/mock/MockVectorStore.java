@@ -4,6 +4,8 @@ import com.novel.splitter.domain.model.Scene;
 import com.novel.splitter.domain.model.SceneMetadata;
 import com.novel.splitter.domain.model.embedding.VectorRecord;
 import com.novel.splitter.embedding.api.VectorStore;
+import com.novel.splitter.embedding.store.index.ScoredHeap;
+import com.novel.splitter.embedding.store.index.VectorMath;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
@@ -56,11 +58,13 @@ public class MockVectorStore implements VectorStore {
     @Override
     public void save(Scene scene, float[] embedding) {
         log.debug("Mock saving scene: {} (Vector dim: {})", scene.getId(), embedding.length);
-        index.put(scene.getId(), embedding);
+        boolean added = index.put(scene.getId(), embedding) == null;
         if (scene.getMetadata() != null) {
             metadataMap.put(scene.getId(), scene.getMetadata());
         }
-        ids.add(scene.getId());
+        if (added) {
+            ids.add(scene.getId());
+        }
     }
 
     @Override
@@ -74,12 +78,21 @@ public class MockVectorStore implements VectorStore {
     @Override
     public List<VectorRecord> search(float[] queryEmbedding, int topK, Map<String, Object> filter) {
         log.info("Mock search with topK={}, filter={}", topK, filter);
-        // 简单 Mock：直接返回前 K 个已存储的 ID，分数随机
+        // 按余弦相似度取 TopK (忽略过滤条件)
         List<VectorRecord> results = new ArrayList<>();
-        int limit = Math.min(topK, ids.size());
-        
-        for (int i = 0; i < limit; i++) {
-            String id = ids.get(i);
+        if (topK <= 0 || ids.isEmpty()) {
+            return results;
+        }
+        ScoredHeap heap = ScoredHeap.minHeap(topK + 1);
+        for (int i = 0; i < ids.size(); i++) {
+            heap.offer(VectorMath.cosine(queryEmbedding, index.get(ids.get(i))), i, topK);
+        }
+        int[] positions = new int[heap.size()];
+        float[] scores = new float[heap.size()];
+        int found = heap.drainDescending(positions, scores);
+
+        for (int i = 0; i < found; i++) {
+            String id = ids.get(positions[i]);
             SceneMetadata meta = metadataMap.get(id);
             Map<String, Object> metaMap = new HashMap<>();
             if (meta != null) {
@@ -93,7 +106,7 @@ public class MockVectorStore implements VectorStore {
                 metaMap.put("version", "v1"); // Default for mock test
             }
 
-            results.add(new VectorRecord(id, 0.9 - (i * 0.1), metaMap));
+            results.add(new VectorRecord(id, scores[i], metaMap));
         }
         return results;
     }
@@ -0,0 +1,195 @@
+package com.novel.splitter.embedding.onnx;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带优先级的推理执行器
+ * <p>
+ * 每个工作线程独占一个推理资源 (如 OrtSession)，从同一个优先级队列中取任务执行。
+ * 查询任务 ({@link Priority#QUERY}) 总是先于入库任务 ({@link Priority#INGEST}) 出队，
+ * 同一优先级内按提交顺序执行。这样在小说入库期间，聊天查询最多只需等待当前正在执行的批次。
+ * </p>
+ * <p>
+ * 入库任务受队列容量约束，队列满时提交线程阻塞 (背压)；查询任务不占用该容量，
+ * 避免被入库任务填满的队列阻塞 (查询并发已由 Web 线程池限制)。
+ * </p>
+ *
+ * @param <R> 工作线程持有的推理资源类型
+ */
+@Slf4j
+public class InferenceExecutor<R> implements AutoCloseable {
+
+    /**
+     * 任务优先级，声明顺序即出队顺序
+     */
+    public enum Priority {
+        QUERY,
+        INGEST
+    }
+
+    /**
+     * 在推理资源上执行的任务
+     */
+    @FunctionalInterface
+    public interface Task<R, T> {
+        T run(R resource) throws Exception;
+    }
+
+    private final PriorityBlockingQueue<Job<R, ?>> queue = new PriorityBlockingQueue<>();
+    private final Semaphore ingestPermits;
+    private final int queueCapacity;
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * @param name          工作线程名前缀
+     * @param resources     推理资源，每个资源对应一个工作线程
+     * @param queueCapacity 入库任务的最大排队数
+     */
+    public InferenceExecutor(String name, List<R> resources, int queueCapacity) {
+        if (resources == null || resources.isEmpty()) {
+            throw new IllegalArgumentException("At least one inference resource is required");
+        }
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.ingestPermits = new Semaphore(this.queueCapacity);
+        for (int i = 0; i < resources.size(); i++) {
+            R resource = resources.get(i);
+            Thread worker = new Thread(() -> workLoop(resource), name + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        log.info("Inference executor '{}' started with {} worker(s), queue capacity {}", name, resources.size(), queueCapacity);
+    }
+
+    /**
+     * 提交任务
+     * <p>
+     * 入库任务在队列已满时阻塞，直到有任务完成或执行器关闭。
+     * </p>
+     *
+     * @throws RejectedExecutionException 执行器已关闭，或等待队列容量时被中断
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Task<R, T> task) {
+        if (closed) {
+            throw new RejectedExecutionException("Inference executor is closed");
+        }
+        if (priority == Priority.INGEST) {
+            try {
+                ingestPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for inference queue", e);
+            }
+            if (closed) {
+                // 被 close() 唤醒：把许可传给下一个等待者
+                ingestPermits.release();
+                throw new RejectedExecutionException("Inference executor is closed");
+            }
+        }
+        Job<R, T> job = new Job<>(priority, sequence.getAndIncrement(), task);
+        queue.add(job);
+        // 与 close() 竞争：入队晚于清空队列时由提交方自行取消，否则任务永远不会完成
+        if (closed && queue.remove(job)) {
+            cancel(job);
+        }
+        return job.future;
+    }
+
+    /**
+     * 当前排队中的任务数 (不含执行中的任务)
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    private void workLoop(R resource) {
+        while (!closed) {
+            Job<R, ?> job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                job.run(resource);
+            } finally {
+                if (job.priority == Priority.INGEST) {
+                    ingestPermits.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 关闭执行器：等待执行中的任务结束，取消排队中的任务，并唤醒等待队列容量的提交线程
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ingestPermits.release(queueCapacity);
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Job<R, ?> job;
+        while ((job = queue.poll()) != null) {
+            cancel(job);
+        }
+    }
+
+    private void cancel(Job<R, ?> job) {
+        if (job.priority == Priority.INGEST) {
+            ingestPermits.release();
+        }
+        job.future.completeExceptionally(new CancellationException("Inference executor closed"));
+    }
+
+    private static final class Job<R, T> implements Comparable<Job<R, ?>> {
+        private final Priority priority;
+        private final long sequence;
+        private final Task<R, T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Job(Priority priority, long sequence, Task<R, T> task) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        private void run(R resource) {
+            try {
+                future.complete(task.run(resource));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public int compareTo(Job<R, ?> other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.novel.splitter.embedding.onnx;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxTensorLike;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以内存映射方式提供模型外部权重
+ * <p>
+ * 大模型导出为 ONNX 时权重通常存放在外部数据文件 (model.onnx_data) 中，ONNX Runtime 默认会把它读入堆外内存。
+ * 这里解析 model.onnx 中引用外部数据的初始化器 (名称、类型、形状、偏移与长度)，
+ * 将外部数据文件只读映射后按区间包装为 OnnxTensor，通过 SessionOptions.addExternalInitializers 交给会话。
+ * 权重页由操作系统按需加载并在多个会话之间共享，启动时不再整体读取数据文件。
+ * </p>
+ * <p>
+ * 只处理 FLOAT / INT32 / INT64 类型的初始化器，其余类型仍由 ONNX Runtime 按原方式加载。
+ * </p>
+ */
+@Slf4j
+final class MappedExternalData implements AutoCloseable {
+
+    // ONNX TensorProto.DataType
+    private static final int FLOAT = 1;
+    private static final int INT32 = 6;
+    private static final int INT64 = 7;
+
+    private final Map<String, OnnxTensorLike> initializers;
+    private final List<OnnxTensor> tensors;
+    private final long mappedBytes;
+
+    private MappedExternalData(Map<String, OnnxTensorLike> initializers, List<OnnxTensor> tensors, long mappedBytes) {
+        this.initializers = initializers;
+        this.tensors = tensors;
+        this.mappedBytes = mappedBytes;
+    }
+
+    /**
+     * 解析模型并映射其外部数据
+     *
+     * @return 没有可映射的外部数据时返回 null
+     */
+    static MappedExternalData map(OrtEnvironment env, Path modelPath) throws IOException, OrtException {
+        List<ExternalTensor> externalTensors = parseExternalInitializers(Files.readAllBytes(modelPath));
+        if (externalTensors.isEmpty()) {
+            return null;
+        }
+
+        Map<String, OnnxTensorLike> initializers = new HashMap<>();
+        List<OnnxTensor> tensors = new ArrayList<>();
+        Map<String, FileChannel> channels = new HashMap<>();
+        long mappedBytes = 0;
+        try {
+            for (ExternalTensor tensor : externalTensors) {
+                if (tensor.dataType != FLOAT && tensor.dataType != INT32 && tensor.dataType != INT64) {
+                    continue;
+                }
+                Path dataPath = modelPath.resolveSibling(tensor.location);
+                FileChannel channel = channels.get(tensor.location);
+                if (channel == null) {
+                    channel = FileChannel.open(dataPath, StandardOpenOption.READ);
+                    channels.put(tensor.location, channel);
+                }
+                long length = tensor.length >= 0 ? tensor.length : channel.size() - tensor.offset;
+                // 映射在 channel 关闭后依然有效，随 Buffer 被回收而解除
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, tensor.offset, length);
+                ByteBuffer bytes = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+                OnnxTensor onnxTensor = switch (tensor.dataType) {
+                    case FLOAT -> OnnxTensor.createTensor(env, bytes.asFloatBuffer(), tensor.dims);
+                    case INT32 -> OnnxTensor.createTensor(env, bytes.asIntBuffer(), tensor.dims);
+                    default -> OnnxTensor.createTensor(env, bytes.asLongBuffer(), tensor.dims);
+                };
+                tensors.add(onnxTensor);
+                initializers.put(tensor.name, onnxTensor);
+                mappedBytes += length;
+            }
+        } catch (IOException | OrtException | RuntimeException e) {
+            tensors.forEach(OnnxTensor::close);
+            throw e;
+        } finally {
+            for (FileChannel channel : channels.values()) {
+                channel.close();
+            }
+        }
+        if (!ByteOrder.nativeOrder().equals(ByteOrder.LITTLE_ENDIAN)) {
+            // 非小端平台上 ORT 会复制数据，映射失去意义
+            log.warn("Platform is not little-endian, mapped initializers will be copied by ONNX Runtime");
+        }
+        return new MappedExternalData(initializers, tensors, mappedBytes);
+    }
+
+    Map<String, OnnxTensorLike> getInitializers() {
+        return initializers;
+    }
+
+    int size() {
+        return tensors.size();
+    }
+
+    long getMappedBytes() {
+        return mappedBytes;
+    }
+
+    @Override
+    public void close() {
+        tensors.forEach(OnnxTensor::close);
+        tensors.clear();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // 精简的 protobuf 解析：只读取 ModelProto.graph.initializer 中引用外部数据的 TensorProto
+    // ---------------------------------------------------------------------------------------------
+
+    record ExternalTensor(String name, int dataType, long[] dims, String location, long offset, long length) {
+    }
+
+    static List<ExternalTensor> parseExternalInitializers(byte[] model) {
+        List<ExternalTensor> result = new ArrayList<>();
+        ProtoReader modelReader = new ProtoReader(ByteBuffer.wrap(model));
+        while (modelReader.hasRemaining()) {
+            int tag = modelReader.readTag();
+            if (tag == field(7, 2)) { // ModelProto.graph
+                ProtoReader graph = modelReader.readMessage();
+                while (graph.hasRemaining()) {
+                    int graphTag = graph.readTag();
+                    if (graphTag == field(5, 2)) { // GraphProto.initializer
+                        ExternalTensor tensor = parseTensor(graph.readMessage());
+                        if (tensor != null) {
+                            result.add(tensor);
+                        }
+                    } else {
+                        graph.skip(graphTag);
+                    }
+                }
+            } else {
+                modelReader.skip(tag);
+            }
+        }
+        return result;
+    }
+
+    private static ExternalTensor parseTensor(ProtoReader reader) {
+        String name = null;
+        int dataType = 0;
+        List<Long> dims = new ArrayList<>();
+        boolean external = false;
+        String location = null;
+        long offset = 0;
+        long length = -1;
+
+        while (reader.hasRemaining()) {
+            int tag = reader.readTag();
+            if (tag == field(1, 0)) { // dims
+                dims.add(reader.readVarint());
+            } else if (tag == field(1, 2)) { // packed dims
+                ProtoReader packed = reader.readMessage();
+                while (packed.hasRemaining()) {
+                    dims.add(packed.readVarint());
+                }
+            } else if (tag == field(2, 0)) { // data_type
+                dataType = (int) reader.readVarint();
+            } else if (tag == field(8, 2)) { // name
+                name = reader.readString();
+            } else if (tag == field(14, 0)) { // data_location
+                external = reader.readVarint() == 1;
+            } else if (tag == field(13, 2)) { // external_data (StringStringEntryProto)
+                ProtoReader entry = reader.readMessage();
+                String key = null;
+                String value = null;
+                while (entry.hasRemaining()) {
+                    int entryTag = entry.readTag();
+                    if (entryTag == field(1, 2)) {
+                        key = entry.readString();
+                    } else if (entryTag == field(2, 2)) {
+                        value = entry.readString();
+                    } else {
+                        entry.skip(entryTag);
+                    }
+                }
+                if ("location".equals(key)) {
+                    location = value;
+                } else if ("offset".equals(key) && value != null) {
+                    offset = Long.parseLong(value);
+                } else if ("length".equals(key) && value != null) {
+                    length = Long.parseLong(value);
+                }
+            } else {
+                reader.skip(tag);
+            }
+        }
+
+        if (!external || name == null || location == null) {
+            return null;
+        }
+        long[] shape = new long[dims.size()];
+        for (int i = 0; i < shape.length; i++) {
+            shape[i] = dims.get(i);
+        }
+        return new ExternalTensor(name, dataType, shape, location, offset, length);
+    }
+
+    private static int field(int number, int wireType) {
+        return (number << 3) | wireType;
+    }
+
+    private static final class ProtoReader {
+        private final ByteBuffer buffer;
+
+        ProtoReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean hasRemaining() {
+            return buffer.hasRemaining();
+        }
+
+        int readTag() {
+            return (int) readVarint();
+        }
+
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in ONNX model");
+        }
+
+        ProtoReader readMessage() {
+            int length = (int) readVarint();
+            ByteBuffer slice = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            return new ProtoReader(slice);
+        }
+
+        String readString() {
+            ProtoReader bytes = readMessage();
+            byte[] data = new byte[bytes.buffer.remaining()];
+            bytes.buffer.get(data);
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        void skip(int tag) {
+            switch (tag & 0x7) {
+                case 0 -> readVarint();
+                case 1 -> buffer.position(buffer.position() + 8);
+                case 2 -> readMessage();
+                case 5 -> buffer.position(buffer.position() + 4);
+                default -> throw new IllegalArgumentException("Unsupported wire type " + (tag & 0x7) + " in ONNX model");
+            }
+        }
+    }
+}
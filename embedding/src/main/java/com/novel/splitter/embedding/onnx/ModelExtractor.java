@@ -0,0 +1,163 @@
+package com.novel.splitter.embedding.onnx;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+
+/**
+ * 带校验的模型文件解压
+ * <p>
+ * 将 classpath 中的模型文件解压到工作目录，并在旁边写一个校验文件 ({file}.sha256)，
+ * 记录内容摘要、文件大小与修改时间以及来源资源的大小与修改时间。下次启动时：
+ * </p>
+ * <ol>
+ *     <li>来源与目标文件的元数据都未变化：直接复用，不读不写</li>
+ *     <li>元数据变化但内容摘要一致 (如镜像重建、文件被 touch)：只读校验，不重新写入</li>
+ *     <li>否则重新解压：先写临时文件再原子替换，避免进程中断留下残缺模型</li>
+ * </ol>
+ */
+@Slf4j
+final class ModelExtractor {
+
+    private static final String CHECKSUM_SUFFIX = ".sha256";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ModelExtractor() {
+    }
+
+    /**
+     * 解压 classpath 资源到目标路径
+     *
+     * @return 目标文件，资源不存在时返回 null
+     */
+    static Path extract(String resourcePath, Path target) throws IOException {
+        ClassPathResource resource = new ClassPathResource(resourcePath);
+        if (!resource.exists()) {
+            log.warn("Resource not found: {}", resourcePath);
+            return null;
+        }
+
+        long resourceLength = resource.contentLength();
+        long resourceLastModified = resource.lastModified();
+        Marker marker = Marker.read(markerPath(target));
+
+        if (marker != null && Files.exists(target) && Files.size(target) == marker.size) {
+            boolean sameResource = marker.resourceLength == resourceLength && marker.resourceLastModified == resourceLastModified;
+            if (sameResource && Files.getLastModifiedTime(target).toMillis() == marker.lastModified) {
+                log.info("Reusing extracted model file {} (unchanged)", target);
+                return target;
+            }
+            // 元数据变化：校验来源资源与已解压文件的内容是否仍一致
+            if (marker.sha256.equals(sha256(resource.getInputStream())) && marker.sha256.equals(sha256(Files.newInputStream(target)))) {
+                log.info("Reusing extracted model file {} (checksum verified)", target);
+                new Marker(marker.sha256, marker.size, Files.getLastModifiedTime(target).toMillis(),
+                        resourceLength, resourceLastModified).write(markerPath(target));
+                return target;
+            }
+        }
+
+        log.info("Extracting {} to {}", resourcePath, target);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        MessageDigest digest = newDigest();
+        try (InputStream is = new DigestInputStream(resource.getInputStream(), digest);
+             OutputStream os = Files.newOutputStream(temp)) {
+            is.transferTo(os);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        new Marker(HexFormat.of().formatHex(digest.digest()), Files.size(target),
+                Files.getLastModifiedTime(target).toMillis(), resourceLength, resourceLastModified)
+                .write(markerPath(target));
+        return target;
+    }
+
+    /**
+     * 文件内容的 SHA-256 (十六进制)
+     * <p>
+     * 对解压出的文件直接使用校验文件中的摘要 (大小与修改时间一致时)，避免每次启动重新读取整个模型。
+     * </p>
+     */
+    static String checksum(Path file) throws IOException {
+        Marker marker = Marker.read(markerPath(file));
+        if (marker != null
+                && Files.size(file) == marker.size
+                && Files.getLastModifiedTime(file).toMillis() == marker.lastModified) {
+            return marker.sha256;
+        }
+        return sha256(Files.newInputStream(file));
+    }
+
+    private static Path markerPath(Path file) {
+        return file.resolveSibling(file.getFileName() + CHECKSUM_SUFFIX);
+    }
+
+    private static String sha256(InputStream input) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = input) {
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Marker(String sha256, long size, long lastModified, long resourceLength, long resourceLastModified) {
+
+        static Marker read(Path path) {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            Properties props = new Properties();
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                props.load(reader);
+                if (props.getProperty("sha256") == null) {
+                    return null;
+                }
+                return new Marker(
+                        props.getProperty("sha256"),
+                        Long.parseLong(props.getProperty("size")),
+                        Long.parseLong(props.getProperty("lastModified")),
+                        Long.parseLong(props.getProperty("resourceLength")),
+                        Long.parseLong(props.getProperty("resourceLastModified")));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable checksum file {}", path);
+                return null;
+            }
+        }
+
+        void write(Path path) throws IOException {
+            Properties props = new Properties();
+            props.setProperty("sha256", sha256);
+            props.setProperty("size", Long.toString(size));
+            props.setProperty("lastModified", Long.toString(lastModified));
+            props.setProperty("resourceLength", Long.toString(resourceLength));
+            props.setProperty("resourceLastModified", Long.toString(resourceLastModified));
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                props.store(writer, "novel-splitter extracted model checksum");
+            }
+        }
+    }
+}
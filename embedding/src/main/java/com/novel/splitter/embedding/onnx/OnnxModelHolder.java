@@ -3,36 +3,44 @@ package com.novel.splitter.embedding.onnx;
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
+import com.novel.splitter.embedding.config.OnnxProperties;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
-import org.springframework.util.FileCopyUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
 
 @Slf4j
 @Component
 public class OnnxModelHolder {
 
+    private final OnnxProperties properties;
+
     private OrtEnvironment env;
-    private OrtSession session;
-    
-    @org.springframework.beans.factory.annotation.Value("${embedding.onnx.model-path:}")
-    private String externalModelPath;
+    private String modelId;
+    /** 内存映射的外部权重，需在会话关闭后释放 */
+    private MappedExternalData mappedExternalData;
+    private final List<OrtSession> sessions = new ArrayList<>();
 
     private static final String MODEL_RESOURCE_DIR = "embedding/";
     private static final String MODEL_FILE = "model.onnx";
     private static final String MODEL_DATA_FILE = "model.onnx_data";
+    private static final String MODEL_INT8_FILE = "model_int8.onnx";
 
-    public OnnxModelHolder() {
+    public OnnxModelHolder(OnnxProperties properties) {
+        this.properties = properties;
     }
 
     @PostConstruct
@@ -42,36 +50,45 @@ public class OnnxModelHolder {
             this.env = OrtEnvironment.getEnvironment();
             
             String modelPathToUse;
+            boolean quantized = properties.getPrecision() == OnnxProperties.ModelPrecision.INT8;
+            String externalModelPath = quantized ? properties.getQuantizedModelPath() : properties.getModelPath();
+            String bundledModelFile = quantized ? MODEL_INT8_FILE : MODEL_FILE;
 
             if (externalModelPath != null && !externalModelPath.isBlank()) {
-                log.info("Using external ONNX model from: {}", externalModelPath);
+                log.info("Using external {} ONNX model from: {}", properties.getPrecision(), externalModelPath);
                 File modelFile = new File(externalModelPath);
                 if (!modelFile.exists()) {
                     throw new IOException("External model file not found: " + externalModelPath);
                 }
                 modelPathToUse = modelFile.getAbsolutePath();
             } else {
-                log.info("Using bundled ONNX model from classpath");
-                // Extract model files to temp directory
-                Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"), "novel-splitter-embedding");
-                if (!Files.exists(tempDir)) {
-                    Files.createDirectories(tempDir);
-                }
+                log.info("Using bundled {} ONNX model from classpath", properties.getPrecision());
+                // Extract model files to the work directory
+                Path tempDir = resolveWorkDir();
                 
-                File modelFile = extractResource(MODEL_RESOURCE_DIR + MODEL_FILE, tempDir.resolve(MODEL_FILE));
-                extractResource(MODEL_RESOURCE_DIR + MODEL_DATA_FILE, tempDir.resolve(MODEL_DATA_FILE));
+                // 已解压且校验一致的文件直接复用，不再每次启动重新复制
+                Path modelFile = ModelExtractor.extract(MODEL_RESOURCE_DIR + bundledModelFile, tempDir.resolve(bundledModelFile));
+                if (!quantized) {
+                    // 动态量化模型的权重内嵌在单个文件中，只有 FP32 模型带外部权重文件
+                    ModelExtractor.extract(MODEL_RESOURCE_DIR + MODEL_DATA_FILE, tempDir.resolve(MODEL_DATA_FILE));
+                }
     
                 if (modelFile == null) {
-                    throw new IOException("Model file not found in resources: " + MODEL_RESOURCE_DIR + MODEL_FILE);
+                    throw new IOException("Model file not found in resources: " + MODEL_RESOURCE_DIR + bundledModelFile
+                            + (quantized ? " (set embedding.onnx.quantized-model-path to an INT8 model)" : ""));
                 }
-                modelPathToUse = modelFile.getAbsolutePath();
+                modelPathToUse = modelFile.toAbsolutePath().toString();
             }
 
             log.info("Loading ONNX Model from {}", modelPathToUse);
+            this.modelId = computeModelId(Paths.get(modelPathToUse));
             
-            this.session = env.createSession(modelPathToUse, new OrtSession.SessionOptions());
+            long start = System.currentTimeMillis();
+            createSessions(modelPathToUse, Math.max(1, properties.getSessionCount()));
             
-            log.info("ONNX Model loaded successfully. Inputs: {}", session.getInputNames());
+            log.info("ONNX Model loaded successfully in {} ms. Sessions: {}, intra-op threads: {}, optimization: {}, Inputs: {}",
+                    System.currentTimeMillis() - start, sessions.size(), properties.getIntraOpThreads(),
+                    properties.getOptimizationLevel(), sessions.get(0).getInputNames());
             
         } catch (Exception e) {
             log.error("Failed to initialize ONNX model", e);
@@ -79,26 +96,125 @@ public class OnnxModelHolder {
         }
     }
     
-    private File extractResource(String resourcePath, Path targetPath) throws IOException {
-        ClassPathResource resource = new ClassPathResource(resourcePath);
-        if (!resource.exists()) {
-             log.warn("Resource not found: {}", resourcePath);
-             return null;
+    /**
+     * 创建推理会话
+     * <p>
+     * 启用优化图缓存时，首次启动由第一个会话将优化后的图写入缓存文件，
+     * 之后的会话 (以及后续启动) 直接加载缓存文件并关闭图优化，省去每次启动的图变换。
+     * 缓存文件名包含模型标识、优化级别和 ONNX Runtime 版本，任一变化都会重新生成。
+     * </p>
+     */
+    private void createSessions(String modelPath, int sessionCount) throws OrtException, IOException {
+        Path optimizedPath = null;
+        if (properties.isOptimizedModelCache() && properties.getOptimizationLevel() != OrtSession.SessionOptions.OptLevel.NO_OPT) {
+            optimizedPath = resolveWorkDir().resolve(String.format("%s-%s-ort%s.optimized.onnx",
+                    modelId, properties.getOptimizationLevel().name().toLowerCase(), env.getVersion()));
         }
-        
-        try (InputStream is = resource.getInputStream();
-             FileOutputStream fos = new FileOutputStream(targetPath.toFile())) {
-            FileCopyUtils.copy(is, fos);
+
+        boolean useOptimizedCache = optimizedPath != null && Files.exists(optimizedPath);
+        if (properties.isMmapExternalData() && !useOptimizedCache) {
+            mappedExternalData = MappedExternalData.map(env, Paths.get(modelPath));
+            if (mappedExternalData != null) {
+                log.info("Memory-mapped {} external initializers ({} MB)",
+                        mappedExternalData.size(), mappedExternalData.getMappedBytes() / (1024 * 1024));
+            }
+        }
+
+        if (optimizedPath != null && !useOptimizedCache) {
+            Path tempPath = optimizedPath.resolveSibling(optimizedPath.getFileName() + ".tmp");
+            try (OrtSession.SessionOptions options = createSessionOptions(properties.getOptimizationLevel())) {
+                addMappedInitializers(options);
+                options.setOptimizedModelFilePath(tempPath.toString());
+                sessions.add(env.createSession(modelPath, options));
+            }
+            try {
+                Files.move(tempPath, optimizedPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Saved optimized ONNX graph to {}", optimizedPath);
+            } catch (IOException e) {
+                log.warn("Failed to save optimized ONNX graph to {}, later sessions will optimize again", optimizedPath, e);
+                Files.deleteIfExists(tempPath);
+                optimizedPath = null;
+            }
+        }
+
+        String sessionModelPath = optimizedPath != null ? optimizedPath.toString() : modelPath;
+        OrtSession.SessionOptions.OptLevel level = optimizedPath != null
+                ? OrtSession.SessionOptions.OptLevel.NO_OPT
+                : properties.getOptimizationLevel();
+        if (optimizedPath != null && sessions.isEmpty()) {
+            log.info("Loading cached optimized ONNX graph from {}", optimizedPath);
+        }
+        try (OrtSession.SessionOptions options = createSessionOptions(level)) {
+            if (optimizedPath == null) {
+                addMappedInitializers(options);
+            }
+            while (sessions.size() < sessionCount) {
+                sessions.add(env.createSession(sessionModelPath, options));
+            }
         }
-        return targetPath.toFile();
     }
-    
+
+    private void addMappedInitializers(OrtSession.SessionOptions options) throws OrtException {
+        if (mappedExternalData != null) {
+            options.addExternalInitializers(mappedExternalData.getInitializers());
+        }
+    }
+
+    private OrtSession.SessionOptions createSessionOptions(OrtSession.SessionOptions.OptLevel optimizationLevel) throws OrtException {
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        options.setOptimizationLevel(optimizationLevel);
+        options.setExecutionMode(properties.getExecutionMode());
+        options.setMemoryPatternOptimization(properties.isMemoryPattern());
+        options.setCPUArenaAllocator(properties.isCpuArena());
+        if (properties.getIntraOpThreads() > 0) {
+            options.setIntraOpNumThreads(properties.getIntraOpThreads());
+        }
+        if (properties.getInterOpThreads() > 0) {
+            options.setInterOpNumThreads(properties.getInterOpThreads());
+        }
+        return options;
+    }
+
+    /**
+     * 工作目录：存放从 classpath 解压的模型与优化图缓存
+     */
+    private Path resolveWorkDir() throws IOException {
+        String cacheDir = properties.getCacheDir();
+        Path dir = (cacheDir != null && !cacheDir.isBlank())
+                ? Paths.get(cacheDir)
+                : Paths.get(System.getProperty("java.io.tmpdir"), "novel-splitter-embedding");
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    /**
+     * 计算模型标识：模型文件及其外部权重文件 (如存在) 各自 SHA-256 摘要的组合，取前 16 位十六进制
+     * <p>
+     * 解压出的文件直接使用校验文件中记录的摘要，不必每次启动重新读取模型。
+     * </p>
+     */
+    private static String computeModelId(Path modelPath) throws IOException {
+        MessageDigest digest = ModelExtractor.newDigest();
+        Path dataPath = modelPath.resolveSibling(modelPath.getFileName() + "_data");
+        for (Path path : new Path[]{modelPath, dataPath}) {
+            if (Files.exists(path)) {
+                digest.update(ModelExtractor.checksum(path).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+    }
+
     @PreDestroy
     public void close() {
         try {
-            if (session != null) {
+            for (OrtSession session : sessions) {
                 session.close();
             }
+            sessions.clear();
+            if (mappedExternalData != null) {
+                mappedExternalData.close();
+                mappedExternalData = null;
+            }
             if (env != null) {
                 env.close();
             }
@@ -107,11 +223,29 @@ public class OnnxModelHolder {
         }
     }
 
+    public OnnxProperties.ModelPrecision getPrecision() {
+        return properties.getPrecision();
+    }
+
     public OrtEnvironment getEnv() {
         return env;
     }
 
+    /**
+     * 模型标识 (模型文件内容摘要)，模型文件变化时随之变化
+     */
+    public String getModelId() {
+        return modelId;
+    }
+
     public OrtSession getSession() {
-        return session;
+        return sessions.isEmpty() ? null : sessions.get(0);
+    }
+
+    /**
+     * 全部推理会话，数量由 embedding.onnx.session-count 决定
+     */
+    public List<OrtSession> getSessions() {
+        return Collections.unmodifiableList(sessions);
     }
 }
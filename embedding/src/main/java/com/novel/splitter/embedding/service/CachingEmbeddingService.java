@@ -0,0 +1,224 @@
+package com.novel.splitter.embedding.service;
+
+import com.novel.splitter.embedding.api.EmbeddingService;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带查询缓存的嵌入服务 (装饰器)
+ * <p>
+ * 对单文本嵌入 ({@link #embed}) 按规范化后的文本做 LRU 缓存，同一问题重复出现时
+ * (聊天界面、RAG 调试接口、向量管理接口) 不再调用模型推理。
+ * 缓存同时受条目数和估算内存大小约束，向量以 float[] 紧凑存储。
+ * </p>
+ * <p>
+ * 批量嵌入 (入库) 可选使用 {@link PersistentEmbeddingCache}：按文本内容查找已有向量，
+ * 只对未命中的文本调用模型，并将新向量写回磁盘。重新入库时未变化的场景无需再次推理。
+ * </p>
+ */
+@Slf4j
+public class CachingEmbeddingService implements EmbeddingService {
+
+    /** 单条缓存的固定开销估算：Entry 对象、String 与数组头 */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final EmbeddingService delegate;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final boolean queryCacheEnabled;
+    private final PersistentEmbeddingCache persistentCache;
+
+    /** accessOrder = true，迭代顺序即 LRU 顺序 */
+    private final LinkedHashMap<String, float[]> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder batchHits = new LongAdder();
+    private final LongAdder batchMisses = new LongAdder();
+
+    public CachingEmbeddingService(EmbeddingService delegate, int maxEntries, long maxBytes) {
+        this(delegate, maxEntries, maxBytes, null);
+    }
+
+    /**
+     * @param maxEntries      查询缓存最大条目数，小于等于 0 表示不缓存查询
+     * @param persistentCache 入库向量的持久化缓存，可为 null
+     */
+    public CachingEmbeddingService(EmbeddingService delegate, int maxEntries, long maxBytes, PersistentEmbeddingCache persistentCache) {
+        this.delegate = delegate;
+        this.queryCacheEnabled = maxEntries > 0;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.persistentCache = persistentCache;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        if (!queryCacheEnabled) {
+            return delegate.embed(text);
+        }
+        String key = normalize(text);
+        if (key.isEmpty()) {
+            return delegate.embed(text);
+        }
+
+        float[] cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached.clone();
+        }
+
+        misses.increment();
+        // 推理在锁外执行；并发的相同查询可能重复计算一次，但不会阻塞其他查询
+        // 规范化文本只作缓存键，模型输入仍为原文 (与入库时的批量嵌入一致)
+        float[] vector = delegate.embed(text);
+        if (vector != null && vector.length > 0) {
+            put(key, vector.clone());
+        }
+        return vector;
+    }
+
+    @Override
+    public List<float[]> embedBatch(List<String> texts) {
+        if (persistentCache == null || texts == null || texts.isEmpty()) {
+            return delegate.embedBatch(texts);
+        }
+
+        List<float[]> results = new ArrayList<>(texts.size());
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> missTexts = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            float[] cached = text == null ? null : persistentCache.get(text);
+            results.add(cached);
+            if (cached == null) {
+                missIndexes.add(i);
+                missTexts.add(text);
+            }
+        }
+        batchHits.add(texts.size() - missTexts.size());
+        batchMisses.add(missTexts.size());
+
+        if (!missTexts.isEmpty()) {
+            List<float[]> embeddings = delegate.embedBatch(missTexts);
+            for (int i = 0; i < missIndexes.size(); i++) {
+                results.set(missIndexes.get(i), embeddings.get(i));
+            }
+            try {
+                persistentCache.putAll(missTexts, embeddings);
+            } catch (IOException e) {
+                // 缓存写入失败不影响入库结果
+                log.warn("Failed to write embedding cache {}", persistentCache.getFile(), e);
+            }
+        }
+        log.debug("Embedding batch: {} reused from persistent cache, {} computed", texts.size() - missTexts.size(), missTexts.size());
+        return results;
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Stats getStats() {
+        synchronized (cache) {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), cache.size(), currentBytes,
+                    batchHits.sum(), batchMisses.sum(), persistentCache == null ? 0 : persistentCache.size());
+        }
+    }
+
+    /**
+     * 清空缓存 (模型切换后需要调用)
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+            currentBytes = 0;
+        }
+    }
+
+    private void put(String key, float[] vector) {
+        synchronized (cache) {
+            float[] previous = cache.put(key, vector);
+            if (previous != null) {
+                currentBytes -= weigh(key, previous);
+            }
+            currentBytes += weigh(key, vector);
+
+            Iterator<Map.Entry<String, float[]>> it = cache.entrySet().iterator();
+            while ((cache.size() > maxEntries || currentBytes > maxBytes) && it.hasNext()) {
+                Map.Entry<String, float[]> eldest = it.next();
+                currentBytes -= weigh(eldest.getKey(), eldest.getValue());
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static long weigh(String key, float[] vector) {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length() + 4L * vector.length;
+    }
+
+    /**
+     * 文本规范化：全角字母、数字、空格折叠为半角，连续空白合并为一个空格并去除首尾空白
+     * <p>
+     * 中文标点 (如全角逗号、问号) 保持不变：它们在词表中与半角标点是不同的 Token，
+     * 且入库文本使用的也是全角标点。
+     * 由于分词时空白只起分隔作用，合并空白不会改变推理结果。
+     * </p>
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '　') {
+                c = ' ';
+            } else if ((c >= '０' && c <= '９') || (c >= 'Ａ' && c <= 'Ｚ') || (c >= 'ａ' && c <= 'ｚ')) {
+                c = (char) (c - 0xFEE0);
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @Value
+    public static class Stats {
+        long hits;
+        long misses;
+        long evictions;
+        int size;
+        long estimatedBytes;
+        /** 入库批量嵌入中复用持久化缓存的条数 */
+        long batchHits;
+        long batchMisses;
+        int persistentSize;
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.novel.splitter.embedding.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 按序列长度分桶的批次调度器
+ * <p>
+ * 推理时每个批次会补齐到批内最长序列，Transformer 的计算量随序列长度增长。
+ * 先按 Token 长度排序再切分批次，使同一批次内的序列长度接近，减少无效的 Padding 计算。
+ * 每个批次同时受最大样本数和最大 Token 总数 (批内最长长度 * 样本数) 约束。
+ * </p>
+ */
+public class LengthBucketScheduler {
+
+    private final int maxBatchSize;
+    private final int maxBatchTokens;
+
+    public LengthBucketScheduler(int maxBatchSize, int maxBatchTokens) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxBatchTokens = Math.max(1, maxBatchTokens);
+    }
+
+    /**
+     * 生成批次
+     *
+     * @param lengths 每个样本的 Token 长度 (下标即样本原始位置)
+     * @return 批次列表，每个批次为样本原始下标数组，批内按长度升序
+     */
+    public List<int[]> schedule(int[] lengths) {
+        List<int[]> batches = new ArrayList<>();
+        if (lengths == null || lengths.length == 0) {
+            return batches;
+        }
+
+        Integer[] order = new Integer[lengths.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // 稳定排序：长度相同的样本保持原始顺序
+        Arrays.sort(order, Comparator.comparingInt(i -> lengths[i]));
+
+        int start = 0;
+        while (start < order.length) {
+            int end = start + 1; // 至少放入一条，避免超长单条样本导致死循环
+            while (end < order.length
+                    && end - start < maxBatchSize
+                    // 升序排列，新加入样本即为批内最长序列
+                    && (long) lengths[order[end]] * (end - start + 1) <= maxBatchTokens) {
+                end++;
+            }
+
+            int[] batch = new int[end - start];
+            for (int i = start; i < end; i++) {
+                batch[i - start] = order[i];
+            }
+            batches.add(batch);
+            start = end;
+        }
+        return batches;
+    }
+}
@@ -1,31 +1,47 @@
 package com.novel.splitter.embedding.service;
 
 import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
 import com.novel.splitter.embedding.api.EmbeddingService;
+import com.novel.splitter.embedding.config.OnnxProperties;
+import com.novel.splitter.embedding.onnx.InferenceExecutor;
+import com.novel.splitter.embedding.onnx.InferenceExecutor.Priority;
 import com.novel.splitter.embedding.onnx.OnnxModelHolder;
 import com.novel.splitter.embedding.tokenizer.TokenizedInput;
 import com.novel.splitter.embedding.tokenizer.Tokenizer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
+import java.nio.FloatBuffer;
 import java.nio.LongBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * 基于 ONNX Runtime 的嵌入服务
+ * <p>
+ * 推理统一提交到 {@link InferenceExecutor}：单文本嵌入 (查询) 以 QUERY 优先级执行，
+ * 批量嵌入 (入库) 的每个批次以 INGEST 优先级执行，保证入库期间查询延迟稳定。
+ * 分词在调用线程完成，不占用推理线程。
+ * </p>
+ */
 @Slf4j
 @Service
-@Primary // Make this the default implementation
 @RequiredArgsConstructor
 public class OnnxEmbeddingService implements EmbeddingService {
 
     private final OnnxModelHolder modelHolder;
     private final Tokenizer tokenizer;
+    private final OnnxProperties properties;
+    private final InferenceExecutor<OrtSession> inferenceExecutor;
 
     @Override
     public float[] embed(String text) {
@@ -33,49 +49,142 @@ public class OnnxEmbeddingService implements EmbeddingService {
             return new float[0]; 
         }
 
+        try {
+            // 1. Tokenize
+            TokenizedInput input = tokenizer.tokenize(text);
+
+            // 2. Run Inference (batch of one, ahead of queued ingest batches)
+            List<TokenizedInput> batch = Collections.singletonList(input);
+            return join(inferenceExecutor.submit(Priority.QUERY, session -> runBatch(session, batch)))[0];
+
+        } catch (Exception e) {
+            log.error("Embedding failed for text: {}", text, e);
+            throw new RuntimeException("Embedding failed", e);
+        }
+    }
+
+    /**
+     * 批量嵌入
+     * <p>
+     * 先按 Token 长度分桶 ({@link LengthBucketScheduler})，再将每个桶堆叠为一个 [N, seqLen] 张量，
+     * 单次 OrtSession.run 完成推理。seqLen 取批内最长序列，批次同时受 batchSize 和 maxBatchTokens 约束。
+     * </p>
+     */
+    @Override
+    public List<float[]> embedBatch(List<String> texts) {
+        if (texts == null || texts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        float[][] results = new float[texts.size()][];
+        List<Integer> pendingIndexes = new ArrayList<>(texts.size());
+        List<TokenizedInput> pendingInputs = new ArrayList<>(texts.size());
+
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.trim().isEmpty()) {
+                results[i] = new float[0];
+                continue;
+            }
+            pendingIndexes.add(i);
+            pendingInputs.add(tokenizer.tokenize(text));
+        }
+
+        int[] lengths = new int[pendingInputs.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = pendingInputs.get(i).length();
+        }
+
+        // 所有批次一次性提交，多会话时可并行推理；队列满时在此阻塞
+        LengthBucketScheduler scheduler = new LengthBucketScheduler(properties.getBatchSize(), properties.getMaxBatchTokens());
+        List<int[]> buckets = scheduler.schedule(lengths);
+        List<CompletableFuture<float[][]>> futures = new ArrayList<>(buckets.size());
+        for (int[] bucket : buckets) {
+            List<TokenizedInput> batch = new ArrayList<>(bucket.length);
+            for (int index : bucket) {
+                batch.add(pendingInputs.get(index));
+            }
+            futures.add(inferenceExecutor.submit(Priority.INGEST, session -> runBatch(session, batch)));
+        }
+
+        for (int b = 0; b < buckets.size(); b++) {
+            int[] bucket = buckets.get(b);
+            try {
+                float[][] embeddings = join(futures.get(b));
+                for (int i = 0; i < bucket.length; i++) {
+                    results[pendingIndexes.get(bucket[i])] = embeddings[i];
+                }
+            } catch (Exception e) {
+                log.error("Batch embedding failed for {} items (seqLen={})", bucket.length, lengths[bucket[bucket.length - 1]], e);
+                throw new RuntimeException("Batch embedding failed", e);
+            }
+        }
+
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * 对一个批次执行推理，返回每个样本归一化后的 CLS 向量
+     * <p>
+     * 所有样本动态补齐到批内最长序列长度。
+     * </p>
+     */
+    private float[][] runBatch(OrtSession session, List<TokenizedInput> batch) throws OrtException {
+        int batchSize = batch.size();
+        int seqLen = 0;
+        for (TokenizedInput input : batch) {
+            seqLen = Math.max(seqLen, input.length());
+        }
+        long padId = tokenizer.getPadId();
+
+        // 1. Stack inputs into [N, seqLen] (pad to the longest sequence in the batch)
+        long[] inputIds = new long[batchSize * seqLen];
+        long[] attentionMask = new long[batchSize * seqLen];
+        long[] tokenTypeIds = new long[batchSize * seqLen]; // All zeros for sentence A
+        Arrays.fill(inputIds, padId);
+        for (int b = 0; b < batchSize; b++) {
+            long[] ids = batch.get(b).getInputIds();
+            int offset = b * seqLen;
+            System.arraycopy(ids, 0, inputIds, offset, ids.length);
+            Arrays.fill(attentionMask, offset, offset + ids.length, 1L);
+        }
+
+        long[] shape = new long[]{batchSize, seqLen};
+
         OnnxTensor inputIdsTensor = null;
         OnnxTensor attentionMaskTensor = null;
         OnnxTensor tokenTypeIdsTensor = null;
         OrtSession.Result result = null;
 
         try {
-            // 1. Tokenize
-            TokenizedInput input = tokenizer.tokenize(text);
-            
-            // 2. Prepare Tensors
-            long[] inputIds = input.getInputIds();
-            long[] attentionMask = input.getAttentionMask();
-            long[] tokenTypeIds = input.getTokenTypeIds();
-            
-            long[] shape = new long[]{1, inputIds.length};
-            
-            // Create tensors
+            // 2. Create tensors
             inputIdsTensor = OnnxTensor.createTensor(modelHolder.getEnv(), LongBuffer.wrap(inputIds), shape);
             attentionMaskTensor = OnnxTensor.createTensor(modelHolder.getEnv(), LongBuffer.wrap(attentionMask), shape);
             tokenTypeIdsTensor = OnnxTensor.createTensor(modelHolder.getEnv(), LongBuffer.wrap(tokenTypeIds), shape);
-            
+
             Map<String, OnnxTensor> inputs = new HashMap<>();
             inputs.put("input_ids", inputIdsTensor);
             inputs.put("attention_mask", attentionMaskTensor);
             inputs.put("token_type_ids", tokenTypeIdsTensor);
-            
+
             // 3. Run Inference
-            result = modelHolder.getSession().run(inputs);
-            
+            result = session.run(inputs);
+
             // 4. Extract Output
-            // Assuming the first output is last_hidden_state or pooler_output.
-            // BGE-Small-ZH output 0 is usually last_hidden_state [1, 512, 512]
-            float[][][] lastHiddenState = (float[][][]) result.get(0).getValue(); 
-            
-            // 5. Pooling (CLS Strategy for BGE)
-            float[] clsEmbedding = lastHiddenState[0][0];
-            
-            // 6. Normalize (L2)
-            return normalize(clsEmbedding);
-            
-        } catch (Exception e) {
-            log.error("Embedding failed for text: {}", text, e);
-            throw new RuntimeException("Embedding failed", e);
+            // Output 0 is last_hidden_state [N, seqLen, hidden].
+            // Read it as a flat buffer instead of float[][][] to avoid materializing every token vector.
+            FloatBuffer lastHiddenState = ((OnnxTensor) result.get(0)).getFloatBuffer();
+            int hiddenSize = lastHiddenState.capacity() / (batchSize * seqLen);
+
+            // 5. Pooling (CLS Strategy for BGE) + 6. Normalize (L2)
+            float[][] embeddings = new float[batchSize][];
+            for (int b = 0; b < batchSize; b++) {
+                float[] clsEmbedding = new float[hiddenSize];
+                lastHiddenState.get(b * seqLen * hiddenSize, clsEmbedding);
+                embeddings[b] = normalize(clsEmbedding);
+            }
+            return embeddings;
+
         } finally {
             try {
                 if (result != null) result.close();
@@ -88,16 +197,15 @@ public class OnnxEmbeddingService implements EmbeddingService {
         }
     }
 
-    @Override
-    public List<float[]> embedBatch(List<String> texts) {
-        if (texts == null || texts.isEmpty()) {
-            return Collections.emptyList();
-        }
-        List<float[]> results = new ArrayList<>(texts.size());
-        for (String text : texts) {
-            results.add(embed(text));
+    private static <T> T join(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
         }
-        return results;
     }
 
     private float[] normalize(float[] v) {
@@ -0,0 +1,272 @@
+package com.novel.splitter.embedding.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按内容寻址的持久化嵌入缓存
+ * <p>
+ * 以文本 UTF-8 字节的 SHA-256 (取前 128 位) 为键，向量为值，追加写入本地二进制文件。
+ * 每个模型单独一个文件 ({modelId}.emb)，文件头中同样记录模型标识，模型变化后旧缓存自然失效。
+ * 模型标识由调用方组合模型文件摘要与分词器标识 (分词规则版本、词表摘要)，换用词表时同样失效。
+ * 重新入库同一本小说 (新版本、调整切分规则) 时，文本未变化的场景可直接复用向量。
+ * </p>
+ * <pre>
+ * 文件格式 (小端序):
+ *   header : magic(int) | version(int) | dimension(int) | modelIdLength(int) | modelId(UTF-8)
+ *   record : hashHigh(long) | hashLow(long) | vector(float * dimension)
+ * </pre>
+ * <p>
+ * 记录定长，加载时整体读入内存；写入中断导致的残缺尾记录会在打开时被截断。
+ * </p>
+ * <p>
+ * 文件只追加、不压缩：不再出现的文本的向量不会被清除 (换模型或分词器时整个文件随之废弃)。
+ * 内存与文件大小由条目上限约束 (512 维约 2KB / 条)，达到上限后新向量不再缓存，需要时删除缓存文件重建。
+ * </p>
+ */
+@Slf4j
+public class PersistentEmbeddingCache implements AutoCloseable {
+
+    private static final int MAGIC = 0x4E534543; // "NSEC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_SUFFIX = ".emb";
+
+    private final Path file;
+    private final String modelId;
+    private final int maxEntries;
+    private final Map<Key, float[]> vectors = new HashMap<>();
+    private FileChannel channel;
+    private int dimension;
+
+    private record Key(long high, long low) {
+    }
+
+    private boolean fullWarned;
+
+    private PersistentEmbeddingCache(Path file, String modelId, int maxEntries) {
+        this.file = file;
+        this.modelId = modelId;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 打开 (或创建) 指定模型的缓存文件
+     *
+     * @param directory 缓存目录
+     * @param modelId   模型标识 (模型文件与分词器的摘要组合)
+     */
+    public static PersistentEmbeddingCache open(Path directory, String modelId) throws IOException {
+        return open(directory, modelId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 打开 (或创建) 指定模型的缓存文件
+     *
+     * @param directory  缓存目录
+     * @param modelId    模型标识 (模型文件与分词器的摘要组合)
+     * @param maxEntries 条目上限，达到后不再缓存新向量
+     */
+    public static PersistentEmbeddingCache open(Path directory, String modelId, int maxEntries) throws IOException {
+        Files.createDirectories(directory);
+        PersistentEmbeddingCache cache = new PersistentEmbeddingCache(directory.resolve(modelId + FILE_SUFFIX), modelId, Math.max(0, maxEntries));
+        cache.load();
+        return cache;
+    }
+
+    /**
+     * 查找文本对应的向量
+     *
+     * @return 向量副本，未命中时返回 null
+     */
+    public synchronized float[] get(String text) {
+        float[] vector = vectors.get(keyOf(text));
+        return vector == null ? null : vector.clone();
+    }
+
+    /**
+     * 批量写入，已存在的文本会被跳过
+     * <p>
+     * 向量在写入文件成功后才对 {@link #get} 可见；写入失败时截回写入前的位置，下次写入同一文本会重试。
+     * </p>
+     */
+    public synchronized void putAll(List<String> texts, List<float[]> embeddings) throws IOException {
+        Map<Key, float[]> added = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            float[] vector = embeddings.get(i);
+            if (texts.get(i) == null || vector == null || vector.length == 0) {
+                continue;
+            }
+            if (dimension == 0) {
+                writeHeader(vector.length);
+            }
+            if (vector.length != dimension) {
+                log.warn("Skip caching vector with dimension {} (cache dimension {})", vector.length, dimension);
+                continue;
+            }
+            Key key = keyOf(texts.get(i));
+            if (vectors.containsKey(key) || added.containsKey(key)) {
+                continue;
+            }
+            if (vectors.size() + added.size() >= maxEntries) {
+                if (!fullWarned) {
+                    log.warn("Embedding cache {} reached {} entries, new vectors are no longer cached", file, maxEntries);
+                    fullWarned = true;
+                }
+                break;
+            }
+            added.put(key, vector.clone());
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(recordSize() * added.size()).order(ByteOrder.LITTLE_ENDIAN);
+        for (Map.Entry<Key, float[]> entry : added.entrySet()) {
+            buffer.putLong(entry.getKey().high()).putLong(entry.getKey().low());
+            for (float v : entry.getValue()) {
+                buffer.putFloat(v);
+            }
+        }
+        buffer.flip();
+        long start = channel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            // 去掉写了一半的记录，保持记录对齐
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        vectors.putAll(added);
+    }
+
+    public synchronized int size() {
+        return vectors.size();
+    }
+
+    public String getModelId() {
+        return modelId;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
+        if (fileSize == 0) {
+            return;
+        }
+
+        ByteBuffer fixedHeader = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        boolean valid = readFully(fixedHeader, 0) && fixedHeader.getInt(0) == MAGIC && fixedHeader.getInt(4) == FORMAT_VERSION;
+        int idLength = valid ? fixedHeader.getInt(12) : -1;
+        String storedModelId = null;
+        if (valid && idLength > 0 && idLength < 1024) {
+            ByteBuffer idBuffer = ByteBuffer.allocate(idLength);
+            if (readFully(idBuffer, 16)) {
+                storedModelId = new String(idBuffer.array(), StandardCharsets.UTF_8);
+            }
+        }
+        if (!modelId.equals(storedModelId) || fixedHeader.getInt(8) <= 0) {
+            log.warn("Embedding cache file {} is invalid or belongs to another model, recreating", file);
+            channel.truncate(0);
+            return;
+        }
+
+        dimension = fixedHeader.getInt(8);
+        long headerSize = 16L + idLength;
+        int recordSize = recordSize();
+        long records = (fileSize - headerSize) / recordSize;
+        long validEnd = headerSize + records * recordSize;
+
+        ByteBuffer record = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        for (long r = 0; r < records; r++) {
+            record.clear();
+            readFully(record, headerSize + r * recordSize);
+            record.flip();
+            Key key = new Key(record.getLong(), record.getLong());
+            float[] vector = new float[dimension];
+            record.asFloatBuffer().get(vector);
+            vectors.put(key, vector);
+        }
+
+        if (validEnd < fileSize) {
+            log.warn("Truncating incomplete record at the end of embedding cache {}", file);
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+        log.info("Loaded {} cached embeddings (dim={}) from {}", vectors.size(), dimension, file);
+    }
+
+    private void writeHeader(int dim) throws IOException {
+        byte[] id = modelId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(16 + id.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dim).putInt(id.length).put(id);
+        header.flip();
+        channel.truncate(0);
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        dimension = dim;
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int recordSize() {
+        return 16 + 4 * dimension;
+    }
+
+    private static Key keyOf(String text) {
+        byte[] digest = sha256().digest(text.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        return new Key(buffer.getLong(), buffer.getLong());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,154 +1,338 @@
 package com.novel.splitter.embedding.store;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.novel.splitter.domain.model.Scene;
 import com.novel.splitter.domain.model.embedding.chroma.ChromaCollection;
 import com.novel.splitter.domain.model.embedding.chroma.ChromaQueryResponse;
 import com.novel.splitter.domain.model.embedding.VectorRecord;
 import com.novel.splitter.embedding.api.VectorStore;
-import lombok.Builder;
-import lombok.Data;
-import lombok.RequiredArgsConstructor;
+import com.novel.splitter.embedding.config.ChromaProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
-
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+/**
+ * ChromaDB 向量存储 (v2 HTTP API)
+ * <p>
+ * 集合 ID 在启动时解析一次 (get_or_create，一次往返) 并缓存，之后的读写直接使用；
+ * 集合被外部删除或重建导致请求返回 404 时清除缓存、重新解析并重试一次。
+ * 同步调用走 RestClient，异步检索直接使用同一个 JDK HttpClient 的 sendAsync，两者共用 keep-alive 连接池。
+ * </p>
+ */
 @Slf4j
 @Component
 @ConditionalOnProperty(name = "embedding.store.type", havingValue = "chroma")
-@RequiredArgsConstructor
 public class ChromaVectorStore implements VectorStore {
 
-    @Value("${chroma.url:http://localhost:8081}")
-    private String chromaUrl;
-
-    @Value("${chroma.collection:novel-splitter}")
-    private String collectionName;
-
     private static final String DEFAULT_TENANT = "default_tenant";
     private static final String DEFAULT_DATABASE = "default_database";
 
-    private final RestClient restClient = RestClient.builder().build();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * 未能读取服务端 max_batch_size 时的单次 add 条数上限
+     */
+    private static final int DEFAULT_MAX_BATCH_SIZE = 5_000;
+
+    /**
+     * 读取 pre-flight-checks 失败 (如旧版本服务端没有该接口) 后，该时长内直接使用默认上限，不再重复请求
+     */
+    private static final long PRE_FLIGHT_RETRY_MS = 10 * 60 * 1000L;
+
+    private final ChromaProperties properties;
+    private final String chromaUrl;
+    private final String collectionName;
+    private final HttpClient httpClient;
+    private final RestClient restClient;
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .enable(StreamWriteFeature.USE_FAST_DOUBLE_WRITER)
+            // 响应中还有 documents / embeddings / include 等未使用的字段
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    /**
+     * 已解析的集合 ID，null 表示需要 (重新) 解析
+     */
+    private volatile String collectionId;
+    private volatile int serverMaxBatchSize;
+    /**
+     * 读取 max_batch_size 失败后下次重试的时间 (毫秒时间戳)，0 表示未失败过
+     */
+    private volatile long preFlightRetryAt;
+    private ExecutorService writeExecutor;
+
+    public ChromaVectorStore(ChromaProperties properties) {
+        this(properties, HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(properties.getHttp().getConnectTimeoutMs()))
+                .build());
+    }
+
+    /**
+     * @param httpClient 共享的 HTTP 客户端 (连接池)
+     */
+    @Autowired
+    public ChromaVectorStore(ChromaProperties properties, @Qualifier("chromaHttpClient") HttpClient httpClient) {
+        this.properties = properties;
+        this.chromaUrl = properties.getUrl();
+        this.collectionName = properties.getCollection();
+        this.httpClient = httpClient;
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(properties.getHttp().getReadTimeoutMs()));
+        this.restClient = RestClient.builder()
+                .requestFactory(requestFactory)
+                .build();
+    }
 
-    private String collectionId;
+    /**
+     * 启动写入线程并解析集合；ChromaDB 暂不可用时不阻止启动，首次使用时再解析
+     */
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        writeExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getWrite().getMaxInFlight()), r -> {
+            Thread thread = new Thread(r, "chroma-writer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            resolveCollection();
+        } catch (Exception e) {
+            log.warn("ChromaDB collection '{}' not resolved at startup ({}), will retry on first use", collectionName, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writeExecutor != null) {
+            writeExecutor.shutdown();
+        }
+    }
 
     @Override
     public void save(Scene scene, float[] embedding) {
         saveBatch(Collections.singletonList(scene), Collections.singletonList(embedding));
     }
 
+    /**
+     * 批量写入
+     * <p>
+     * 按 min(write.batchSize, 服务端 max_batch_size) 切块，每块一个 add 请求，最多 write.maxInFlight 个请求同时进行；
+     * 请求体由 {@link #writeAddRequest} 直接流式写入连接 (向量逐个 float 输出，不装箱、不先生成完整 JSON)。
+     * 任一块失败时等其余请求结束后抛出第一个异常 (add 按 ID 覆盖，重试整批是安全的)。
+     * </p>
+     */
     @Override
     public void saveBatch(List<Scene> scenes, List<float[]> embeddings) {
-        ensureCollectionExists();
-
         if (scenes.isEmpty()) return;
+        if (scenes.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Scenes and embeddings size mismatch: " + scenes.size() + " vs " + embeddings.size());
+        }
 
-        List<String> ids = scenes.stream().map(Scene::getId).collect(Collectors.toList());
-        List<Map<String, Object>> metadatas = scenes.stream()
-                        .map(s -> {
-                            Map<String, Object> map = new HashMap<>();
-                            map.put("chapter_index", s.getChapterIndex());
-                            if (s.getChapterTitle() != null) map.put("chapter_title", s.getChapterTitle());
-                            map.put("start_paragraph_index", s.getStartParagraphIndex());
-                            
-                            if (s.getMetadata() != null) {
-                                if (s.getMetadata().getNovel() != null) {
-                                    map.put("novel", s.getMetadata().getNovel());
-                                }
-                                if (s.getMetadata().getVersion() != null) {
-                                    map.put("version", s.getMetadata().getVersion());
-                                }
-                            }
-                            return map;
-                        })
-                        .collect(Collectors.toList());
-                
-        List<String> documents = scenes.stream().map(Scene::getText).collect(Collectors.toList());
-
-        // Convert float[] to List<Double> for Chroma API
-        List<List<Double>> embeddingsList = embeddings.stream()
-                .map(arr -> IntStream.range(0, arr.length)
-                        .mapToDouble(i -> arr[i])
-                        .boxed()
-                        .collect(Collectors.toList()))
-                .collect(Collectors.toList());
+        int chunkSize = Math.max(1, Math.min(properties.getWrite().getBatchSize(), maxBatchSize()));
+        List<int[]> chunks = new ArrayList<>();
+        for (int from = 0; from < scenes.size(); from += chunkSize) {
+            chunks.add(new int[]{from, Math.min(from + chunkSize, scenes.size())});
+        }
 
-        Map<String, Object> request = new HashMap<>();
-        request.put("ids", ids);
-        request.put("embeddings", embeddingsList);
-        request.put("metadatas", metadatas);
-        request.put("documents", documents);
+        withCollection(id -> {
+            if (chunks.size() == 1 || writeExecutor == null) {
+                for (int[] chunk : chunks) {
+                    postAdd(id, scenes, embeddings, chunk[0], chunk[1]);
+                }
+                return null;
+            }
+            List<CompletableFuture<Void>> futures = chunks.stream()
+                    .map(chunk -> CompletableFuture.runAsync(() -> postAdd(id, scenes, embeddings, chunk[0], chunk[1]), writeExecutor))
+                    .toList();
+            RuntimeException failure = null;
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return null;
+        });
 
-        try {
-            String json = objectMapper.writeValueAsString(request);
-            // log.info("Sending request to ChromaDB: {}", json);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        log.info("Saved {} vectors to ChromaDB collection '{}' in {} request(s)", scenes.size(), collectionName, chunks.size());
+    }
 
+    private void postAdd(String id, List<Scene> scenes, List<float[]> embeddings, int from, int to) {
         restClient.post()
-                .uri(chromaUrl + "/api/v2/tenants/" + DEFAULT_TENANT + "/databases/" + DEFAULT_DATABASE + "/collections/" + collectionId + "/add")
+                .uri(collectionUrl(id) + "/add")
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(request)
+                .body(outputStream -> {
+                    try (JsonGenerator generator = objectMapper.createGenerator(outputStream, JsonEncoding.UTF8)) {
+                        writeAddRequest(generator, scenes, embeddings, from, to);
+                    }
+                })
                 .retrieve()
                 .toBodilessEntity();
-        
-        log.info("Saved {} vectors to ChromaDB collection '{}'", scenes.size(), collectionName);
+    }
+
+    /**
+     * 写出 add 请求体：{"ids": [...], "embeddings": [[...], ...], "metadatas": [...], "documents": [...]}
+     * <p>
+     * 只写 [from, to) 范围内的场景；向量按 float 的最短十进制表示逐个写出。
+     * </p>
+     */
+    static void writeAddRequest(JsonGenerator generator, List<Scene> scenes, List<float[]> embeddings, int from, int to)
+            throws IOException {
+        generator.writeStartObject();
+
+        generator.writeArrayFieldStart("ids");
+        for (int i = from; i < to; i++) {
+            generator.writeString(scenes.get(i).getId());
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("embeddings");
+        for (int i = from; i < to; i++) {
+            float[] embedding = embeddings.get(i);
+            generator.writeStartArray(embedding, embedding.length);
+            for (float value : embedding) {
+                generator.writeNumber(value);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("metadatas");
+        for (int i = from; i < to; i++) {
+            writeMetadata(generator, scenes.get(i));
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("documents");
+        for (int i = from; i < to; i++) {
+            generator.writeString(scenes.get(i).getText());
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
+    private static void writeMetadata(JsonGenerator generator, Scene s) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("chapter_index", s.getChapterIndex());
+        if (s.getChapterTitle() != null) {
+            generator.writeStringField("chapter_title", s.getChapterTitle());
+        }
+        generator.writeNumberField("start_paragraph_index", s.getStartParagraphIndex());
+        if (s.getMetadata() != null) {
+            if (s.getMetadata().getNovel() != null) {
+                generator.writeStringField("novel", s.getMetadata().getNovel());
+            }
+            if (s.getMetadata().getVersion() != null) {
+                generator.writeStringField("version", s.getMetadata().getVersion());
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * 服务端单次写入的条数上限 (pre-flight-checks 返回的 max_batch_size)，首次调用时读取
+     * <p>
+     * 读取失败或服务端未返回该值时使用默认值，并在 {@link #PRE_FLIGHT_RETRY_MS} 内不再请求，避免每次写入多一次失败的往返。
+     * </p>
+     */
+    private int maxBatchSize() {
+        int cached = serverMaxBatchSize;
+        if (cached > 0) {
+            return cached;
+        }
+        if (System.currentTimeMillis() < preFlightRetryAt) {
+            return DEFAULT_MAX_BATCH_SIZE;
+        }
+        try {
+            Map<?, ?> checks = restClient.get()
+                    .uri(chromaUrl + "/api/v2/pre-flight-checks")
+                    .retrieve()
+                    .body(Map.class);
+            if (checks != null && checks.get("max_batch_size") instanceof Number max && max.intValue() > 0) {
+                serverMaxBatchSize = max.intValue();
+                log.info("ChromaDB max batch size: {}", serverMaxBatchSize);
+                return serverMaxBatchSize;
+            }
+            log.info("ChromaDB pre-flight checks have no max_batch_size, using {}", DEFAULT_MAX_BATCH_SIZE);
+        } catch (Exception e) {
+            log.info("Failed to read ChromaDB pre-flight checks ({}), using max batch size {}", e.getMessage(), DEFAULT_MAX_BATCH_SIZE);
+        }
+        preFlightRetryAt = System.currentTimeMillis() + PRE_FLIGHT_RETRY_MS;
+        return DEFAULT_MAX_BATCH_SIZE;
     }
 
     @Override
     public void delete(Map<String, Object> filter) {
-        ensureCollectionExists();
-        
         if (filter == null || filter.isEmpty()) {
             log.warn("Delete called with empty filter, ignoring to avoid accidental data loss. Use reset() to clear all.");
             return;
         }
 
         Map<String, Object> request = new HashMap<>();
-        
-        if (filter.size() == 1) {
-            request.put("where", filter);
-        } else {
-            List<Map<String, Object>> andList = new ArrayList<>();
-            filter.forEach((k, v) -> andList.add(Collections.singletonMap(k, v)));
-            request.put("where", Collections.singletonMap("$and", andList));
-        }
+        request.put("where", toWhere(filter));
 
-        restClient.post()
-                .uri(chromaUrl + "/api/v2/tenants/" + DEFAULT_TENANT + "/databases/" + DEFAULT_DATABASE + "/collections/" + collectionId + "/delete")
+        withCollection(id -> restClient.post()
+                .uri(collectionUrl(id) + "/delete")
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(request)
                 .retrieve()
-                .toBodilessEntity();
+                .toBodilessEntity());
         
         log.info("Deleted documents from ChromaDB collection '{}' with filter: {}", collectionName, filter);
     }
 
     @Override
     public void reset() {
-        if (collectionId == null) {
-            ensureCollectionExists();
-        }
-        
         // Delete the collection
         try {
             restClient.delete()
-                    .uri(chromaUrl + "/api/v2/tenants/" + DEFAULT_TENANT + "/databases/" + DEFAULT_DATABASE + "/collections/" + collectionName)
+                    .uri(collectionsUrl() + "/" + collectionName)
                     .retrieve()
                     .toBodilessEntity();
             log.info("Deleted ChromaDB collection: {}", collectionName);
@@ -157,19 +341,21 @@ public class ChromaVectorStore implements VectorStore {
         }
         
         // Clear ID to force recreation
-        this.collectionId = null;
-        ensureCollectionExists();
+        synchronized (this) {
+            collectionId = null;
+            resolveCollection();
+        }
         log.info("Reset ChromaDB collection: {}", collectionName);
     }
 
     @Override
     public long count() {
-        ensureCollectionExists();
         try {
-            return restClient.get()
-                    .uri(chromaUrl + "/api/v2/tenants/" + DEFAULT_TENANT + "/databases/" + DEFAULT_DATABASE + "/collections/" + collectionId + "/count")
+            Long count = withCollection(id -> restClient.get()
+                    .uri(collectionUrl(id) + "/count")
                     .retrieve()
-                    .body(Long.class);
+                    .body(Long.class));
+            return count != null ? count : -1;
         } catch (Exception e) {
             log.error("Failed to get count from ChromaDB", e);
             return -1;
@@ -178,43 +364,101 @@ public class ChromaVectorStore implements VectorStore {
 
     @Override
     public List<VectorRecord> search(float[] queryEmbedding, int topK, Map<String, Object> filter) {
-        ensureCollectionExists();
+        return searchBatch(new float[][]{queryEmbedding}, topK, filter).get(0);
+    }
+
+    /**
+     * 批量检索：全部查询向量放在同一个 query 请求的 query_embeddings 中，一次往返返回每条查询的结果
+     */
+    @Override
+    public List<List<VectorRecord>> searchBatch(float[][] queryEmbeddings, int topK, Map<String, Object> filter) {
+        if (queryEmbeddings.length == 0) {
+            return Collections.emptyList();
+        }
+        Map<String, Object> request = queryRequest(queryEmbeddings, topK, filter);
 
-        List<Double> embeddingList = IntStream.range(0, queryEmbedding.length)
-                .mapToDouble(i -> queryEmbedding[i])
-                .boxed()
+        ChromaQueryResponse response = withCollection(id -> restClient.post()
+                .uri(collectionUrl(id) + "/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .retrieve()
+                .body(ChromaQueryResponse.class));
+
+        return IntStream.range(0, queryEmbeddings.length)
+                .mapToObj(q -> toRecords(response, q))
                 .collect(Collectors.toList());
+    }
+
+    /**
+     * 非阻塞检索：请求由 HttpClient.sendAsync 发出，等待响应期间不占用调用线程；404 时重新解析集合并重试一次
+     */
+    @Override
+    public CompletableFuture<List<VectorRecord>> searchAsync(float[] queryEmbedding, int topK, Map<String, Object> filter) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(queryRequest(new float[][]{queryEmbedding}, topK, filter));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        String id = collectionId;
+        CompletableFuture<String> resolved = id != null
+                ? CompletableFuture.completedFuture(id)
+                : CompletableFuture.supplyAsync(this::resolveCollection);
+        return resolved.thenCompose(current -> queryAsync(current, body, true));
+    }
+
+    private CompletableFuture<List<VectorRecord>> queryAsync(String id, byte[] body, boolean retryOnNotFound) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(collectionUrl(id) + "/query"))
+                .timeout(Duration.ofMillis(properties.getHttp().getReadTimeoutMs()))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenCompose(response -> {
+                    if (response.statusCode() == 404 && retryOnNotFound) {
+                        invalidateCollection(id);
+                        return CompletableFuture.supplyAsync(this::resolveCollection)
+                                .thenCompose(next -> queryAsync(next, body, false));
+                    }
+                    if (response.statusCode() >= 400) {
+                        return CompletableFuture.failedFuture(new RestClientResponseException(
+                                "ChromaDB query failed: " + response.statusCode(), HttpStatusCode.valueOf(response.statusCode()),
+                                "", null, response.body(), StandardCharsets.UTF_8));
+                    }
+                    try {
+                        return CompletableFuture.completedFuture(
+                                toRecords(objectMapper.readValue(response.body(), ChromaQueryResponse.class), 0));
+                    } catch (IOException e) {
+                        return CompletableFuture.failedFuture(new UncheckedIOException(e));
+                    }
+                });
+    }
 
+    private static Map<String, Object> queryRequest(float[][] queryEmbeddings, int topK, Map<String, Object> filter) {
         Map<String, Object> request = new HashMap<>();
-        request.put("query_embeddings", Collections.singletonList(embeddingList));
+        // float[][] 由 Jackson 直接序列化为二维数组 (不装箱)
+        request.put("query_embeddings", queryEmbeddings);
         request.put("n_results", topK);
         // We need ids, distances, and metadatas
         request.put("include", Arrays.asList("distances", "metadatas")); 
         
         if (filter != null && !filter.isEmpty()) {
-            if (filter.size() == 1) {
-                request.put("where", filter);
-            } else {
-                List<Map<String, Object>> andList = new ArrayList<>();
-                filter.forEach((k, v) -> andList.add(Collections.singletonMap(k, v)));
-                request.put("where", Collections.singletonMap("$and", andList));
-            }
+            request.put("where", toWhere(filter));
         }
+        return request;
+    }
 
-        ChromaQueryResponse response = restClient.post()
-                .uri(chromaUrl + "/api/v2/tenants/" + DEFAULT_TENANT + "/databases/" + DEFAULT_DATABASE + "/collections/" + collectionId + "/query")
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(request)
-                .retrieve()
-                .body(ChromaQueryResponse.class);
-
-        if (response == null || response.getIds() == null || response.getIds().isEmpty()) {
+    /**
+     * 第 q 条查询的结果 (ids / distances / metadatas 均按查询顺序排列)
+     */
+    static List<VectorRecord> toRecords(ChromaQueryResponse response, int q) {
+        if (response == null || response.getIds() == null || response.getIds().size() <= q) {
             return Collections.emptyList();
         }
 
-        List<String> resultIds = response.getIds().get(0);
-        List<Double> distances = response.getDistances().get(0);
-        List<Map<String, Object>> resultMetas = (response.getMetadatas() != null && !response.getMetadatas().isEmpty()) ? response.getMetadatas().get(0) : null;
+        List<String> resultIds = response.getIds().get(q);
+        List<Double> distances = response.getDistances().get(q);
+        List<Map<String, Object>> resultMetas = (response.getMetadatas() != null && response.getMetadatas().size() > q) ? response.getMetadatas().get(q) : null;
 
         return IntStream.range(0, resultIds.size())
                 .mapToObj(i -> {
@@ -231,43 +475,81 @@ public class ChromaVectorStore implements VectorStore {
                 .collect(Collectors.toList());
     }
 
-    private void ensureCollectionExists() {
-        if (collectionId != null) return;
-
+    /**
+     * 以缓存的集合 ID 执行请求；集合不存在 (404) 时清除缓存、重新解析后重试一次
+     */
+    private <T> T withCollection(Function<String, T> call) {
+        String id = collectionId;
+        if (id == null) {
+            id = resolveCollection();
+        }
         try {
-            // List collections to check if it exists
-            List<ChromaCollection> collections = restClient.get()
-                    .uri(chromaUrl + "/api/v2/tenants/" + DEFAULT_TENANT + "/databases/" + DEFAULT_DATABASE + "/collections")
-                    .retrieve()
-                    .body(new org.springframework.core.ParameterizedTypeReference<List<ChromaCollection>>() {});
-            
-            if (collections != null) {
-                for (ChromaCollection collection : collections) {
-                    if (collectionName.equals(collection.getName())) {
-                        this.collectionId = collection.getId();
-                        log.info("Found existing ChromaDB collection: {} ({})", collectionName, collectionId);
-                        return;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.debug("Failed to list collections, trying to create new one. Error: {}", e.getMessage());
+            return call.apply(id);
+        } catch (HttpClientErrorException.NotFound e) {
+            log.warn("ChromaDB collection '{}' ({}) not found, resolving again", collectionName, id);
+            invalidateCollection(id);
+            return call.apply(resolveCollection());
         }
+    }
 
-        // Create collection
-        Map<String, String> request = Collections.singletonMap("name", collectionName);
-        ChromaCollection newCollection = restClient.post()
-                .uri(chromaUrl + "/api/v2/tenants/" + DEFAULT_TENANT + "/databases/" + DEFAULT_DATABASE + "/collections")
+    /**
+     * 获取或创建集合 (get_or_create，一次往返)，结果缓存到 collectionId
+     */
+    private synchronized String resolveCollection() {
+        String cached = collectionId;
+        if (cached != null) {
+            return cached;
+        }
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("name", collectionName);
+        request.put("get_or_create", true);
+        ChromaCollection collection = restClient.post()
+                .uri(collectionsUrl())
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(request)
                 .retrieve()
                 .body(ChromaCollection.class);
+        if (collection == null || collection.getId() == null) {
+            throw new IllegalStateException("Failed to get or create ChromaDB collection " + collectionName);
+        }
+        collectionId = collection.getId();
+        log.info("Using ChromaDB collection: {} ({})", collectionName, collectionId);
+        return collectionId;
+    }
 
-        if (newCollection != null) {
-            this.collectionId = newCollection.getId();
-            log.info("Created ChromaDB collection: {} ({})", collectionName, collectionId);
-        } else {
-            throw new RuntimeException("Failed to create ChromaDB collection");
+    /**
+     * 只在缓存仍是失效的 ID 时清除 (并发请求可能已经解析出新 ID)
+     */
+    private synchronized void invalidateCollection(String staleId) {
+        if (staleId.equals(collectionId)) {
+            collectionId = null;
         }
     }
+
+    private String collectionsUrl() {
+        return chromaUrl + "/api/v2/tenants/" + DEFAULT_TENANT + "/databases/" + DEFAULT_DATABASE + "/collections";
+    }
+
+    private String collectionUrl(String id) {
+        return collectionsUrl() + "/" + id;
+    }
+
+    /**
+     * 将过滤条件转换为 Chroma where 子句
+     * <p>
+     * Chroma 要求每个条件只含一个字段、每个字段只含一个运算符，多个条件 (包括章节范围的 $gte / $lte) 用 $and 组合。
+     * </p>
+     */
+    static Map<String, Object> toWhere(Map<String, Object> filter) {
+        List<Map<String, Object>> andList = new ArrayList<>();
+        filter.forEach((k, v) -> {
+            if (v instanceof Map<?, ?> operators && operators.size() > 1) {
+                operators.forEach((op, value) ->
+                        andList.add(Collections.singletonMap(k, Collections.singletonMap(String.valueOf(op), value))));
+            } else {
+                andList.add(Collections.singletonMap(k, v));
+            }
+        });
+        return andList.size() == 1 ? andList.get(0) : Collections.singletonMap("$and", andList);
+    }
 }
@@ -0,0 +1,451 @@
+package com.novel.splitter.embedding.store;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
+import com.novel.splitter.domain.model.embedding.VectorRecord;
+import com.novel.splitter.embedding.config.VectorStoreProperties;
+import com.novel.splitter.embedding.store.index.MetadataIndex;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 嵌入式 ChromaDB 替身：兼容 {@link ChromaVectorStore} 使用的 v2 HTTP 接口，数据存放在本进程的 {@link InMemoryVectorStore} 中
+ * <p>
+ * 用于没有 ChromaDB 的环境 (CI、离线部署) 走通 chroma 存储类型，以及在本机对 Chroma 代码路径做压测与基准测试。
+ * 支持的接口：pre-flight-checks、heartbeat、集合的 get_or_create / 查询 / 删除，以及集合内的 add (upsert)、query、delete、count。
+ * </p>
+ * <p>
+ * 每个集合对应数据目录下的一个子目录，使用与内存向量存储相同的配置 (分区、预写日志、检索模式)；
+ * 集合 ID 在进程内分配，重启后变化 (客户端收到 404 会重新解析)。不区分租户与数据库。
+ * 文档原文不保存；query 返回的元数据为内存向量存储保留的字段 (novel / version / chapter_index)，距离为余弦距离 (1 - 相似度)。
+ * </p>
+ */
+@Slf4j
+public class EmbeddedChromaServer implements Closeable {
+
+    /**
+     * pre-flight-checks 返回的单次写入条数上限
+     */
+    public static final int MAX_BATCH_SIZE = 5_000;
+
+    private static final String API_PREFIX = "/api/v2";
+    private static final Pattern COLLECTIONS_PATH = Pattern.compile(
+            "/api/v2/tenants/[^/]+/databases/[^/]+/collections(?:/([^/]+)(?:/(add|upsert|query|delete|count))?)?");
+
+    private final VectorStoreProperties template;
+    private final Path root;
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    /**
+     * 集合名称到集合的映射
+     */
+    private final Map<String, Collection> collections = new ConcurrentHashMap<>();
+    private final Map<String, Collection> collectionsById = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param properties 各集合使用的内存向量存储配置 (memory.path 由集合目录代替)
+     * @param root       数据目录
+     */
+    public EmbeddedChromaServer(VectorStoreProperties properties, Path root) {
+        this.template = properties;
+        this.root = root;
+    }
+
+    /**
+     * 监听指定地址 (端口为 0 时自动分配)
+     *
+     * @param threads 处理请求的线程数
+     */
+    public synchronized EmbeddedChromaServer start(InetSocketAddress address, int threads) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Embedded Chroma server already started");
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "chroma-embedded-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext(API_PREFIX, this::handle);
+        server.start();
+        log.info("Embedded Chroma server listening on {} (data in {})", server.getAddress(), root);
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 客户端使用的地址 (chroma.url)
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + getPort();
+    }
+
+    /**
+     * 停止监听并关闭各集合 (未做检查点的写入写入段文件)
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+            server = null;
+        }
+        collections.values().forEach(collection -> collection.store().close());
+        collections.clear();
+        collectionsById.clear();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals(API_PREFIX + "/heartbeat")) {
+                respond(exchange, 200, Map.of("nanosecond heartbeat", System.nanoTime()));
+                return;
+            }
+            if (path.equals(API_PREFIX + "/pre-flight-checks")) {
+                respond(exchange, 200, Map.of("max_batch_size", MAX_BATCH_SIZE));
+                return;
+            }
+            Matcher matcher = COLLECTIONS_PATH.matcher(path);
+            if (!matcher.matches()) {
+                error(exchange, 404, "NotFoundError", "Unknown path " + path);
+                return;
+            }
+            String collection = matcher.group(1);
+            String action = matcher.group(2);
+            if (collection == null) {
+                if (!"POST".equals(method)) {
+                    error(exchange, 405, "MethodNotAllowed", method + " " + path);
+                    return;
+                }
+                createCollection(exchange);
+            } else if (action == null) {
+                switch (method) {
+                    case "GET" -> getCollection(exchange, collection);
+                    case "DELETE" -> deleteCollection(exchange, collection);
+                    default -> error(exchange, 405, "MethodNotAllowed", method + " " + path);
+                }
+            } else {
+                Collection target = collectionsById.get(collection);
+                if (target == null) {
+                    error(exchange, 404, "NotFoundError", "Collection " + collection + " does not exist");
+                    return;
+                }
+                switch (action) {
+                    case "add", "upsert" -> add(exchange, target);
+                    case "query" -> query(exchange, target);
+                    case "delete" -> delete(exchange, target);
+                    default -> respond(exchange, 200, target.store().count());
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, "InvalidArgumentError", e.getMessage());
+        } catch (Exception e) {
+            log.error("Embedded Chroma request failed: {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            error(exchange, 500, "InternalError", String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void createCollection(HttpExchange exchange) throws IOException {
+        CreateCollectionRequest request = read(exchange, CreateCollectionRequest.class);
+        if (request.name() == null || request.name().isBlank()) {
+            throw new IllegalArgumentException("Collection name is required");
+        }
+        Collection existing = collections.get(request.name());
+        if (existing != null && !request.getOrCreate()) {
+            error(exchange, 409, "UniqueConstraintError", "Collection " + request.name() + " already exists");
+            return;
+        }
+        respond(exchange, 200, describe(existing != null ? existing : open(request.name())));
+    }
+
+    private void getCollection(HttpExchange exchange, String nameOrId) throws IOException {
+        Collection collection = lookup(nameOrId);
+        if (collection == null) {
+            error(exchange, 404, "NotFoundError", "Collection " + nameOrId + " does not exist");
+            return;
+        }
+        respond(exchange, 200, describe(collection));
+    }
+
+    private void deleteCollection(HttpExchange exchange, String nameOrId) throws IOException {
+        Collection collection;
+        synchronized (this) {
+            collection = lookup(nameOrId);
+            if (collection != null) {
+                collections.remove(collection.name());
+                collectionsById.remove(collection.id());
+            }
+        }
+        if (collection == null) {
+            error(exchange, 404, "NotFoundError", "Collection " + nameOrId + " does not exist");
+            return;
+        }
+        collection.store().reset();
+        collection.store().close();
+        deleteRecursively(collection.directory());
+        log.info("Deleted embedded Chroma collection {} ({})", collection.name(), collection.id());
+        respond(exchange, 200, Map.of());
+    }
+
+    private void add(HttpExchange exchange, Collection collection) throws IOException {
+        AddRequest request = read(exchange, AddRequest.class);
+        if (request.ids() == null || request.embeddings() == null || request.ids().size() != request.embeddings().length) {
+            throw new IllegalArgumentException("ids and embeddings are required and must have the same length");
+        }
+        if (request.ids().size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size " + request.ids().size() + " exceeds max batch size " + MAX_BATCH_SIZE);
+        }
+        List<Scene> scenes = new ArrayList<>(request.ids().size());
+        for (int i = 0; i < request.ids().size(); i++) {
+            Map<String, Object> meta = request.metadatas() != null && i < request.metadatas().size() ? request.metadatas().get(i) : null;
+            scenes.add(toScene(request.ids().get(i), meta));
+        }
+        collection.store().saveBatch(scenes, List.of(request.embeddings()));
+        respond(exchange, 201, Map.of());
+    }
+
+    private void query(HttpExchange exchange, Collection collection) throws IOException {
+        QueryRequest request = read(exchange, QueryRequest.class);
+        if (request.queryEmbeddings() == null) {
+            throw new IllegalArgumentException("query_embeddings is required");
+        }
+        int topK = request.nResults() != null ? request.nResults() : 10;
+        List<List<VectorRecord>> results = collection.store().searchBatch(request.queryEmbeddings(), topK, fromWhere(request.where()));
+
+        List<List<String>> ids = new ArrayList<>(results.size());
+        List<List<Double>> distances = new ArrayList<>(results.size());
+        List<List<Map<String, Object>>> metadatas = new ArrayList<>(results.size());
+        for (List<VectorRecord> records : results) {
+            ids.add(records.stream().map(VectorRecord::getChunkId).toList());
+            distances.add(records.stream().map(r -> 1.0 - r.getScore()).toList());
+            metadatas.add(records.stream().map(VectorRecord::getMetadata).toList());
+        }
+        List<String> include = request.include() != null ? request.include() : List.of("metadatas", "documents", "distances");
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("ids", ids);
+        response.put("distances", include.contains("distances") ? distances : null);
+        response.put("metadatas", include.contains("metadatas") ? metadatas : null);
+        response.put("documents", null);
+        response.put("embeddings", null);
+        response.put("include", include);
+        respond(exchange, 200, response);
+    }
+
+    private void delete(HttpExchange exchange, Collection collection) throws IOException {
+        DeleteRequest request = read(exchange, DeleteRequest.class);
+        Map<String, Object> filter = fromWhere(request.where());
+        if (filter == null) {
+            // 内存向量存储只支持按元数据删除
+            throw new IllegalArgumentException("Delete requires a where filter");
+        }
+        collection.store().delete(filter);
+        respond(exchange, 200, Map.of());
+    }
+
+    private Collection lookup(String nameOrId) {
+        Collection collection = collections.get(nameOrId);
+        return collection != null ? collection : collectionsById.get(nameOrId);
+    }
+
+    /**
+     * 打开 (或创建) 集合目录，同名集合只打开一次
+     */
+    private synchronized Collection open(String name) {
+        Collection existing = collections.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        Path directory = root.resolve(URLEncoder.encode(name, StandardCharsets.UTF_8));
+        VectorStoreProperties properties = objectMapper.convertValue(template, VectorStoreProperties.class);
+        properties.getMemory().setPath(directory.toString());
+        // 集合从空开始：不导入工作目录下主向量存储的旧版 JSON 文件
+        properties.getMemory().setLegacyJsonDir(null);
+        InMemoryVectorStore store = new InMemoryVectorStore(properties);
+        store.load();
+        Collection collection = new Collection(UUID.randomUUID().toString(), name, directory, store);
+        collections.put(name, collection);
+        collectionsById.put(collection.id(), collection);
+        log.info("Opened embedded Chroma collection {} ({}) with {} vectors", name, collection.id(), store.count());
+        return collection;
+    }
+
+    private static Map<String, Object> describe(Collection collection) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", collection.id());
+        response.put("name", collection.name());
+        response.put("metadata", null);
+        response.put("tenant", "default_tenant");
+        response.put("database", "default_database");
+        return response;
+    }
+
+    /**
+     * add 请求中的元数据还原为场景 (只保留内存向量存储需要的字段)
+     */
+    static Scene toScene(String id, Map<String, Object> meta) {
+        if (meta == null) {
+            return Scene.builder().id(id).build();
+        }
+        Integer chapterIndex = meta.get(MetadataIndex.CHAPTER_INDEX) instanceof Number n ? n.intValue() : null;
+        Integer startParagraph = meta.get("start_paragraph_index") instanceof Number n ? n.intValue() : null;
+        String chapterTitle = stringValue(meta.get("chapter_title"));
+        return Scene.builder()
+                .id(id)
+                .chapterIndex(chapterIndex != null ? chapterIndex : 0)
+                .chapterTitle(chapterTitle)
+                .startParagraphIndex(startParagraph != null ? startParagraph : 0)
+                .metadata(SceneMetadata.builder()
+                        .novel(stringValue(meta.get(MetadataIndex.NOVEL)))
+                        .version(stringValue(meta.get(MetadataIndex.VERSION)))
+                        .chapterIndex(chapterIndex)
+                        .chapterTitle(chapterTitle)
+                        .startParagraph(startParagraph)
+                        .role(stringValue(meta.get(MetadataIndex.ROLE)))
+                        .chunkType(stringValue(meta.get(MetadataIndex.CHUNK_TYPE)))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Chroma where 子句还原为内存向量存储的过滤条件 ({@link ChromaVectorStore#toWhere} 的逆变换)
+     * <p>
+     * 只支持单个条件或一层 $and；同一字段的多个运算符合并到一个 Map (如章节范围的 $gte 与 $lte)。
+     * </p>
+     *
+     * @return 过滤条件，where 为空时返回 null
+     */
+    static Map<String, Object> fromWhere(Map<String, Object> where) {
+        if (where == null || where.isEmpty()) {
+            return null;
+        }
+        List<?> clauses;
+        if (where.containsKey("$and")) {
+            if (where.size() != 1 || !(where.get("$and") instanceof List<?> list)) {
+                throw new IllegalArgumentException("Invalid $and clause: " + where);
+            }
+            clauses = list;
+        } else {
+            clauses = List.of(where);
+        }
+        Map<String, Object> filter = new LinkedHashMap<>();
+        for (Object clause : clauses) {
+            if (!(clause instanceof Map<?, ?> conditions)) {
+                throw new IllegalArgumentException("Invalid where clause: " + clause);
+            }
+            conditions.forEach((key, value) -> {
+                String field = String.valueOf(key);
+                if (field.startsWith("$")) {
+                    throw new IllegalArgumentException("Unsupported where operator: " + field);
+                }
+                filter.merge(field, value, (a, b) -> {
+                    Map<Object, Object> operators = new LinkedHashMap<>(operators(a));
+                    operators.putAll(operators(b));
+                    return operators;
+                });
+            });
+        }
+        return filter;
+    }
+
+    private static Map<?, ?> operators(Object condition) {
+        return condition instanceof Map<?, ?> map ? map : Map.of("$eq", condition);
+    }
+
+    private static String stringValue(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private <T> T read(HttpExchange exchange, Class<T> type) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid request body: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void error(HttpExchange exchange, int status, String error, String message) throws IOException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", error);
+        body.put("message", message);
+        respond(exchange, status, body);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private record Collection(String id, String name, Path directory, InMemoryVectorStore store) {
+    }
+
+    private record CreateCollectionRequest(String name, boolean getOrCreate) {
+    }
+
+    private record AddRequest(List<String> ids, float[][] embeddings, List<Map<String, Object>> metadatas, List<String> documents) {
+    }
+
+    private record QueryRequest(float[][] queryEmbeddings, Integer nResults, Map<String, Object> where, List<String> include) {
+    }
+
+    private record DeleteRequest(List<String> ids, Map<String, Object> where) {
+    }
+}
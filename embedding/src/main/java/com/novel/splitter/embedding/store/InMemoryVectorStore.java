@@ -3,25 +3,62 @@ package com.novel.splitter.embedding.store;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
 import com.novel.splitter.domain.model.embedding.VectorRecord;
 import com.novel.splitter.embedding.api.VectorStore;
+import com.novel.splitter.embedding.config.VectorStoreProperties;
+import com.novel.splitter.embedding.store.index.ExactScanner;
+import com.novel.splitter.embedding.store.index.HnswIndex;
+import com.novel.splitter.embedding.store.index.MetadataIndex;
+import com.novel.splitter.embedding.store.index.VectorMath;
+import com.novel.splitter.embedding.store.index.VectorSegment;
+import com.novel.splitter.embedding.store.index.WriteAheadLog;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * 内存向量存储实现
  * <p>
- * 提供简单的内存向量存储和检索功能。
- * 支持持久化到本地 JSON 文件。
+ * 按 (小说, 版本) 分区 ({@link VectorPartition})，每个分区有独立的 HNSW 索引、元数据倒排索引与段文件目录，场景 ID 在分区内唯一。
+ * 向量写入时做 L2 归一化，存入堆外连续矩阵并插入 HNSW 图索引，检索时余弦相似度即点积。
+ * 有效向量数较少 (不超过 bruteForceThreshold) 或 searchMode 为 EXACT 时精确扫描，大集合上按行区间在 ForkJoin 公共池中并行；
+ * 过滤条件中的 novel / version 先选出分区 (只打开相关的分区)，其余条件通过分区内的元数据倒排索引 ({@link MetadataIndex})
+ * 编译为行集合：集合较小时只精确扫描集合中的行，否则在图上只收集集合中的节点，结果不足 topK 时退回对集合做精确扫描。
+ * 删除条件只包含 novel / version 时直接删除整个分区 (删除版本 / 知识库不再逐条删除)。
+ * 分区持久化为二进制段文件 ({@link VectorSegment})，首次访问时向量矩阵直接内存映射，长时间未访问的分区卸载；
+ * 旧版 JSON 文件与未分区的段文件在首次启动时导入。
+ * searchMode 为 PQ / IVF 时不建图，各分区在检查点 (或 {@link #train()}) 训练乘积量化码本 / 粗聚类倒排表。
+ * </p>
+ * <p>
+ * 启用预写日志时，save / saveBatch / delete / reset 先追加到全局日志 ({@link WriteAheadLog}) 再修改分区，返回前按 fsync 策略组提交；
+ * 后台线程定期做检查点 (切换到新日志后为有修改的分区写新一代段文件)，启动时回放仍保留的日志。
+ * 分区段文件 N 包含日志 N 之前对该分区的全部写入，回放时代号小于分区段文件代号的日志记录跳过；
+ * 检查点中断时旧日志都还在，回放结果不变。
  * </p>
  */
 @Slf4j
@@ -29,65 +66,509 @@ import java.util.stream.Collectors;
 @ConditionalOnProperty(name = "embedding.store.type", havingValue = "memory", matchIfMissing = true)
 public class InMemoryVectorStore implements VectorStore {
 
+    private static final String PARTITIONS_DIR = "partitions";
+    private static final String WAL_NAME = "wal-%08d.log";
+    private static final Pattern WAL_PATTERN = Pattern.compile("wal-(\\d+)\\.log");
+
+    /**
+     * 日志记录类型 (字符串均为 length(int) | UTF-8)
+     * <pre>
+     *   PUT    : op(byte) | novel | version | id | dimension(int) | vector(float * dimension，已归一化) | metadataLength(int) | metadata(JSON)
+     *   DELETE : op(byte) | novel | version | id
+     *   DROP   : op(byte) | novel | version
+     *   RESET  : op(byte)
+     * </pre>
+     * 未分区版本的 PUT (1) / DELETE (2) 记录 (不含 novel / version) 仍可回放。
+     */
+    private static final byte OP_LEGACY_PUT = 1;
+    private static final byte OP_LEGACY_DELETE = 2;
+    private static final byte OP_RESET = 3;
+    private static final byte OP_PUT = 4;
+    private static final byte OP_DELETE = 5;
+    private static final byte OP_DROP = 6;
+    /**
+     * 旧版 JSON 存储文件 (仅用于导入)
+     */
     private static final String STORE_FILE = "vector_store.json";
     private static final String METADATA_FILE = "vector_metadata.json";
-    private final Map<String, float[]> vectorMap = new ConcurrentHashMap<>();
-    private final Map<String, com.novel.splitter.domain.model.SceneMetadata> metadataMap = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final VectorStoreProperties.MemoryConfig config;
+    private final ExactScanner exactScanner;
+    private final Path storeDir;
+    private final Path partitionsDir;
+    private final Map<VectorPartition.Key, VectorPartition> partitions = new ConcurrentHashMap<>();
+    /**
+     * 已用过的最大代号 (日志、分区段文件与未分区段文件)，检查点使用下一代
+     */
+    private long generation;
+
+    private volatile WriteAheadLog wal;
+    private ScheduledExecutorService maintenance;
+    private volatile long lastCheckpoint = System.currentTimeMillis();
+
+    /**
+     * 写入、检索与按条删除持读锁，切换日志、删除分区与清空持写锁 (保证日志记录与分区修改属于同一代)
+     */
+    private final ReadWriteLock storeLock = new ReentrantReadWriteLock();
+
+    public InMemoryVectorStore() {
+        this(new VectorStoreProperties());
+    }
 
+    @Autowired
+    public InMemoryVectorStore(VectorStoreProperties properties) {
+        this.config = properties.getMemory();
+        this.exactScanner = new ExactScanner(ForkJoinPool.commonPool(), config.getScanPartitionRows());
+        this.storeDir = Paths.get(config.getPath());
+        this.partitionsDir = storeDir.resolve(PARTITIONS_DIR);
+    }
+
+    /**
+     * 打开已有分区 (不加载数据)，导入旧版存储并回放预写日志
+     */
     @PostConstruct
     public void load() {
-        File file = new File(STORE_FILE);
-        if (file.exists()) {
+        try {
+            openPartitions();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open vector store partitions in " + storeDir, e);
+        }
+        long flatGeneration = importFlatSegment();
+        boolean imported = flatGeneration > 0;
+        if (!imported && partitions.isEmpty()) {
+            imported = importLegacyJson();
+        }
+        if (config.getWal().isEnabled()) {
+            openWal(flatGeneration);
+        }
+        if (imported) {
+            // 导入的数据只在内存中：立即做一次检查点写成分区段文件 (完成后删除未分区的段文件)
+            persist();
+        }
+        startMaintenance();
+    }
+
+    /**
+     * 检查点：切换到新日志，为有修改的分区写新一代段文件 (原子替换)，全部成功后清理旧日志
+     * <p>
+     * 在写锁下切换日志 (此时旧日志中的写入都已进入分区)，再在不阻塞读写的情况下写段文件；
+     * 写段文件期间的并发写入既可能进入快照也一定在新日志中，回放按 ID 覆盖，结果一致。
+     * </p>
+     */
+    public synchronized void persist() {
+        long next = generation + 1;
+        try {
+            Files.createDirectories(storeDir);
+            storeLock.writeLock().lock();
             try {
-                Map<String, float[]> loaded = objectMapper.readValue(file, new TypeReference<Map<String, float[]>>() {});
-                vectorMap.putAll(loaded);
-                log.info("Loaded {} vectors from {}", vectorMap.size(), STORE_FILE);
-            } catch (IOException e) {
-                log.error("Failed to load vector store from file", e);
+                WriteAheadLog current = wal;
+                if (current != null) {
+                    current.rotate(storeDir.resolve(String.format(WAL_NAME, next)));
+                }
+                generation = next;
+            } finally {
+                storeLock.writeLock().unlock();
             }
-        } else {
-            log.info("No existing vector store found at {}, starting fresh.", STORE_FILE);
+        } catch (IOException e) {
+            log.error("Failed to rotate vector store WAL", e);
+            return;
         }
 
-        File metaFile = new File(METADATA_FILE);
-        if (metaFile.exists()) {
+        int written = 0;
+        boolean complete = true;
+        for (VectorPartition partition : partitions.values()) {
             try {
-                Map<String, com.novel.splitter.domain.model.SceneMetadata> loadedMeta = objectMapper.readValue(metaFile, new TypeReference<Map<String, com.novel.splitter.domain.model.SceneMetadata>>() {});
-                metadataMap.putAll(loadedMeta);
-                log.info("Loaded {} metadata entries from {}", metadataMap.size(), METADATA_FILE);
+                if (partition.persist(next)) {
+                    written++;
+                }
             } catch (IOException e) {
-                log.error("Failed to load metadata store from file", e);
+                complete = false;
+                log.error("Failed to persist vector partition {}", partition.key(), e);
             }
         }
+        lastCheckpoint = System.currentTimeMillis();
+        if (complete) {
+            // 未写出段文件的分区在旧日志中没有未持久化的写入
+            deleteFilesBefore(storeDir, WAL_PATTERN, next);
+            deleteFilesBefore(storeDir, VectorPartition.SEGMENT_PATTERN, next);
+        }
+        log.info("Checkpoint {}: persisted {} of {} vector partitions", next, written, partitions.size());
     }
 
+    /**
+     * 离线训练：立即为全部分区训练 PQ 码本 / IVF 粗聚类 (忽略训练阈值，已训练的重新训练)，然后做一次检查点保存结果
+     * <p>
+     * 用于整本重新导入后在低峰期训练；searchMode 不是 PQ / IVF 时不做任何事。
+     * </p>
+     *
+     * @return 训练的分区数
+     */
+    public int train() {
+        int trained = 0;
+        for (VectorPartition partition : partitions.values()) {
+            if (partition.train()) {
+                trained++;
+            }
+        }
+        if (trained > 0) {
+            persist();
+        }
+        return trained;
+    }
+
+    /**
+     * 停止后台任务，日志中有未做检查点的写入时写一次段文件，然后关闭日志
+     */
     @PreDestroy
-    public void persist() {
+    public void close() {
+        if (maintenance != null) {
+            maintenance.shutdown();
+            try {
+                maintenance.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        WriteAheadLog current = wal;
+        if (current == null || !current.isEmpty()) {
+            persist();
+        }
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.error("Failed to close vector store WAL", e);
+            }
+            wal = null;
+        }
+    }
+
+    /**
+     * 按目录名打开分区，清理删除时未能移除的 '~' 目录
+     */
+    private void openPartitions() throws IOException {
+        if (!Files.isDirectory(partitionsDir)) {
+            return;
+        }
+        List<Path> directories;
+        try (Stream<Path> children = Files.list(partitionsDir)) {
+            directories = children.filter(Files::isDirectory).toList();
+        }
+        for (Path directory : directories) {
+            String name = directory.getFileName().toString();
+            if (name.startsWith("~")) {
+                try {
+                    VectorPartition.deleteRecursively(directory);
+                } catch (IOException e) {
+                    log.warn("Failed to remove dropped vector partition {}", directory, e);
+                }
+                continue;
+            }
+            VectorPartition.Key key = VectorPartition.Key.fromDirectoryName(name);
+            if (key == null) {
+                continue;
+            }
+            VectorPartition partition = VectorPartition.open(key, directory, config, objectMapper);
+            partitions.put(key, partition);
+            generation = Math.max(generation, partition.segmentGeneration());
+        }
+        if (!partitions.isEmpty()) {
+            log.info("Opened {} vector partitions ({} vectors) in {}", partitions.size(), count(), partitionsDir);
+        }
+    }
+
+    /**
+     * 导入未分区版本的段文件 (storeDir 下的 vectors-N.seg)
+     *
+     * @return 导入的段文件代号，没有时为 0
+     */
+    private long importFlatSegment() {
+        Path segment = listFiles(storeDir, VectorPartition.SEGMENT_PATTERN).stream()
+                .max(Comparator.comparingLong(VectorPartition::generationOf))
+                .orElse(null);
+        if (segment == null) {
+            return 0;
+        }
         try {
-            objectMapper.writeValue(new File(STORE_FILE), vectorMap);
-            log.info("Persisted {} vectors to {}", vectorMap.size(), STORE_FILE);
-            
-            objectMapper.writeValue(new File(METADATA_FILE), metadataMap);
-            log.info("Persisted {} metadata entries to {}", metadataMap.size(), METADATA_FILE);
+            VectorStoreProperties.HnswConfig hnsw = config.getHnsw();
+            VectorSegment.Loaded loaded = VectorSegment.read(segment, hnsw.getM(), hnsw.getEfConstruction(), false);
+            Map<String, SceneMetadata> metadata = loaded.metadata().length == 0
+                    ? Map.of()
+                    : objectMapper.readValue(loaded.metadata(), new TypeReference<Map<String, SceneMetadata>>() {});
+            HnswIndex index = loaded.index();
+            Map<String, float[]> vectors = new LinkedHashMap<>();
+            for (int row = 0; row < index.nodeCount(); row++) {
+                if (!index.isDeleted(row)) {
+                    vectors.put(index.key(row), index.vector(row));
+                }
+            }
+            putGrouped(vectors, metadata);
+            long flatGeneration = VectorPartition.generationOf(segment);
+            generation = Math.max(generation, flatGeneration);
+            log.info("Imported {} vectors from unpartitioned segment {} into {} partitions", vectors.size(), segment, partitions.size());
+            return flatGeneration;
         } catch (IOException e) {
-            log.error("Failed to persist vector store", e);
+            throw new IllegalStateException("Failed to import vector segment " + segment, e);
+        }
+    }
+
+    private boolean importLegacyJson() {
+        String legacyDir = config.getLegacyJsonDir();
+        if (legacyDir == null || legacyDir.isBlank()) {
+            return false;
+        }
+        File file = new File(legacyDir, STORE_FILE);
+        if (!file.exists()) {
+            log.info("No existing vector store found at {}, starting fresh.", storeDir);
+            return false;
+        }
+        try {
+            Map<String, float[]> loaded = objectMapper.readValue(file, new TypeReference<Map<String, float[]>>() {});
+            Map<String, SceneMetadata> metadata = Map.of();
+            File metaFile = new File(legacyDir, METADATA_FILE);
+            if (metaFile.exists()) {
+                metadata = objectMapper.readValue(metaFile, new TypeReference<Map<String, SceneMetadata>>() {});
+            }
+            loaded.replaceAll((id, vector) -> VectorMath.normalizedCopy(vector));
+            putGrouped(loaded, metadata);
+            log.info("Imported {} vectors and {} metadata entries from legacy {}", loaded.size(), metadata.size(), file);
+            return !loaded.isEmpty();
+        } catch (IOException e) {
+            log.error("Failed to load vector store from file", e);
+            return false;
         }
     }
 
+    /**
+     * 按元数据分组写入各分区 (向量已归一化)
+     */
+    private void putGrouped(Map<String, float[]> vectors, Map<String, SceneMetadata> metadata) {
+        Map<VectorPartition.Key, List<String>> groups = new LinkedHashMap<>();
+        vectors.keySet().forEach(id -> groups.computeIfAbsent(VectorPartition.Key.of(metadata.get(id)), k -> new ArrayList<>()).add(id));
+        groups.forEach((key, ids) -> partition(key).putAll(ids,
+                ids.stream().map(vectors::get).toList(),
+                ids.stream().map(metadata::get).toList(),
+                true));
+    }
+
+    /**
+     * 回放仍保留的日志 (未分区段文件之前的除外)，然后打开最新一代日志继续追加
+     * <p>
+     * 日志无法读取时启动失败：否则下一次检查点会丢弃其中的写入。
+     * </p>
+     */
+    private void openWal(long flatGeneration) {
+        try {
+            Files.createDirectories(storeDir);
+            List<Path> logs = listFiles(storeDir, WAL_PATTERN).stream()
+                    .filter(f -> generationOf(WAL_PATTERN, f) >= flatGeneration)
+                    .sorted(Comparator.comparingLong(f -> generationOf(WAL_PATTERN, f)))
+                    .toList();
+            long replayed = 0;
+            for (Path file : logs) {
+                replayed += replay(file, generationOf(WAL_PATTERN, file));
+                generation = Math.max(generation, generationOf(WAL_PATTERN, file));
+            }
+            partitions.values().forEach(VectorPartition::rebuildIfNeeded);
+            wal = WriteAheadLog.open(storeDir.resolve(String.format(WAL_NAME, generation)));
+            if (replayed > 0) {
+                log.info("Replayed {} WAL records from {} file(s), {} vectors live", replayed, logs.size(), count());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalStateException("Failed to replay vector store WAL in " + storeDir, e);
+        }
+    }
+
+    /**
+     * 后台任务：INTERVAL 策略下 fsync，日志过大或距上次检查点超过间隔时做检查点，卸载空闲分区
+     */
+    private void startMaintenance() {
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "vector-store-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(10, config.getWal().getSyncIntervalMs());
+        maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void maintain() {
+        try {
+            WriteAheadLog current = wal;
+            if (current != null) {
+                VectorStoreProperties.WalConfig walConfig = config.getWal();
+                if (walConfig.getFsync() == VectorStoreProperties.FsyncPolicy.INTERVAL) {
+                    current.sync();
+                }
+                long size = current.size();
+                boolean due = System.currentTimeMillis() - lastCheckpoint >= walConfig.getCheckpointIntervalSeconds() * 1000;
+                if (size >= walConfig.getCheckpointBytes() || (due && !current.isEmpty())) {
+                    persist();
+                }
+            }
+            long idleSeconds = config.getPartitionIdleSeconds();
+            if (idleSeconds > 0) {
+                unloadIdlePartitions(idleSeconds * 1000);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Vector store maintenance failed", e);
+        }
+    }
+
+    /**
+     * 卸载空闲超过 idleMillis 且已持久化的分区
+     */
+    void unloadIdlePartitions(long idleMillis) {
+        partitions.values().forEach(partition -> partition.unloadIfIdle(idleMillis));
+    }
+
+    /**
+     * 回放一个日志文件
+     * <p>
+     * 代号小于分区段文件代号的记录已包含在段文件中，跳过。
+     * 同一分区连续的 PUT 记录先按 ID 合并 (后写覆盖先写)，遇到其他记录或文件结束时再并行写入分区。
+     * </p>
+     */
+    private long replay(Path file, long walGeneration) throws IOException {
+        ReplayBatch batch = new ReplayBatch();
+        long records = WriteAheadLog.replay(file, record -> {
+            byte op = record.get();
+            if (op == OP_RESET) {
+                batch.flush();
+                partitions.values().removeIf(p -> {
+                    if (walGeneration < p.segmentGeneration()) {
+                        return false;
+                    }
+                    p.deleteFiles();
+                    return true;
+                });
+                return;
+            }
+            VectorPartition.Key key = null;
+            if (op == OP_PUT || op == OP_DELETE || op == OP_DROP) {
+                key = new VectorPartition.Key(readString(record), readString(record));
+            }
+            if (op == OP_DROP) {
+                batch.flush();
+                VectorPartition partition = partitions.get(key);
+                if (partition != null && walGeneration >= partition.segmentGeneration()) {
+                    partitions.remove(key);
+                    partition.deleteFiles();
+                }
+                return;
+            }
+            String id = readString(record);
+            if (op == OP_DELETE || op == OP_LEGACY_DELETE) {
+                batch.flush();
+                VectorPartition partition = key != null ? partitions.get(key) : findPartition(id);
+                if (partition != null && walGeneration >= partition.segmentGeneration()) {
+                    partition.remove(id);
+                }
+                return;
+            }
+            float[] vector = new float[record.getInt()];
+            record.asFloatBuffer().get(vector);
+            record.position(record.position() + vector.length * Float.BYTES);
+            int metaLength = record.getInt();
+            SceneMetadata meta = null;
+            if (metaLength > 0) {
+                try {
+                    meta = objectMapper.readValue(record.array(), record.arrayOffset() + record.position(),
+                            metaLength, SceneMetadata.class);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (key == null) {
+                // 未分区版本的记录：按元数据定位分区，没有元数据时沿用 ID 所在的分区
+                VectorPartition existing = meta == null ? findPartition(id) : null;
+                key = existing != null ? existing.key() : VectorPartition.Key.of(meta);
+            }
+            VectorPartition partition = partitions.get(key);
+            if (partition != null && walGeneration < partition.segmentGeneration()) {
+                return;
+            }
+            batch.put(key, id, vector, meta);
+        });
+        batch.flush();
+        return records;
+    }
+
+    /**
+     * 回放时同一分区连续的 PUT 记录
+     */
+    private final class ReplayBatch {
+        private VectorPartition.Key key;
+        private final Map<String, float[]> vectors = new LinkedHashMap<>();
+        private final Map<String, SceneMetadata> metas = new HashMap<>();
+
+        void put(VectorPartition.Key recordKey, String id, float[] vector, SceneMetadata meta) {
+            if (!recordKey.equals(key)) {
+                flush();
+                key = recordKey;
+            }
+            vectors.put(id, vector);
+            if (meta != null) {
+                metas.put(id, meta);
+            } else {
+                metas.remove(id);
+            }
+        }
+
+        void flush() {
+            if (vectors.isEmpty()) {
+                return;
+            }
+            List<String> ids = new ArrayList<>(vectors.keySet());
+            partition(key).putAll(ids, ids.stream().map(vectors::get).toList(), ids.stream().map(metas::get).toList(), true);
+            vectors.clear();
+            metas.clear();
+        }
+    }
+
+    private VectorPartition findPartition(String id) {
+        return partitions.values().stream().filter(p -> p.contains(id)).findFirst().orElse(null);
+    }
+
+    private VectorPartition partition(VectorPartition.Key key) {
+        return partitions.computeIfAbsent(key, k -> new VectorPartition(k, partitionsDir.resolve(k.directoryName()), config, objectMapper));
+    }
+
     /**
      * 清空存储 (用于测试)
      */
     @Override
     public void reset() {
-        vectorMap.clear();
-        metadataMap.clear();
+        long seq;
+        storeLock.writeLock().lock();
+        try {
+            seq = appendLog(() -> new byte[]{OP_RESET});
+            partitions.values().forEach(VectorPartition::deleteFiles);
+            partitions.clear();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+        commitLog(seq);
         log.info("Vector store cleared.");
     }
 
     @Override
     public long count() {
-        return vectorMap.size();
+        return partitions.values().stream().mapToLong(VectorPartition::size).sum();
+    }
+
+    /**
+     * 已打开的分区数 (用于测试)
+     */
+    int partitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * 已加载到内存的分区数 (用于测试)
+     */
+    int loadedPartitionCount() {
+        return (int) partitions.values().stream().filter(VectorPartition::isLoaded).count();
     }
 
     @Override
@@ -95,38 +576,57 @@ public class InMemoryVectorStore implements VectorStore {
         if (filter == null || filter.isEmpty()) {
             return;
         }
-        
-        List<String> toRemove = new ArrayList<>();
-        
-        for (Map.Entry<String, com.novel.splitter.domain.model.SceneMetadata> entry : metadataMap.entrySet()) {
-            String id = entry.getKey();
-            com.novel.splitter.domain.model.SceneMetadata meta = entry.getValue();
-            
-            boolean match = true;
-            for (Map.Entry<String, Object> f : filter.entrySet()) {
-                String key = f.getKey();
-                Object expected = f.getValue();
-                Object actual = null;
-                
-                if ("novel".equals(key)) actual = meta.getNovel();
-                else if ("version".equals(key)) actual = meta.getVersion();
-                
-                if (!Objects.equals(actual, expected)) {
-                    match = false;
-                    break;
+        Map<String, Object> residual = residualFilter(filter);
+        if (residual.isEmpty()) {
+            dropPartitions(filter);
+            return;
+        }
+
+        long seq = 0;
+        int deleted = 0;
+        storeLock.readLock().lock();
+        try {
+            for (VectorPartition partition : matchingPartitions(filter)) {
+                VectorPartition.Key key = partition.key();
+                for (String id : partition.delete(residual)) {
+                    seq = appendLog(() -> deleteRecord(key, id));
+                    deleted++;
                 }
             }
-            
-            if (match) {
-                toRemove.add(id);
-            }
+        } finally {
+            storeLock.readLock().unlock();
         }
-        
-        for (String id : toRemove) {
-            vectorMap.remove(id);
-            metadataMap.remove(id);
+        commitLog(seq);
+        log.info("Deleted {} vectors matching filter {}", deleted, filter);
+    }
+
+    /**
+     * 删除条件只包含 novel / version 时整个分区删除：记一条 DROP 日志，移除分区并删除其目录
+     * <p>
+     * 在写锁内提交日志后再删除目录，避免同一分区的新写入与删除交错。
+     * </p>
+     */
+    private void dropPartitions(Map<String, Object> filter) {
+        long seq = 0;
+        long deleted = 0;
+        List<VectorPartition> dropped = new ArrayList<>();
+        storeLock.writeLock().lock();
+        try {
+            for (VectorPartition partition : matchingPartitions(filter)) {
+                VectorPartition.Key key = partition.key();
+                seq = appendLog(() -> dropRecord(key));
+                deleted += partition.size();
+                dropped.add(partition);
+            }
+            commitLog(seq);
+            for (VectorPartition partition : dropped) {
+                partitions.remove(partition.key());
+                partition.deleteFiles();
+            }
+        } finally {
+            storeLock.writeLock().unlock();
         }
-        log.info("Deleted {} vectors matching filter {}", toRemove.size(), filter);
+        log.info("Dropped {} vector partitions ({} vectors) matching filter {}", dropped.size(), deleted, filter);
     }
 
     @Override
@@ -135,10 +635,17 @@ public class InMemoryVectorStore implements VectorStore {
             log.warn("Cannot save null scene or scene with null ID");
             return;
         }
-        vectorMap.put(scene.getId(), embedding);
-        if (scene.getMetadata() != null) {
-            metadataMap.put(scene.getId(), scene.getMetadata());
+        float[] vector = VectorMath.normalizedCopy(embedding);
+        VectorPartition.Key key = VectorPartition.Key.of(scene.getMetadata());
+        long seq;
+        storeLock.readLock().lock();
+        try {
+            seq = appendLog(() -> putRecord(key, scene.getId(), vector, scene.getMetadata()));
+            partition(key).put(scene.getId(), vector, scene.getMetadata());
+        } finally {
+            storeLock.readLock().unlock();
         }
+        commitLog(seq);
     }
 
     @Override
@@ -146,95 +653,233 @@ public class InMemoryVectorStore implements VectorStore {
         if (scenes.size() != embeddings.size()) {
             throw new IllegalArgumentException("Scenes and embeddings size mismatch");
         }
+        Map<VectorPartition.Key, List<Integer>> groups = new LinkedHashMap<>();
+        float[][] vectors = new float[scenes.size()][];
         for (int i = 0; i < scenes.size(); i++) {
-            save(scenes.get(i), embeddings.get(i));
+            Scene scene = scenes.get(i);
+            if (scene == null || scene.getId() == null) {
+                log.warn("Cannot save null scene or scene with null ID");
+                continue;
+            }
+            groups.computeIfAbsent(VectorPartition.Key.of(scene.getMetadata()), k -> new ArrayList<>()).add(i);
+            vectors[i] = VectorMath.normalizedCopy(embeddings.get(i));
+        }
+
+        // 整批记录先进入日志缓冲区，最后一次提交 (一次写入 / fsync)
+        long seq = 0;
+        storeLock.readLock().lock();
+        try {
+            for (Map.Entry<VectorPartition.Key, List<Integer>> group : groups.entrySet()) {
+                VectorPartition.Key key = group.getKey();
+                List<Integer> valid = group.getValue();
+                for (int i : valid) {
+                    Scene scene = scenes.get(i);
+                    seq = appendLog(() -> putRecord(key, scene.getId(), vectors[i], scene.getMetadata()));
+                }
+                // HNSW 插入可并发进行，大批量写入时并行建图
+                partition(key).putAll(valid.stream().map(i -> scenes.get(i).getId()).toList(),
+                        valid.stream().map(i -> vectors[i]).toList(),
+                        valid.stream().map(i -> scenes.get(i).getMetadata()).toList(),
+                        valid.size() >= config.getParallelInsertThreshold());
+            }
+        } finally {
+            storeLock.readLock().unlock();
+        }
+        commitLog(seq);
+    }
+
+    /**
+     * 追加日志记录 (未启用日志时不编码)，需持有 storeLock 以保证检查点切换日志时记录已进入分区
+     *
+     * @return 记录序号，未启用日志时为 0
+     */
+    private long appendLog(RecordEncoder encoder) {
+        WriteAheadLog current = wal;
+        if (current == null) {
+            return 0;
+        }
+        try {
+            return current.append(encoder.encode());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode vector store WAL record", e);
         }
     }
 
+    /**
+     * 按 fsync 策略等待日志记录落盘 (不持有 storeLock，并发写入在此组提交)
+     */
+    private void commitLog(long seq) {
+        WriteAheadLog current = wal;
+        if (current == null || seq == 0) {
+            return;
+        }
+        try {
+            current.commit(seq, config.getWal().getFsync() == VectorStoreProperties.FsyncPolicy.ALWAYS);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write vector store WAL", e);
+        }
+    }
+
+    private byte[] putRecord(VectorPartition.Key key, String id, float[] vector, SceneMetadata meta) throws IOException {
+        byte[] novel = key.novel().getBytes(StandardCharsets.UTF_8);
+        byte[] version = key.version().getBytes(StandardCharsets.UTF_8);
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] metaBytes = meta == null ? new byte[0] : objectMapper.writeValueAsBytes(meta);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 12 + novel.length + version.length + idBytes.length
+                        + 4 + vector.length * Float.BYTES + 4 + metaBytes.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(OP_PUT).putInt(novel.length).put(novel).putInt(version.length).put(version)
+                .putInt(idBytes.length).put(idBytes).putInt(vector.length);
+        buffer.asFloatBuffer().put(vector);
+        buffer.position(buffer.position() + vector.length * Float.BYTES);
+        buffer.putInt(metaBytes.length).put(metaBytes);
+        return buffer.array();
+    }
+
+    private static byte[] deleteRecord(VectorPartition.Key key, String id) {
+        byte[] novel = key.novel().getBytes(StandardCharsets.UTF_8);
+        byte[] version = key.version().getBytes(StandardCharsets.UTF_8);
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 12 + novel.length + version.length + idBytes.length).order(ByteOrder.LITTLE_ENDIAN)
+                .put(OP_DELETE).putInt(novel.length).put(novel).putInt(version.length).put(version)
+                .putInt(idBytes.length).put(idBytes)
+                .array();
+    }
+
+    private static byte[] dropRecord(VectorPartition.Key key) {
+        byte[] novel = key.novel().getBytes(StandardCharsets.UTF_8);
+        byte[] version = key.version().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 8 + novel.length + version.length).order(ByteOrder.LITTLE_ENDIAN)
+                .put(OP_DROP).putInt(novel.length).put(novel).putInt(version.length).put(version)
+                .array();
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface RecordEncoder {
+        byte[] encode() throws IOException;
+    }
+
     @Override
     public List<VectorRecord> search(float[] queryEmbedding, int topK, Map<String, Object> filter) {
         if (topK <= 0) {
             return Collections.emptyList();
         }
-        if (vectorMap.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        // 使用最小堆维护 TopK (按分数升序，堆顶是最小的)
-        PriorityQueue<VectorRecord> topKQueue = new PriorityQueue<>(Comparator.comparingDouble(VectorRecord::getScore));
 
-        for (Map.Entry<String, float[]> entry : vectorMap.entrySet()) {
-            String id = entry.getKey();
-            
-            // Filter Logic
-            if (filter != null && !filter.isEmpty()) {
-                com.novel.splitter.domain.model.SceneMetadata meta = metadataMap.get(id);
-                if (meta == null) {
-                    // Metadata missing but filter required -> skip
-                    continue;
-                }
-                
-                boolean match = true;
-                for (Map.Entry<String, Object> f : filter.entrySet()) {
-                    String key = f.getKey();
-                    Object expected = f.getValue();
-                    Object actual = null;
-                    
-                    // Simple field mapping
-                    if ("novel".equals(key)) actual = meta.getNovel();
-                    else if ("version".equals(key)) actual = meta.getVersion();
-                    
-                    if (!Objects.equals(actual, expected)) {
-                        match = false;
-                        break;
-                    }
-                }
-                if (!match) continue;
+        float[] query = VectorMath.normalizedCopy(queryEmbedding);
+        Map<String, Object> residual = residualFilter(filter);
+        storeLock.readLock().lock();
+        try {
+            List<VectorPartition> selected = matchingPartitions(filter);
+            if (selected.size() == 1) {
+                return selected.get(0).search(query, topK, residual, exactScanner);
             }
+            // 各分区的前 topK 合并后取前 topK
+            Stream<VectorPartition> stream = selected.size() > 1 ? selected.parallelStream() : selected.stream();
+            return stream.flatMap(p -> p.search(query, topK, residual, exactScanner).stream())
+                    .sorted(Comparator.comparingDouble(VectorRecord::getScore).reversed())
+                    .limit(topK)
+                    .toList();
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
 
-            float[] vector = entry.getValue();
-            
-            double similarity = cosineSimilarity(queryEmbedding, vector);
+    /**
+     * 批量检索：分区只选择一次，每个分区内需要精确扫描的查询共用一次扫描，再按查询分别合并各分区的前 topK
+     */
+    @Override
+    public List<List<VectorRecord>> searchBatch(float[][] queryEmbeddings, int topK, Map<String, Object> filter) {
+        if (queryEmbeddings.length == 0) {
+            return List.of();
+        }
+        if (topK <= 0) {
+            return Collections.nCopies(queryEmbeddings.length, List.of());
+        }
 
-            com.novel.splitter.domain.model.SceneMetadata meta = metadataMap.get(id);
-            Map<String, Object> metaMap = new HashMap<>();
-            if (meta != null) {
-                if (meta.getNovel() != null) metaMap.put("novel", meta.getNovel());
-                if (meta.getVersion() != null) metaMap.put("version", meta.getVersion());
+        float[][] queries = new float[queryEmbeddings.length][];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = VectorMath.normalizedCopy(queryEmbeddings[q]);
+        }
+        Map<String, Object> residual = residualFilter(filter);
+        storeLock.readLock().lock();
+        try {
+            List<VectorPartition> selected = matchingPartitions(filter);
+            if (selected.isEmpty()) {
+                return Collections.nCopies(queries.length, List.of());
             }
-
-            if (topKQueue.size() < topK) {
-                topKQueue.offer(new VectorRecord(id, similarity, metaMap));
-            } else if (similarity > topKQueue.peek().getScore()) {
-                topKQueue.poll();
-                topKQueue.offer(new VectorRecord(id, similarity, metaMap));
+            if (selected.size() == 1) {
+                return selected.get(0).searchBatch(queries, topK, residual, exactScanner);
+            }
+            List<List<List<VectorRecord>>> perPartition = selected.parallelStream()
+                    .map(p -> p.searchBatch(queries, topK, residual, exactScanner))
+                    .toList();
+            List<List<VectorRecord>> results = new ArrayList<>(queries.length);
+            for (int q = 0; q < queries.length; q++) {
+                int query = q;
+                results.add(perPartition.stream()
+                        .flatMap(partitionResults -> partitionResults.get(query).stream())
+                        .sorted(Comparator.comparingDouble(VectorRecord::getScore).reversed())
+                        .limit(topK)
+                        .toList());
             }
+            return results;
+        } finally {
+            storeLock.readLock().unlock();
         }
+    }
 
-        List<VectorRecord> results = new ArrayList<>(topKQueue);
-        results.sort(Comparator.comparingDouble(VectorRecord::getScore).reversed());
-        return results;
+    private List<VectorPartition> matchingPartitions(Map<String, Object> filter) {
+        return partitions.values().stream().filter(p -> p.key().matches(filter)).toList();
     }
 
-    private double cosineSimilarity(float[] v1, float[] v2) {
-        if (v1.length != v2.length) {
-            throw new IllegalArgumentException("Vector dimensions mismatch: " + v1.length + " vs " + v2.length);
+    /**
+     * 去掉已由分区选择处理的 novel / version 条件
+     */
+    private static Map<String, Object> residualFilter(Map<String, Object> filter) {
+        if (filter == null || filter.isEmpty()) {
+            return Map.of();
         }
+        Map<String, Object> residual = new HashMap<>(filter);
+        residual.remove(MetadataIndex.NOVEL);
+        residual.remove(MetadataIndex.VERSION);
+        return residual;
+    }
 
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-
-        for (int i = 0; i < v1.length; i++) {
-            dotProduct += v1[i] * v2[i];
-            normA += v1[i] * v1[i];
-            normB += v2[i] * v2[i];
+    private List<Path> listFiles(Path directory, Pattern pattern) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> pattern.matcher(f.getFileName().toString()).matches()).toList();
+        } catch (IOException e) {
+            log.error("Failed to list vector store directory {}", directory, e);
+            return List.of();
         }
+    }
 
-        if (normA == 0 || normB == 0) {
-            return 0.0;
+    /**
+     * 删除旧一代的日志或未分区段文件；仍被映射的文件在部分平台上无法删除，留到下次检查点时再清理
+     */
+    private void deleteFilesBefore(Path directory, Pattern pattern, long currentGeneration) {
+        for (Path file : listFiles(directory, pattern)) {
+            if (generationOf(pattern, file) < currentGeneration) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.debug("Old vector store file {} not deleted yet: {}", file, e.getMessage());
+                }
+            }
         }
+    }
 
-        return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
+    private static long generationOf(Pattern pattern, Path file) {
+        Matcher matcher = pattern.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
     }
 }
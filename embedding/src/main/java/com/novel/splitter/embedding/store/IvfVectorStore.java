@@ -0,0 +1,43 @@
+package com.novel.splitter.embedding.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.novel.splitter.embedding.config.VectorStoreProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * IVF 向量存储
+ * <p>
+ * 即 searchMode 固定为 {@link VectorStoreProperties.SearchMode#IVF} 的 {@link InMemoryVectorStore}：
+ * 分区、预写日志与段文件完全相同，只是不构建 HNSW 图，改为按分区训练 k-means 粗聚类 (倒排表)。
+ * 写入只需把向量分配到最近的簇，整本批量重新导入的耗时稳定且远低于建图；导入完成后可调用 {@link #train()} 离线训练，
+ * 否则在检查点按 ivf.minTrainRows 自动训练。参数见 embedding.store.memory.ivf。
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "embedding.store.type", havingValue = "ivf")
+public class IvfVectorStore extends InMemoryVectorStore {
+
+    public IvfVectorStore() {
+        this(new VectorStoreProperties());
+    }
+
+    @Autowired
+    public IvfVectorStore(VectorStoreProperties properties) {
+        super(withIvfSearchMode(properties));
+        VectorStoreProperties.IvfConfig ivf = properties.getMemory().getIvf();
+        log.info("IVF vector store: nlist {}, nprobe {}, min train rows {}", ivf.getNlist(), ivf.getNprobe(), ivf.getMinTrainRows());
+    }
+
+    /**
+     * 复制配置后固定 searchMode，注入的配置 bean 由其他组件共享，不能修改
+     */
+    private static VectorStoreProperties withIvfSearchMode(VectorStoreProperties properties) {
+        VectorStoreProperties copy = new ObjectMapper().convertValue(properties, VectorStoreProperties.class);
+        copy.getMemory().setSearchMode(VectorStoreProperties.SearchMode.IVF);
+        return copy;
+    }
+}
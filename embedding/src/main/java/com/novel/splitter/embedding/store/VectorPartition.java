@@ -0,0 +1,899 @@
+package com.novel.splitter.embedding.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.novel.splitter.domain.model.SceneMetadata;
+import com.novel.splitter.domain.model.embedding.VectorRecord;
+import com.novel.splitter.embedding.config.VectorStoreProperties;
+import com.novel.splitter.embedding.store.index.ExactScanner;
+import com.novel.splitter.embedding.store.index.HnswIndex;
+import com.novel.splitter.embedding.store.index.IvfIndex;
+import com.novel.splitter.embedding.store.index.MetadataIndex;
+import com.novel.splitter.embedding.store.index.ProductQuantizer;
+import com.novel.splitter.embedding.store.index.QuantizedVectors;
+import com.novel.splitter.embedding.store.index.RowBitmap;
+import com.novel.splitter.embedding.store.index.VectorSegment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 内存向量存储的一个分区 (一本小说的一个版本)
+ * <p>
+ * 每个分区有独立的 HNSW 索引、元数据倒排索引和目录 (目录中保存本分区的段文件)，按需加载：
+ * 首次访问时内存映射最新的段文件，长时间未访问且已持久化的分区可以卸载，下次访问时重新映射。
+ * </p>
+ * <p>
+ * 分区内的写入与检索持读锁，加载、卸载与重建索引持写锁。
+ * </p>
+ * <p>
+ * searchMode 为 PQ 时，分区向量数达到 pq.minTrainRows 后在检查点训练 PQ 码本 (向量数翻倍时重新训练)，
+ * 编码与段文件同代写入 codes-N.pq；检索扫描编码后用完整向量精确重排。
+ * searchMode 为 IVF 时同样在检查点训练粗聚类 (或由 {@link #train()} 离线触发)，新写入的行直接分配到最近的簇，
+ * 各簇的行号表与段文件同代写入 lists-N.ivf。
+ * </p>
+ */
+@Slf4j
+final class VectorPartition {
+
+    static final String SEGMENT_NAME = "vectors-%08d.seg";
+    static final Pattern SEGMENT_PATTERN = Pattern.compile("vectors-(\\d+)\\.seg");
+    private static final String CODES_NAME = "codes-%08d.pq";
+    private static final Pattern CODES_PATTERN = Pattern.compile("codes-(\\d+)\\.pq");
+    private static final String LISTS_NAME = "lists-%08d.ivf";
+    private static final Pattern LISTS_PATTERN = Pattern.compile("lists-(\\d+)\\.ivf");
+
+    /**
+     * 分区键，novel / version 为 null 时按空串处理 (未携带元数据的场景归入默认分区)
+     */
+    record Key(String novel, String version) {
+
+        Key {
+            novel = novel == null ? "" : novel;
+            version = version == null ? "" : version;
+        }
+
+        static Key of(SceneMetadata meta) {
+            return meta == null ? new Key(null, null) : new Key(meta.getNovel(), meta.getVersion());
+        }
+
+        /**
+         * 目录名：两部分分别 URL 编码后以 '@' 连接 (编码结果中不含 '@' 与 '~')
+         */
+        String directoryName() {
+            return URLEncoder.encode(novel, StandardCharsets.UTF_8) + "@" + URLEncoder.encode(version, StandardCharsets.UTF_8);
+        }
+
+        static Key fromDirectoryName(String name) {
+            int separator = name.indexOf('@');
+            if (separator < 0 || name.startsWith("~")) {
+                return null;
+            }
+            return new Key(URLDecoder.decode(name.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(name.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * 过滤条件中的 novel / version 是否与本分区一致 (其余字段不在此判断)
+         *
+         * @throws IllegalArgumentException 运算符不支持
+         */
+        boolean matches(Map<String, Object> filter) {
+            if (filter == null) {
+                return true;
+            }
+            return (!filter.containsKey(MetadataIndex.NOVEL) || matchesValue(filter.get(MetadataIndex.NOVEL), novel))
+                    && (!filter.containsKey(MetadataIndex.VERSION) || matchesValue(filter.get(MetadataIndex.VERSION), version));
+        }
+
+        private static boolean matchesValue(Object condition, String actual) {
+            if (!(condition instanceof Map<?, ?> operators)) {
+                return condition != null && condition.toString().equals(actual);
+            }
+            for (Map.Entry<?, ?> operator : operators.entrySet()) {
+                boolean matched = switch (operator.getKey().toString()) {
+                    case "$eq" -> String.valueOf(operator.getValue()).equals(actual);
+                    case "$in" -> ((Collection<?>) operator.getValue()).stream().anyMatch(v -> String.valueOf(v).equals(actual));
+                    default -> throw new IllegalArgumentException("Unsupported operator: " + operator.getKey());
+                };
+                if (!matched) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return novel + "/" + version;
+        }
+    }
+
+    private final Key key;
+    private final Path directory;
+    private final VectorStoreProperties.MemoryConfig config;
+    private final ObjectMapper objectMapper;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 已加载时非 null (受 lock 保护)
+     */
+    private HnswIndex index;
+    private MetadataIndex metadataIndex;
+    private Map<String, SceneMetadata> metadata;
+    /**
+     * 与 index 的行号对应的 PQ 编码，未训练时为 null
+     */
+    private QuantizedVectors quantized;
+    /**
+     * 与 index 的行号对应的 IVF 倒排表，未训练时为 null
+     */
+    private IvfIndex ivf;
+
+    private volatile long segmentGeneration;
+    private volatile int unloadedSize;
+    private volatile boolean dirty;
+    private volatile long lastAccess = System.currentTimeMillis();
+    /**
+     * 不持读锁但需要保持数据已加载的操作数 (如训练)，大于 0 时不卸载
+     */
+    private final AtomicInteger pins = new AtomicInteger();
+    /**
+     * 已删除的分区不再写段文件 (受 this 同步)
+     */
+    private boolean dropped;
+
+    VectorPartition(Key key, Path directory, VectorStoreProperties.MemoryConfig config, ObjectMapper objectMapper) {
+        this.key = key;
+        this.directory = directory;
+        this.config = config;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 打开已有的分区目录 (不加载数据，只读取最新段文件的有效向量数)
+     */
+    static VectorPartition open(Key key, Path directory, VectorStoreProperties.MemoryConfig config,
+                                ObjectMapper objectMapper) throws IOException {
+        VectorPartition partition = new VectorPartition(key, directory, config, objectMapper);
+        Path segment = partition.latestSegment();
+        if (segment != null) {
+            partition.segmentGeneration = generationOf(segment);
+            partition.unloadedSize = VectorSegment.liveCount(segment);
+        }
+        return partition;
+    }
+
+    Key key() {
+        return key;
+    }
+
+    /**
+     * 最近一次写入的段文件代号，0 表示尚无段文件
+     */
+    long segmentGeneration() {
+        return segmentGeneration;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return index != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index != null ? index.size() : unloadedSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入一条 (向量已归一化)，meta 为 null 时沿用已有的元数据
+     */
+    void put(String id, float[] vector, SceneMetadata meta) {
+        acquireRead();
+        try {
+            apply(id, vector, meta);
+            dirty = true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 批量写入，parallel 为 true 时并行建图
+     */
+    void putAll(List<String> ids, List<float[]> vectors, List<SceneMetadata> metas, boolean parallel) {
+        acquireRead();
+        try {
+            IntStream range = IntStream.range(0, ids.size());
+            (parallel ? range.parallel() : range).forEach(i -> apply(ids.get(i), vectors.get(i), metas.get(i)));
+            dirty = true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean contains(String id) {
+        acquireRead();
+        try {
+            return index.contains(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean remove(String id) {
+        acquireRead();
+        try {
+            int row = index.row(id);
+            if (row < 0) {
+                return false;
+            }
+            index.remove(id);
+            metadataIndex.remove(row, metadata.remove(id));
+            dirty = true;
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 删除满足过滤条件的向量
+     *
+     * @param filter 分区内的过滤条件 (不含 novel / version)
+     * @return 删除的场景 ID
+     */
+    List<String> delete(Map<String, Object> filter) {
+        List<String> removed = new ArrayList<>();
+        acquireRead();
+        try {
+            for (int row : metadataIndex.select(filter).toArray()) {
+                String id = index.key(row);
+                if (index.row(id) != row) {
+                    continue;
+                }
+                index.remove(id);
+                metadataIndex.remove(row, metadata.remove(id));
+                removed.add(id);
+            }
+            if (!removed.isEmpty()) {
+                dirty = true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        rebuildIfNeeded();
+        return removed;
+    }
+
+    /**
+     * 分区内检索
+     *
+     * @param query   已归一化的查询向量
+     * @param filter  分区内的过滤条件 (不含 novel / version)
+     * @return 按分数降序的前 topK 条
+     */
+    List<VectorRecord> search(float[] query, int topK, Map<String, Object> filter, ExactScanner exactScanner) {
+        return searchBatch(new float[][]{query}, topK, filter, exactScanner).get(0);
+    }
+
+    /**
+     * 分区内批量检索 (共用同一过滤条件)
+     * <p>
+     * 过滤条件只编译一次；近似检索逐条进行，需要精确扫描的查询 (小集合、选择性高的过滤或近似结果不足) 合并为一次扫描。
+     * </p>
+     *
+     * @param queries 已归一化的查询向量
+     * @return 与 queries 一一对应，各自按分数降序的前 topK 条
+     */
+    List<List<VectorRecord>> searchBatch(float[][] queries, int topK, Map<String, Object> filter, ExactScanner exactScanner) {
+        acquireRead();
+        try {
+            HnswIndex current = index;
+            List<List<VectorRecord>> results = new ArrayList<>(queries.length);
+            if (current.size() == 0) {
+                return emptyResults(queries.length);
+            }
+            for (float[] query : queries) {
+                if (query.length != current.getDimension()) {
+                    throw new IllegalArgumentException("Vector dimensions mismatch: " + query.length + " vs " + current.getDimension());
+                }
+            }
+
+            RowBitmap candidates = metadataIndex.select(filter);
+            int candidateCount = candidates == null ? current.size() : candidates.cardinality();
+            if (candidateCount == 0) {
+                return emptyResults(queries.length);
+            }
+
+            int limit = Math.min(topK, candidateCount);
+            int[] candidateRows = candidates == null ? null : candidates.toArray();
+            int[][] nodes = new int[queries.length][limit];
+            float[][] scores = new float[queries.length][limit];
+            int[] found = new int[queries.length];
+            boolean selective = candidates != null
+                    && candidateCount < current.size() * config.getFilteredScanRatio();
+            boolean approximate = candidateCount > config.getBruteForceThreshold() && !selective;
+            if (approximate) {
+                for (int q = 0; q < queries.length; q++) {
+                    found[q] = searchApproximate(current, candidates, candidateRows, queries[q], limit, nodes[q], scores[q]);
+                }
+            }
+
+            // 小集合、过滤后的小行集合、未训练码本 / 粗聚类，或过滤条件导致近似检索结果不足
+            int[] pending = IntStream.range(0, queries.length).filter(q -> found[q] < limit).toArray();
+            if (pending.length > 0) {
+                float[][] pendingQueries = new float[pending.length][];
+                int[][] pendingNodes = new int[pending.length][];
+                float[][] pendingScores = new float[pending.length][];
+                for (int i = 0; i < pending.length; i++) {
+                    pendingQueries[i] = queries[pending[i]];
+                    pendingNodes[i] = nodes[pending[i]];
+                    pendingScores[i] = scores[pending[i]];
+                }
+                int[] exactFound = candidates == null
+                        ? exactScanner.searchBatch(current.vectors(), current.nodeCount(), pendingQueries, limit,
+                                node -> !current.isDeleted(node), pendingNodes, pendingScores)
+                        : exactScanner.searchBatch(current.vectors(), candidateRows, pendingQueries, limit,
+                                node -> !current.isDeleted(node), pendingNodes, pendingScores);
+                for (int i = 0; i < pending.length; i++) {
+                    found[pending[i]] = exactFound[i];
+                }
+            }
+
+            // 仅为最终结果构建 VectorRecord
+            for (int q = 0; q < queries.length; q++) {
+                List<VectorRecord> records = new ArrayList<>(found[q]);
+                for (int i = 0; i < found[q]; i++) {
+                    String id = current.key(nodes[q][i]);
+                    records.add(new VectorRecord(id, scores[q][i], recordMetadata(metadata.get(id))));
+                }
+                results.add(records);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按 searchMode 做近似检索 (HNSW 图、PQ 编码或 IVF 倒排表)，对应索引未建立时返回 0
+     */
+    private int searchApproximate(HnswIndex current, RowBitmap candidates, int[] candidateRows, float[] query, int limit,
+                                  int[] nodes, float[] scores) {
+        if (config.getSearchMode() == VectorStoreProperties.SearchMode.AUTO) {
+            int ef = Math.max(config.getHnsw().getEfSearch(), limit);
+            return current.search(query, limit, ef, candidates == null ? null : candidates::contains, nodes, scores);
+        }
+        if (quantized != null) {
+            return quantized.search(current.vectors(), current.nodeCount(), candidateRows,
+                    query, limit, config.getPq().getRerankCandidates(), node -> !current.isDeleted(node), nodes, scores);
+        }
+        if (ivf != null) {
+            return ivf.search(current.vectors(), query, limit, config.getIvf().getNprobe(), candidates == null
+                    ? node -> !current.isDeleted(node)
+                    : node -> candidates.contains(node) && !current.isDeleted(node), nodes, scores);
+        }
+        return 0;
+    }
+
+    private static List<List<VectorRecord>> emptyResults(int queries) {
+        List<List<VectorRecord>> results = new ArrayList<>(queries);
+        for (int q = 0; q < queries; q++) {
+            results.add(List.of());
+        }
+        return results;
+    }
+
+    /**
+     * 有修改时写出新一代段文件并删除本分区的旧段文件
+     * <p>
+     * 写入前清除修改标记，写入期间的并发修改会重新标记，留给下一次检查点。
+     * </p>
+     *
+     * @return 是否写出了段文件
+     */
+    synchronized boolean persist(long generation) throws IOException {
+        if (dropped || !dirty) {
+            return false;
+        }
+        dirty = false;
+        try {
+            trainIfNeeded(false);
+        } catch (RuntimeException e) {
+            // 训练失败不影响段文件
+            log.error("Failed to train {} index for vector partition {}", config.getSearchMode(), key, e);
+        }
+        HnswIndex snapshot;
+        QuantizedVectors codes;
+        IvfIndex lists;
+        int codedRows = 0;
+        byte[] metadataBytes;
+        lock.writeLock().lock();
+        try {
+            // 写锁下没有进行中的写入，codedRows 之前的行都已完成编码 / 分配
+            codes = quantized;
+            lists = ivf;
+            if (index != null) {
+                codedRows = index.nodeCount();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return false;
+            }
+            snapshot = index;
+            metadataBytes = objectMapper.writeValueAsBytes(metadata);
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Files.createDirectories(directory);
+            Path file = directory.resolve(String.format(SEGMENT_NAME, generation));
+            long bytes = VectorSegment.write(file, snapshot, metadataBytes);
+            if (codes != null) {
+                QuantizedVectors.write(directory.resolve(String.format(CODES_NAME, generation)), codes, codedRows);
+            }
+            if (lists != null) {
+                IvfIndex.write(directory.resolve(String.format(LISTS_NAME, generation)), lists, codedRows);
+            }
+            segmentGeneration = generation;
+            log.debug("Persisted partition {} ({} vectors, {} bytes) to {}", key, snapshot.size(), bytes, file);
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        }
+        deleteFilesBefore(SEGMENT_PATTERN, generation);
+        deleteFilesBefore(CODES_PATTERN, generation);
+        deleteFilesBefore(LISTS_PATTERN, generation);
+        return true;
+    }
+
+    /**
+     * 立即训练 (忽略向量数阈值，已训练的也重新训练)，用于批量导入后离线训练；searchMode 不是 PQ / IVF 时不做任何事
+     *
+     * @return 是否训练 (分区为空时不训练)
+     */
+    synchronized boolean train() {
+        if (dropped) {
+            return false;
+        }
+        // 训练最后要取写锁，不能全程持读锁；改为固定分区，训练期间不被空闲卸载
+        pins.incrementAndGet();
+        try {
+            ensureLoaded();
+            if (!trainIfNeeded(true)) {
+                return false;
+            }
+            dirty = true;
+            return true;
+        } finally {
+            pins.decrementAndGet();
+        }
+    }
+
+    /**
+     * PQ / IVF 模式下，向量数达到训练阈值且尚未训练 (或向量数已是训练时的两倍) 时训练并编码 / 分配全部行
+     * <p>
+     * 训练与编码不持锁；最后在写锁下补齐期间新增的行并替换。
+     * </p>
+     *
+     * @param force 忽略阈值
+     * @return 是否训练
+     */
+    private boolean trainIfNeeded(boolean force) {
+        VectorStoreProperties.SearchMode mode = config.getSearchMode();
+        if (mode != VectorStoreProperties.SearchMode.PQ && mode != VectorStoreProperties.SearchMode.IVF) {
+            return false;
+        }
+        HnswIndex current;
+        int trainedRows;
+        lock.readLock().lock();
+        try {
+            current = index;
+            trainedRows = quantized != null ? quantized.trainedRows() : ivf != null ? ivf.trainedRows() : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (current == null || current.size() == 0) {
+            return false;
+        }
+        if (!force) {
+            int minTrainRows = mode == VectorStoreProperties.SearchMode.PQ
+                    ? Math.max(config.getPq().getMinTrainRows(), ProductQuantizer.CENTROIDS)
+                    : config.getIvf().getMinTrainRows();
+            if (current.size() < minTrainRows || (trainedRows >= 0 && current.size() < trainedRows * 2)) {
+                return false;
+            }
+        }
+        return mode == VectorStoreProperties.SearchMode.PQ ? trainQuantizer(current) : trainLists(current);
+    }
+
+    private boolean trainQuantizer(HnswIndex current) {
+        VectorStoreProperties.PqConfig pq = config.getPq();
+        long start = System.currentTimeMillis();
+        float[][] samples = sample(current, pq.getTrainSampleRows());
+        ProductQuantizer quantizer = ProductQuantizer.train(samples, pq.getSubspaces(), pq.isRotation(), pq.getIterations(), key.hashCode());
+        QuantizedVectors codes = new QuantizedVectors(quantizer, current.size());
+        int encoded = current.nodeCount();
+        codes.encodeAll(current.vectors(), 0, encoded);
+        lock.writeLock().lock();
+        try {
+            if (index != current) {
+                return false;
+            }
+            codes.encodeAll(current.vectors(), encoded, current.nodeCount());
+            quantized = codes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Trained PQ codebook for vector partition {} ({} vectors, {} samples, {} bytes/vector{}) in {} ms",
+                key, current.size(), samples.length, quantizer.subspaces(), quantizer.isRotated() ? ", OPQ" : "",
+                System.currentTimeMillis() - start);
+        return true;
+    }
+
+    private boolean trainLists(HnswIndex current) {
+        VectorStoreProperties.IvfConfig ivfConfig = config.getIvf();
+        long start = System.currentTimeMillis();
+        float[][] samples = sample(current, ivfConfig.getTrainSampleRows());
+        // 每个簇至少约 40 个样本，中心才稳定
+        int nlist = Math.max(1, Math.min(ivfConfig.getNlist(), samples.length / 40));
+        IvfIndex lists = IvfIndex.train(samples, nlist, ivfConfig.getIterations(), key.hashCode(), current.size());
+        int assigned = current.nodeCount();
+        lists.addAll(current.vectors(), 0, assigned, node -> !current.isDeleted(node));
+        lock.writeLock().lock();
+        try {
+            if (index != current) {
+                return false;
+            }
+            lists.addAll(current.vectors(), assigned, current.nodeCount(), node -> !current.isDeleted(node));
+            ivf = lists;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Trained IVF index for vector partition {} ({} vectors, {} samples, {} lists) in {} ms",
+                key, current.size(), samples.length, lists.nlist(), System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * 均匀抽样有效向量
+     */
+    private static float[][] sample(HnswIndex index, int limit) {
+        int rows = index.nodeCount();
+        int live = index.size();
+        List<float[]> samples = new ArrayList<>(Math.min(live, limit));
+        Random random = new Random(rows);
+        for (int row = 0; row < rows && samples.size() < limit; row++) {
+            // 逐行以 剩余名额 / 剩余有效行 的概率入选
+            if (!index.isDeleted(row)) {
+                if (random.nextInt(live) < limit - samples.size()) {
+                    samples.add(index.vector(row));
+                }
+                live--;
+            }
+        }
+        return samples.toArray(new float[0][]);
+    }
+
+    /**
+     * 已持久化且空闲超过 idleMillis 时卸载 (释放堆外内存与映射，元数据交给 GC)
+     *
+     * @return 是否卸载
+     */
+    boolean unloadIfIdle(long idleMillis) {
+        if (dirty || segmentGeneration == 0 || System.currentTimeMillis() - lastAccess < idleMillis) {
+            return false;
+        }
+        if (!lock.writeLock().tryLock()) {
+            return false;
+        }
+        try {
+            if (index == null || dirty || pins.get() > 0) {
+                return false;
+            }
+            unloadedSize = index.size();
+            index = null;
+            metadataIndex = null;
+            metadata = null;
+            quantized = null;
+            ivf = null;
+            log.info("Unloaded idle vector partition {} ({} vectors)", key, unloadedSize);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除分区目录；目录中的文件仍被映射而无法删除时 (部分平台)，改名为 '~' 开头的待删除目录，下次启动时清理
+     * <p>
+     * 与 persist 互斥，避免检查点在删除后重新写出段文件。
+     * </p>
+     */
+    synchronized void deleteFiles() {
+        dropped = true;
+        lock.writeLock().lock();
+        try {
+            index = null;
+            metadataIndex = null;
+            metadata = null;
+            quantized = null;
+            ivf = null;
+            unloadedSize = 0;
+            dirty = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try {
+            deleteRecursively(directory);
+        } catch (IOException e) {
+            try {
+                Files.move(directory, directory.resolveSibling("~" + directory.getFileName() + "-" + System.nanoTime()));
+            } catch (IOException moveFailure) {
+                log.error("Failed to delete vector partition directory {}", directory, moveFailure);
+            }
+        }
+    }
+
+    static void deleteRecursively(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> children = Files.list(path)) {
+                for (Path child : children.toList()) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private void apply(String id, float[] vector, SceneMetadata meta) {
+        SceneMetadata previous = metadata.get(id);
+        int previousRow = index.row(id);
+        int row = index.add(id, vector);
+        if (quantized != null) {
+            quantized.set(row, vector);
+        }
+        if (ivf != null) {
+            ivf.add(row, vector);
+        }
+        SceneMetadata effective = meta != null ? meta : previous;
+        if (meta != null) {
+            metadata.put(id, meta);
+        }
+        metadataIndex.add(row, effective);
+        if (previousRow >= 0) {
+            metadataIndex.remove(previousRow, previous);
+        }
+    }
+
+    /**
+     * 获取读锁，未加载时先加载
+     */
+    private void acquireRead() {
+        while (true) {
+            lock.readLock().lock();
+            if (index != null) {
+                lastAccess = System.currentTimeMillis();
+                return;
+            }
+            lock.readLock().unlock();
+            load();
+        }
+    }
+
+    /**
+     * 未加载时加载 (不持有锁返回)；调用方需先固定分区 ({@link #pins})，否则返回后随时可能被卸载
+     */
+    private void ensureLoaded() {
+        acquireRead();
+        lock.readLock().unlock();
+    }
+
+    private void load() {
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                return;
+            }
+            VectorStoreProperties.HnswConfig hnsw = config.getHnsw();
+            Path segment = latestSegment();
+            if (segment == null) {
+                index = new HnswIndex(hnsw.getM(), hnsw.getEfConstruction(), isGraphEnabled());
+                metadata = new ConcurrentHashMap<>();
+            } else {
+                VectorSegment.Loaded loaded = VectorSegment.read(segment, hnsw.getM(), hnsw.getEfConstruction(), isGraphEnabled());
+                metadata = new ConcurrentHashMap<>(loaded.metadata().length == 0
+                        ? Map.of()
+                        : objectMapper.readValue(loaded.metadata(), new TypeReference<Map<String, SceneMetadata>>() {}));
+                index = loaded.index();
+                loadCodes(generationOf(segment));
+                loadLists(generationOf(segment));
+                log.info("Loaded vector partition {} ({} vectors{}{}) from {}", key, index.size(),
+                        quantized != null ? ", PQ " + quantized.quantizer().subspaces() + " bytes/vector" : "",
+                        ivf != null ? ", IVF " + ivf.nlist() + " lists" : "", segment);
+            }
+            metadataIndex = MetadataIndex.build(index, metadata);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load vector partition " + key + " from " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * PQ 模式下读取与段文件同代的编码，并补齐段文件中编码之后的行；没有编码但向量数已达训练阈值时标记修改，留给下一次检查点训练
+     */
+    private void loadCodes(long generation) throws IOException {
+        if (config.getSearchMode() != VectorStoreProperties.SearchMode.PQ) {
+            return;
+        }
+        Path file = directory.resolve(String.format(CODES_NAME, generation));
+        if (Files.exists(file)) {
+            QuantizedVectors.Loaded loaded = QuantizedVectors.read(file);
+            if (loaded.vectors().quantizer().dimension() == index.getDimension()) {
+                loaded.vectors().encodeAll(index.vectors(), loaded.rows(), index.nodeCount());
+                quantized = loaded.vectors();
+                return;
+            }
+        }
+        if (index.size() >= config.getPq().getMinTrainRows()) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * IVF 模式下读取与段文件同代的倒排表，并分配段文件中之后的行；没有倒排表但向量数已达训练阈值时标记修改，留给下一次检查点训练
+     */
+    private void loadLists(long generation) throws IOException {
+        if (config.getSearchMode() != VectorStoreProperties.SearchMode.IVF) {
+            return;
+        }
+        Path file = directory.resolve(String.format(LISTS_NAME, generation));
+        if (Files.exists(file)) {
+            IvfIndex.Loaded loaded = IvfIndex.read(file);
+            if (loaded.index().dimension() == index.getDimension()) {
+                HnswIndex current = index;
+                loaded.index().addAll(current.vectors(), loaded.rows(), current.nodeCount(), node -> !current.isDeleted(node));
+                ivf = loaded.index();
+                return;
+            }
+        }
+        if (index.size() >= config.getIvf().getMinTrainRows()) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * 墓碑节点多于有效节点时重建索引，回收内存并恢复检索效率
+     */
+    void rebuildIfNeeded() {
+        lock.writeLock().lock();
+        try {
+            HnswIndex old = index;
+            if (old == null || old.deletedCount() <= old.size()) {
+                return;
+            }
+            List<String> ids = new ArrayList<>(old.size());
+            List<float[]> vectors = new ArrayList<>(old.size());
+            for (int node = 0; node < old.nodeCount(); node++) {
+                if (!old.isDeleted(node)) {
+                    ids.add(old.key(node));
+                    vectors.add(old.vector(node));
+                }
+            }
+            VectorStoreProperties.HnswConfig hnsw = config.getHnsw();
+            HnswIndex rebuilt = new HnswIndex(hnsw.getM(), hnsw.getEfConstruction(), isGraphEnabled());
+            IntStream.range(0, ids.size()).parallel().forEach(i -> rebuilt.add(ids.get(i), vectors.get(i)));
+            index = rebuilt;
+            metadataIndex = MetadataIndex.build(rebuilt, metadata);
+            if (quantized != null) {
+                QuantizedVectors codes = new QuantizedVectors(quantized.quantizer(), quantized.trainedRows());
+                codes.encodeAll(rebuilt.vectors(), 0, rebuilt.nodeCount());
+                quantized = codes;
+            }
+            if (ivf != null) {
+                IvfIndex lists = ivf.emptyCopy();
+                lists.addAll(rebuilt.vectors(), 0, rebuilt.nodeCount(), null);
+                ivf = lists;
+            }
+            dirty = true;
+            log.info("Rebuilt vector partition {}: {} live vectors, {} tombstones dropped", key, rebuilt.size(), old.deletedCount());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isGraphEnabled() {
+        return config.getSearchMode() == VectorStoreProperties.SearchMode.AUTO;
+    }
+
+    private Path latestSegment() throws IOException {
+        return listSegments().stream().max(Comparator.comparingLong(VectorPartition::generationOf)).orElse(null);
+    }
+
+    private void deleteFilesBefore(Pattern pattern, long generation) {
+        try {
+            for (Path file : listFiles(pattern)) {
+                if (generationOf(pattern, file) < generation) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        log.debug("Old vector partition file {} not deleted yet: {}", file, e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up old vector partition files in {}", directory, e);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        return listFiles(SEGMENT_PATTERN);
+    }
+
+    private List<Path> listFiles(Pattern pattern) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> pattern.matcher(f.getFileName().toString()).matches()).toList();
+        }
+    }
+
+    static long generationOf(Path segment) {
+        return generationOf(SEGMENT_PATTERN, segment);
+    }
+
+    private static long generationOf(Pattern pattern, Path file) {
+        Matcher matcher = pattern.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private static Map<String, Object> recordMetadata(SceneMetadata meta) {
+        Map<String, Object> metaMap = new HashMap<>();
+        if (meta != null) {
+            if (meta.getNovel() != null) metaMap.put("novel", meta.getNovel());
+            if (meta.getVersion() != null) metaMap.put("version", meta.getVersion());
+            if (meta.getChapterIndex() != null) metaMap.put(MetadataIndex.CHAPTER_INDEX, meta.getChapterIndex());
+        }
+        return metaMap;
+    }
+}
@@ -0,0 +1,213 @@
+package com.novel.splitter.embedding.store.index;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+/**
+ * 精确 (暴力) Top-K 扫描
+ * <p>
+ * 行数超过 partitionRows 时按行区间二分拆成 ForkJoin 任务并行扫描：每个叶子任务持有自己的
+ * (float 分数, int 行号) 最小堆，合并时把较小的堆并入较大的堆，全程无装箱、无共享可变状态。
+ * 结果与串行扫描完全一致。
+ * </p>
+ * <p>
+ * 过滤条件已编译为行集合时只扫描集合中的行：连续的行仍按块批量计算，零散的行逐行计算。
+ * </p>
+ * <p>
+ * 多条查询 ({@link #searchBatch}) 共用一次扫描，每块向量与全部查询计算分数，每条查询各自维护堆。
+ * </p>
+ */
+public final class ExactScanner {
+
+    private static final int BLOCK_ROWS = 1024;
+
+    private final ForkJoinPool pool;
+    private final int partitionRows;
+
+    /**
+     * @param pool          扫描使用的线程池
+     * @param partitionRows 每个叶子任务扫描的最大行数
+     */
+    public ExactScanner(ForkJoinPool pool, int partitionRows) {
+        this.pool = pool;
+        this.partitionRows = Math.max(BLOCK_ROWS, partitionRows);
+    }
+
+    /**
+     * 扫描 [0, rows) 行
+     *
+     * @param accept    行过滤条件 (包括跳过已删除的行)，null 表示全部接受
+     * @param outRows   结果行号 (按分数降序)
+     * @param outScores 结果分数
+     * @return 结果条数
+     */
+    public int search(VectorArena arena, int rows, float[] query, int topK, IntPredicate accept, int[] outRows, float[] outScores) {
+        return searchBatch(arena, rows, new float[][]{query}, topK, accept, new int[][]{outRows}, new float[][]{outScores})[0];
+    }
+
+    /**
+     * 只扫描给定的行
+     *
+     * @param rows 升序行号
+     */
+    public int search(VectorArena arena, int[] rows, float[] query, int topK, IntPredicate accept, int[] outRows, float[] outScores) {
+        return searchBatch(arena, rows, new float[][]{query}, topK, accept, new int[][]{outRows}, new float[][]{outScores})[0];
+    }
+
+    /**
+     * 多条查询一次扫描 [0, rows) 行：每块向量只读取一次，与全部查询计算分数，每条查询各自保留前 topK
+     *
+     * @param outRows   outRows[q] 为第 q 条查询的结果行号 (按分数降序)
+     * @param outScores outScores[q] 为第 q 条查询的结果分数
+     * @return 每条查询的结果条数
+     */
+    public int[] searchBatch(VectorArena arena, int rows, float[][] queries, int topK, IntPredicate accept,
+                             int[][] outRows, float[][] outScores) {
+        if (topK <= 0 || rows <= 0 || queries.length == 0) {
+            return new int[queries.length];
+        }
+        ScoredHeap[] heaps = rows <= partitionRows || pool.getParallelism() <= 1
+                ? scan(arena, 0, rows, queries, topK, accept)
+                : pool.invoke(new ScanTask(arena, null, 0, rows, queries, topK, accept));
+        return drain(heaps, outRows, outScores);
+    }
+
+    /**
+     * 多条查询一次扫描给定的行
+     *
+     * @param rows 升序行号
+     */
+    public int[] searchBatch(VectorArena arena, int[] rows, float[][] queries, int topK, IntPredicate accept,
+                             int[][] outRows, float[][] outScores) {
+        if (topK <= 0 || rows.length == 0 || queries.length == 0) {
+            return new int[queries.length];
+        }
+        ScoredHeap[] heaps = rows.length <= partitionRows || pool.getParallelism() <= 1
+                ? scanRows(arena, rows, 0, rows.length, queries, topK, accept)
+                : pool.invoke(new ScanTask(arena, rows, 0, rows.length, queries, topK, accept));
+        return drain(heaps, outRows, outScores);
+    }
+
+    private static int[] drain(ScoredHeap[] heaps, int[][] outRows, float[][] outScores) {
+        int[] found = new int[heaps.length];
+        for (int q = 0; q < heaps.length; q++) {
+            found[q] = heaps[q].drainDescending(outRows[q], outScores[q]);
+        }
+        return found;
+    }
+
+    private static ScoredHeap[] newHeaps(int queries, int topK) {
+        ScoredHeap[] heaps = new ScoredHeap[queries];
+        for (int q = 0; q < queries; q++) {
+            heaps[q] = ScoredHeap.minHeap(topK + 1);
+        }
+        return heaps;
+    }
+
+    private static ScoredHeap[] scan(VectorArena arena, int from, int to, float[][] queries, int topK, IntPredicate accept) {
+        ScoredHeap[] heaps = newHeaps(queries.length, topK);
+        float[][] blockScores = new float[queries.length][Math.min(BLOCK_ROWS, to - from)];
+        for (int blockFrom = from; blockFrom < to; blockFrom += BLOCK_ROWS) {
+            int blockTo = Math.min(blockFrom + BLOCK_ROWS, to);
+            arena.dotRange(queries, blockFrom, blockTo, blockScores);
+            for (int row = blockFrom; row < blockTo; row++) {
+                if (accept == null || accept.test(row)) {
+                    for (int q = 0; q < queries.length; q++) {
+                        heaps[q].offer(blockScores[q][row - blockFrom], row, topK);
+                    }
+                }
+            }
+        }
+        return heaps;
+    }
+
+    /**
+     * 扫描 rows[from, to) 中的行
+     */
+    private static ScoredHeap[] scanRows(VectorArena arena, int[] rows, int from, int to, float[][] queries, int topK,
+                                         IntPredicate accept) {
+        ScoredHeap[] heaps = newHeaps(queries.length, topK);
+        float[][] blockScores = new float[queries.length][BLOCK_ROWS];
+        float[] rowScores = new float[queries.length];
+        int i = from;
+        while (i < to) {
+            int first = rows[i];
+            int run = 1;
+            while (i + run < to && run < BLOCK_ROWS && rows[i + run] == first + run) {
+                run++;
+            }
+            if (run == 1) {
+                if (accept == null || accept.test(first)) {
+                    arena.dot(queries, first, rowScores);
+                    for (int q = 0; q < queries.length; q++) {
+                        heaps[q].offer(rowScores[q], first, topK);
+                    }
+                }
+            } else {
+                arena.dotRange(queries, first, first + run, blockScores);
+                for (int k = 0; k < run; k++) {
+                    if (accept == null || accept.test(first + k)) {
+                        for (int q = 0; q < queries.length; q++) {
+                            heaps[q].offer(blockScores[q][k], first + k, topK);
+                        }
+                    }
+                }
+            }
+            i += run;
+        }
+        return heaps;
+    }
+
+    /**
+     * rows 为 null 时扫描行区间 [from, to)，否则扫描 rows[from, to) 中的行
+     */
+    private final class ScanTask extends RecursiveTask<ScoredHeap[]> {
+        private final VectorArena arena;
+        private final int[] rows;
+        private final int from;
+        private final int to;
+        private final float[][] queries;
+        private final int topK;
+        private final IntPredicate accept;
+
+        ScanTask(VectorArena arena, int[] rows, int from, int to, float[][] queries, int topK, IntPredicate accept) {
+            this.arena = arena;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.queries = queries;
+            this.topK = topK;
+            this.accept = accept;
+        }
+
+        @Override
+        protected ScoredHeap[] compute() {
+            if (to - from <= partitionRows) {
+                return rows == null
+                        ? scan(arena, from, to, queries, topK, accept)
+                        : scanRows(arena, rows, from, to, queries, topK, accept);
+            }
+            // 拆分点按块对齐，避免叶子任务拷贝不完整的块
+            int mid = from + ((to - from) / 2 / BLOCK_ROWS) * BLOCK_ROWS;
+            if (mid == from) {
+                mid = from + (to - from) / 2;
+            }
+            ScanTask left = new ScanTask(arena, rows, from, mid, queries, topK, accept);
+            left.fork();
+            ScoredHeap[] right = new ScanTask(arena, rows, mid, to, queries, topK, accept).compute();
+            ScoredHeap[] merged = left.join();
+            for (int q = 0; q < merged.length; q++) {
+                ScoredHeap larger = merged[q];
+                ScoredHeap smaller = right[q];
+                if (larger.size() < smaller.size()) {
+                    larger = right[q];
+                    smaller = merged[q];
+                }
+                larger.offerAll(smaller, topK);
+                merged[q] = larger;
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,576 @@
+package com.novel.splitter.embedding.store.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW (Hierarchical Navigable Small World) 近似最近邻索引
+ * <p>
+ * 相似度为归一化向量的点积 (即余弦相似度)，分数越大越相似。
+ * 参数含义与论文一致：m 为每层邻居上限 (第 0 层为 2m)，efConstruction / efSearch 为构建与检索时的候选集大小。
+ * </p>
+ * <p>
+ * 并发：插入可多线程并行，检索无锁。每个节点每层的邻居表为写时复制的 int[]，
+ * 更新时持有该节点的锁并整体替换，读线程总能看到一份完整的邻居表。
+ * 删除采用墓碑标记：被删除的节点仍参与图遍历，但不会出现在结果中。
+ * </p>
+ * <p>
+ * 向量存放在堆外矩阵 {@link VectorArena} 中，节点编号即矩阵行号，ID 与行号的映射由 {@link RowDictionary} 维护；
+ * 堆上每个节点只保留邻居表与删除标记。
+ * </p>
+ */
+public class HnswIndex {
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final boolean graphEnabled;
+    private volatile VectorArena arena;
+
+    private final Object growLock = new Object();
+    private volatile Node[] nodes = new Node[1024];
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final RowDictionary dictionary = new RowDictionary();
+
+    private final Object entryLock = new Object();
+    private volatile int entryPoint = -1;
+    private volatile int maxLevel = -1;
+
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    private static final class Node {
+        final AtomicReferenceArray<int[]> neighbors;
+        volatile boolean deleted;
+
+        Node(int level) {
+            this.neighbors = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                neighbors.set(l, new int[0]);
+            }
+        }
+
+        Node(int[][] levels) {
+            this.neighbors = new AtomicReferenceArray<>(levels);
+        }
+
+        int level() {
+            return neighbors.length() - 1;
+        }
+    }
+
+    public HnswIndex(int m, int efConstruction) {
+        this(m, efConstruction, true);
+    }
+
+    /**
+     * @param graphEnabled 为 false 时只保存向量不建图 (仅做精确扫描)，{@link #search} 始终返回 0 条
+     */
+    public HnswIndex(int m, int efConstruction, boolean graphEnabled) {
+        this.graphEnabled = graphEnabled;
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMultiplier = 1.0 / Math.log(this.m);
+    }
+
+    /**
+     * 从持久化数据恢复索引 (见 {@link VectorSegment})
+     *
+     * @param arena      向量矩阵，行数不少于 rows
+     * @param ids        各行的场景 ID
+     * @param live       有效行
+     * @param neighbors  按行号顺序依次调用，返回该行各层的邻居表；graphEnabled 为 false 时不调用
+     * @param entryPoint 图的入口节点，没有时为 -1
+     * @param maxLevel   图的最高层
+     */
+    public static HnswIndex restore(int m, int efConstruction, boolean graphEnabled, VectorArena arena, int rows,
+                                    String[] ids, BitSet live, IntFunction<int[][]> neighbors,
+                                    int entryPoint, int maxLevel) {
+        HnswIndex index = new HnswIndex(m, efConstruction, graphEnabled);
+        index.arena = arena;
+        Node[] nodes = new Node[Math.max(1024, Integer.highestOneBit(Math.max(1, rows - 1)) << 1)];
+        for (int row = 0; row < rows; row++) {
+            Node node = graphEnabled ? new Node(neighbors.apply(row)) : new Node(0);
+            node.deleted = !live.get(row);
+            nodes[row] = node;
+            index.dictionary.assign(row, ids[row]);
+            if (live.get(row)) {
+                index.dictionary.activate(ids[row], row);
+            }
+        }
+        index.nodes = nodes;
+        index.nodeCount.set(rows);
+        if (graphEnabled) {
+            index.entryPoint = entryPoint;
+            index.maxLevel = maxLevel;
+        }
+        return index;
+    }
+
+    /**
+     * 插入向量 (调用方负责归一化)，已存在的 key 会被替换
+     *
+     * @return 新节点编号
+     */
+    public int add(String key, float[] vector) {
+        VectorArena vectors = arenaFor(vector);
+        int level = graphEnabled ? randomLevel() : 0;
+        int id = allocate(key, vector, new Node(level));
+        if (!graphEnabled) {
+            publish(key, id);
+            return id;
+        }
+
+        int currentEntry;
+        int currentMaxLevel;
+        synchronized (entryLock) {
+            currentEntry = entryPoint;
+            currentMaxLevel = maxLevel;
+            if (currentEntry < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                publish(key, id);
+                return id;
+            }
+        }
+
+        // 1. 高层贪心下降，找到插入层的入口
+        int nearest = currentEntry;
+        float nearestScore = vectors.dot(vector, nearest);
+        for (int l = currentMaxLevel; l > level; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int neighbor : node(nearest).neighbors.get(l)) {
+                    float score = vectors.dot(vector, neighbor);
+                    if (score > nearestScore) {
+                        nearestScore = score;
+                        nearest = neighbor;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        // 2. 逐层搜索候选并建立双向连接
+        int[] entries = {nearest};
+        for (int l = Math.min(level, currentMaxLevel); l >= 0; l--) {
+            ScoredHeap results = searchLayer(vector, entries, efConstruction, l, null, false);
+            int count = results.size();
+            int[] candidateIds = new int[count];
+            float[] candidateScores = new float[count];
+            results.drainDescending(candidateIds, candidateScores);
+
+            int[] selected = selectNeighbors(candidateIds, candidateScores, count, l == 0 ? maxM0 : m);
+            node(id).neighbors.set(l, selected);
+            for (int neighbor : selected) {
+                link(neighbor, id, l);
+            }
+            entries = candidateIds;
+        }
+
+        if (level > currentMaxLevel) {
+            synchronized (entryLock) {
+                if (level > maxLevel) {
+                    maxLevel = level;
+                    entryPoint = id;
+                }
+            }
+        }
+        publish(key, id);
+        return id;
+    }
+
+    /**
+     * 删除 key 对应的节点 (墓碑标记)
+     *
+     * @return 是否存在
+     */
+    public boolean remove(String key) {
+        int id = dictionary.remove(key);
+        if (id < 0) {
+            return false;
+        }
+        node(id).deleted = true;
+        return true;
+    }
+
+    /**
+     * 检索最相似的 k 个节点
+     *
+     * @param ef        候选集大小 (不小于 k)
+     * @param accept    节点过滤条件，null 表示不过滤
+     * @param outIds    结果节点编号 (按分数降序)
+     * @param outScores 结果分数
+     * @return 结果条数
+     */
+    public int search(float[] query, int k, int ef, IntPredicate accept, int[] outIds, float[] outScores) {
+        int entry = entryPoint;
+        if (entry < 0 || k <= 0) {
+            return 0;
+        }
+        VectorArena vectors = arena;
+        checkDimension(vectors, query);
+
+        int nearest = entry;
+        float nearestScore = vectors.dot(query, nearest);
+        for (int l = maxLevel; l > 0; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                Node current = node(nearest);
+                if (current.level() < l) {
+                    break;
+                }
+                for (int neighbor : current.neighbors.get(l)) {
+                    float score = vectors.dot(query, neighbor);
+                    if (score > nearestScore) {
+                        nearestScore = score;
+                        nearest = neighbor;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        ScoredHeap results = searchLayer(query, new int[]{nearest}, Math.max(ef, k), 0, accept, true);
+        while (results.size() > k) {
+            results.pop();
+        }
+        return results.drainDescending(outIds, outScores);
+    }
+
+    /**
+     * 在指定层做 beam search
+     *
+     * @param liveOnly 为 true 时结果中排除已删除及不满足 accept 的节点 (它们仍用于遍历)
+     * @return 最小堆形式的结果集 (堆顶为最差结果)
+     */
+    private ScoredHeap searchLayer(float[] query, int[] entries, int ef, int level, IntPredicate accept, boolean liveOnly) {
+        VectorArena vectors = arena;
+        VisitedSet visited = visitedSets.get();
+        visited.reset(nodeCount.get());
+        ScoredHeap candidates = ScoredHeap.maxHeap(ef * 2);
+        ScoredHeap results = ScoredHeap.minHeap(ef + 1);
+
+        for (int entry : entries) {
+            if (!visited.visit(entry)) {
+                continue;
+            }
+            float score = vectors.dot(query, entry);
+            candidates.push(score, entry);
+            if (!liveOnly || isAcceptable(entry, accept)) {
+                results.push(score, entry);
+                if (results.size() > ef) {
+                    results.pop();
+                }
+            }
+        }
+
+        while (!candidates.isEmpty()) {
+            float candidateScore = candidates.topScore();
+            if (results.size() >= ef && candidateScore < results.topScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            Node current = node(candidate);
+            if (current.level() < level) {
+                continue;
+            }
+            for (int neighbor : current.neighbors.get(level)) {
+                if (!visited.visit(neighbor)) {
+                    continue;
+                }
+                float score = vectors.dot(query, neighbor);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(score, neighbor);
+                    if (!liveOnly || isAcceptable(neighbor, accept)) {
+                        results.push(score, neighbor);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private boolean isAcceptable(int id, IntPredicate accept) {
+        return !node(id).deleted && (accept == null || accept.test(id));
+    }
+
+    /**
+     * 启发式邻居选择：候选按相似度降序遍历，只保留与已选邻居相比更接近目标的候选，
+     * 使邻居分布在不同方向上，提升图的连通性
+     */
+    private int[] selectNeighbors(int[] candidateIds, float[] candidateScores, int count, int limit) {
+        VectorArena vectors = arena;
+        int[] selected = new int[Math.min(count, limit)];
+        int selectedCount = 0;
+        for (int i = 0; i < count && selectedCount < limit; i++) {
+            boolean diverse = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (vectors.dot(candidateIds[i], selected[j]) > candidateScores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[selectedCount++] = candidateIds[i];
+            }
+        }
+        return selectedCount == selected.length ? selected : Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * 将 target 加入 source 的邻居表，超出上限时重新做启发式选择
+     */
+    private void link(int source, int target, int level) {
+        Node node = node(source);
+        int limit = level == 0 ? maxM0 : m;
+        synchronized (node) {
+            int[] current = node.neighbors.get(level);
+            for (int existing : current) {
+                if (existing == target) {
+                    return;
+                }
+            }
+            if (current.length < limit) {
+                int[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = target;
+                node.neighbors.set(level, updated);
+                return;
+            }
+
+            int count = current.length + 1;
+            ScoredHeap heap = ScoredHeap.maxHeap(count);
+            VectorArena vectors = arena;
+            for (int existing : current) {
+                heap.push(vectors.dot(source, existing), existing);
+            }
+            heap.push(vectors.dot(source, target), target);
+            int[] ids = new int[count];
+            float[] scores = new float[count];
+            heap.drainDescending(ids, scores);
+            node.neighbors.set(level, selectNeighbors(ids, scores, count, limit));
+        }
+    }
+
+    private int allocate(String key, float[] vector, Node node) {
+        synchronized (growLock) {
+            int id = nodeCount.get();
+            // 行数据先于节点发布写入，读线程经由 nodes / 邻居表看到节点时行数据已可见
+            arena.write(id, vector);
+            dictionary.assign(id, key);
+            Node[] current = nodes;
+            if (id == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[id] = node;
+            nodes = current;
+            nodeCount.incrementAndGet();
+            return id;
+        }
+    }
+
+    private void publish(String key, int id) {
+        int previous = dictionary.activate(key, id);
+        if (previous >= 0) {
+            node(previous).deleted = true;
+        }
+    }
+
+    private Node node(int id) {
+        return nodes[id];
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(r) * levelMultiplier);
+    }
+
+    /**
+     * 首次写入时按向量维度创建矩阵，之后校验维度
+     */
+    private VectorArena arenaFor(float[] vector) {
+        VectorArena vectors = arena;
+        if (vectors == null) {
+            synchronized (entryLock) {
+                if (arena == null) {
+                    arena = new VectorArena(vector.length);
+                }
+                vectors = arena;
+            }
+        }
+        checkDimension(vectors, vector);
+        return vectors;
+    }
+
+    private static void checkDimension(VectorArena vectors, float[] vector) {
+        if (vector.length != vectors.dimension()) {
+            throw new IllegalArgumentException("Vector dimensions mismatch: " + vector.length + " vs " + vectors.dimension());
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // 供暴力检索和持久化使用的访问方法
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * 已分配的节点数 (含已删除节点)，节点编号范围为 [0, nodeCount)
+     */
+    public int nodeCount() {
+        return nodeCount.get();
+    }
+
+    /**
+     * 有效 (未删除) 节点数
+     */
+    public int size() {
+        return dictionary.size();
+    }
+
+    public int deletedCount() {
+        return nodeCount() - size();
+    }
+
+    public boolean isDeleted(int id) {
+        return node(id).deleted;
+    }
+
+    public String key(int id) {
+        return dictionary.id(id);
+    }
+
+    /**
+     * 节点向量的副本
+     */
+    public float[] vector(int id) {
+        return arena.copyOf(id);
+    }
+
+    /**
+     * 查询向量与节点的点积
+     */
+    public float score(float[] query, int id) {
+        return arena.dot(query, id);
+    }
+
+    /**
+     * 批量计算 [fromId, toId) 各节点 (含已删除节点) 与查询向量的点积，用于精确扫描
+     */
+    public void scores(float[] query, int fromId, int toId, float[] out) {
+        VectorArena vectors = arena;
+        checkDimension(vectors, query);
+        vectors.dotRange(query, fromId, toId, out);
+    }
+
+    /**
+     * 节点是否为其 ID 当前的有效行 (插入尚未完成的节点返回 false)
+     */
+    public boolean isLive(int id) {
+        return !node(id).deleted && dictionary.row(dictionary.id(id)) == id;
+    }
+
+    public boolean isGraphEnabled() {
+        return graphEnabled;
+    }
+
+    /**
+     * 节点的最高层号
+     */
+    public int level(int id) {
+        return node(id).level();
+    }
+
+    /**
+     * 节点在指定层的邻居表 (只读)
+     */
+    public int[] neighbors(int id, int level) {
+        return node(id).neighbors.get(level);
+    }
+
+    public int entryPoint() {
+        return entryPoint;
+    }
+
+    public int maxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * 向量矩阵 (行号即节点编号)，尚无数据时返回 null
+     */
+    public VectorArena vectors() {
+        return arena;
+    }
+
+    public boolean contains(String key) {
+        return dictionary.row(key) >= 0;
+    }
+
+    /**
+     * key 当前的有效节点编号，不存在时返回 -1
+     */
+    public int row(String key) {
+        return dictionary.row(key);
+    }
+
+    /**
+     * 向量维度，尚无数据时返回 -1
+     */
+    public int getDimension() {
+        VectorArena vectors = arena;
+        return vectors == null ? -1 : vectors.dimension();
+    }
+
+    /**
+     * 向量矩阵占用的直接内存 (字节)
+     */
+    public long offHeapBytes() {
+        VectorArena vectors = arena;
+        return vectors == null ? 0 : vectors.offHeapBytes();
+    }
+
+    /**
+     * 线程内复用的访问标记：以递增的代数代替清零
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[1024];
+        private int generation;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return 首次访问返回 true
+         */
+        boolean visit(int id) {
+            if (id >= marks.length) {
+                // 检索期间有新节点插入
+                marks = Arrays.copyOf(marks, Math.max(id + 1, marks.length * 2));
+            }
+            if (marks[id] == generation) {
+                return false;
+            }
+            marks[id] = generation;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.novel.splitter.embedding.store.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 倒排文件 (IVF) 索引
+ * <p>
+ * 用球面 k-means 把向量聚成 nlist 个簇 (中心归一化，按点积分配)，每个簇一个倒排表记录所属的行号。
+ * 检索时只扫描与查询最接近的 nprobe 个簇，行向量取自完整向量矩阵 (通常是内存映射的段文件)，分数即精确点积。
+ * 训练后新增的行直接分配到最近的簇，不需要重建；向量分布明显变化时重新训练。
+ * </p>
+ * <p>
+ * 倒排表只追加，已删除或被覆盖的行由调用方在检索时通过 accept 跳过，重建索引时随行号一起回收。
+ * </p>
+ * <p>
+ * 文件格式 (小端)：magic | version | rows | trainedRows | dimension | nlist | 中心 (nlist * dimension) | 各簇 (size | 行号 * size)
+ * </p>
+ */
+public final class IvfIndex {
+
+    private static final int MAGIC = 0x5649534E; // "NSIV"
+    private static final int FORMAT_VERSION = 1;
+
+    private final int dimension;
+    private final float[][] centroids;
+    private final PostingList[] lists;
+    private final int trainedRows;
+
+    private IvfIndex(float[][] centroids, int trainedRows) {
+        this.dimension = centroids[0].length;
+        this.centroids = centroids;
+        this.trainedRows = trainedRows;
+        this.lists = new PostingList[centroids.length];
+        for (int c = 0; c < lists.length; c++) {
+            lists[c] = new PostingList();
+        }
+    }
+
+    /**
+     * 训练簇中心 (倒排表为空，由调用方分配行)
+     *
+     * @param samples     已归一化的训练样本 (建议每个簇不少于 40 条)
+     * @param nlist       簇数 (不超过样本数)
+     * @param iterations  k-means 迭代次数
+     * @param trainedRows 训练时的有效向量数 (用于判断是否需要重新训练)
+     */
+    public static IvfIndex train(float[][] samples, int nlist, int iterations, long seed, int trainedRows) {
+        if (samples.length == 0) {
+            throw new IllegalArgumentException("No training samples");
+        }
+        int n = samples.length;
+        int k = Math.max(1, Math.min(nlist, n));
+        int dimension = samples[0].length;
+        Random random = new Random(seed);
+
+        // 初始中心取互不相同的样本
+        float[][] centers = new float[k][];
+        int[] order = IntStream.range(0, n).toArray();
+        for (int c = 0; c < k; c++) {
+            int pick = c + random.nextInt(n - c);
+            int swap = order[c];
+            order[c] = order[pick];
+            order[pick] = swap;
+            centers[c] = samples[order[c]].clone();
+        }
+
+        int[] assignment = new int[n];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            float[][] current = centers;
+            IntStream.range(0, n).parallel().forEach(i -> assignment[i] = nearest(current, samples[i]));
+            float[][] sums = new float[k][dimension];
+            int[] counts = new int[k];
+            for (int i = 0; i < n; i++) {
+                float[] sum = sums[assignment[i]];
+                float[] sample = samples[i];
+                for (int d = 0; d < dimension; d++) {
+                    sum[d] += sample[d];
+                }
+                counts[assignment[i]]++;
+            }
+            float[][] next = new float[k][];
+            for (int c = 0; c < k; c++) {
+                // 空簇重新取一个随机样本作为中心
+                next[c] = counts[c] == 0 ? samples[random.nextInt(n)].clone() : VectorMath.normalizedCopy(sums[c]);
+            }
+            centers = next;
+        }
+        return new IvfIndex(centers, trainedRows);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int nlist() {
+        return centroids.length;
+    }
+
+    public int trainedRows() {
+        return trainedRows;
+    }
+
+    /**
+     * 把第 row 行 (已归一化) 分配到最近的簇
+     */
+    public void add(int row, float[] vector) {
+        lists[nearest(centroids, vector)].add(row);
+    }
+
+    /**
+     * 分配完整向量矩阵中的 [fromRow, toRow) 行
+     *
+     * @param accept 只分配满足条件的行 (通常跳过已删除的行)，null 表示全部分配
+     */
+    public void addAll(VectorArena arena, int fromRow, int toRow, IntPredicate accept) {
+        int[] assignment = new int[Math.max(0, toRow - fromRow)];
+        IntStream.range(fromRow, toRow).parallel().forEach(row -> assignment[row - fromRow] =
+                accept == null || accept.test(row) ? nearest(centroids, arena.copyOf(row)) : -1);
+        for (int row = fromRow; row < toRow; row++) {
+            int c = assignment[row - fromRow];
+            if (c >= 0) {
+                lists[c].add(row);
+            }
+        }
+    }
+
+    /**
+     * 检索最接近的 nprobe 个簇
+     *
+     * @param nprobe 扫描的簇数，越大召回越高
+     * @param accept 行过滤条件 (包括跳过已删除的行)，null 表示全部接受
+     * @return 结果条数 (探查的簇中满足条件的行不足 topK 时少于 topK)
+     */
+    public int search(VectorArena arena, float[] query, int topK, int nprobe, IntPredicate accept,
+                      int[] outRows, float[] outScores) {
+        if (topK <= 0) {
+            return 0;
+        }
+        int probes = Math.max(1, Math.min(nprobe, centroids.length));
+        ScoredHeap nearestLists = ScoredHeap.minHeap(probes + 1);
+        for (int c = 0; c < centroids.length; c++) {
+            nearestLists.offer(VectorMath.dot(query, centroids[c]), c, probes);
+        }
+        ScoredHeap results = ScoredHeap.minHeap(topK + 1);
+        while (!nearestLists.isEmpty()) {
+            PostingList list = lists[nearestLists.pop()];
+            int[] rows;
+            int size;
+            synchronized (list) {
+                rows = list.rows;
+                size = list.size;
+            }
+            for (int i = 0; i < size; i++) {
+                int row = rows[i];
+                if (accept == null || accept.test(row)) {
+                    results.offer(arena.dot(query, row), row, topK);
+                }
+            }
+        }
+        return results.drainDescending(outRows, outScores);
+    }
+
+    /**
+     * 用同一组中心创建空索引 (重建索引后重新分配行号时使用)
+     */
+    public IvfIndex emptyCopy() {
+        return new IvfIndex(centroids, trainedRows);
+    }
+
+    /**
+     * 原子写入行号小于 rows 的分配结果
+     */
+    public static void write(Path file, IvfIndex index, int rows) throws IOException {
+        int nlist = index.centroids.length;
+        int[][] snapshot = new int[nlist][];
+        long listBytes = 0;
+        for (int c = 0; c < nlist; c++) {
+            PostingList list = index.lists[c];
+            synchronized (list) {
+                snapshot[c] = Arrays.stream(list.rows, 0, list.size).filter(row -> row < rows).toArray();
+            }
+            listBytes += (long) (1 + snapshot[c].length) * Integer.BYTES;
+        }
+        ByteBuffer header = ByteBuffer.allocate(24 + nlist * index.dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rows).putInt(index.trainedRows)
+                .putInt(index.dimension).putInt(nlist);
+        for (float[] centroid : index.centroids) {
+            header.asFloatBuffer().put(centroid);
+            header.position(header.position() + centroid.length * Float.BYTES);
+        }
+        header.flip();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+            for (int[] list : snapshot) {
+                ByteBuffer buffer = ByteBuffer.allocate((1 + list.length) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(list.length);
+                buffer.asIntBuffer().put(list);
+                buffer.clear();
+                writeFully(channel, buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取索引文件
+     *
+     * @return 索引，以及文件中已分配的行数 (之后追加的行由调用方补充分配)
+     */
+    public static Loaded read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // 读满文件
+            }
+            buffer.flip();
+            if (buffer.remaining() < 24 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not an IVF index file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported IVF index file version " + version + ": " + file);
+            }
+            int rows = buffer.getInt();
+            int trainedRows = buffer.getInt();
+            int dimension = buffer.getInt();
+            int nlist = buffer.getInt();
+            if (nlist <= 0 || buffer.remaining() < (long) nlist * dimension * Float.BYTES) {
+                throw new IOException("Truncated IVF index file: " + file);
+            }
+            float[][] centroids = new float[nlist][dimension];
+            for (float[] centroid : centroids) {
+                buffer.asFloatBuffer().get(centroid);
+                buffer.position(buffer.position() + dimension * Float.BYTES);
+            }
+            IvfIndex index = new IvfIndex(centroids, trainedRows);
+            for (PostingList list : index.lists) {
+                int size = buffer.getInt();
+                if (buffer.remaining() < (long) size * Integer.BYTES) {
+                    throw new IOException("Truncated IVF index file: " + file);
+                }
+                list.rows = new int[Math.max(size, 8)];
+                buffer.asIntBuffer().get(list.rows, 0, size);
+                buffer.position(buffer.position() + size * Integer.BYTES);
+                list.size = size;
+            }
+            return new Loaded(index, rows);
+        }
+    }
+
+    /**
+     * 读取结果
+     *
+     * @param rows 文件中已分配的行数
+     */
+    public record Loaded(IvfIndex index, int rows) {
+    }
+
+    private static int nearest(float[][] centers, float[] vector) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < centers.length; c++) {
+            float score = VectorMath.dot(vector, centers[c]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 一个簇的行号表 (只追加；检索时在锁内取数组与长度，之后的追加不影响已取到的前 size 项)
+     */
+    private static final class PostingList {
+        private int[] rows = new int[8];
+        private int size;
+
+        synchronized void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.novel.splitter.embedding.store.index;
+
+import com.novel.splitter.domain.model.SceneMetadata;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 元数据倒排索引
+ * <p>
+ * 为每个 (字段, 取值) 维护一个 {@link RowBitmap}，记录取该值的有效行；章节号按值排序，范围条件合并区间内各章的行集合。
+ * 写入与删除时同步维护，检索时把过滤条件编译为行集合，扫描只访问集合中的行。
+ * </p>
+ * <p>
+ * 过滤条件与 Chroma 的 where 语法一致：值为标量时表示相等；值为 Map 时表示运算符，
+ * 支持 $eq / $in，章节号另外支持 $gt / $gte / $lt / $lte。多个字段之间为"且"。
+ * </p>
+ */
+public final class MetadataIndex {
+
+    public static final String NOVEL = "novel";
+    public static final String VERSION = "version";
+    public static final String ROLE = "role";
+    public static final String CHUNK_TYPE = "chunk_type";
+    public static final String CHAPTER_INDEX = "chapter_index";
+
+    private final Map<String, Map<String, RowBitmap>> terms = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, RowBitmap> chapters = new ConcurrentSkipListMap<>();
+
+    /**
+     * 按索引中的全部有效行重建
+     *
+     * @param metadata 场景 ID 到元数据的映射
+     */
+    public static MetadataIndex build(HnswIndex index, Map<String, SceneMetadata> metadata) {
+        MetadataIndex metadataIndex = new MetadataIndex();
+        for (int row = 0; row < index.nodeCount(); row++) {
+            if (!index.isDeleted(row)) {
+                metadataIndex.add(row, metadata.get(index.key(row)));
+            }
+        }
+        return metadataIndex;
+    }
+
+    public void add(int row, SceneMetadata meta) {
+        if (meta == null) {
+            return;
+        }
+        forEachTerm(meta, (field, value) -> {
+            RowBitmap rows = terms.computeIfAbsent(field, f -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(value, v -> new RowBitmap());
+            synchronized (rows) {
+                rows.add(row);
+            }
+        });
+        if (meta.getChapterIndex() != null) {
+            RowBitmap rows = chapters.computeIfAbsent(meta.getChapterIndex(), c -> new RowBitmap());
+            synchronized (rows) {
+                rows.add(row);
+            }
+        }
+    }
+
+    /**
+     * 移除行 (meta 为写入该行时的元数据)
+     */
+    public void remove(int row, SceneMetadata meta) {
+        if (meta == null) {
+            return;
+        }
+        forEachTerm(meta, (field, value) -> {
+            Map<String, RowBitmap> values = terms.get(field);
+            RowBitmap rows = values == null ? null : values.get(value);
+            if (rows != null) {
+                synchronized (rows) {
+                    rows.remove(row);
+                }
+            }
+        });
+        if (meta.getChapterIndex() != null) {
+            RowBitmap rows = chapters.get(meta.getChapterIndex());
+            if (rows != null) {
+                synchronized (rows) {
+                    rows.remove(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * 将过滤条件编译为行集合
+     *
+     * @return 满足条件的行 (调用方独占的新集合)；过滤条件为空时返回 null，表示不限制
+     * @throws IllegalArgumentException 运算符不支持
+     */
+    public RowBitmap select(Map<String, Object> filter) {
+        if (filter == null || filter.isEmpty()) {
+            return null;
+        }
+        List<RowBitmap> conditions = new ArrayList<>(filter.size());
+        for (Map.Entry<String, Object> entry : filter.entrySet()) {
+            RowBitmap rows = CHAPTER_INDEX.equals(entry.getKey())
+                    ? selectChapters(entry.getValue())
+                    : selectTerms(entry.getKey(), entry.getValue());
+            if (rows.isEmpty()) {
+                return rows;
+            }
+            conditions.add(rows);
+        }
+        // 从最小的集合开始求交
+        conditions.sort(Comparator.comparingInt(RowBitmap::cardinality));
+        RowBitmap result = conditions.get(0);
+        for (int i = 1; i < conditions.size() && !result.isEmpty(); i++) {
+            result = result.and(conditions.get(i));
+        }
+        return result;
+    }
+
+    private RowBitmap selectTerms(String field, Object condition) {
+        Map<String, RowBitmap> values = terms.get(field);
+        if (values == null || condition == null) {
+            return new RowBitmap();
+        }
+        if (!(condition instanceof Map<?, ?> operators)) {
+            return copyOf(values.get(condition.toString()));
+        }
+        RowBitmap result = null;
+        for (Map.Entry<?, ?> operator : operators.entrySet()) {
+            RowBitmap rows = switch (operator.getKey().toString()) {
+                case "$eq" -> copyOf(values.get(String.valueOf(operator.getValue())));
+                case "$in" -> union(((Collection<?>) operator.getValue()).stream()
+                        .map(value -> values.get(String.valueOf(value)))
+                        .toList());
+                default -> throw new IllegalArgumentException("Unsupported operator for " + field + ": " + operator.getKey());
+            };
+            result = result == null ? rows : result.and(rows);
+        }
+        return result == null ? new RowBitmap() : result;
+    }
+
+    private RowBitmap selectChapters(Object condition) {
+        if (condition instanceof Number number) {
+            return copyOf(chapters.get(number.intValue()));
+        }
+        if (!(condition instanceof Map<?, ?> operators)) {
+            return new RowBitmap();
+        }
+        int from = Integer.MIN_VALUE;
+        int to = Integer.MAX_VALUE;
+        List<Integer> in = null;
+        for (Map.Entry<?, ?> operator : operators.entrySet()) {
+            String name = operator.getKey().toString();
+            if ("$in".equals(name)) {
+                in = ((Collection<?>) operator.getValue()).stream().map(v -> ((Number) v).intValue()).toList();
+                continue;
+            }
+            int value = ((Number) operator.getValue()).intValue();
+            switch (name) {
+                case "$eq" -> {
+                    from = Math.max(from, value);
+                    to = Math.min(to, value);
+                }
+                case "$gte" -> from = Math.max(from, value);
+                case "$gt" -> from = Math.max(from, value == Integer.MAX_VALUE ? value : value + 1);
+                case "$lte" -> to = Math.min(to, value);
+                case "$lt" -> to = Math.min(to, value == Integer.MIN_VALUE ? value : value - 1);
+                default -> throw new IllegalArgumentException("Unsupported operator for " + CHAPTER_INDEX + ": " + name);
+            }
+        }
+        if (from > to) {
+            return new RowBitmap();
+        }
+        NavigableMap<Integer, RowBitmap> range = chapters.subMap(from, true, to, true);
+        if (in == null) {
+            return union(range.values());
+        }
+        return union(in.stream().filter(range::containsKey).map(range::get).toList());
+    }
+
+    private static RowBitmap union(Collection<RowBitmap> bitmaps) {
+        RowBitmap result = new RowBitmap();
+        for (RowBitmap rows : bitmaps) {
+            if (rows != null) {
+                synchronized (rows) {
+                    result = result.or(rows);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static RowBitmap copyOf(RowBitmap rows) {
+        if (rows == null) {
+            return new RowBitmap();
+        }
+        synchronized (rows) {
+            return rows.copy();
+        }
+    }
+
+    private static void forEachTerm(SceneMetadata meta, TermConsumer consumer) {
+        if (meta.getNovel() != null) consumer.accept(NOVEL, meta.getNovel());
+        if (meta.getVersion() != null) consumer.accept(VERSION, meta.getVersion());
+        if (meta.getRole() != null) consumer.accept(ROLE, meta.getRole());
+        if (meta.getChunkType() != null) consumer.accept(CHUNK_TYPE, meta.getChunkType());
+    }
+
+    @FunctionalInterface
+    private interface TermConsumer {
+        void accept(String field, String value);
+    }
+}
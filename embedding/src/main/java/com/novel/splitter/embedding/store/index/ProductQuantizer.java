@@ -0,0 +1,520 @@
+package com.novel.splitter.embedding.store.index;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * 乘积量化 (PQ) 码本
+ * <p>
+ * 向量按维度切成 subspaces 段，每段用 k-means 训练 {@value #CENTROIDS} 个中心，编码时每段记录最近中心的编号 (1 字节)。
+ * 检索时先为查询向量算出每段与各中心的点积表 (非对称距离，查询不量化)，编码向量的近似分数即各段查表之和。
+ * </p>
+ * <p>
+ * 启用旋转 (OPQ) 时先对训练样本做主成分分解，按特征值把主方向均衡地分配到各段 (各段方差接近)，
+ * 编码与查询前都乘以该正交矩阵；正交变换不改变点积。
+ * </p>
+ */
+public final class ProductQuantizer {
+
+    public static final int CENTROIDS = 256;
+
+    private final int dimension;
+    /**
+     * 第 s 段为 [offsets[s], offsets[s + 1])
+     */
+    private final int[] offsets;
+    /**
+     * centroids[s][j * 256 + c]：第 s 段第 c 个中心的第 j 维 (按维度转置存放，内层循环遍历 256 个中心，便于 JIT 向量化)
+     */
+    private final float[][] centroids;
+    /**
+     * 行优先的 dimension x dimension 正交矩阵，未启用旋转时为 null
+     */
+    private final float[] rotation;
+
+    private ProductQuantizer(int dimension, int[] offsets, float[][] centroids, float[] rotation) {
+        this.dimension = dimension;
+        this.offsets = offsets;
+        this.centroids = centroids;
+        this.rotation = rotation;
+    }
+
+    /**
+     * 训练码本
+     *
+     * @param samples    训练样本 (同一维度，建议不少于 {@value #CENTROIDS} * 40 条)
+     * @param subspaces  段数，即每条编码的字节数 (不超过维度；维度不能整除时前几段多一维)
+     * @param rotate     是否训练 OPQ 旋转
+     * @param iterations 每段 k-means 迭代次数
+     */
+    public static ProductQuantizer train(float[][] samples, int subspaces, boolean rotate, int iterations, long seed) {
+        if (samples.length == 0) {
+            throw new IllegalArgumentException("No training samples");
+        }
+        int dimension = samples[0].length;
+        int m = Math.max(1, Math.min(subspaces, dimension));
+        int[] offsets = new int[m + 1];
+        for (int s = 0; s < m; s++) {
+            offsets[s + 1] = offsets[s] + dimension / m + (s < dimension % m ? 1 : 0);
+        }
+
+        float[] rotation = rotate ? trainRotation(samples, offsets) : null;
+        float[][] rotated = samples;
+        if (rotation != null) {
+            rotated = new float[samples.length][];
+            for (int i = 0; i < samples.length; i++) {
+                rotated[i] = rotate(rotation, dimension, samples[i]);
+            }
+        }
+        float[][] data = rotated;
+        float[][] centroids = new float[m][];
+        IntStream.range(0, m).parallel()
+                .forEach(s -> centroids[s] = kmeans(data, offsets[s], offsets[s + 1], iterations, seed + s));
+        return new ProductQuantizer(dimension, offsets, centroids, rotation);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 段数 (每条编码的字节数)
+     */
+    public int subspaces() {
+        return offsets.length - 1;
+    }
+
+    public boolean isRotated() {
+        return rotation != null;
+    }
+
+    /**
+     * 编码到 out[offset, offset + subspaces)
+     */
+    public void encode(float[] vector, byte[] out, int offset) {
+        float[] x = rotation == null ? vector : rotate(rotation, dimension, vector);
+        float[] distances = new float[CENTROIDS];
+        for (int s = 0; s < centroids.length; s++) {
+            out[offset + s] = (byte) nearest(centroids[s], x, offsets[s], offsets[s + 1] - offsets[s], distances);
+        }
+    }
+
+    /**
+     * 解码 (用于评估量化误差)
+     */
+    public float[] decode(byte[] codes, int offset) {
+        float[] x = new float[dimension];
+        for (int s = 0; s < centroids.length; s++) {
+            int code = codes[offset + s] & 0xFF;
+            for (int j = 0; j < offsets[s + 1] - offsets[s]; j++) {
+                x[offsets[s] + j] = centroids[s][j * CENTROIDS + code];
+            }
+        }
+        if (rotation == null) {
+            return x;
+        }
+        // 正交矩阵的逆即转置
+        float[] v = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            float xi = x[i];
+            int row = i * dimension;
+            for (int j = 0; j < dimension; j++) {
+                v[j] += rotation[row + j] * xi;
+            }
+        }
+        return v;
+    }
+
+    /**
+     * 查询向量的点积表：table[s * 256 + c] 为第 s 段与第 c 个中心的点积
+     */
+    public float[] table(float[] query) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Vector dimensions mismatch: " + query.length + " vs " + dimension);
+        }
+        float[] q = rotation == null ? query : rotate(rotation, dimension, query);
+        float[] table = new float[centroids.length * CENTROIDS];
+        for (int s = 0; s < centroids.length; s++) {
+            float[] centers = centroids[s];
+            int base = s * CENTROIDS;
+            for (int j = 0; j < offsets[s + 1] - offsets[s]; j++) {
+                float qj = q[offsets[s] + j];
+                int row = j * CENTROIDS;
+                for (int c = 0; c < CENTROIDS; c++) {
+                    table[base + c] += qj * centers[row + c];
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 编码向量的近似分数 (查表求和)
+     */
+    public static float score(float[] table, byte[] codes, int offset, int subspaces) {
+        float score = 0f;
+        for (int s = 0; s < subspaces; s++) {
+            score += table[(s << 8) | (codes[offset + s] & 0xFF)];
+        }
+        return score;
+    }
+
+    /**
+     * 序列化后的字节数
+     */
+    public int serializedSize() {
+        return 4 * 3 + offsets.length * 4 + dimension * CENTROIDS * 4 + (rotation == null ? 0 : rotation.length * 4);
+    }
+
+    /**
+     * 写入 out (小端)：dimension | subspaces | rotated | offsets | centroids | rotation
+     */
+    public void writeTo(ByteBuffer out) {
+        out.putInt(dimension).putInt(subspaces()).putInt(rotation == null ? 0 : 1);
+        for (int offset : offsets) {
+            out.putInt(offset);
+        }
+        for (float[] subspace : centroids) {
+            out.asFloatBuffer().put(subspace);
+            out.position(out.position() + subspace.length * Float.BYTES);
+        }
+        if (rotation != null) {
+            out.asFloatBuffer().put(rotation);
+            out.position(out.position() + rotation.length * Float.BYTES);
+        }
+    }
+
+    public static ProductQuantizer readFrom(ByteBuffer in) {
+        int dimension = in.getInt();
+        int m = in.getInt();
+        boolean rotated = in.getInt() != 0;
+        int[] offsets = new int[m + 1];
+        for (int s = 0; s <= m; s++) {
+            offsets[s] = in.getInt();
+        }
+        float[][] centroids = new float[m][];
+        for (int s = 0; s < m; s++) {
+            centroids[s] = new float[(offsets[s + 1] - offsets[s]) * CENTROIDS];
+            in.asFloatBuffer().get(centroids[s]);
+            in.position(in.position() + centroids[s].length * Float.BYTES);
+        }
+        float[] rotation = null;
+        if (rotated) {
+            rotation = new float[dimension * dimension];
+            in.asFloatBuffer().get(rotation);
+            in.position(in.position() + rotation.length * Float.BYTES);
+        }
+        return new ProductQuantizer(dimension, offsets, centroids, rotation);
+    }
+
+    private static float[] rotate(float[] rotation, int dimension, float[] v) {
+        float[] x = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            x[i] = VectorMath.dot(rotation, i * dimension, v, 0, dimension);
+        }
+        return x;
+    }
+
+    /**
+     * 最近的中心 (centers 为转置布局)
+     *
+     * @param distances 长度 256 的临时数组
+     */
+    private static int nearest(float[] centers, float[] x, int from, int width, float[] distances) {
+        Arrays.fill(distances, 0f);
+        for (int j = 0; j < width; j++) {
+            float xj = x[from + j];
+            int row = j * CENTROIDS;
+            for (int c = 0; c < CENTROIDS; c++) {
+                float diff = xj - centers[row + c];
+                distances[c] += diff * diff;
+            }
+        }
+        int best = 0;
+        for (int c = 1; c < CENTROIDS; c++) {
+            if (distances[c] < distances[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 一段上的 k-means (L2)，空簇用随机样本重新初始化，返回转置布局的中心
+     */
+    private static float[] kmeans(float[][] samples, int from, int to, int iterations, long seed) {
+        int width = to - from;
+        int n = samples.length;
+        Random random = new Random(seed);
+        float[] centers = new float[width * CENTROIDS];
+        for (int c = 0; c < CENTROIDS; c++) {
+            setCenter(centers, width, c, samples[random.nextInt(n)], from);
+        }
+        float[] sums = new float[width * CENTROIDS];
+        int[] counts = new int[CENTROIDS];
+        float[] distances = new float[CENTROIDS];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Arrays.fill(sums, 0f);
+            Arrays.fill(counts, 0);
+            for (float[] sample : samples) {
+                int c = nearest(centers, sample, from, width, distances);
+                counts[c]++;
+                for (int j = 0; j < width; j++) {
+                    sums[j * CENTROIDS + c] += sample[from + j];
+                }
+            }
+            for (int c = 0; c < CENTROIDS; c++) {
+                if (counts[c] == 0) {
+                    setCenter(centers, width, c, samples[random.nextInt(n)], from);
+                    continue;
+                }
+                for (int j = 0; j < width; j++) {
+                    centers[j * CENTROIDS + c] = sums[j * CENTROIDS + c] / counts[c];
+                }
+            }
+        }
+        return centers;
+    }
+
+    private static void setCenter(float[] centers, int width, int c, float[] sample, int from) {
+        for (int j = 0; j < width; j++) {
+            centers[j * CENTROIDS + c] = sample[from + j];
+        }
+    }
+
+    /**
+     * 参数化 OPQ：协方差矩阵的特征向量作为新坐标轴，按特征值从大到小依次分配给当前方差和最小且未满的段
+     */
+    private static float[] trainRotation(float[][] samples, int[] offsets) {
+        int d = samples[0].length;
+        int n = samples.length;
+        double[] mean = new double[d];
+        for (float[] sample : samples) {
+            for (int j = 0; j < d; j++) {
+                mean[j] += sample[j];
+            }
+        }
+        for (int j = 0; j < d; j++) {
+            mean[j] /= n;
+        }
+        double[][] covariance = new double[d][d];
+        double[] centered = new double[d];
+        for (float[] sample : samples) {
+            for (int j = 0; j < d; j++) {
+                centered[j] = sample[j] - mean[j];
+            }
+            for (int a = 0; a < d; a++) {
+                double ca = centered[a];
+                double[] row = covariance[a];
+                for (int b = a; b < d; b++) {
+                    row[b] += ca * centered[b];
+                }
+            }
+        }
+        for (int a = 0; a < d; a++) {
+            for (int b = a; b < d; b++) {
+                covariance[a][b] /= n;
+                covariance[b][a] = covariance[a][b];
+            }
+        }
+
+        double[] eigenvalues = new double[d];
+        double[] work = new double[d];
+        tridiagonalize(covariance, eigenvalues, work);
+        diagonalize(covariance, eigenvalues, work);
+        // covariance 的第 i 列现在是第 i 个特征向量
+
+        Integer[] order = new Integer[d];
+        for (int i = 0; i < d; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(eigenvalues[b], eigenvalues[a]));
+        int m = offsets.length - 1;
+        double[] variance = new double[m];
+        int[] filled = new int[m];
+        float[] rotation = new float[d * d];
+        for (int index : order) {
+            int best = -1;
+            for (int s = 0; s < m; s++) {
+                if (filled[s] < offsets[s + 1] - offsets[s] && (best < 0 || variance[s] < variance[best])) {
+                    best = s;
+                }
+            }
+            int row = offsets[best] + filled[best]++;
+            variance[best] += Math.max(0, eigenvalues[index]);
+            for (int k = 0; k < d; k++) {
+                rotation[row * d + k] = (float) covariance[k][index];
+            }
+        }
+        return rotation;
+    }
+
+    /**
+     * Householder 三对角化 (对称矩阵，结果累积在 v 中)
+     */
+    private static void tridiagonalize(double[][] v, double[] d, double[] e) {
+        int n = d.length;
+        for (int j = 0; j < n; j++) {
+            d[j] = v[n - 1][j];
+        }
+        for (int i = n - 1; i > 0; i--) {
+            double scale = 0.0;
+            double h = 0.0;
+            for (int k = 0; k < i; k++) {
+                scale += Math.abs(d[k]);
+            }
+            if (scale == 0.0) {
+                e[i] = d[i - 1];
+                for (int j = 0; j < i; j++) {
+                    d[j] = v[i - 1][j];
+                    v[i][j] = 0.0;
+                    v[j][i] = 0.0;
+                }
+            } else {
+                for (int k = 0; k < i; k++) {
+                    d[k] /= scale;
+                    h += d[k] * d[k];
+                }
+                double f = d[i - 1];
+                double g = Math.sqrt(h);
+                if (f > 0) {
+                    g = -g;
+                }
+                e[i] = scale * g;
+                h -= f * g;
+                d[i - 1] = f - g;
+                for (int j = 0; j < i; j++) {
+                    e[j] = 0.0;
+                }
+                for (int j = 0; j < i; j++) {
+                    f = d[j];
+                    v[j][i] = f;
+                    g = e[j] + v[j][j] * f;
+                    for (int k = j + 1; k <= i - 1; k++) {
+                        g += v[k][j] * d[k];
+                        e[k] += v[k][j] * f;
+                    }
+                    e[j] = g;
+                }
+                f = 0.0;
+                for (int j = 0; j < i; j++) {
+                    e[j] /= h;
+                    f += e[j] * d[j];
+                }
+                double hh = f / (h + h);
+                for (int j = 0; j < i; j++) {
+                    e[j] -= hh * d[j];
+                }
+                for (int j = 0; j < i; j++) {
+                    f = d[j];
+                    g = e[j];
+                    for (int k = j; k <= i - 1; k++) {
+                        v[k][j] -= (f * e[k] + g * d[k]);
+                    }
+                    d[j] = v[i - 1][j];
+                    v[i][j] = 0.0;
+                }
+            }
+            d[i] = h;
+        }
+        for (int i = 0; i < n - 1; i++) {
+            v[n - 1][i] = v[i][i];
+            v[i][i] = 1.0;
+            double h = d[i + 1];
+            if (h != 0.0) {
+                for (int k = 0; k <= i; k++) {
+                    d[k] = v[k][i + 1] / h;
+                }
+                for (int j = 0; j <= i; j++) {
+                    double g = 0.0;
+                    for (int k = 0; k <= i; k++) {
+                        g += v[k][i + 1] * v[k][j];
+                    }
+                    for (int k = 0; k <= i; k++) {
+                        v[k][j] -= g * d[k];
+                    }
+                }
+            }
+            for (int k = 0; k <= i; k++) {
+                v[k][i + 1] = 0.0;
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            d[j] = v[n - 1][j];
+            v[n - 1][j] = 0.0;
+        }
+        v[n - 1][n - 1] = 1.0;
+        e[0] = 0.0;
+    }
+
+    /**
+     * 三对角矩阵的隐式 QL 迭代，d 为特征值，v 的列为特征向量
+     */
+    private static void diagonalize(double[][] v, double[] d, double[] e) {
+        int n = d.length;
+        for (int i = 1; i < n; i++) {
+            e[i - 1] = e[i];
+        }
+        e[n - 1] = 0.0;
+        double f = 0.0;
+        double tst1 = 0.0;
+        double eps = Math.ulp(1.0);
+        for (int l = 0; l < n; l++) {
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+            while (m < n && Math.abs(e[m]) > eps * tst1) {
+                m++;
+            }
+            if (m > l) {
+                do {
+                    double g = d[l];
+                    double p = (d[l + 1] - g) / (2.0 * e[l]);
+                    double r = Math.hypot(p, 1.0);
+                    if (p < 0) {
+                        r = -r;
+                    }
+                    d[l] = e[l] / (p + r);
+                    d[l + 1] = e[l] * (p + r);
+                    double dl1 = d[l + 1];
+                    double h = g - d[l];
+                    for (int i = l + 2; i < n; i++) {
+                        d[i] -= h;
+                    }
+                    f += h;
+                    p = d[m];
+                    double c = 1.0;
+                    double c2 = c;
+                    double c3 = c;
+                    double el1 = e[l + 1];
+                    double s = 0.0;
+                    double s2 = 0.0;
+                    for (int i = m - 1; i >= l; i--) {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g = c * e[i];
+                        h = c * p;
+                        r = Math.hypot(p, e[i]);
+                        e[i + 1] = s * r;
+                        s = e[i] / r;
+                        c = p / r;
+                        p = c * d[i] - s * g;
+                        d[i + 1] = h + s * (c * g + s * d[i]);
+                        for (int k = 0; k < n; k++) {
+                            h = v[k][i + 1];
+                            v[k][i + 1] = s * v[k][i] + c * h;
+                            v[k][i] = c * v[k][i] - s * h;
+                        }
+                    }
+                    p = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+                } while (Math.abs(e[l]) > eps * tst1);
+            }
+            d[l] += f;
+            e[l] = 0.0;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.novel.splitter.embedding.store.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * 按行存放的 PQ 编码与两阶段检索
+ * <p>
+ * 每行 {@link ProductQuantizer#subspaces()} 字节，按块分配 (每块 {@link VectorArena#CHUNK_ROWS} 行)，扩容时只追加新块。
+ * 检索先用查询的点积表扫描编码，保留近似分数最高的 rerank 行，再用完整向量 (通常是内存映射的段文件) 精确计算分数取前 topK。
+ * </p>
+ * <p>
+ * 文件格式 (小端)：magic | version | rows | trainedRows | 码本 | 编码 (rows * subspaces)
+ * </p>
+ */
+public final class QuantizedVectors {
+
+    private static final int MAGIC = 0x5150534E; // "NSPQ"
+    private static final int FORMAT_VERSION = 1;
+
+    private final ProductQuantizer quantizer;
+    private final int subspaces;
+    private final int trainedRows;
+    private final Object growLock = new Object();
+    private volatile byte[][] chunks = new byte[0][];
+
+    /**
+     * @param trainedRows 训练时的有效向量数 (用于判断是否需要重新训练)
+     */
+    public QuantizedVectors(ProductQuantizer quantizer, int trainedRows) {
+        this.quantizer = quantizer;
+        this.subspaces = quantizer.subspaces();
+        this.trainedRows = trainedRows;
+    }
+
+    public ProductQuantizer quantizer() {
+        return quantizer;
+    }
+
+    public int trainedRows() {
+        return trainedRows;
+    }
+
+    /**
+     * 编码并写入第 row 行
+     */
+    public void set(int row, float[] vector) {
+        byte[] chunk = chunk(row >>> VectorArena.CHUNK_SHIFT);
+        quantizer.encode(vector, chunk, (row & (VectorArena.CHUNK_ROWS - 1)) * subspaces);
+    }
+
+    /**
+     * 编码完整向量矩阵中的 [fromRow, toRow) 行
+     */
+    public void encodeAll(VectorArena arena, int fromRow, int toRow) {
+        for (int row = fromRow; row < toRow; row++) {
+            set(row, arena.copyOf(row));
+        }
+    }
+
+    /**
+     * 编码占用的堆内存 (字节)
+     */
+    public long codeBytes() {
+        return (long) chunks.length * VectorArena.CHUNK_ROWS * subspaces;
+    }
+
+    /**
+     * 两阶段检索
+     *
+     * @param rows          扫描 [0, rows) 行，candidateRows 非 null 时忽略
+     * @param candidateRows 只扫描这些行，null 表示扫描全部
+     * @param rerank        进入精确重排的行数 (不小于 topK)
+     * @param accept        行过滤条件 (包括跳过已删除的行)，null 表示全部接受
+     * @return 结果条数
+     */
+    public int search(VectorArena arena, int rows, int[] candidateRows, float[] query, int topK, int rerank,
+                      IntPredicate accept, int[] outRows, float[] outScores) {
+        if (topK <= 0) {
+            return 0;
+        }
+        int limit = Math.max(rerank, topK);
+        float[] table = quantizer.table(query);
+        byte[][] current = chunks;
+        ScoredHeap approximate = ScoredHeap.minHeap(limit + 1);
+        int count = candidateRows == null ? rows : candidateRows.length;
+        for (int i = 0; i < count; i++) {
+            int row = candidateRows == null ? i : candidateRows[i];
+            int chunk = row >>> VectorArena.CHUNK_SHIFT;
+            if (chunk >= current.length || (accept != null && !accept.test(row))) {
+                continue;
+            }
+            float score = ProductQuantizer.score(table, current[chunk], (row & (VectorArena.CHUNK_ROWS - 1)) * subspaces, subspaces);
+            approximate.offer(score, row, limit);
+        }
+
+        ScoredHeap exact = ScoredHeap.minHeap(topK + 1);
+        while (!approximate.isEmpty()) {
+            int row = approximate.pop();
+            exact.offer(arena.dot(query, row), row, topK);
+        }
+        return exact.drainDescending(outRows, outScores);
+    }
+
+    /**
+     * 原子写入 [0, rows) 行的编码
+     */
+    public static void write(Path file, QuantizedVectors vectors, int rows) throws IOException {
+        int m = vectors.subspaces;
+        ByteBuffer header = ByteBuffer.allocate(16 + vectors.quantizer.serializedSize()).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rows).putInt(vectors.trainedRows);
+        vectors.quantizer.writeTo(header);
+        header.flip();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+            byte[][] current = vectors.chunks;
+            for (int chunk = 0; chunk * VectorArena.CHUNK_ROWS < rows; chunk++) {
+                int chunkRows = Math.min(VectorArena.CHUNK_ROWS, rows - chunk * VectorArena.CHUNK_ROWS);
+                ByteBuffer codes = chunk < current.length
+                        ? ByteBuffer.wrap(current[chunk], 0, chunkRows * m)
+                        : ByteBuffer.allocate(chunkRows * m);
+                writeFully(channel, codes);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取编码文件
+     *
+     * @return 编码，以及文件中的行数 (之后追加的行由调用方补充编码)
+     */
+    public static Loaded read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // 读满文件
+            }
+            buffer.flip();
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a PQ code file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported PQ code file version " + version + ": " + file);
+            }
+            int rows = buffer.getInt();
+            int trainedRows = buffer.getInt();
+            QuantizedVectors vectors = new QuantizedVectors(ProductQuantizer.readFrom(buffer), trainedRows);
+            int m = vectors.subspaces;
+            if (buffer.remaining() < (long) rows * m) {
+                throw new IOException("Truncated PQ code file: " + file);
+            }
+            for (int chunk = 0; chunk * VectorArena.CHUNK_ROWS < rows; chunk++) {
+                int chunkRows = Math.min(VectorArena.CHUNK_ROWS, rows - chunk * VectorArena.CHUNK_ROWS);
+                buffer.get(vectors.chunk(chunk), 0, chunkRows * m);
+            }
+            return new Loaded(vectors, rows);
+        }
+    }
+
+    /**
+     * 读取结果
+     *
+     * @param rows 文件中已编码的行数
+     */
+    public record Loaded(QuantizedVectors vectors, int rows) {
+    }
+
+    private byte[] chunk(int index) {
+        byte[][] current = chunks;
+        if (index < current.length) {
+            return current[index];
+        }
+        synchronized (growLock) {
+            current = chunks;
+            if (index >= current.length) {
+                byte[][] grown = Arrays.copyOf(current, index + 1);
+                for (int i = current.length; i <= index; i++) {
+                    grown[i] = new byte[VectorArena.CHUNK_ROWS * subspaces];
+                }
+                chunks = grown;
+                current = grown;
+            }
+            return current[index];
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.novel.splitter.embedding.store.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 场景 ID 与矩阵行号的双向字典
+ * <p>
+ * 行号 → ID 为按行号下标的数组 (每行写入一次)；ID → 行号只记录每个 ID 当前有效的行，
+ * 同一 ID 重新写入或删除后，旧行仍可由行号反查 ID，但不再是有效行。
+ * </p>
+ */
+public final class RowDictionary {
+
+    private final Object growLock = new Object();
+    private volatile String[] rowToId = new String[1024];
+    private final ConcurrentHashMap<String, Integer> idToRow = new ConcurrentHashMap<>();
+
+    /**
+     * 登记行号对应的 ID (尚未生效，需调用 {@link #activate})
+     */
+    public void assign(int row, String id) {
+        synchronized (growLock) {
+            String[] current = rowToId;
+            if (row >= current.length) {
+                current = Arrays.copyOf(current, Math.max(row + 1, current.length * 2));
+            }
+            current[row] = id;
+            rowToId = current;
+        }
+    }
+
+    /**
+     * 将行设为该 ID 的有效行
+     *
+     * @return 之前的有效行，没有时返回 -1
+     */
+    public int activate(String id, int row) {
+        Integer previous = idToRow.put(id, row);
+        return previous == null ? -1 : previous;
+    }
+
+    /**
+     * 移除 ID
+     *
+     * @return 被移除的有效行，不存在时返回 -1
+     */
+    public int remove(String id) {
+        Integer previous = idToRow.remove(id);
+        return previous == null ? -1 : previous;
+    }
+
+    /**
+     * ID 当前的有效行，不存在时返回 -1
+     */
+    public int row(String id) {
+        Integer row = idToRow.get(id);
+        return row == null ? -1 : row;
+    }
+
+    public String id(int row) {
+        return rowToId[row];
+    }
+
+    /**
+     * 有效 ID 数
+     */
+    public int size() {
+        return idToRow.size();
+    }
+}
@@ -0,0 +1,39 @@
+package com.novel.splitter.embedding.store.index;
+
+/**
+ * 标量点积内核
+ * <p>
+ * 四路展开、四个独立累加器，减少浮点加法的依赖链。
+ * </p>
+ */
+final class ScalarVectorKernel implements VectorKernel {
+
+    static final ScalarVectorKernel INSTANCE = new ScalarVectorKernel();
+
+    private ScalarVectorKernel() {
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        for (int bound = length & ~3; i < bound; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,157 @@
+package com.novel.splitter.embedding.store.index;
+
+import java.util.Arrays;
+
+/**
+ * (分数, 节点) 二叉堆，基于原始类型数组，无装箱
+ * <p>
+ * 最小堆用于维护 Top-K 结果 (堆顶为当前最差结果)，最大堆用于 HNSW 的候选队列 (堆顶为最优候选)。
+ * </p>
+ */
+public final class ScoredHeap {
+
+    private final boolean maxHeap;
+    private float[] scores;
+    private int[] ids;
+    private int size;
+
+    private ScoredHeap(boolean maxHeap, int initialCapacity) {
+        this.maxHeap = maxHeap;
+        this.scores = new float[Math.max(4, initialCapacity)];
+        this.ids = new int[scores.length];
+    }
+
+    public static ScoredHeap minHeap(int initialCapacity) {
+        return new ScoredHeap(false, initialCapacity);
+    }
+
+    public static ScoredHeap maxHeap(int initialCapacity) {
+        return new ScoredHeap(true, initialCapacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public float topScore() {
+        return scores[0];
+    }
+
+    public int topId() {
+        return ids[0];
+    }
+
+    public void push(float score, int id) {
+        if (size == scores.length) {
+            scores = Arrays.copyOf(scores, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(score, scores[parent])) {
+                break;
+            }
+            scores[i] = scores[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        scores[i] = score;
+        ids[i] = id;
+    }
+
+    /**
+     * 容量受限的插入：堆未满时直接插入，已满时仅当新分数优于堆顶时替换 (仅用于最小堆维护 Top-K)
+     *
+     * @return 是否插入
+     */
+    public boolean offer(float score, int id, int limit) {
+        if (size < limit) {
+            push(score, id);
+            return true;
+        }
+        if (before(scores[0], score)) {
+            replaceTop(score, id);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 将另一个堆中的元素按容量受限方式并入本堆 (仅用于最小堆合并 Top-K)
+     */
+    public void offerAll(ScoredHeap other, int limit) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.scores[i], other.ids[i], limit);
+        }
+    }
+
+    /**
+     * 弹出堆顶，返回其节点 ID
+     */
+    public int pop() {
+        int top = ids[0];
+        size--;
+        if (size > 0) {
+            siftDown(scores[size], ids[size]);
+        }
+        return top;
+    }
+
+    private void replaceTop(float score, int id) {
+        siftDown(score, id);
+    }
+
+    private void siftDown(float score, int id) {
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && before(scores[right], scores[child])) {
+                child = right;
+            }
+            if (!before(scores[child], score)) {
+                break;
+            }
+            scores[i] = scores[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        scores[i] = score;
+        ids[i] = id;
+    }
+
+    private boolean before(float a, float b) {
+        return maxHeap ? a > b : a < b;
+    }
+
+    /**
+     * 按分数从高到低导出，导出后堆被清空
+     *
+     * @return 实际导出的条数
+     */
+    public int drainDescending(int[] outIds, float[] outScores) {
+        int count = size;
+        if (maxHeap) {
+            for (int i = 0; i < count; i++) {
+                outScores[i] = topScore();
+                outIds[i] = pop();
+            }
+        } else {
+            for (int i = count - 1; i >= 0; i--) {
+                outScores[i] = topScore();
+                outIds[i] = pop();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,55 @@
+package com.novel.splitter.embedding.store.index;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 Java Vector API (jdk.incubator.vector) 的点积内核
+ * <p>
+ * 使用平台首选向量宽度 (AVX2 为 8 路，AVX-512 为 16 路)，两个累加器交替使用以隐藏 FMA 延迟，尾部按标量处理。
+ * 只能通过反射加载：未加入 jdk.incubator.vector 模块时引用本类会导致链接失败。
+ * </p>
+ */
+final class SimdVectorKernel implements VectorKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * 平台首选向量宽度是否足以受益 (至少 4 路)
+     * <p>
+     * 没有可用的 SIMD 寄存器时向量 API 退化为软件实现，比标量循环更慢，应改用标量内核。
+     * </p>
+     */
+    static boolean isSupported() {
+        return SPECIES.length() >= 4;
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int step = SPECIES.length();
+        FloatVector acc0 = FloatVector.zero(SPECIES);
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = length - 2 * step; i <= bound; i += 2 * step) {
+            acc0 = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i), acc0);
+            acc1 = FloatVector.fromArray(SPECIES, a, aOffset + i + step)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i + step), acc1);
+        }
+        for (int bound = length - step; i <= bound; i += step) {
+            acc0 = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i), acc0);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + SPECIES.vectorBitSize() + "bit";
+    }
+}
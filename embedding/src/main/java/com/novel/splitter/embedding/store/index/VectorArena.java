@@ -0,0 +1,274 @@
+package com.novel.splitter.embedding.store.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * 堆外连续向量矩阵
+ * <p>
+ * 向量按行存放在直接内存 (DirectByteBuffer) 中，每行 dimension 个 float，行号即索引中的节点编号。
+ * 矩阵按块分配 (每块 {@link #CHUNK_ROWS} 行)，扩容时只追加新块，已写入的行不会移动，读线程无需加锁。
+ * 最后一块按实际行数分配 (至少 {@link #MIN_TAIL_ROWS} 行，按 2 倍增长直到整块)，小分区不必占用整块直接内存；
+ * 增长时复制到新缓冲区后替换，写入未满的最后一块与增长互斥，不会丢失行。
+ * 相比每个向量一个 float[]，扫描时内存连续、对缓存友好，且向量数据不占用 Java 堆、不参与 GC 标记。
+ * </p>
+ * <p>
+ * 也可以通过 {@link #map} 直接映射段文件中的矩阵，启动时不读取向量数据。
+ * 写入方负责保证同一行只写一次，且写完后再通过 volatile 变量发布行号。
+ * 直接内存上限由 -XX:MaxDirectMemorySize 控制 (默认与最大堆相同)。
+ * </p>
+ */
+public final class VectorArena {
+
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+
+    /**
+     * 块扫描时一次拷贝到线程本地缓冲区的最大行数
+     */
+    private static final int BLOCK_ROWS = 64;
+
+    /**
+     * 最后一块的最小行数
+     */
+    static final int MIN_TAIL_ROWS = 64;
+
+    private final int dimension;
+    private final Object growLock = new Object();
+    private volatile FloatBuffer[] chunks = new FloatBuffer[0];
+    private final ThreadLocal<float[]> scratch;
+
+    public VectorArena(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Vector dimension must be positive: " + dimension);
+        }
+        this.dimension = dimension;
+        this.scratch = ThreadLocal.withInitial(() -> new float[BLOCK_ROWS * dimension]);
+    }
+
+    /**
+     * 将文件中的行优先小端 float 矩阵映射为向量矩阵
+     * <p>
+     * 完整的块直接以只读映射的方式使用，不复制数据 (按需由操作系统换页)；
+     * 最后一个不完整的块复制到按其行数分配的直接内存中，继续追加行时再增长。
+     * </p>
+     *
+     * @param offset 矩阵在文件中的起始位置
+     */
+    public static VectorArena map(FileChannel channel, long offset, int dimension, int rows) throws IOException {
+        VectorArena arena = new VectorArena(dimension);
+        long chunkBytes = (long) CHUNK_ROWS * dimension * Float.BYTES;
+        int fullChunks = rows >>> CHUNK_SHIFT;
+        int tailRows = rows & CHUNK_MASK;
+        FloatBuffer[] chunks = new FloatBuffer[fullChunks + (tailRows > 0 ? 1 : 0)];
+        for (int c = 0; c < fullChunks; c++) {
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, offset + c * chunkBytes, chunkBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+        }
+        if (tailRows > 0) {
+            FloatBuffer tail = newChunk(tailRows, dimension);
+            tail.put(channel.map(FileChannel.MapMode.READ_ONLY, offset + fullChunks * chunkBytes,
+                            (long) tailRows * dimension * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer());
+            chunks[fullChunks] = tail;
+        }
+        arena.chunks = chunks;
+        return arena;
+    }
+
+    /**
+     * 以小端格式顺序写出 [0, rows) 行
+     */
+    public void writeTo(WritableByteChannel out, int rows) throws IOException {
+        ByteBuffer staging = ByteBuffer.allocate(BLOCK_ROWS * dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        FloatBuffer stagingFloats = staging.asFloatBuffer();
+        int row = 0;
+        while (row < rows) {
+            int inChunk = row & CHUNK_MASK;
+            int count = Math.min(Math.min(rows - row, BLOCK_ROWS), CHUNK_ROWS - inChunk);
+            FloatBuffer source = chunks[row >>> CHUNK_SHIFT].slice(inChunk * dimension, count * dimension);
+            stagingFloats.clear();
+            stagingFloats.put(source);
+            staging.clear().limit(count * dimension * Float.BYTES);
+            while (staging.hasRemaining()) {
+                out.write(staging);
+            }
+            row += count;
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 写入一行 (调用方负责归一化)，容量不足时追加新块
+     */
+    public void write(int row, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimensions mismatch: " + vector.length + " vs " + dimension);
+        }
+        FloatBuffer[] current = chunks;
+        int chunk = row >>> CHUNK_SHIFT;
+        int offset = (row & CHUNK_MASK) * dimension;
+        if (chunk < current.length && current[chunk].capacity() == CHUNK_ROWS * dimension) {
+            // 整块不会再被替换，无需加锁
+            current[chunk].put(offset, vector);
+            return;
+        }
+        synchronized (growLock) {
+            ensureCapacity(row + 1);
+            chunks[chunk].put(offset, vector);
+        }
+    }
+
+    /**
+     * 查询向量与指定行的点积
+     */
+    public float dot(float[] query, int row) {
+        float[] buffer = scratch.get();
+        chunks[row >>> CHUNK_SHIFT].get((row & CHUNK_MASK) * dimension, buffer, 0, dimension);
+        return VectorMath.dot(query, 0, buffer, 0, dimension);
+    }
+
+    /**
+     * 两行之间的点积
+     */
+    public float dot(int rowA, int rowB) {
+        float[] buffer = scratch.get();
+        chunks[rowA >>> CHUNK_SHIFT].get((rowA & CHUNK_MASK) * dimension, buffer, 0, dimension);
+        chunks[rowB >>> CHUNK_SHIFT].get((rowB & CHUNK_MASK) * dimension, buffer, dimension, dimension);
+        return VectorMath.dot(buffer, 0, buffer, dimension, dimension);
+    }
+
+    /**
+     * 计算 [fromRow, toRow) 各行与查询向量的点积，写入 out[0 .. toRow - fromRow)
+     * <p>
+     * 按块批量拷贝到线程本地缓冲区后逐行计算，用于精确扫描。
+     * </p>
+     */
+    public void dotRange(float[] query, int fromRow, int toRow, float[] out) {
+        float[] buffer = scratch.get();
+        int row = fromRow;
+        while (row < toRow) {
+            int inChunk = row & CHUNK_MASK;
+            int rows = Math.min(Math.min(toRow - row, BLOCK_ROWS), CHUNK_ROWS - inChunk);
+            chunks[row >>> CHUNK_SHIFT].get(inChunk * dimension, buffer, 0, rows * dimension);
+            for (int i = 0; i < rows; i++) {
+                out[row - fromRow + i] = VectorMath.dot(query, 0, buffer, i * dimension, dimension);
+            }
+            row += rows;
+        }
+    }
+
+    /**
+     * 多个查询向量与指定行的点积，写入 out[0 .. queries.length)
+     */
+    public void dot(float[][] queries, int row, float[] out) {
+        float[] buffer = scratch.get();
+        chunks[row >>> CHUNK_SHIFT].get((row & CHUNK_MASK) * dimension, buffer, 0, dimension);
+        for (int q = 0; q < queries.length; q++) {
+            out[q] = VectorMath.dot(queries[q], 0, buffer, 0, dimension);
+        }
+    }
+
+    /**
+     * 计算 [fromRow, toRow) 各行与每个查询向量的点积，写入 out[q][0 .. toRow - fromRow)
+     * <p>
+     * 每块只拷贝一次，逐行与全部查询计算 (行向量留在 L1 缓存中，相当于一次小矩阵乘法)，
+     * 多条查询的扫描代价接近一条查询的内存带宽。
+     * </p>
+     */
+    public void dotRange(float[][] queries, int fromRow, int toRow, float[][] out) {
+        if (queries.length == 1) {
+            dotRange(queries[0], fromRow, toRow, out[0]);
+            return;
+        }
+        float[] buffer = scratch.get();
+        int row = fromRow;
+        while (row < toRow) {
+            int inChunk = row & CHUNK_MASK;
+            int rows = Math.min(Math.min(toRow - row, BLOCK_ROWS), CHUNK_ROWS - inChunk);
+            chunks[row >>> CHUNK_SHIFT].get(inChunk * dimension, buffer, 0, rows * dimension);
+            for (int i = 0; i < rows; i++) {
+                int offset = i * dimension;
+                int index = row - fromRow + i;
+                for (int q = 0; q < queries.length; q++) {
+                    out[q][index] = VectorMath.dot(queries[q], 0, buffer, offset, dimension);
+                }
+            }
+            row += rows;
+        }
+    }
+
+    /**
+     * 复制指定行到新数组
+     */
+    public float[] copyOf(int row) {
+        float[] vector = new float[dimension];
+        chunks[row >>> CHUNK_SHIFT].get((row & CHUNK_MASK) * dimension, vector);
+        return vector;
+    }
+
+    /**
+     * 已分配的直接内存与文件映射 (字节)
+     */
+    public long offHeapBytes() {
+        long floats = 0;
+        for (FloatBuffer chunk : chunks) {
+            floats += chunk.capacity();
+        }
+        return floats * Float.BYTES;
+    }
+
+    /**
+     * 保证能写入 [0, rows) 行 (持有 growLock 时调用)；只有最后一块可能小于整块
+     */
+    private void ensureCapacity(int rows) {
+        FloatBuffer[] current = chunks;
+        int required = (rows + CHUNK_MASK) >>> CHUNK_SHIFT;
+        int lastRows = rows - ((required - 1) << CHUNK_SHIFT);
+        if (current.length > required
+                || current.length == required && current[required - 1].capacity() >= lastRows * dimension) {
+            return;
+        }
+        FloatBuffer[] grown = Arrays.copyOf(current, Math.max(current.length, required));
+        if (current.length > 0) {
+            // 原来的最后一块：后面还有块时补成整块，否则按需增长
+            int last = current.length - 1;
+            int capacityRows = last < required - 1 ? CHUNK_ROWS : tailCapacity(current[last].capacity() / dimension, lastRows);
+            if (current[last].capacity() < capacityRows * dimension) {
+                grown[last] = newChunk(capacityRows, dimension).put(current[last].duplicate().clear());
+            }
+        }
+        for (int i = current.length; i < required; i++) {
+            grown[i] = newChunk(i < required - 1 ? CHUNK_ROWS : tailCapacity(0, lastRows), dimension);
+        }
+        chunks = grown;
+    }
+
+    /**
+     * 最后一块的新容量：按 2 倍增长，不小于需要的行数，不超过整块
+     */
+    private static int tailCapacity(int currentRows, int requiredRows) {
+        int rows = Math.max(MIN_TAIL_ROWS, currentRows * 2);
+        while (rows < requiredRows) {
+            rows *= 2;
+        }
+        return Math.min(rows, CHUNK_ROWS);
+    }
+
+    private static FloatBuffer newChunk(int rows, int dimension) {
+        return ByteBuffer.allocateDirect(rows * dimension * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
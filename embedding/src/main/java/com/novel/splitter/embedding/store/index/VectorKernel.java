@@ -0,0 +1,21 @@
+package com.novel.splitter.embedding.store.index;
+
+/**
+ * 点积计算内核
+ * <p>
+ * 由 {@link VectorMath} 在启动时选择实现：JVM 加载了 jdk.incubator.vector 模块时使用 SIMD 实现，
+ * 否则使用标量实现。
+ * </p>
+ */
+interface VectorKernel {
+
+    /**
+     * a[aOffset ..] 与 b[bOffset ..] 前 length 个分量的点积
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * 实现名称 (用于日志)
+     */
+    String name();
+}
@@ -0,0 +1,103 @@
+package com.novel.splitter.embedding.store.index;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 向量计算工具
+ * <p>
+ * 索引中的向量在写入时统一做 L2 归一化，检索时余弦相似度退化为点积，无需逐条计算范数。
+ * </p>
+ * <p>
+ * 点积内核在类加载时选择：JVM 以 --add-modules jdk.incubator.vector 启动时使用 SIMD 内核，
+ * 否则 (或 -Dembedding.vector.simd=false) 使用标量内核。
+ * </p>
+ */
+@Slf4j
+public final class VectorMath {
+
+    private static final VectorKernel KERNEL = selectKernel();
+
+    private VectorMath() {
+    }
+
+    /**
+     * 点积
+     */
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vector dimensions mismatch: " + a.length + " vs " + b.length);
+        }
+        return KERNEL.dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * 点积：a[aOffset ..] 与 b[bOffset ..] 的前 length 个分量
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * 余弦相似度 (用于未归一化的向量)，任一向量为零向量时返回 0
+     */
+    public static float cosine(float[] a, float[] b) {
+        float dot = dot(a, b);
+        float normA = KERNEL.dot(a, 0, a, 0, a.length);
+        float normB = KERNEL.dot(b, 0, b, 0, b.length);
+        if (normA == 0f || normB == 0f) {
+            return 0f;
+        }
+        return (float) (dot / (Math.sqrt(normA) * Math.sqrt(normB)));
+    }
+
+    /**
+     * 返回 L2 归一化后的副本，零向量返回全零副本
+     */
+    public static float[] normalizedCopy(float[] v) {
+        double norm = 0.0;
+        for (float x : v) {
+            norm += (double) x * x;
+        }
+        float[] result = new float[v.length];
+        if (norm == 0.0) {
+            return result;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < v.length; i++) {
+            result[i] = v[i] * scale;
+        }
+        return result;
+    }
+
+    /**
+     * 当前使用的点积内核名称
+     */
+    public static String kernelName() {
+        return KERNEL.name();
+    }
+
+    private static VectorKernel selectKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("embedding.vector.simd", "true"))) {
+            log.info("Vector kernel: scalar (disabled by embedding.vector.simd=false)");
+            return ScalarVectorKernel.INSTANCE;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("Vector kernel: scalar (start the JVM with --add-modules jdk.incubator.vector to enable SIMD)");
+            return ScalarVectorKernel.INSTANCE;
+        }
+        try {
+            Class<?> simdKernel = Class.forName(VectorMath.class.getPackageName() + ".SimdVectorKernel");
+            if (!(Boolean) simdKernel.getDeclaredMethod("isSupported").invoke(null)) {
+                log.info("Vector kernel: scalar (preferred float vector has fewer than 4 lanes)");
+                return ScalarVectorKernel.INSTANCE;
+            }
+            VectorKernel kernel = (VectorKernel) simdKernel.getDeclaredConstructor().newInstance();
+            log.info("Vector kernel: {}", kernel.name());
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.info("Vector kernel: scalar (SIMD unavailable: {})", cause.getMessage());
+            return ScalarVectorKernel.INSTANCE;
+        }
+    }
+}
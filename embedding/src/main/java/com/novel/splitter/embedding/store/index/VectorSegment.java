@@ -0,0 +1,320 @@
+package com.novel.splitter.embedding.store.index;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * 向量索引段文件
+ * <p>
+ * 一个段文件保存 {@link HnswIndex} 的完整快照：向量矩阵、行号与场景 ID 的对应关系、HNSW 图以及调用方提供的元数据块。
+ * 加载时向量矩阵直接内存映射 ({@link VectorArena#map})，不读取、不解析；ID 表与图按顺序解析。
+ * </p>
+ * <pre>
+ * 文件格式 (小端序):
+ *   header   (64 字节)
+ *     magic(int) | version(int) | dimension(int) | rows(int) | entryPoint(int) | maxLevel(int) | flags(int) | reserved(int)
+ *     idTableOffset(long) | graphOffset(long) | metadataOffset(long) | metadataLength(long)
+ *   matrix   : float[rows * dimension]，行优先，从第 64 字节开始
+ *   idTable  : liveBitmap(long * ceil(rows / 64)) | idEnd(int * rows) | ids(UTF-8，首尾相接)
+ *   graph    : 每行 levelCount(int)，每层 count(int) | neighbors(int * count) (flags 含 GRAPH 时存在)
+ *   metadata : 调用方自定义的字节块
+ * </pre>
+ * <p>
+ * 写入先生成同目录下的临时文件并 fsync，再原子重命名为目标文件，进程在任何时刻中断都不会留下残缺的段文件。
+ * </p>
+ */
+@Slf4j
+public final class VectorSegment {
+
+    private static final int MAGIC = 0x5356534E; // "NSVS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int FLAG_GRAPH = 1;
+
+    private VectorSegment() {
+    }
+
+    /**
+     * 加载结果
+     *
+     * @param index    恢复的索引
+     * @param metadata 元数据块
+     */
+    public record Loaded(HnswIndex index, byte[] metadata) {
+    }
+
+    /**
+     * 将索引快照原子写入段文件
+     * <p>
+     * 写入期间索引可继续接收新向量：快照只包含开始写入时已分配的行，且只保留其中已完成插入的有效行。
+     * </p>
+     *
+     * @return 文件大小 (字节)
+     */
+    public static long write(Path file, HnswIndex index, byte[] metadata) throws IOException {
+        VectorArena arena = index.vectors();
+        int rows = arena == null ? 0 : index.nodeCount();
+        int dimension = arena == null ? 0 : arena.dimension();
+        boolean graph = index.isGraphEnabled() && rows > 0;
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            channel.position(HEADER_BYTES);
+            if (rows > 0) {
+                arena.writeTo(channel, rows);
+            }
+            BlockWriter writer = new BlockWriter(channel);
+
+            // ID 表
+            long idTableOffset = writer.position();
+            BitSet live = new BitSet(rows);
+            byte[][] ids = new byte[rows][];
+            for (int row = 0; row < rows; row++) {
+                live.set(row, index.isLive(row));
+                ids[row] = index.key(row).getBytes(StandardCharsets.UTF_8);
+            }
+            long[] words = live.toLongArray();
+            for (int w = 0; w < (rows + 63) / 64; w++) {
+                writer.putLong(w < words.length ? words[w] : 0L);
+            }
+            int end = 0;
+            for (byte[] id : ids) {
+                end += id.length;
+                writer.putInt(end);
+            }
+            for (byte[] id : ids) {
+                writer.put(id);
+            }
+
+            // HNSW 图：只保留快照范围内的邻居
+            long graphOffset = writer.position();
+            int entryPoint = -1;
+            int maxLevel = -1;
+            if (graph) {
+                for (int row = 0; row < rows; row++) {
+                    int level = index.level(row);
+                    writer.putInt(level + 1);
+                    for (int l = 0; l <= level; l++) {
+                        int[] neighbors = index.neighbors(row, l);
+                        int count = 0;
+                        for (int neighbor : neighbors) {
+                            if (neighbor < rows) {
+                                count++;
+                            }
+                        }
+                        writer.putInt(count);
+                        for (int neighbor : neighbors) {
+                            if (neighbor < rows) {
+                                writer.putInt(neighbor);
+                            }
+                        }
+                    }
+                    if (level > maxLevel) {
+                        maxLevel = level;
+                        entryPoint = row;
+                    }
+                }
+                if (index.entryPoint() >= 0 && index.entryPoint() < rows && index.level(index.entryPoint()) == maxLevel) {
+                    entryPoint = index.entryPoint();
+                }
+            }
+
+            long metadataOffset = writer.position();
+            writer.put(metadata);
+            writer.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dimension).putInt(rows)
+                    .putInt(entryPoint).putInt(maxLevel).putInt(graph ? FLAG_GRAPH : 0).putInt(0)
+                    .putLong(idTableOffset).putLong(graphOffset).putLong(metadataOffset).putLong(metadata.length)
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(file);
+    }
+
+    /**
+     * 加载段文件
+     *
+     * @param graphEnabled 是否需要 HNSW 图；需要但文件中没有图时按向量重新建图
+     */
+    public static Loaded read(Path file, int m, int efConstruction, boolean graphEnabled) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // 读满文件头
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not a vector segment file: " + file);
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported vector segment version " + version + ": " + file);
+            }
+            int dimension = header.getInt();
+            int rows = header.getInt();
+            int entryPoint = header.getInt();
+            int maxLevel = header.getInt();
+            boolean hasGraph = (header.getInt() & FLAG_GRAPH) != 0;
+            header.getInt();
+            long idTableOffset = header.getLong();
+            long graphOffset = header.getLong();
+            long metadataOffset = header.getLong();
+            long metadataLength = header.getLong();
+
+            byte[] metadata = new byte[(int) metadataLength];
+            ByteBuffer metadataBuffer = ByteBuffer.wrap(metadata);
+            while (metadataBuffer.hasRemaining()
+                    && channel.read(metadataBuffer, metadataOffset + metadataBuffer.position()) > 0) {
+                // 读满元数据块
+            }
+            if (rows == 0) {
+                return new Loaded(new HnswIndex(m, efConstruction, graphEnabled), metadata);
+            }
+
+            VectorArena arena = VectorArena.map(channel, HEADER_BYTES, dimension, rows);
+
+            MappedByteBuffer idTable = channel.map(FileChannel.MapMode.READ_ONLY, idTableOffset, graphOffset - idTableOffset);
+            idTable.order(ByteOrder.LITTLE_ENDIAN);
+            long[] words = new long[(rows + 63) / 64];
+            idTable.asLongBuffer().get(words);
+            BitSet live = BitSet.valueOf(words);
+            idTable.position(words.length * Long.BYTES);
+            int[] idEnd = new int[rows];
+            idTable.asIntBuffer().get(idEnd);
+            int idBase = idTable.position() + rows * Integer.BYTES;
+            String[] ids = new String[rows];
+            byte[] scratch = new byte[256];
+            int start = 0;
+            for (int row = 0; row < rows; row++) {
+                int length = idEnd[row] - start;
+                if (scratch.length < length) {
+                    scratch = new byte[length];
+                }
+                idTable.get(idBase + start, scratch, 0, length);
+                ids[row] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                start = idEnd[row];
+            }
+
+            if (graphEnabled && !hasGraph) {
+                log.info("Segment {} has no HNSW graph, rebuilding from {} vectors", file.getFileName(), live.cardinality());
+                HnswIndex index = new HnswIndex(m, efConstruction, true);
+                live.stream().parallel().forEach(row -> index.add(ids[row], arena.copyOf(row)));
+                return new Loaded(index, metadata);
+            }
+
+            HnswIndex index;
+            if (graphEnabled) {
+                IntBuffer graph = channel.map(FileChannel.MapMode.READ_ONLY, graphOffset, metadataOffset - graphOffset)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asIntBuffer();
+                index = HnswIndex.restore(m, efConstruction, true, arena, rows, ids, live, row -> {
+                    int[][] levels = new int[graph.get()][];
+                    for (int l = 0; l < levels.length; l++) {
+                        levels[l] = new int[graph.get()];
+                        graph.get(levels[l]);
+                    }
+                    return levels;
+                }, entryPoint, maxLevel);
+            } else {
+                index = HnswIndex.restore(m, efConstruction, false, arena, rows, ids, live, null, -1, -1);
+            }
+            return new Loaded(index, metadata);
+        }
+    }
+
+    /**
+     * 只读取文件头与有效行位图，返回有效向量数 (不映射矩阵、不解析 ID 与图)
+     */
+    public static int liveCount(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // 读满文件头
+            }
+            if (header.position() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+                throw new IOException("Not a vector segment file: " + file);
+            }
+            int rows = header.getInt(12);
+            long idTableOffset = header.getLong(32);
+            ByteBuffer bitmap = ByteBuffer.allocate((rows + 63) / 64 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (bitmap.hasRemaining() && channel.read(bitmap, idTableOffset + bitmap.position()) > 0) {
+                // 读满位图
+            }
+            bitmap.flip();
+            int live = 0;
+            while (bitmap.remaining() >= Long.BYTES) {
+                live += Long.bitCount(bitmap.getLong());
+            }
+            return live;
+        }
+    }
+
+    /**
+     * 带缓冲的小端顺序写入
+     */
+    private static final class BlockWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        BlockWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() throws IOException {
+            return channel.position() + buffer.position();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
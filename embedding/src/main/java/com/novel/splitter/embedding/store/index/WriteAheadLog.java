@@ -0,0 +1,309 @@
+package com.novel.splitter.embedding.store.index;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * 追加写入的预写日志 (WAL)
+ * <p>
+ * 每条记录带长度与 CRC32C 校验，内容由调用方编码。{@link #append} 只把记录放入内存缓冲区并返回序号，
+ * {@link #commit} 保证该序号之前的记录已写入文件 (可选 fsync)：并发提交的线程中只有一个执行写入，
+ * 其余线程等待期间追加的记录由下一次写入一并带走 (组提交)，一次系统调用 / fsync 覆盖多条记录。
+ * </p>
+ * <pre>
+ * 文件格式 (小端序):
+ *   header : magic(int) | version(int)
+ *   record : length(int) | crc32c(int) | payload(byte * length)
+ * </pre>
+ * <p>
+ * 进程中断可能留下残缺的尾记录，{@link #replay} 遇到长度越界或校验失败的记录时停止并截断文件。
+ * </p>
+ */
+@Slf4j
+public final class WriteAheadLog implements Closeable {
+
+    private static final int MAGIC = 0x4C57534E; // "NSWL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * 写入文件 (以及 fsync) 由持有该锁的线程执行，同一时刻只有一个
+     */
+    private final Object flushLock = new Object();
+    private FileChannel channel;
+    private long fileBytes;
+
+    /**
+     * 待写入的记录 (受 this 保护)；spare 为写入线程交换出来的缓冲区 (受 flushLock 保护)
+     */
+    private ByteBuffer pending = newBuffer(1 << 16);
+    private ByteBuffer spare = newBuffer(1 << 16);
+    private long appendedSeq;
+    private volatile long writtenSeq;
+    private volatile long syncedSeq;
+
+    /**
+     * @param channel   已写好文件头并定位到末尾的通道 (包内可见，测试可注入写入失败的通道)
+     * @param fileBytes 文件当前大小
+     */
+    WriteAheadLog(FileChannel channel, long fileBytes) {
+        this.channel = channel;
+        this.fileBytes = fileBytes;
+    }
+
+    /**
+     * 打开日志文件并定位到末尾以继续追加；文件不存在或文件头无效时新建
+     * <p>
+     * 已有内容应先经过 {@link #replay} (截断残缺的尾记录)。
+     * </p>
+     */
+    public static WriteAheadLog open(Path file) throws IOException {
+        FileChannel channel = openChannel(file);
+        return new WriteAheadLog(channel, channel.size());
+    }
+
+    /**
+     * 按顺序回放日志中的全部完整记录，并截断残缺的尾部
+     *
+     * @param consumer 接收每条记录的内容 (小端序 ByteBuffer，仅在回调期间有效)
+     * @return 回放的记录数
+     */
+    public static long replay(Path file, Consumer<ByteBuffer> consumer) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long validEnd = HEADER_BYTES;
+        long records = 0;
+        long fileSize;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            fileSize = channel.size();
+            InputStream stream = Channels.newInputStream(channel);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+            if (fileSize < HEADER_BYTES || Integer.reverseBytes(in.readInt()) != MAGIC
+                    || Integer.reverseBytes(in.readInt()) != FORMAT_VERSION) {
+                log.warn("WAL {} has no valid header, discarding {} bytes", file, fileSize);
+                channel.truncate(0);
+                return 0;
+            }
+
+            CRC32C crc = new CRC32C();
+            byte[] payload = new byte[4096];
+            while (validEnd + RECORD_HEADER_BYTES <= fileSize) {
+                int length = Integer.reverseBytes(in.readInt());
+                int checksum = Integer.reverseBytes(in.readInt());
+                if (length < 0 || length > MAX_RECORD_BYTES || validEnd + RECORD_HEADER_BYTES + length > fileSize) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                try {
+                    in.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                consumer.accept(ByteBuffer.wrap(payload, 0, length).order(ByteOrder.LITTLE_ENDIAN));
+                validEnd += RECORD_HEADER_BYTES + length;
+                records++;
+            }
+            if (validEnd < fileSize) {
+                log.warn("Truncating {} bytes of incomplete records at the end of WAL {}", fileSize - validEnd, file);
+                channel.truncate(validEnd);
+                channel.force(true);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 追加一条记录到内存缓冲区
+     *
+     * @return 记录序号，传给 {@link #commit} 以等待其落盘
+     */
+    public synchronized long append(byte[] payload) {
+        if (payload.length > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("WAL record too large: " + payload.length + " bytes");
+        }
+        int required = RECORD_HEADER_BYTES + payload.length;
+        if (pending.remaining() < required) {
+            ByteBuffer grown = newBuffer(Math.max(pending.capacity() * 2, pending.position() + required));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        pending.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        return ++appendedSeq;
+    }
+
+    /**
+     * 等待序号不大于 seq 的记录写入文件
+     *
+     * @param force 是否同时 fsync (为 false 时只保证进入操作系统页缓存，进程被杀不丢失)
+     */
+    public void commit(long seq, boolean force) throws IOException {
+        if (seq <= (force ? syncedSeq : writtenSeq)) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (seq <= (force ? syncedSeq : writtenSeq)) {
+                return;
+            }
+            long upTo = flushPending();
+            if (force) {
+                channel.force(false);
+                syncedSeq = upTo;
+            }
+        }
+    }
+
+    /**
+     * 写出全部缓冲记录并 fsync
+     */
+    public void sync() throws IOException {
+        synchronized (flushLock) {
+            long upTo = flushPending();
+            if (syncedSeq < upTo) {
+                channel.force(false);
+                syncedSeq = upTo;
+            }
+        }
+    }
+
+    /**
+     * 切换到新的日志文件：当前文件的全部记录写出并 fsync 后关闭
+     * <p>
+     * 调用方需保证切换期间没有并发的 {@link #append}，切换前追加的记录都属于旧文件。
+     * </p>
+     */
+    public void rotate(Path file) throws IOException {
+        synchronized (flushLock) {
+            sync();
+            channel.close();
+            Files.deleteIfExists(file);
+            channel = openChannel(file);
+            fileBytes = HEADER_BYTES;
+        }
+    }
+
+    /**
+     * 当前文件大小 (含尚未写出的缓冲记录)
+     */
+    public long size() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                return fileBytes + pending.position();
+            }
+        }
+    }
+
+    /**
+     * 当前文件是否没有任何记录
+     */
+    public boolean isEmpty() {
+        return size() <= HEADER_BYTES;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (flushLock) {
+            if (channel.isOpen()) {
+                sync();
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * 交换缓冲区并写出 (需持有 flushLock)
+     * <p>
+     * 写入失败时未写出的字节放回待写缓冲区的前部，已写出的序号不前移，下次写入从中断处继续。
+     * </p>
+     *
+     * @return 已写出的最大序号
+     */
+    private long flushPending() throws IOException {
+        long upTo;
+        synchronized (this) {
+            upTo = appendedSeq;
+            if (pending.position() == 0) {
+                return upTo;
+            }
+            ByteBuffer full = pending;
+            pending = spare;
+            spare = full;
+        }
+        spare.flip();
+        int bytes = spare.remaining();
+        try {
+            while (spare.hasRemaining()) {
+                channel.write(spare);
+            }
+        } catch (IOException | RuntimeException e) {
+            fileBytes += bytes - spare.remaining();
+            requeueUnwritten();
+            throw e;
+        }
+        spare.clear();
+        fileBytes += bytes;
+        writtenSeq = upTo;
+        return upTo;
+    }
+
+    /**
+     * 把 spare 中未写出的字节放回 pending 之前，保持记录在文件中的顺序 (需持有 flushLock)
+     */
+    private void requeueUnwritten() {
+        synchronized (this) {
+            ByteBuffer merged = newBuffer(Math.max(pending.capacity(), spare.remaining() + pending.position()));
+            merged.put(spare);
+            pending.flip();
+            merged.put(pending);
+            pending.clear();
+            spare = pending;
+            pending = merged;
+        }
+    }
+
+    private static FileChannel openChannel(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+            channel.truncate(0);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
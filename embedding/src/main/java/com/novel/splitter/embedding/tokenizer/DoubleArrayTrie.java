@@ -0,0 +1,207 @@
+package com.novel.splitter.embedding.tokenizer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 双数组 Trie (Double-Array Trie)
+ * <p>
+ * 以 UTF-16 char 为转移字符，状态转移为 t = base[s] + code(c)，当 check[t] == s 时转移有效。
+ * 构建完成后只有三个 int 数组，查询过程无任何对象分配，适合分词热路径上的最长匹配。
+ * </p>
+ */
+public final class DoubleArrayTrie {
+
+    /** 表示无匹配 */
+    public static final long NO_MATCH = -1L;
+
+    private static final int ROOT = 0;
+    private static final int FREE = -1;
+
+    private final int[] base;
+    private final int[] check;
+    private final int[] value;
+    private final int size;
+
+    private DoubleArrayTrie(int[] base, int[] check, int[] value, int size) {
+        this.base = base;
+        this.check = check;
+        this.value = value;
+        this.size = size;
+    }
+
+    /**
+     * 从 from 开始做最长前缀匹配，匹配范围不超过 to
+     *
+     * @return 无匹配时返回 {@link #NO_MATCH}；否则高 32 位为匹配结束位置 (不包含)，低 32 位为值
+     */
+    public long longestMatch(CharSequence text, int from, int to) {
+        long result = NO_MATCH;
+        int state = ROOT;
+        for (int i = from; i < to; i++) {
+            int next = base[state] + code(text.charAt(i));
+            if (next >= size || check[next] != state) {
+                break;
+            }
+            state = next;
+            if (value[state] != FREE) {
+                result = ((long) (i + 1) << 32) | value[state];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 精确匹配
+     *
+     * @return 值，不存在时返回 -1
+     */
+    public int get(CharSequence key) {
+        int state = ROOT;
+        for (int i = 0; i < key.length(); i++) {
+            int next = base[state] + code(key.charAt(i));
+            if (next >= size || check[next] != state) {
+                return FREE;
+            }
+            state = next;
+        }
+        return value[state];
+    }
+
+    /**
+     * 数组槽位数 (用于评估内存占用)
+     */
+    public int capacity() {
+        return size;
+    }
+
+    public static int matchEnd(long match) {
+        return (int) (match >>> 32);
+    }
+
+    public static int matchValue(long match) {
+        return (int) match;
+    }
+
+    private static int code(char c) {
+        // 0 号转移保留，避免 base[s] + 0 与父状态自身冲突
+        return c + 1;
+    }
+
+    /**
+     * 从键值对构建
+     *
+     * @param entries 键 -> 值 (值必须非负)
+     */
+    public static DoubleArrayTrie build(Map<String, Integer> entries) {
+        return new Builder().build(entries);
+    }
+
+    /**
+     * 构建器：先生成指针 Trie，再按广度优先为每个节点寻找可用的 base
+     */
+    private static final class Builder {
+
+        private int[] base = new int[1 << 16];
+        private int[] check = new int[1 << 16];
+        private int[] value = new int[1 << 16];
+        private int maxUsed = 0;
+        /** 第一个可能空闲的位置，用于加速 base 搜索 */
+        private int firstFree = 1;
+
+        private static final class Node {
+            final TreeMap<Character, Node> children = new TreeMap<>();
+            int value = FREE;
+        }
+
+        DoubleArrayTrie build(Map<String, Integer> entries) {
+            Node root = new Node();
+            for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+                String key = entry.getKey();
+                if (key.isEmpty() || entry.getValue() < 0) {
+                    continue;
+                }
+                Node node = root;
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+                }
+                node.value = entry.getValue();
+            }
+
+            Arrays.fill(check, FREE);
+            Arrays.fill(value, FREE);
+            check[ROOT] = ROOT;
+
+            Deque<Object[]> queue = new ArrayDeque<>();
+            queue.add(new Object[]{root, ROOT});
+            while (!queue.isEmpty()) {
+                Object[] item = queue.poll();
+                Node node = (Node) item[0];
+                int state = (Integer) item[1];
+                if (node.children.isEmpty()) {
+                    continue;
+                }
+
+                int b = findBase(node);
+                base[state] = b;
+                for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                    int t = b + code(child.getKey());
+                    check[t] = state;
+                    value[t] = child.getValue().value;
+                    maxUsed = Math.max(maxUsed, t);
+                    queue.add(new Object[]{child.getValue(), t});
+                }
+            }
+
+            int size = maxUsed + 1;
+            return new DoubleArrayTrie(
+                    Arrays.copyOf(base, size),
+                    Arrays.copyOf(check, size),
+                    Arrays.copyOf(value, size),
+                    size);
+        }
+
+        private int findBase(Node node) {
+            int firstCode = code(node.children.firstKey());
+            while (firstFree < check.length && check[firstFree] != FREE) {
+                firstFree++;
+            }
+            // 只在第一个子节点能落到空闲槽位的位置上尝试 base
+            for (int p = Math.max(firstFree, firstCode + 1); ; p++) {
+                ensureCapacity(p + 1);
+                if (check[p] != FREE) {
+                    continue;
+                }
+                int b = p - firstCode;
+                boolean fits = true;
+                for (char c : node.children.keySet()) {
+                    int t = b + code(c);
+                    ensureCapacity(t + 1);
+                    if (check[t] != FREE) {
+                        fits = false;
+                        break;
+                    }
+                }
+                if (fits) {
+                    return b;
+                }
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= check.length) {
+                return;
+            }
+            int newLength = Math.max(required, check.length * 2);
+            int oldLength = check.length;
+            base = Arrays.copyOf(base, newLength);
+            check = Arrays.copyOf(check, newLength);
+            value = Arrays.copyOf(value, newLength);
+            Arrays.fill(check, oldLength, newLength, FREE);
+            Arrays.fill(value, oldLength, newLength, FREE);
+        }
+    }
+}
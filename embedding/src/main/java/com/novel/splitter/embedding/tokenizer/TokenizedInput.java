@@ -5,18 +5,39 @@ import lombok.RequiredArgsConstructor;
 
 import java.util.Arrays;
 
+/**
+ * 分词结果 (未补齐)
+ * <p>
+ * 单句输入的 attention_mask 全为 1、token_type_ids 全为 0，
+ * 因此只保存 inputIds，其余两者在需要时按长度生成。
+ * </p>
+ */
 @Getter
 @RequiredArgsConstructor
 public class TokenizedInput {
     private final long[] inputIds;
-    private final long[] attentionMask;
-    private final long[] tokenTypeIds; // ONNX Runtime often expects this too for BERT
+
+    /**
+     * 序列长度 (未补齐)
+     */
+    public int length() {
+        return inputIds.length;
+    }
+
+    public long[] getAttentionMask() {
+        long[] attentionMask = new long[inputIds.length];
+        Arrays.fill(attentionMask, 1L);
+        return attentionMask;
+    }
+
+    public long[] getTokenTypeIds() {
+        return new long[inputIds.length]; // All zeros for sentence A
+    }
 
     @Override
     public String toString() {
         return "TokenizedInput{" +
                 "inputIds=" + Arrays.toString(inputIds) +
-                ", attentionMask=" + Arrays.toString(attentionMask) +
                 '}';
     }
 }
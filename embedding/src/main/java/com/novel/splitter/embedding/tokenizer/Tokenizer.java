@@ -3,67 +3,270 @@ package com.novel.splitter.embedding.tokenizer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
 
+/**
+ * BERT 分词器 (BasicTokenizer + WordPiece)
+ * <p>
+ * 与 BGE 的 tokenizer.json 配置保持一致：
+ * BertNormalizer (clean_text, handle_chinese_chars, 不转小写, 不去重音) +
+ * BertPreTokenizer (按空白和标点切分) + 贪心最长匹配 WordPiece。
+ * 整个过程直接在原始字符串上按下标处理，WordPiece 通过 {@link DoubleArrayTrie} 查找，
+ * 不生成子串，也不装箱。
+ * </p>
+ */
 @Component
 @RequiredArgsConstructor
 public class Tokenizer {
 
     private final Vocabulary vocabulary;
-    private static final int MAX_LENGTH = 512;
+    public static final int MAX_LENGTH = 512;
 
+    /**
+     * 分词规则版本：同一文本的 ID 序列发生变化时递增 (2: BasicTokenizer + WordPiece)，使依赖分词结果的缓存失效
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    /** 超过该长度的单词直接视为 [UNK] (与 tokenizer.json 的 max_input_chars_per_word 一致) */
+    private static final int MAX_INPUT_CHARS_PER_WORD = 100;
+
+    private static final byte NORMAL = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte PUNCTUATION = 2;
+    private static final byte CJK = 3;
+    private static final byte CONTROL = 4;
+
+    /**
+     * BMP 字符分类表，类初始化时预计算，避免热路径上的 Character.getType 调用
+     */
+    private static final byte[] CHAR_CLASS = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            CHAR_CLASS[c] = classify(c);
+        }
+    }
+
+    /**
+     * 每个线程复用的 ID 缓冲区，避免分词过程中的中间分配
+     */
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[MAX_LENGTH]);
+
+    /**
+     * 分词 (不补齐)
+     * <p>
+     * 返回的序列长度为实际 Token 数 ([CLS] ... [SEP])，最长 MAX_LENGTH。
+     * 补齐 (Padding) 由推理阶段按批次内最长序列统一完成。
+     * </p>
+     */
     public TokenizedInput tokenize(String text) {
+        long[] scratch = SCRATCH.get();
+        int length = tokenizeInto(text, scratch);
+        return new TokenizedInput(Arrays.copyOf(scratch, length));
+    }
+
+    /**
+     * 分词并将 Token ID 直接写入目标数组 (无装箱、无中间对象)
+     *
+     * @param text 文本
+     * @param dest 目标数组，最多写入 min(dest.length, MAX_LENGTH) 个 ID，长度至少为 2 ([CLS] 与 [SEP])
+     * @return 写入的 Token 数 (包含 [CLS] 与 [SEP])
+     * @throws IllegalArgumentException 目标数组放不下 [CLS] 与 [SEP]
+     */
+    public int tokenizeInto(String text, long[] dest) {
+        if (dest.length < 2) {
+            throw new IllegalArgumentException("Destination must hold at least [CLS] and [SEP], got length " + dest.length);
+        }
         if (text == null) text = "";
-        
-        // Simple normalization: just trim? 
-        // BGE handles Chinese chars by putting spaces, but our vocab map likely has raw chars.
-        // Let's iterate characters.
-        
-        List<Long> ids = new ArrayList<>();
-        ids.add(vocabulary.getClsId());
-        
-        for (int i = 0; i < text.length(); i++) {
+
+        // 预留 [SEP] 的位置
+        int limit = Math.min(dest.length, MAX_LENGTH) - 1;
+
+        int n = 0;
+        dest[n++] = vocabulary.getClsId();
+
+        int wordStart = -1;
+        boolean wordHasControl = false;
+        int len = text.length();
+        int i = 0;
+        while (i < len && n < limit) {
             char c = text.charAt(i);
-            String token = String.valueOf(c);
-            
-            // Try to find token in vocab
-            Long id = vocabulary.getId(token);
-            if (id == null) {
-                // Try lower case? BGE usually is uncased but config said lowercase: false
-                // But let's try just in case for English
-                // Actually, let's stick to simple lookup first.
-                // If not found, use UNK
-                id = vocabulary.getUnkId();
+            int width = 1;
+            byte charClass;
+            if (Character.isSurrogate(c)) {
+                int codePoint = text.codePointAt(i);
+                width = Character.charCount(codePoint);
+                charClass = classify(codePoint);
+            } else {
+                charClass = CHAR_CLASS[c];
             }
-            
-            ids.add(id);
-            
-            // Truncate if too long (reserve space for SEP)
-            if (ids.size() >= MAX_LENGTH - 1) {
-                break;
+
+            switch (charClass) {
+                case NORMAL:
+                    if (wordStart < 0) {
+                        wordStart = i;
+                    }
+                    break;
+                case CONTROL:
+                    // clean_text 会删除控制字符但不切分单词，词内出现时需要在清洗后的副本上匹配
+                    if (wordStart >= 0) {
+                        wordHasControl = true;
+                    }
+                    break;
+                case WHITESPACE:
+                    n = flushWord(text, wordStart, i, wordHasControl, dest, n, limit);
+                    wordStart = -1;
+                    wordHasControl = false;
+                    break;
+                default:
+                    // 标点与中日韩字符各自独立成词
+                    n = flushWord(text, wordStart, i, wordHasControl, dest, n, limit);
+                    wordStart = -1;
+                    wordHasControl = false;
+                    n = wordPiece(text, i, i + width, dest, n, limit);
+                    break;
             }
+            i += width;
         }
-        
-        ids.add(vocabulary.getSepId());
-        
-        // Padding
-        int actualLength = ids.size();
-        long[] inputIds = new long[MAX_LENGTH];
-        long[] attentionMask = new long[MAX_LENGTH];
-        long[] tokenTypeIds = new long[MAX_LENGTH]; // All zeros for sentence A
-        
-        for (int i = 0; i < MAX_LENGTH; i++) {
-            if (i < actualLength) {
-                inputIds[i] = ids.get(i);
-                attentionMask[i] = 1;
-            } else {
-                inputIds[i] = vocabulary.getPadId();
-                attentionMask[i] = 0;
+        n = flushWord(text, wordStart, i, wordHasControl, dest, n, limit);
+
+        dest[n++] = vocabulary.getSepId();
+        return n;
+    }
+
+    /**
+     * 分词器标识：分词规则版本与词表摘要的组合，取前 16 位十六进制
+     */
+    public String getTokenizerId() {
+        String source = FORMAT_VERSION + ":" + vocabulary.getChecksum();
+        return HexFormat.of().formatHex(sha256(source.getBytes(StandardCharsets.US_ASCII))).substring(0, 16);
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 补齐使用的 Token ID
+     */
+    public long getPadId() {
+        return vocabulary.getPadId();
+    }
+
+    private int flushWord(String text, int start, int end, boolean hasControl,
+                          long[] dest, int n, int limit) {
+        if (start < 0 || start >= end || n >= limit) {
+            return n;
+        }
+        if (!hasControl) {
+            return wordPiece(text, start, end, dest, n, limit);
+        }
+        StringBuilder cleaned = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isSurrogate(c) || CHAR_CLASS[c] != CONTROL) {
+                cleaned.append(c);
             }
-            tokenTypeIds[i] = 0;
         }
-        
-        return new TokenizedInput(inputIds, attentionMask, tokenTypeIds);
+        return wordPiece(cleaned, 0, cleaned.length(), dest, n, limit);
+    }
+
+    /**
+     * 贪心最长匹配 WordPiece
+     * <p>
+     * 任一位置无法匹配时整个单词输出为一个 [UNK] (与 BERT 行为一致)。
+     * </p>
+     */
+    private int wordPiece(CharSequence text, int start, int end, long[] dest, int n, int limit) {
+        if (start >= end || n >= limit) {
+            return n;
+        }
+        long unkId = vocabulary.getUnkId();
+        if (end - start > MAX_INPUT_CHARS_PER_WORD) {
+            dest[n++] = unkId;
+            return n;
+        }
+        // 单字符快速路径 (中文场景的绝大多数情况)
+        if (end - start == 1) {
+            int id = vocabulary.getCharId(text.charAt(start));
+            dest[n++] = id != Vocabulary.NO_ID ? id : unkId;
+            return n;
+        }
+
+        int wordBegin = n;
+        int pos = start;
+        while (pos < end) {
+            DoubleArrayTrie trie = pos == start ? vocabulary.getWordTrie() : vocabulary.getSuffixTrie();
+            long match = trie.longestMatch(text, pos, end);
+            if (match == DoubleArrayTrie.NO_MATCH) {
+                n = wordBegin;
+                dest[n++] = unkId;
+                return n;
+            }
+            // 超出长度的部分不写入，但仍需匹配完整个单词以确定是否为 [UNK]
+            if (n < limit) {
+                dest[n++] = DoubleArrayTrie.matchValue(match);
+            }
+            pos = DoubleArrayTrie.matchEnd(match);
+        }
+        return n;
+    }
+
+    private static byte classify(int codePoint) {
+        if (codePoint == 0 || codePoint == 0xFFFD) {
+            return CONTROL;
+        }
+        if (codePoint == ' ' || codePoint == '\t' || codePoint == '\n' || codePoint == '\r') {
+            return WHITESPACE;
+        }
+        int type = Character.getType(codePoint);
+        if (type == Character.SPACE_SEPARATOR) {
+            return WHITESPACE;
+        }
+        if (type == Character.CONTROL || type == Character.FORMAT || type == Character.PRIVATE_USE
+                || type == Character.SURROGATE || type == Character.UNASSIGNED) {
+            return CONTROL;
+        }
+        if (isChineseChar(codePoint)) {
+            return CJK;
+        }
+        if ((codePoint >= 33 && codePoint <= 47) || (codePoint >= 58 && codePoint <= 64)
+                || (codePoint >= 91 && codePoint <= 96) || (codePoint >= 123 && codePoint <= 126)) {
+            return PUNCTUATION;
+        }
+        switch (type) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return PUNCTUATION;
+            default:
+                return NORMAL;
+        }
+    }
+
+    /**
+     * CJK 统一表意文字区块 (与 BERT 的 _is_chinese_char 一致)
+     */
+    private static boolean isChineseChar(int cp) {
+        return (cp >= 0x4E00 && cp <= 0x9FFF)
+                || (cp >= 0x3400 && cp <= 0x4DBF)
+                || (cp >= 0x20000 && cp <= 0x2A6DF)
+                || (cp >= 0x2A700 && cp <= 0x2B73F)
+                || (cp >= 0x2B740 && cp <= 0x2B81F)
+                || (cp >= 0x2B820 && cp <= 0x2CEAF)
+                || (cp >= 0xF900 && cp <= 0xFAFF)
+                || (cp >= 0x2F800 && cp <= 0x2FA1F);
     }
 }
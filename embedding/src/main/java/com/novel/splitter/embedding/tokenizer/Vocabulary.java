@@ -7,7 +7,11 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -15,8 +19,37 @@ import java.util.Map;
 @Component
 public class Vocabulary {
 
+    /** 表示字符不在词表中 */
+    public static final int NO_ID = -1;
+
     private final Map<String, Long> tokenToId = new HashMap<>();
     private final Map<Long, String> idToToken = new HashMap<>();
+
+    /**
+     * 单字符 Token 的稠密查找表 (按 BMP 码点索引)
+     * <p>
+     * 中文词表绝大多数为单字 Token，分词热路径直接以 char 为下标取 ID，
+     * 避免 String.valueOf(c) 和 HashMap 查找。多字符 Token 仍走 tokenToId。
+     * </p>
+     */
+    private final int[] charTable = new int[Character.MAX_VALUE + 1];
+
+    /** WordPiece 前缀 */
+    public static final String CONTINUING_SUBWORD_PREFIX = "##";
+
+    /** 词首 WordPiece (不带 ## 前缀) 的双数组 Trie */
+    private DoubleArrayTrie wordTrie;
+
+    /** 词中 WordPiece (## 前缀，键中已去掉前缀) 的双数组 Trie */
+    private DoubleArrayTrie suffixTrie;
+
+    private long unkId = 100L;
+    private long clsId = 101L;
+    private long sepId = 102L;
+    private long padId = 0L;
+
+    /** 词表文件内容的 SHA-256 (十六进制) */
+    private String checksum;
     
     @org.springframework.beans.factory.annotation.Value("${embedding.onnx.vocab-path:}")
     private String externalVocabPath;
@@ -26,6 +59,15 @@ public class Vocabulary {
     public Vocabulary() {
     }
 
+    /**
+     * 加载 classpath 中打包的词表 (用于 Spring 容器之外，如离线评估)
+     */
+    public static Vocabulary loadBundled() {
+        Vocabulary vocabulary = new Vocabulary();
+        vocabulary.loadVocabulary();
+        return vocabulary;
+    }
+
     @jakarta.annotation.PostConstruct
     private void loadVocabulary() {
         try {
@@ -50,61 +92,135 @@ public class Vocabulary {
                 }
             }
 
-            try (InputStream inputStream = is) {
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode root = mapper.readTree(inputStream);
-                // Handle both simple map format and HuggingFace tokenizer.json format
-                JsonNode vocabNode = null;
-                if (root.has("model") && root.get("model").has("vocab")) {
-                    vocabNode = root.get("model").get("vocab");
-                } else if (root.has("vocab")) {
-                     vocabNode = root.get("vocab"); // Some simple formats
-                } else {
-                    // Maybe it's a flat map?
-                    vocabNode = root;
-                }
-
-                if (vocabNode == null || !vocabNode.isObject()) {
-                     throw new RuntimeException("Invalid vocabulary format");
-                }
-                
-                Iterator<Map.Entry<String, JsonNode>> fields = vocabNode.fields();
-                while (fields.hasNext()) {
-                    Map.Entry<String, JsonNode> field = fields.next();
-                    String token = field.getKey();
-                    long id = field.getValue().asLong();
-                    tokenToId.put(token, id);
-                    idToToken.put(id, token);
-                }
-                log.info("Loaded vocabulary with {} tokens", tokenToId.size());
-            }
+            load(is);
         } catch (Exception e) {
             log.error("Failed to load vocabulary", e);
             throw new RuntimeException("Failed to load vocabulary", e);
         }
     }
 
+    /**
+     * 从输入流加载词表 (加载完成后关闭流)
+     */
+    void load(InputStream is) throws java.io.IOException {
+        try (InputStream inputStream = is) {
+            byte[] content = inputStream.readAllBytes();
+            checksum = HexFormat.of().formatHex(newDigest().digest(content));
+            ObjectMapper mapper = new ObjectMapper();
+            JsonNode root = mapper.readTree(content);
+            // Handle both simple map format and HuggingFace tokenizer.json format
+            JsonNode vocabNode = null;
+            if (root.has("model") && root.get("model").has("vocab")) {
+                vocabNode = root.get("model").get("vocab");
+            } else if (root.has("vocab")) {
+                 vocabNode = root.get("vocab"); // Some simple formats
+            } else {
+                // Maybe it's a flat map?
+                vocabNode = root;
+            }
+
+            if (vocabNode == null || !vocabNode.isObject()) {
+                 throw new RuntimeException("Invalid vocabulary format");
+            }
+
+            Iterator<Map.Entry<String, JsonNode>> fields = vocabNode.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                String token = field.getKey();
+                long id = field.getValue().asLong();
+                tokenToId.put(token, id);
+                idToToken.put(id, token);
+            }
+            buildLookupTables();
+            log.info("Loaded vocabulary with {} tokens", tokenToId.size());
+        }
+    }
+
+    private void buildLookupTables() {
+        Arrays.fill(charTable, NO_ID);
+        Map<String, Integer> wordPieces = new HashMap<>();
+        Map<String, Integer> suffixPieces = new HashMap<>();
+        for (Map.Entry<String, Long> entry : tokenToId.entrySet()) {
+            String token = entry.getKey();
+            int id = entry.getValue().intValue();
+            if (token.length() == 1) {
+                charTable[token.charAt(0)] = id;
+            }
+            if (token.startsWith(CONTINUING_SUBWORD_PREFIX) && token.length() > CONTINUING_SUBWORD_PREFIX.length()) {
+                suffixPieces.put(token.substring(CONTINUING_SUBWORD_PREFIX.length()), id);
+            } else {
+                wordPieces.put(token, id);
+            }
+        }
+        wordTrie = DoubleArrayTrie.build(wordPieces);
+        suffixTrie = DoubleArrayTrie.build(suffixPieces);
+        log.debug("Built WordPiece tries: word={} slots, suffix={} slots", wordTrie.capacity(), suffixTrie.capacity());
+        unkId = tokenToId.getOrDefault("[UNK]", 100L);
+        clsId = tokenToId.getOrDefault("[CLS]", 101L);
+        sepId = tokenToId.getOrDefault("[SEP]", 102L);
+        padId = tokenToId.getOrDefault("[PAD]", 0L);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 词表文件内容摘要，换用其他词表时随之变化
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
     public Long getId(String token) {
         return tokenToId.get(token);
     }
 
+    /**
+     * 单字符 Token 查找 (无装箱)
+     *
+     * @param c 字符
+     * @return Token ID，不存在时返回 {@link #NO_ID}
+     */
+    public int getCharId(char c) {
+        return charTable[c];
+    }
+
+    /**
+     * 词首 WordPiece Trie
+     */
+    public DoubleArrayTrie getWordTrie() {
+        return wordTrie;
+    }
+
+    /**
+     * 词中 WordPiece Trie (键不含 ## 前缀)
+     */
+    public DoubleArrayTrie getSuffixTrie() {
+        return suffixTrie;
+    }
+
     public String getToken(Long id) {
         return idToToken.get(id);
     }
     
     public long getUnkId() {
-        return tokenToId.getOrDefault("[UNK]", 100L);
+        return unkId;
     }
 
     public long getClsId() {
-        return tokenToId.getOrDefault("[CLS]", 101L);
+        return clsId;
     }
 
     public long getSepId() {
-        return tokenToId.getOrDefault("[SEP]", 102L);
+        return sepId;
     }
     
     public long getPadId() {
-        return tokenToId.getOrDefault("[PAD]", 0L);
+        return padId;
     }
 }
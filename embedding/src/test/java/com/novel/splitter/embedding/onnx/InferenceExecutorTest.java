@@ -0,0 +1,110 @@
+package com.novel.splitter.embedding.onnx;
+
+import com.novel.splitter.embedding.onnx.InferenceExecutor.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InferenceExecutorTest {
+
+    @Test
+    void testQueryRunsBeforeQueuedIngest() throws Exception {
+        try (InferenceExecutor<String> executor = new InferenceExecutor<>("test", List.of("session-0"), 16)) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<String> order = new CopyOnWriteArrayList<>();
+
+            // 占住唯一的工作线程，使后续任务全部排队
+            CompletableFuture<String> blocker = executor.submit(Priority.INGEST, session -> {
+                started.countDown();
+                release.await();
+                return session;
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<Void> ingest1 = executor.submit(Priority.INGEST, session -> { order.add("ingest-1"); return null; });
+            CompletableFuture<Void> ingest2 = executor.submit(Priority.INGEST, session -> { order.add("ingest-2"); return null; });
+            CompletableFuture<Void> query = executor.submit(Priority.QUERY, session -> { order.add("query"); return null; });
+            assertEquals(3, executor.getQueuedCount());
+
+            release.countDown();
+            CompletableFuture.allOf(blocker, ingest1, ingest2, query).get(5, TimeUnit.SECONDS);
+
+            assertEquals("session-0", blocker.get());
+            assertEquals(List.of("query", "ingest-1", "ingest-2"), order);
+        }
+    }
+
+    @Test
+    void testEachWorkerOwnsOneResource() throws Exception {
+        try (InferenceExecutor<String> executor = new InferenceExecutor<>("test", List.of("a", "b"), 16)) {
+            CountDownLatch bothRunning = new CountDownLatch(2);
+            CompletableFuture<String> first = executor.submit(Priority.INGEST, session -> {
+                bothRunning.countDown();
+                bothRunning.await();
+                return session;
+            });
+            CompletableFuture<String> second = executor.submit(Priority.INGEST, session -> {
+                bothRunning.countDown();
+                bothRunning.await();
+                return session;
+            });
+
+            // 两个任务必须同时在不同资源上执行才能通过 latch
+            assertNotEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(2, executor.getWorkerCount());
+        }
+    }
+
+    @Test
+    void testTaskFailureCompletesExceptionally() {
+        try (InferenceExecutor<String> executor = new InferenceExecutor<>("test", List.of("session-0"), 1)) {
+            CompletableFuture<String> future = executor.submit(Priority.QUERY, session -> {
+                throw new IllegalStateException("boom");
+            });
+
+            CompletionException e = assertThrows(CompletionException.class, future::join);
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+
+            // 失败任务不应占用队列容量，后续入库任务仍可提交
+            assertEquals("session-0", executor.submit(Priority.INGEST, session -> session).join());
+            assertEquals("session-0", executor.submit(Priority.INGEST, session -> session).join());
+        }
+    }
+
+    @Test
+    void testCloseCancelsQueuedJobsAndWakesBlockedSubmitters() throws Exception {
+        InferenceExecutor<String> executor = new InferenceExecutor<>("test", List.of("session-0"), 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> running = executor.submit(Priority.INGEST, session -> {
+            started.countDown();
+            new CountDownLatch(1).await();
+            return session;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = executor.submit(Priority.INGEST, session -> session);
+
+        // 队列容量已满，后续入库提交阻塞在许可上
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> executor.submit(Priority.INGEST, session -> session));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        executor.close();
+
+        ExecutionException rejected = assertThrows(ExecutionException.class, () -> blocked.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+        assertThrows(CancellationException.class, queued::join);
+        assertTrue(running.isCompletedExceptionally());
+        assertThrows(RejectedExecutionException.class, () -> executor.submit(Priority.QUERY, session -> session));
+    }
+}
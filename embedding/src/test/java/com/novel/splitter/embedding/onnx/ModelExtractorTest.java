@@ -0,0 +1,56 @@
+package com.novel.splitter.embedding.onnx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelExtractorTest {
+
+    private static final String RESOURCE = "embedding/vocab.txt";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testUnchangedFileIsNotRewritten() throws Exception {
+        Path target = tempDir.resolve("vocab.txt");
+        assertEquals(target, ModelExtractor.extract(RESOURCE, target));
+        assertTrue(Files.exists(tempDir.resolve("vocab.txt.sha256")));
+
+        // 把修改时间设回很久以前：如果被重新解压，修改时间会变成当前时间
+        FileTime old = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(target, old);
+        ModelExtractor.extract(RESOURCE, target);
+        // 修改时间变化 -> 走校验路径，内容一致，不重写
+        assertEquals(old, Files.getLastModifiedTime(target));
+
+        ModelExtractor.extract(RESOURCE, target);
+        assertEquals(old, Files.getLastModifiedTime(target));
+    }
+
+    @Test
+    void testCorruptedFileIsExtractedAgain() throws Exception {
+        Path target = tempDir.resolve("vocab.txt");
+        ModelExtractor.extract(RESOURCE, target);
+        String checksum = ModelExtractor.checksum(target);
+        long size = Files.size(target);
+
+        // 同样大小但内容被破坏
+        byte[] garbage = new byte[(int) size];
+        Files.write(target, garbage);
+        ModelExtractor.extract(RESOURCE, target);
+
+        assertEquals(checksum, ModelExtractor.checksum(target));
+        assertFalse(Files.exists(tempDir.resolve("vocab.txt.tmp")));
+    }
+
+    @Test
+    void testMissingResource() throws Exception {
+        assertNull(ModelExtractor.extract("embedding/missing.onnx", tempDir.resolve("missing.onnx")));
+    }
+}
@@ -0,0 +1,130 @@
+package com.novel.splitter.embedding.service;
+
+import com.novel.splitter.embedding.api.EmbeddingService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingEmbeddingServiceTest {
+
+    /**
+     * 记录调用文本的确定性嵌入服务
+     */
+    private static class CountingEmbeddingService implements EmbeddingService {
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public float[] embed(String text) {
+            calls.add(text);
+            return new float[]{text.length(), text.hashCode()};
+        }
+
+        @Override
+        public List<float[]> embedBatch(List<String> texts) {
+            List<float[]> result = new ArrayList<>();
+            for (String text : texts) {
+                result.add(embed(text));
+            }
+            return result;
+        }
+    }
+
+    @Test
+    void testRepeatedQuestionSkipsDelegate() {
+        CountingEmbeddingService delegate = new CountingEmbeddingService();
+        CachingEmbeddingService service = new CachingEmbeddingService(delegate, 100, 1 << 20);
+
+        float[] first = service.embed("萧炎的师父是谁？");
+        float[] second = service.embed("萧炎的师父是谁？");
+
+        assertArrayEquals(first, second);
+        assertEquals(1, delegate.calls.size());
+
+        CachingEmbeddingService.Stats stats = service.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void testNormalization() {
+        assertEquals("VIP 等级 3 是什么？", CachingEmbeddingService.normalize("  ＶＩＰ　等级  ３\t是什么？ "));
+        assertEquals("", CachingEmbeddingService.normalize(null));
+
+        CountingEmbeddingService delegate = new CountingEmbeddingService();
+        CachingEmbeddingService service = new CachingEmbeddingService(delegate, 100, 1 << 20);
+        service.embed("ＡＢＣ１２３");
+        service.embed(" ABC123 ");
+
+        // 两次查询规范化后相同，只推理一次；规范化文本只作缓存键，交给模型的是原文
+        assertEquals(List.of("ＡＢＣ１２３"), delegate.calls);
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        CountingEmbeddingService delegate = new CountingEmbeddingService();
+        CachingEmbeddingService service = new CachingEmbeddingService(delegate, 2, 1 << 20);
+
+        service.embed("a");
+        service.embed("b");
+        service.embed("a"); // a 成为最近使用
+        service.embed("c"); // 淘汰 b
+        service.embed("a");
+        service.embed("b");
+
+        assertEquals(List.of("a", "b", "c", "b"), delegate.calls);
+        assertEquals(2, service.getStats().getSize());
+        assertEquals(2, service.getStats().getEvictions());
+    }
+
+    @Test
+    void testByteBudget() {
+        CountingEmbeddingService delegate = new CountingEmbeddingService();
+        // 每条约 96 + 2 + 8 字节，预算只够一条
+        CachingEmbeddingService service = new CachingEmbeddingService(delegate, 100, 150);
+
+        service.embed("a");
+        service.embed("b");
+
+        CachingEmbeddingService.Stats stats = service.getStats();
+        assertEquals(1, stats.getSize());
+        assertTrue(stats.getEstimatedBytes() <= 150);
+    }
+
+    @Test
+    void testReturnedVectorIsNotShared() {
+        CachingEmbeddingService service = new CachingEmbeddingService(new CountingEmbeddingService(), 100, 1 << 20);
+
+        float[] first = service.embed("hello");
+        first[0] = -1f;
+
+        assertNotEquals(-1f, service.embed("hello")[0]);
+    }
+
+    @Test
+    void testBatchReusesPersistentCache(@TempDir Path tempDir) throws Exception {
+        CountingEmbeddingService delegate = new CountingEmbeddingService();
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "model")) {
+            CachingEmbeddingService service = new CachingEmbeddingService(delegate, 100, 1 << 20, cache);
+            List<float[]> first = service.embedBatch(List.of("场景一", "场景二"));
+
+            // 重新入库：场景二未变化，场景三为新文本
+            delegate.calls.clear();
+            List<float[]> second = service.embedBatch(List.of("场景三", "场景二"));
+
+            assertEquals(List.of("场景三"), delegate.calls);
+            assertArrayEquals(first.get(1), second.get(1));
+            assertArrayEquals(new float[]{3, "场景三".hashCode()}, second.get(0));
+
+            CachingEmbeddingService.Stats stats = service.getStats();
+            assertEquals(1, stats.getBatchHits());
+            assertEquals(3, stats.getBatchMisses());
+            assertEquals(3, stats.getPersistentSize());
+        }
+    }
+}
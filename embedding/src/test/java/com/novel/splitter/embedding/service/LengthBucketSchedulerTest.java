@@ -0,0 +1,74 @@
+package com.novel.splitter.embedding.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LengthBucketSchedulerTest {
+
+    @Test
+    void testGroupsSimilarLengths() {
+        // 长短交错的输入应被重新分组为长度相近的批次
+        int[] lengths = {500, 10, 480, 12, 20, 510};
+        LengthBucketScheduler scheduler = new LengthBucketScheduler(3, 100_000);
+
+        List<int[]> batches = scheduler.schedule(lengths);
+
+        assertEquals(2, batches.size());
+        assertArrayEquals(new int[]{1, 3, 4}, batches.get(0));
+        assertArrayEquals(new int[]{2, 0, 5}, batches.get(1));
+    }
+
+    @Test
+    void testTokenBudget() {
+        // 批内最长 100 * 样本数 不超过 250 -> 每批最多 2 条
+        int[] lengths = {100, 100, 100, 100, 100};
+        LengthBucketScheduler scheduler = new LengthBucketScheduler(16, 250);
+
+        List<int[]> batches = scheduler.schedule(lengths);
+
+        assertEquals(3, batches.size());
+        assertEquals(2, batches.get(0).length);
+        assertEquals(2, batches.get(1).length);
+        assertEquals(1, batches.get(2).length);
+    }
+
+    @Test
+    void testOversizedItemStillScheduled() {
+        int[] lengths = {512, 8};
+        LengthBucketScheduler scheduler = new LengthBucketScheduler(16, 256);
+
+        List<int[]> batches = scheduler.schedule(lengths);
+
+        assertEquals(2, batches.size());
+        assertArrayEquals(new int[]{1}, batches.get(0));
+        assertArrayEquals(new int[]{0}, batches.get(1));
+    }
+
+    @Test
+    void testEveryIndexScheduledOnce() {
+        int[] lengths = new int[200];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = 2 + (i * 37) % 510;
+        }
+        LengthBucketScheduler scheduler = new LengthBucketScheduler(8, 2048);
+
+        int[] all = scheduler.schedule(lengths).stream()
+                .flatMapToInt(Arrays::stream)
+                .sorted()
+                .toArray();
+
+        assertEquals(lengths.length, all.length);
+        for (int i = 0; i < all.length; i++) {
+            assertEquals(i, all[i]);
+        }
+    }
+
+    @Test
+    void testEmptyInput() {
+        assertTrue(new LengthBucketScheduler(4, 1024).schedule(new int[0]).isEmpty());
+    }
+}
@@ -0,0 +1,100 @@
+package com.novel.splitter.embedding.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentEmbeddingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReopenRestoresVectors() throws Exception {
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "model-a")) {
+            cache.putAll(List.of("第一章 少年", "第二章 斗气"), List.of(new float[]{1f, 2f, 3f}, new float[]{4f, 5f, 6f}));
+            // 重复写入同一文本不会追加记录
+            cache.putAll(List.of("第一章 少年"), List.of(new float[]{9f, 9f, 9f}));
+        }
+
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "model-a")) {
+            assertEquals(2, cache.size());
+            assertArrayEquals(new float[]{1f, 2f, 3f}, cache.get("第一章 少年"));
+            assertArrayEquals(new float[]{4f, 5f, 6f}, cache.get("第二章 斗气"));
+            assertNull(cache.get("第三章"));
+        }
+
+        long expectedSize = 16 + "model-a".length() + 2L * (16 + 3 * 4);
+        assertEquals(expectedSize, Files.size(tempDir.resolve("model-a.emb")));
+    }
+
+    @Test
+    void testModelsAreIsolated() throws Exception {
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "model-a")) {
+            cache.putAll(List.of("text"), List.of(new float[]{1f}));
+        }
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "model-b")) {
+            assertNull(cache.get("text"));
+        }
+    }
+
+    @Test
+    void testIncompleteTailRecordIsDropped() throws Exception {
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "m")) {
+            cache.putAll(List.of("a", "b"), List.of(new float[]{1f, 1f}, new float[]{2f, 2f}));
+        }
+        Path file = tempDir.resolve("m.emb");
+        // 模拟写入中断：截掉最后一条记录的一部分
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "m")) {
+            assertEquals(1, cache.size());
+            assertArrayEquals(new float[]{1f, 1f}, cache.get("a"));
+            cache.putAll(List.of("c"), List.of(new float[]{3f, 3f}));
+        }
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "m")) {
+            assertEquals(2, cache.size());
+            assertArrayEquals(new float[]{3f, 3f}, cache.get("c"));
+        }
+    }
+
+    @Test
+    void testFailedWriteDoesNotPublishVectors() throws Exception {
+        PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "m");
+        cache.putAll(List.of("a"), List.of(new float[]{1f, 1f}));
+        // 关闭底层通道使写入失败：向量不应只留在内存中
+        ((FileChannel) channelOf(cache)).close();
+        assertThrows(IOException.class, () -> cache.putAll(List.of("b"), List.of(new float[]{2f, 2f})));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testMaxEntries() throws Exception {
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "m", 2)) {
+            cache.putAll(List.of("a", "b", "c"), List.of(new float[]{1f}, new float[]{2f}, new float[]{3f}));
+            assertEquals(2, cache.size());
+            assertNull(cache.get("c"));
+        }
+        try (PersistentEmbeddingCache cache = PersistentEmbeddingCache.open(tempDir, "m", 2)) {
+            assertEquals(2, cache.size());
+        }
+    }
+
+    private static Object channelOf(PersistentEmbeddingCache cache) throws Exception {
+        Field field = PersistentEmbeddingCache.class.getDeclaredField("channel");
+        field.setAccessible(true);
+        return field.get(cache);
+    }
+}
@@ -7,30 +7,46 @@ import com.novel.splitter.embedding.config.EmbeddingConfig;
 import com.novel.splitter.embedding.store.ChromaVectorStore;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.TestPropertySource;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * ChromaVectorStore 经 HTTP 写入与检索；服务端为嵌入式替身服务 (任意空闲端口)，不依赖外部 ChromaDB
+ */
 @SpringBootTest(classes = {ChromaVectorStore.class, EmbeddingConfig.class})
 @TestPropertySource(properties = {
     "embedding.store.type=chroma",
-    "chroma.url=http://localhost:8081",
-    "chroma.collection=test-collection"
+    "chroma.url=http://127.0.0.1:0",
+    "chroma.collection=test-collection",
+    "chroma.embedded.enabled=true"
 })
 public class ChromaIntegrationTest {
 
-    @Autowired(required = false)
+    @TempDir
+    static Path dataDir;
+
+    @DynamicPropertySource
+    static void chromaProperties(DynamicPropertyRegistry registry) {
+        registry.add("chroma.embedded.path", () -> dataDir.resolve("chroma").toString());
+    }
+
+    @Autowired
     private ChromaVectorStore chromaVectorStore;
 
+    @Autowired
+    private EmbeddedChromaServer embeddedChromaServer;
+
     @Test
     public void testChromaIntegration() {
-        if (chromaVectorStore == null) {
-            System.out.println("ChromaVectorStore is not available, skipping test.");
-            return;
-        }
+        Assertions.assertNotEquals(0, embeddedChromaServer.getPort());
 
         // Create a dummy scene
         String id = UUID.randomUUID().toString();
@@ -45,33 +61,39 @@ public class ChromaIntegrationTest {
                 .canSplit(false)
                 .metadata(SceneMetadata.builder().build())
                 .build();
+        String otherId = UUID.randomUUID().toString();
+        Scene other = Scene.builder()
+                .id(otherId)
+                .chapterTitle("Test Chapter")
+                .chapterIndex(2)
+                .text("Another test sentence.")
+                .metadata(SceneMetadata.builder().build())
+                .build();
 
-        // Create a dummy embedding (dimension 10 for simplicity, though real is 512/768)
-        // Chroma might expect specific dimensions if collection already exists with different dims.
-        // But for new collection, first insert defines dim.
-        // Let's use a small dimension.
+        // Dimension 10 for simplicity; the first insert defines the collection's dimension.
         float[] embedding = new float[10];
+        float[] otherEmbedding = new float[10];
         for (int i = 0; i < 10; i++) {
             embedding[i] = (float) Math.random();
+            otherEmbedding[i] = i % 2 == 0 ? -embedding[i] : embedding[i] - 1f;
         }
 
         // Save
-        try {
-            chromaVectorStore.save(scene, embedding);
-            System.out.println("Saved scene to ChromaDB");
-        } catch (Exception e) {
-            System.err.println("Failed to save to ChromaDB: " + e.getMessage());
-            // If connection fails, fail the test
-            Assertions.fail("Failed to connect to ChromaDB: " + e.getMessage());
-        }
+        chromaVectorStore.save(scene, embedding);
+        chromaVectorStore.save(other, otherEmbedding);
+        Assertions.assertEquals(2, chromaVectorStore.count());
 
         // Search
         List<VectorRecord> results = chromaVectorStore.search(embedding, 1);
-        
+
         Assertions.assertNotNull(results);
         Assertions.assertFalse(results.isEmpty());
         Assertions.assertEquals(id, results.get(0).getChunkId());
-        
-        System.out.println("Search successful, found ID: " + results.get(0).getChunkId());
+
+        // Batch search: one query request with several query_embeddings
+        List<List<VectorRecord>> batch = chromaVectorStore.searchBatch(new float[][]{embedding, otherEmbedding}, 1, null);
+        Assertions.assertEquals(2, batch.size());
+        Assertions.assertEquals(id, batch.get(0).get(0).getChunkId());
+        Assertions.assertEquals(otherId, batch.get(1).get(0).getChunkId());
     }
 }
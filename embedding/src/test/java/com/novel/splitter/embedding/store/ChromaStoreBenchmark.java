@@ -0,0 +1,158 @@
+package com.novel.splitter.embedding.store;
+
+import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
+import com.novel.splitter.embedding.config.ChromaProperties;
+import com.novel.splitter.embedding.config.VectorStoreProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Chroma 代码路径基准测试：{@link ChromaVectorStore} 经本机 {@link EmbeddedChromaServer} 写入与检索 512 维向量
+ * <p>
+ * 测量的是客户端序列化、HTTP 往返与服务端解析的开销 (服务端检索为内存向量存储)，用于比较逐条检索、批量检索与并发异步检索。
+ * 运行方式：在 IDE 中直接运行 main，或使用 test classpath 执行 org.openjdk.jmh.Main ChromaStoreBenchmark。
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class ChromaStoreBenchmark {
+
+    private static final int DIM = 512;
+    private static final int TOP_K = 10;
+    private static final int BATCH = 8;
+
+    @Param({"10000"})
+    public int rows;
+
+    private Path dataDir;
+    private EmbeddedChromaServer server;
+    private ChromaVectorStore store;
+    private List<Scene> writeScenes;
+    private List<float[]> writeVectors;
+    private float[][] queries;
+
+    @Setup
+    public void setup() throws IOException {
+        dataDir = Files.createTempDirectory("chroma-benchmark");
+        // 精确检索：不构建图，测量结果不含索引构建时间
+        VectorStoreProperties storeProperties = new VectorStoreProperties();
+        storeProperties.getMemory().setSearchMode(VectorStoreProperties.SearchMode.EXACT);
+        server = new EmbeddedChromaServer(storeProperties, dataDir)
+                .start(new InetSocketAddress("127.0.0.1", 0), 8);
+        ChromaProperties properties = new ChromaProperties();
+        properties.setUrl(server.getUrl());
+        store = new ChromaVectorStore(properties);
+        store.init();
+
+        Random random = new Random(42);
+        List<Scene> scenes = scenes(0, rows);
+        List<float[]> vectors = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            vectors.add(randomVector(random));
+        }
+        store.saveBatch(scenes, vectors);
+
+        // 覆盖写入同一批 ID，集合大小不随迭代增长
+        writeScenes = scenes(0, 1_000);
+        writeVectors = vectors.subList(0, 1_000);
+        queries = new float[BATCH][];
+        for (int q = 0; q < BATCH; q++) {
+            queries[q] = vectors.get(random.nextInt(rows));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        server.close();
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void saveBatch1000() {
+        store.saveBatch(writeScenes, writeVectors);
+    }
+
+    @Benchmark
+    public int sequentialQueries() {
+        int checksum = 0;
+        for (float[] q : queries) {
+            checksum += store.search(q, TOP_K).size();
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public int batchedQueries() {
+        return store.searchBatch(queries, TOP_K, null).size();
+    }
+
+    @Benchmark
+    public int concurrentAsyncQueries() {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(BATCH);
+        for (float[] q : queries) {
+            futures.add(store.searchAsync(q, TOP_K, null).thenApply(List::size));
+        }
+        return futures.stream().mapToInt(CompletableFuture::join).sum();
+    }
+
+    private static List<Scene> scenes(int from, int to) {
+        List<Scene> scenes = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            scenes.add(Scene.builder()
+                    .id("s" + i)
+                    .chapterIndex(i % 100)
+                    .metadata(SceneMetadata.builder().novel("bench").version("v1").chapterIndex(i % 100).build())
+                    .build());
+        }
+        return scenes;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int d = 0; d < DIM; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChromaStoreBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,226 @@
+package com.novel.splitter.embedding.store;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
+import com.novel.splitter.domain.model.embedding.VectorRecord;
+import com.novel.splitter.embedding.config.ChromaProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChromaVectorStoreTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testWriteAddRequestStreamsRange() throws Exception {
+        List<Scene> scenes = List.of(
+                Scene.builder().id("s0").text("skip").build(),
+                Scene.builder().id("s1").text("第一场").chapterIndex(3).chapterTitle("第三章").startParagraphIndex(7)
+                        .metadata(SceneMetadata.builder().novel("n").version("v1").build()).build(),
+                Scene.builder().id("s2").text("\"quoted\"").chapterIndex(4).build());
+        List<float[]> embeddings = List.of(
+                new float[]{9f, 9f},
+                new float[]{0.1f, -2.5e-7f},
+                new float[]{1f / 3f, Float.MIN_NORMAL});
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.createGenerator(out, JsonEncoding.UTF8)) {
+            ChromaVectorStore.writeAddRequest(generator, scenes, embeddings, 1, 3);
+        }
+        JsonNode request = objectMapper.readTree(out.toByteArray());
+
+        assertEquals("[\"s1\",\"s2\"]", request.get("ids").toString());
+        assertEquals(List.of("第一场", "\"quoted\""), List.of(request.get("documents").get(0).asText(), request.get("documents").get(1).asText()));
+        // float 按最短表示写出，按 float 解析回原值
+        for (int i = 0; i < 2; i++) {
+            JsonNode embedding = request.get("embeddings").get(i);
+            assertEquals(2, embedding.size());
+            for (int d = 0; d < 2; d++) {
+                assertEquals(embeddings.get(i + 1)[d], Float.parseFloat(embedding.get(d).asText()));
+            }
+        }
+        assertEquals("0.1", request.get("embeddings").get(0).get(0).asText());
+
+        JsonNode first = request.get("metadatas").get(0);
+        assertEquals(3, first.get("chapter_index").asInt());
+        assertEquals("第三章", first.get("chapter_title").asText());
+        assertEquals(7, first.get("start_paragraph_index").asInt());
+        assertEquals("n", first.get("novel").asText());
+        assertEquals("v1", first.get("version").asText());
+        JsonNode second = request.get("metadatas").get(1);
+        assertEquals(4, second.get("chapter_index").asInt());
+        assertFalse(second.has("novel"));
+        assertFalse(second.has("chapter_title"));
+    }
+
+    @Test
+    void testCollectionResolvedOnceAndReresolvedOnNotFound() throws Exception {
+        AtomicInteger resolves = new AtomicInteger();
+        AtomicReference<String> liveId = new AtomicReference<>("c1");
+        String queryResponse = "{\"ids\":[[\"s1\"]],\"distances\":[[0.25]],\"metadatas\":[[{\"chapter_index\":2}]]}";
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v2/tenants/default_tenant/databases/default_database/collections", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/collections")) {
+                resolves.incrementAndGet();
+                respond(exchange, 200, "{\"id\":\"" + liveId.get() + "\",\"name\":\"test\"}");
+            } else if (!path.contains("/" + liveId.get() + "/")) {
+                respond(exchange, 404, "{\"error\":\"NotFoundError\"}");
+            } else if (path.endsWith("/count")) {
+                respond(exchange, 200, "3");
+            } else {
+                respond(exchange, 200, queryResponse);
+            }
+        });
+        server.start();
+
+        ChromaProperties properties = new ChromaProperties();
+        properties.setUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        properties.setCollection("test");
+        ChromaVectorStore store = new ChromaVectorStore(properties);
+        try {
+            store.init();
+            assertEquals(1, resolves.get());
+            assertEquals(3, store.count());
+            assertEquals("s1", store.search(new float[]{1f, 0f}, 1, Map.of("novel", "n")).get(0).getChunkId());
+            // 缓存命中，不再解析
+            assertEquals(1, resolves.get());
+
+            // 集合被重建：第一次请求 404，重新解析后重试成功
+            liveId.set("c2");
+            List<VectorRecord> records = store.search(new float[]{1f, 0f}, 1, null);
+            assertEquals(0.75, records.get(0).getScore(), 1e-6);
+            assertEquals(2, records.get(0).getMetadata().get("chapter_index"));
+            assertEquals(2, resolves.get());
+
+            liveId.set("c3");
+            List<VectorRecord> async = store.searchAsync(new float[]{1f, 0f}, 1, null).get(10, TimeUnit.SECONDS);
+            assertEquals("s1", async.get(0).getChunkId());
+            assertEquals(3, resolves.get());
+            assertEquals(3, store.count());
+            assertEquals(3, resolves.get());
+        } finally {
+            store.close();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testSearchBatchSendsOneQueryAndSlicesResultsPerQuery() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        AtomicReference<JsonNode> lastQuery = new AtomicReference<>();
+        // 第一条查询命中两条，第二条只命中一条
+        String queryResponse = "{\"ids\":[[\"a\",\"b\"],[\"c\"]],"
+                + "\"distances\":[[0.1,0.2],[0.3]],"
+                + "\"metadatas\":[[{\"chapter_index\":1},{\"chapter_index\":2}],[{\"chapter_index\":3}]]}";
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v2/tenants/default_tenant/databases/default_database/collections", exchange -> {
+            if (exchange.getRequestURI().getPath().endsWith("/collections")) {
+                respond(exchange, 200, "{\"id\":\"c1\",\"name\":\"test\"}");
+            } else {
+                queries.incrementAndGet();
+                lastQuery.set(objectMapper.readTree(exchange.getRequestBody().readAllBytes()));
+                respond(exchange, 200, queryResponse);
+            }
+        });
+        server.start();
+
+        ChromaProperties properties = new ChromaProperties();
+        properties.setUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        properties.setCollection("test");
+        ChromaVectorStore store = new ChromaVectorStore(properties);
+        try {
+            store.init();
+            List<List<VectorRecord>> results = store.searchBatch(new float[][]{{1f, 0f}, {0f, 1f}}, 2, Map.of("novel", "n"));
+
+            assertEquals(1, queries.get());
+            JsonNode request = lastQuery.get();
+            assertEquals("[[1.0,0.0],[0.0,1.0]]", request.get("query_embeddings").toString());
+            assertEquals(2, request.get("n_results").asInt());
+            assertEquals("n", request.get("where").get("novel").asText());
+
+            assertEquals(2, results.size());
+            assertEquals(List.of("a", "b"), results.get(0).stream().map(VectorRecord::getChunkId).toList());
+            assertEquals(0.8, results.get(0).get(1).getScore(), 1e-9);
+            assertEquals(2, results.get(0).get(1).getMetadata().get("chapter_index"));
+            assertEquals(List.of("c"), results.get(1).stream().map(VectorRecord::getChunkId).toList());
+            assertEquals(0.7, results.get(1).get(0).getScore(), 1e-9);
+            assertEquals(3, results.get(1).get(0).getMetadata().get("chapter_index"));
+        } finally {
+            store.close();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testMissingPreFlightChecksFallBackOnce() throws Exception {
+        AtomicInteger preFlights = new AtomicInteger();
+        AtomicInteger adds = new AtomicInteger();
+
+        // 旧版本服务端：没有 pre-flight-checks 接口
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v2/pre-flight-checks", exchange -> {
+            preFlights.incrementAndGet();
+            respond(exchange, 404, "{\"error\":\"NotFound\"}");
+        });
+        server.createContext("/api/v2/tenants/default_tenant/databases/default_database/collections", exchange -> {
+            if (exchange.getRequestURI().getPath().endsWith("/collections")) {
+                respond(exchange, 200, "{\"id\":\"c1\",\"name\":\"test\"}");
+            } else {
+                adds.incrementAndGet();
+                respond(exchange, 201, "{}");
+            }
+        });
+        server.start();
+
+        ChromaProperties properties = new ChromaProperties();
+        properties.setUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        properties.setCollection("test");
+        ChromaVectorStore store = new ChromaVectorStore(properties);
+        try {
+            store.init();
+            List<Scene> scenes = List.of(Scene.builder().id("s1").build());
+            List<float[]> embeddings = List.of(new float[]{1f, 0f});
+            for (int i = 0; i < 3; i++) {
+                store.saveBatch(scenes, embeddings);
+            }
+
+            // 失败结果被缓存：三次写入只探测一次
+            assertEquals(3, adds.get());
+            assertEquals(1, preFlights.get());
+        } finally {
+            store.close();
+            server.stop(0);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.novel.splitter.embedding.store;
+
+import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
+import com.novel.splitter.domain.model.embedding.VectorRecord;
+import com.novel.splitter.embedding.config.ChromaProperties;
+import com.novel.splitter.embedding.config.VectorStoreProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedChromaServerTest {
+
+    private static final int DIM = 16;
+
+    @TempDir
+    Path tempDir;
+
+    private EmbeddedChromaServer server;
+    private ChromaVectorStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = startServer(0);
+        store = connect(server);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+        server.close();
+    }
+
+    @Test
+    void testChromaVectorStoreRoundTrip() throws Exception {
+        float[][] vectors = randomVectors(new Random(5), 200);
+        // 200 条按 write.batch-size 切成 4 个 add 请求
+        store.saveBatch(scenes(200), List.of(vectors));
+        assertEquals(200, store.count());
+
+        VectorRecord top = store.search(vectors[17], 3).get(0);
+        assertEquals("s17", top.getChunkId());
+        assertEquals(1.0, top.getScore(), 1e-5);
+        assertEquals("n1", top.getMetadata().get("novel"));
+        assertEquals(2, top.getMetadata().get("chapter_index"));
+
+        // 章节范围经 toWhere 拆成 $and，服务端还原为同一字段的运算符
+        Map<String, Object> filter = Map.of("novel", "n2", "chapter_index", Map.of("$gte", 2, "$lte", 3));
+        List<VectorRecord> filtered = store.search(vectors[17], 10, filter);
+        assertFalse(filtered.isEmpty());
+        for (VectorRecord record : filtered) {
+            assertEquals("n2", record.getMetadata().get("novel"));
+            int chapter = ((Number) record.getMetadata().get("chapter_index")).intValue();
+            assertTrue(chapter >= 2 && chapter <= 3, "chapter " + chapter);
+        }
+
+        List<List<VectorRecord>> batch = store.searchBatch(new float[][]{vectors[3], vectors[150]}, 1, null);
+        assertEquals("s3", batch.get(0).get(0).getChunkId());
+        assertEquals("s150", batch.get(1).get(0).getChunkId());
+        assertEquals("s42", store.searchAsync(vectors[42], 1, null).get(10, TimeUnit.SECONDS).get(0).getChunkId());
+
+        store.delete(Map.of("novel", "n2"));
+        assertEquals(100, store.count());
+        assertTrue(store.search(vectors[17], 5, Map.of("novel", "n2")).isEmpty());
+
+        store.reset();
+        assertEquals(0, store.count());
+    }
+
+    @Test
+    void testCollectionsSurviveRestart() throws Exception {
+        float[][] vectors = randomVectors(new Random(8), 50);
+        store.saveBatch(scenes(50), List.of(vectors));
+        int port = server.getPort();
+        server.close();
+
+        // 同一端口重启后集合 ID 变化：客户端缓存的 ID 返回 404，重新解析后读到原有数据
+        server = startServer(port);
+        assertEquals(50, store.count());
+        assertEquals("s7", store.search(vectors[7], 1).get(0).getChunkId());
+    }
+
+    @Test
+    void testNewCollectionIgnoresLegacyJson() throws Exception {
+        // 旧版内存存储的 JSON 文件：新建的集合不应导入
+        Files.writeString(tempDir.resolve("vector_store.json"), "{\"old-1\":[1.0,0.0],\"old-2\":[0.0,1.0]}");
+        VectorStoreProperties properties = new VectorStoreProperties();
+        properties.getMemory().setLegacyJsonDir(tempDir.toString());
+        try (EmbeddedChromaServer legacyServer = new EmbeddedChromaServer(properties, tempDir.resolve("chroma-legacy"))
+                .start(new InetSocketAddress("127.0.0.1", 0), 1)) {
+            ChromaVectorStore legacyStore = connect(legacyServer);
+            try {
+                assertEquals(0, legacyStore.count());
+            } finally {
+                legacyStore.close();
+            }
+        }
+    }
+
+    @Test
+    void testFromWhereInvertsToWhere() {
+        Map<String, Object> filter = Map.of("novel", "n1", "chapter_index", Map.of("$gte", 2, "$lte", 5));
+        assertEquals(filter, EmbeddedChromaServer.fromWhere(ChromaVectorStore.toWhere(filter)));
+        assertEquals(Map.of("role", "dialogue"), EmbeddedChromaServer.fromWhere(Map.of("role", "dialogue")));
+        assertNull(EmbeddedChromaServer.fromWhere(Map.of()));
+        assertThrows(IllegalArgumentException.class,
+                () -> EmbeddedChromaServer.fromWhere(Map.of("$or", List.of(Map.of("novel", "a"), Map.of("novel", "b")))));
+    }
+
+    private EmbeddedChromaServer startServer(int port) throws Exception {
+        VectorStoreProperties properties = new VectorStoreProperties();
+        properties.getMemory().setBruteForceThreshold(1_000);
+        return new EmbeddedChromaServer(properties, tempDir.resolve("chroma"))
+                .start(new InetSocketAddress("127.0.0.1", port), 2);
+    }
+
+    private static ChromaVectorStore connect(EmbeddedChromaServer server) {
+        ChromaProperties properties = new ChromaProperties();
+        properties.setUrl(server.getUrl());
+        properties.setCollection("test");
+        properties.getWrite().setBatchSize(50);
+        ChromaVectorStore store = new ChromaVectorStore(properties);
+        store.init();
+        return store;
+    }
+
+    private static List<Scene> scenes(int n) {
+        List<Scene> scenes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String novel = i < n / 2 ? "n1" : "n2";
+            int chapter = i % 5;
+            scenes.add(Scene.builder()
+                    .id("s" + i)
+                    .chapterIndex(chapter)
+                    .chapterTitle("第" + chapter + "章")
+                    .metadata(SceneMetadata.builder().novel(novel).version("v1").chapterIndex(chapter).build())
+                    .build());
+        }
+        return scenes;
+    }
+
+    private static float[][] randomVectors(Random random, int n) {
+        float[][] vectors = new float[n][DIM];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < DIM; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
@@ -1,33 +1,50 @@
 package com.novel.splitter.embedding.store;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
 import com.novel.splitter.domain.model.embedding.VectorRecord;
+import com.novel.splitter.embedding.config.VectorStoreProperties;
+import com.novel.splitter.embedding.store.index.HnswIndex;
+import com.novel.splitter.embedding.store.index.VectorSegment;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
-import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class InMemoryVectorStoreTest {
 
+    @TempDir
+    Path tempDir;
+
+    private VectorStoreProperties properties;
     private InMemoryVectorStore vectorStore;
-    private static final String STORE_FILE = "vector_store.json";
 
     @BeforeEach
     void setUp() {
-        vectorStore = new InMemoryVectorStore();
-        // Clear any existing store file
-        new File(STORE_FILE).delete();
+        properties = new VectorStoreProperties();
+        properties.getMemory().setPath(tempDir.toString());
+        vectorStore = new InMemoryVectorStore(properties);
     }
 
     @AfterEach
     void tearDown() {
-        new File(STORE_FILE).delete();
+        vectorStore.close();
     }
 
     @Test
@@ -83,11 +100,292 @@ class InMemoryVectorStoreTest {
         vectorStore.persist();
 
         // New instance
-        InMemoryVectorStore newStore = new InMemoryVectorStore();
+        InMemoryVectorStore newStore = new InMemoryVectorStore(properties);
         newStore.load();
 
         List<VectorRecord> results = newStore.search(new float[]{0.5f, 0.5f}, 1);
         assertEquals(1, results.size());
         assertEquals("persist-1", results.get(0).getChunkId());
     }
+
+    @Test
+    void testWalReplayAfterCrash() throws Exception {
+        vectorStore.load();
+        vectorStore.save(scene("a", "n1"), new float[]{1.0f, 0.0f});
+        vectorStore.saveBatch(List.of(scene("b", "n1"), scene("c", "n2")),
+                List.of(new float[]{0.0f, 1.0f}, new float[]{0.6f, 0.8f}));
+        vectorStore.delete(Map.of("novel", "n2"));
+        vectorStore.save(scene("a", "n1"), new float[]{0.0f, 1.0f});
+
+        // 不调用 close，模拟进程被杀：只有日志，没有段文件
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(f -> f.getFileName().toString().endsWith(".seg")));
+        }
+        InMemoryVectorStore recovered = new InMemoryVectorStore(properties);
+        recovered.load();
+        try {
+            assertEquals(2, recovered.count());
+            List<VectorRecord> results = recovered.search(new float[]{0.0f, 1.0f}, 3);
+            assertEquals(2, results.size());
+            assertEquals(1.0, results.get(1).getScore(), 0.0001);
+            assertEquals("n1", results.get(0).getMetadata().get("novel"));
+            assertTrue(recovered.search(new float[]{0.6f, 0.8f}, 3, Map.of("novel", "n2")).isEmpty());
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    void testCheckpointCompactsWal() throws Exception {
+        vectorStore.load();
+        vectorStore.save(scene("before", "n1"), new float[]{1.0f, 0.0f});
+        vectorStore.persist();
+        vectorStore.save(scene("after", "n1"), new float[]{0.0f, 1.0f});
+
+        // 检查点之后只保留新一代的段文件与日志
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of("partitions", "wal-00000001.log"),
+                    files.map(f -> f.getFileName().toString()).sorted().toList());
+        }
+        try (Stream<Path> files = Files.list(tempDir.resolve("partitions").resolve("n1@v1"))) {
+            assertEquals(List.of("vectors-00000001.seg"), files.map(f -> f.getFileName().toString()).toList());
+        }
+
+        // 日志尾部的残缺记录被丢弃，之前的写入不受影响
+        try (FileChannel channel = FileChannel.open(tempDir.resolve("wal-00000001.log"), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{100, 0, 0, 0, 7}));
+        }
+        InMemoryVectorStore recovered = new InMemoryVectorStore(properties);
+        recovered.load();
+        try {
+            assertEquals(2, recovered.count());
+            assertEquals("after", recovered.search(new float[]{0.0f, 1.0f}, 1).get(0).getChunkId());
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    void testFilteredSearchAndDelete() {
+        // 两本小说交错写入，第二本每章 10 个场景
+        for (int i = 0; i < 200; i++) {
+            String novel = i % 2 == 0 ? "a" : "b";
+            Scene scene = Scene.builder()
+                    .id(novel + i)
+                    .metadata(SceneMetadata.builder().novel(novel).version("v1").chapterIndex(i / 20).build())
+                    .build();
+            vectorStore.save(scene, new float[]{1.0f, i / 200.0f, 0.0f});
+        }
+
+        List<VectorRecord> results = vectorStore.search(new float[]{1.0f, 1.0f, 0.0f}, 5, Map.of("novel", "a"));
+        assertEquals(5, results.size());
+        assertTrue(results.stream().allMatch(r -> "a".equals(r.getMetadata().get("novel"))));
+        assertEquals("a198", results.get(0).getChunkId());
+
+        // 第 2 ~ 3 章 (行 40 ~ 79) 中小说 b 的场景
+        results = vectorStore.search(new float[]{1.0f, 1.0f, 0.0f}, 100,
+                Map.of("novel", "b", "chapter_index", Map.of("$gte", 2, "$lte", 3)));
+        assertEquals(20, results.size());
+        assertEquals("b79", results.get(0).getChunkId());
+        assertTrue(results.stream().allMatch(r -> {
+            int chapter = (Integer) r.getMetadata().get("chapter_index");
+            return chapter >= 2 && chapter <= 3;
+        }));
+
+        // 重复写入同一 ID 后，旧行不再命中
+        vectorStore.save(Scene.builder().id("a0")
+                .metadata(SceneMetadata.builder().novel("a").version("v1").chapterIndex(99).build())
+                .build(), new float[]{0.0f, 0.0f, 1.0f});
+        assertEquals(9, vectorStore.search(new float[]{1.0f, 0.0f, 0.0f}, 200,
+                Map.of("novel", "a", "chapter_index", 0)).size());
+
+        vectorStore.delete(Map.of("novel", "b"));
+        assertEquals(100, vectorStore.count());
+        assertTrue(vectorStore.search(new float[]{1.0f, 0.0f, 0.0f}, 10, Map.of("novel", "b")).isEmpty());
+        assertEquals("a0", vectorStore.search(new float[]{0.0f, 0.0f, 1.0f}, 1,
+                Map.of("chapter_index", 99)).get(0).getChunkId());
+    }
+
+    @Test
+    void testSearchBatchMatchesSingleSearches() {
+        vectorStore.load();
+        Random random = new Random(17);
+        for (String novel : List.of("a", "b", "c")) {
+            List<Scene> scenes = new ArrayList<>();
+            List<float[]> vectors = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                scenes.add(Scene.builder()
+                        .id(novel + i)
+                        .metadata(SceneMetadata.builder().novel(novel).version("v1").chapterIndex(i / 10).build())
+                        .build());
+                vectors.add(new float[]{(float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian()});
+            }
+            vectorStore.saveBatch(scenes, vectors);
+        }
+        float[][] queries = {{1.0f, 0.0f, 0.0f}, {0.0f, 2.0f, 1.0f}, {-1.0f, 0.5f, 0.0f}};
+
+        for (Map<String, Object> filter : List.<Map<String, Object>>of(Map.of(), Map.of("novel", "b"),
+                Map.of("chapter_index", Map.of("$gte", 5, "$lte", 8)))) {
+            List<List<VectorRecord>> batch = vectorStore.searchBatch(queries, 7, filter);
+            assertEquals(queries.length, batch.size());
+            for (int q = 0; q < queries.length; q++) {
+                assertEquals(ids(vectorStore.search(queries[q], 7, filter)), ids(batch.get(q)));
+            }
+        }
+        assertTrue(vectorStore.searchBatch(queries, 3, Map.of("novel", "missing")).stream().allMatch(List::isEmpty));
+    }
+
+    private static List<String> ids(List<VectorRecord> records) {
+        return records.stream().map(VectorRecord::getChunkId).toList();
+    }
+
+    @Test
+    void testDropVersionPartition() throws Exception {
+        vectorStore.load();
+        vectorStore.saveBatch(List.of(scene("a", "n1"), scene("b", "n1"), scene("c", "n2")),
+                List.of(new float[]{1.0f, 0.0f}, new float[]{0.0f, 1.0f}, new float[]{0.6f, 0.8f}));
+        vectorStore.save(Scene.builder().id("d")
+                .metadata(SceneMetadata.builder().novel("n1").version("v2").build())
+                .build(), new float[]{0.8f, 0.6f});
+        assertEquals(3, vectorStore.partitionCount());
+        vectorStore.persist();
+
+        // 只含 novel / version 的删除条件整个分区删除，目录随之移除
+        vectorStore.delete(Map.of("novel", "n1", "version", "v1"));
+        assertEquals(2, vectorStore.partitionCount());
+        assertEquals(2, vectorStore.count());
+        assertFalse(Files.exists(tempDir.resolve("partitions").resolve("n1@v1")));
+        assertEquals(List.of("d"), vectorStore.search(new float[]{1.0f, 0.0f}, 5, Map.of("novel", "n1"))
+                .stream().map(VectorRecord::getChunkId).toList());
+
+        // 分区删除在日志中，重启后不会从旧段文件中恢复
+        InMemoryVectorStore recovered = new InMemoryVectorStore(properties);
+        recovered.load();
+        try {
+            assertEquals(2, recovered.count());
+            assertTrue(recovered.search(new float[]{1.0f, 0.0f}, 5, Map.of("version", "v1"))
+                    .stream().allMatch(r -> "n2".equals(r.getMetadata().get("novel"))));
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    void testPartitionsLoadOnDemandAndUnload() {
+        vectorStore.load();
+        for (int i = 0; i < 4; i++) {
+            vectorStore.save(scene("s" + i, "n" + i), new float[]{1.0f, i});
+        }
+        vectorStore.close();
+
+        InMemoryVectorStore reopened = new InMemoryVectorStore(properties);
+        reopened.load();
+        try {
+            // 启动时只读取段文件头，不加载分区
+            assertEquals(4, reopened.count());
+            assertEquals(0, reopened.loadedPartitionCount());
+
+            assertEquals("s2", reopened.search(new float[]{1.0f, 2.0f}, 1, Map.of("novel", "n2")).get(0).getChunkId());
+            assertEquals(1, reopened.loadedPartitionCount());
+
+            // 已持久化的空闲分区卸载后再次访问时重新映射
+            reopened.unloadIdlePartitions(0);
+            assertEquals(0, reopened.loadedPartitionCount());
+            assertEquals("s2", reopened.search(new float[]{1.0f, 2.0f}, 1, Map.of("novel", "n2")).get(0).getChunkId());
+
+            // 有未持久化写入的分区不卸载
+            reopened.save(scene("s4", "n3"), new float[]{0.0f, 1.0f});
+            reopened.unloadIdlePartitions(0);
+            assertEquals(1, reopened.loadedPartitionCount());
+            assertEquals(5, reopened.count());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testImportsUnpartitionedSegment() throws Exception {
+        HnswIndex flat = new HnswIndex(16, 200);
+        flat.add("a", new float[]{1.0f, 0.0f});
+        flat.add("b", new float[]{0.0f, 1.0f});
+        byte[] metadata = new ObjectMapper().writeValueAsBytes(Map.of(
+                "a", SceneMetadata.builder().novel("n1").version("v1").build(),
+                "b", SceneMetadata.builder().novel("n2").version("v1").build()));
+        VectorSegment.write(tempDir.resolve("vectors-00000003.seg"), flat, metadata);
+
+        vectorStore.load();
+        assertEquals(2, vectorStore.partitionCount());
+        assertEquals("b", vectorStore.search(new float[]{0.0f, 1.0f}, 1, Map.of("novel", "n2")).get(0).getChunkId());
+        // 导入后立即写成分区段文件，未分区的段文件删除
+        assertFalse(Files.exists(tempDir.resolve("vectors-00000003.seg")));
+        assertTrue(Files.exists(tempDir.resolve("partitions").resolve("n1@v1").resolve("vectors-00000004.seg")));
+    }
+
+    @Test
+    void testImportsLegacyJsonAndPersistsImmediately() throws Exception {
+        Path legacyDir = Files.createDirectories(tempDir.resolve("legacy"));
+        Files.writeString(legacyDir.resolve("vector_store.json"), "{\"a\":[3.0,0.0],\"b\":[0.0,1.0]}");
+        Files.writeString(legacyDir.resolve("vector_metadata.json"), "{\"a\":{\"novel\":\"n1\",\"version\":\"v1\"}}");
+        properties.getMemory().setLegacyJsonDir(legacyDir.toString());
+
+        vectorStore.load();
+        assertEquals(2, vectorStore.count());
+        assertEquals("a", vectorStore.search(new float[]{1.0f, 0.0f}, 1, Map.of("novel", "n1")).get(0).getChunkId());
+        // 不等检查点：导入后立即写出分区段文件
+        try (Stream<Path> files = Files.walk(tempDir.resolve("partitions"))) {
+            assertEquals(2, files.filter(f -> f.getFileName().toString().endsWith(".seg")).count());
+        }
+    }
+
+    @Test
+    void testProductQuantizedSearch() {
+        properties.getMemory().setSearchMode(VectorStoreProperties.SearchMode.PQ);
+        properties.getMemory().setBruteForceThreshold(100);
+        properties.getMemory().getPq().setSubspaces(8);
+        properties.getMemory().getPq().setMinTrainRows(300);
+        vectorStore.load();
+
+        Random random = new Random(5);
+        int n = 600;
+        float[][] vectors = new float[n][32];
+        List<Scene> scenes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            for (int d = 0; d < 32; d++) {
+                vectors[i][d] = (float) random.nextGaussian();
+            }
+            scenes.add(scene("s" + i, "n1"));
+        }
+        vectorStore.saveBatch(scenes, Arrays.asList(vectors));
+
+        // 检查点训练码本并写出编码文件，之后检索走编码扫描 + 精确重排
+        vectorStore.persist();
+        Path partition = tempDir.resolve("partitions").resolve("n1@v1");
+        assertTrue(Files.exists(partition.resolve("codes-00000001.pq")));
+        for (int i = 0; i < n; i += 50) {
+            VectorRecord top = vectorStore.search(vectors[i], 3).get(0);
+            assertEquals("s" + i, top.getChunkId());
+            assertEquals(1.0, top.getScore(), 0.0001);
+        }
+        vectorStore.close();
+
+        // 重启后读取编码文件，新写入的行直接用已有码本编码
+        InMemoryVectorStore reopened = new InMemoryVectorStore(properties);
+        reopened.load();
+        try {
+            reopened.save(scene("s" + n, "n1"), vectors[0]);
+            List<VectorRecord> results = reopened.search(vectors[0], 2, Map.of("novel", "n1"));
+            assertEquals(2, results.size());
+            assertTrue(results.stream().allMatch(r -> r.getScore() > 0.9999));
+            assertEquals("s250", reopened.search(vectors[250], 1, Map.of("novel", "n1")).get(0).getChunkId());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static Scene scene(String id, String novel) {
+        return Scene.builder()
+                .id(id)
+                .metadata(SceneMetadata.builder().novel(novel).version("v1").build())
+                .build();
+    }
 }
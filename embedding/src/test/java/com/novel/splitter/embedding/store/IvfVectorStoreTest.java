@@ -0,0 +1,121 @@
+package com.novel.splitter.embedding.store;
+
+import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
+import com.novel.splitter.domain.model.embedding.VectorRecord;
+import com.novel.splitter.embedding.config.VectorStoreProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IvfVectorStoreTest {
+
+    private static final int DIM = 32;
+
+    @TempDir
+    Path tempDir;
+
+    private VectorStoreProperties properties;
+    private IvfVectorStore vectorStore;
+
+    @BeforeEach
+    void setUp() {
+        properties = new VectorStoreProperties();
+        properties.getMemory().setPath(tempDir.toString());
+        properties.getMemory().setBruteForceThreshold(100);
+        properties.getMemory().getIvf().setNlist(8);
+        properties.getMemory().getIvf().setNprobe(8);
+        properties.getMemory().getIvf().setMinTrainRows(400);
+        vectorStore = new IvfVectorStore(properties);
+        vectorStore.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        vectorStore.close();
+    }
+
+    @Test
+    void testTrainsAtCheckpointAndAssignsNewRows() {
+        // 只在副本上固定 IVF，共享的配置不变
+        assertNotEquals(VectorStoreProperties.SearchMode.IVF, properties.getMemory().getSearchMode());
+        Random random = new Random(9);
+        float[][] vectors = randomVectors(random, 600);
+        vectorStore.saveBatch(scenes(0, 600, "n1"), List.of(vectors));
+
+        vectorStore.persist();
+        Path partition = tempDir.resolve("partitions").resolve("n1@v1");
+        assertTrue(Files.exists(partition.resolve("lists-00000001.ivf")));
+        for (int i = 0; i < 600; i += 60) {
+            VectorRecord top = vectorStore.search(vectors[i], 3).get(0);
+            assertEquals("s" + i, top.getChunkId());
+            assertEquals(1.0, top.getScore(), 0.0001);
+        }
+
+        // 训练后写入的行直接分配到簇，无需重新训练即可检索到
+        float[][] more = randomVectors(random, 50);
+        vectorStore.saveBatch(scenes(600, 650, "n1"), List.of(more));
+        assertEquals("s620", vectorStore.search(more[20], 1, Map.of("novel", "n1")).get(0).getChunkId());
+        vectorStore.close();
+
+        // 重启后读取倒排表，并分配检查点之后日志中回放的行
+        IvfVectorStore reopened = new IvfVectorStore(properties);
+        reopened.load();
+        try {
+            assertEquals(650, reopened.count());
+            assertEquals("s640", reopened.search(more[40], 1).get(0).getChunkId());
+            assertEquals("s300", reopened.search(vectors[300], 1).get(0).getChunkId());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testOfflineTrainingIgnoresThreshold() {
+        Random random = new Random(13);
+        float[][] vectors = randomVectors(random, 200);
+        vectorStore.saveBatch(scenes(0, 200, "n2"), List.of(vectors));
+        vectorStore.persist();
+        Path partition = tempDir.resolve("partitions").resolve("n2@v1");
+        assertFalse(Files.exists(partition.resolve("lists-00000001.ivf")));
+
+        // 已卸载的分区在训练前加载，训练期间不被卸载
+        vectorStore.unloadIdlePartitions(0);
+        assertEquals(1, vectorStore.train());
+        vectorStore.unloadIdlePartitions(0);
+        assertTrue(Files.exists(partition.resolve("lists-00000002.ivf")));
+        assertFalse(Files.exists(partition.resolve("vectors-00000001.seg")));
+        assertEquals("s150", vectorStore.search(vectors[150], 1, Map.of("novel", "n2")).get(0).getChunkId());
+    }
+
+    private static List<Scene> scenes(int from, int to, String novel) {
+        List<Scene> scenes = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            scenes.add(Scene.builder()
+                    .id("s" + i)
+                    .metadata(SceneMetadata.builder().novel(novel).version("v1").build())
+                    .build());
+        }
+        return scenes;
+    }
+
+    private static float[][] randomVectors(Random random, int n) {
+        float[][] vectors = new float[n][DIM];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < DIM; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,114 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExactScannerTest {
+
+    @Test
+    void testParallelMatchesSequential() {
+        int dim = 16;
+        int rows = 20_000;
+        VectorArena arena = new VectorArena(dim);
+        Random random = new Random(9);
+        for (int row = 0; row < rows; row++) {
+            float[] v = new float[dim];
+            for (int d = 0; d < dim; d++) {
+                v[d] = (float) random.nextGaussian();
+            }
+            arena.write(row, VectorMath.normalizedCopy(v));
+        }
+        float[] query = arena.copyOf(123);
+        IntPredicate accept = row -> row % 3 != 0;
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ExactScanner sequential = new ExactScanner(pool, Integer.MAX_VALUE);
+            ExactScanner parallel = new ExactScanner(pool, 1024);
+            for (int k : new int[]{1, 10, 100}) {
+                int[] expectedRows = new int[k];
+                float[] expectedScores = new float[k];
+                int[] actualRows = new int[k];
+                float[] actualScores = new float[k];
+                assertEquals(k, sequential.search(arena, rows, query, k, accept, expectedRows, expectedScores));
+                assertEquals(k, parallel.search(arena, rows, query, k, accept, actualRows, actualScores));
+                assertArrayEquals(expectedScores, actualScores);
+                assertArrayEquals(expectedRows, actualRows);
+                for (int row : actualRows) {
+                    assertNotEquals(0, row % 3);
+                }
+            }
+            // 第 123 行被过滤条件排除，接受时应排第一
+            int[] top = new int[1];
+            parallel.search(arena, rows, query, 1, null, top, new float[1]);
+            assertEquals(123, top[0]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testBatchMatchesSingleQueries() {
+        int dim = 16;
+        int rows = 10_000;
+        VectorArena arena = new VectorArena(dim);
+        Random random = new Random(21);
+        for (int row = 0; row < rows; row++) {
+            float[] v = new float[dim];
+            for (int d = 0; d < dim; d++) {
+                v[d] = (float) random.nextGaussian();
+            }
+            arena.write(row, VectorMath.normalizedCopy(v));
+        }
+        float[][] queries = {arena.copyOf(7), arena.copyOf(4000), arena.copyOf(9999)};
+        IntPredicate accept = row -> row % 5 != 1;
+        // 连续区间与零散行混合的行集合
+        int[] subset = java.util.stream.IntStream.range(0, rows).filter(row -> row < 3000 || row % 7 == 0).toArray();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ExactScanner scanner : new ExactScanner[]{new ExactScanner(pool, Integer.MAX_VALUE), new ExactScanner(pool, 1024)}) {
+                int k = 10;
+                int[][] batchRows = new int[queries.length][k];
+                float[][] batchScores = new float[queries.length][k];
+                int[][] subsetRows = new int[queries.length][k];
+                float[][] subsetScores = new float[queries.length][k];
+                int[] found = scanner.searchBatch(arena, rows, queries, k, accept, batchRows, batchScores);
+                int[] subsetFound = scanner.searchBatch(arena, subset, queries, k, accept, subsetRows, subsetScores);
+                for (int q = 0; q < queries.length; q++) {
+                    int[] expectedRows = new int[k];
+                    float[] expectedScores = new float[k];
+                    assertEquals(scanner.search(arena, rows, queries[q], k, accept, expectedRows, expectedScores), found[q]);
+                    assertArrayEquals(expectedRows, batchRows[q]);
+                    assertArrayEquals(expectedScores, batchScores[q]);
+
+                    assertEquals(scanner.search(arena, subset, queries[q], k, accept, expectedRows, expectedScores), subsetFound[q]);
+                    assertArrayEquals(expectedRows, subsetRows[q]);
+                    assertArrayEquals(expectedScores, subsetScores[q]);
+                }
+                assertEquals(4000, batchRows[1][0]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testFewerRowsThanTopK() {
+        VectorArena arena = new VectorArena(2);
+        arena.write(0, new float[]{1f, 0f});
+        arena.write(1, new float[]{0f, 1f});
+        int[] rows = new int[5];
+        float[] scores = new float[5];
+        int found = new ExactScanner(ForkJoinPool.commonPool(), 1024)
+                .search(arena, 2, new float[]{0f, 1f}, 5, null, rows, scores);
+        assertEquals(2, found);
+        assertEquals(1, rows[0]);
+        assertEquals(1f, scores[0], 1e-6);
+    }
+}
@@ -0,0 +1,159 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTest {
+
+    private static final int DIM = 32;
+
+    @Test
+    void testRecallAgainstExactScan() {
+        HnswIndex index = new HnswIndex(16, 200);
+        float[][] vectors = randomVectors(3_000, new Random(42));
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("v" + i, vectors[i]);
+        }
+
+        Random random = new Random(7);
+        int k = 10;
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = VectorMath.normalizedCopy(randomVector(random));
+            hits += overlap(exact(index, query, k), approximate(index, query, k, 64));
+        }
+        double recall = (double) hits / (queries * k);
+        assertTrue(recall >= 0.9, "recall@10 = " + recall);
+    }
+
+    @Test
+    void testFilterAndTombstones() {
+        HnswIndex index = new HnswIndex(8, 64);
+        float[][] vectors = randomVectors(500, new Random(1));
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("v" + i, vectors[i]);
+        }
+
+        // 只接受偶数节点
+        int[] nodes = new int[5];
+        float[] scores = new float[5];
+        int found = index.search(vectors[1], 5, 64, node -> node % 2 == 0, nodes, scores);
+        assertEquals(5, found);
+        for (int i = 0; i < found; i++) {
+            assertEquals(0, nodes[i] % 2);
+        }
+
+        // 删除后不再出现在结果中
+        assertTrue(index.remove("v3"));
+        assertFalse(index.remove("v3"));
+        found = index.search(vectors[3], 1, 64, null, nodes, scores);
+        assertEquals(1, found);
+        assertNotEquals("v3", index.key(nodes[0]));
+        assertEquals(499, index.size());
+        assertEquals(1, index.deletedCount());
+    }
+
+    @Test
+    void testReplaceExistingKey() {
+        HnswIndex index = new HnswIndex(8, 64);
+        index.add("a", new float[]{1f, 0f});
+        index.add("b", new float[]{0f, 1f});
+        index.add("a", new float[]{0f, 1f});
+
+        assertEquals(2, index.size());
+        int[] nodes = new int[2];
+        float[] scores = new float[2];
+        assertEquals(2, index.search(new float[]{1f, 0f}, 2, 16, null, nodes, scores));
+        assertEquals(0f, scores[0], 1e-6);
+    }
+
+    @Test
+    void testConcurrentInserts() {
+        HnswIndex index = new HnswIndex(16, 100);
+        float[][] vectors = randomVectors(4_000, new Random(3));
+        IntStream.range(0, vectors.length).parallel().forEach(i -> index.add("v" + i, vectors[i]));
+
+        assertEquals(vectors.length, index.size());
+        int[] nodes = new int[1];
+        float[] scores = new float[1];
+        int misses = 0;
+        for (int i = 0; i < vectors.length; i += 40) {
+            index.search(vectors[i], 1, 64, null, nodes, scores);
+            if (!("v" + i).equals(index.key(nodes[0]))) {
+                misses++;
+            }
+        }
+        assertTrue(misses <= 2, "self-lookup misses: " + misses);
+    }
+
+    @Test
+    void testDimensionMismatch() {
+        HnswIndex index = new HnswIndex(8, 32);
+        index.add("a", new float[]{1f, 0f});
+        assertThrows(IllegalArgumentException.class, () -> index.add("b", new float[]{1f, 0f, 0f}));
+    }
+
+    static float[][] randomVectors(int count, Random random) {
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            vectors[i] = VectorMath.normalizedCopy(randomVector(random));
+        }
+        return vectors;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] v = new float[DIM];
+        for (int d = 0; d < DIM; d++) {
+            v[d] = (float) random.nextGaussian();
+        }
+        return v;
+    }
+
+    static Set<Integer> exact(HnswIndex index, float[] query, int k) {
+        ScoredHeap heap = ScoredHeap.minHeap(k + 1);
+        for (int node = 0; node < index.nodeCount(); node++) {
+            if (!index.isDeleted(node)) {
+                heap.offer(VectorMath.dot(query, index.vector(node)), node, k);
+            }
+        }
+        return toSet(heap.size(), heap);
+    }
+
+    static Set<Integer> approximate(HnswIndex index, float[] query, int k, int ef) {
+        int[] nodes = new int[k];
+        float[] scores = new float[k];
+        int found = index.search(query, k, ef, null, nodes, scores);
+        Set<Integer> result = new HashSet<>();
+        for (int i = 0; i < found; i++) {
+            result.add(nodes[i]);
+        }
+        return result;
+    }
+
+    private static Set<Integer> toSet(int size, ScoredHeap heap) {
+        int[] nodes = new int[size];
+        heap.drainDescending(nodes, new float[size]);
+        Set<Integer> result = new HashSet<>();
+        for (int node : nodes) {
+            result.add(node);
+        }
+        return result;
+    }
+
+    static int overlap(Set<Integer> expected, Set<Integer> actual) {
+        int hits = 0;
+        for (Integer node : actual) {
+            if (expected.contains(node)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,103 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * HNSW 召回率 / 延迟报告
+ * <p>
+ * 在随机向量上对比精确扫描与不同 efSearch 下的 HNSW 检索，输出 recall@10 与单次查询平均延迟。
+ * 向量围绕若干簇中心生成 (接近真实句向量的分布)；clusters=0 时为各向同性高斯分布，是 HNSW 的最差情况。
+ * 默认不执行：
+ * </p>
+ * <pre>
+ * mvn -pl embedding -am test -Dtest=HnswRecallReportTest -Dsurefire.failIfNoSpecifiedTests=false \
+ *     -Dhnsw.report=true [-Dhnsw.report.size=100000] [-Dhnsw.report.dim=512] [-Dhnsw.report.m=16] [-Dhnsw.report.clusters=200]
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "hnsw.report", matches = "true")
+class HnswRecallReportTest {
+
+    private static final int K = 10;
+    private static final int[] EF_VALUES = {16, 32, 64, 128, 256};
+
+    @Test
+    void report() {
+        int size = Integer.getInteger("hnsw.report.size", 50_000);
+        int dim = Integer.getInteger("hnsw.report.dim", 512);
+        int m = Integer.getInteger("hnsw.report.m", 16);
+        int efConstruction = Integer.getInteger("hnsw.report.ef-construction", 200);
+        int queries = Integer.getInteger("hnsw.report.queries", 200);
+        int clusters = Integer.getInteger("hnsw.report.clusters", 200);
+
+        Random random = new Random(42);
+        float[][] centroids = new float[clusters][];
+        for (int c = 0; c < clusters; c++) {
+            centroids[c] = randomVector(random, dim, null);
+        }
+        float[][] vectors = new float[size][];
+        for (int i = 0; i < size; i++) {
+            vectors[i] = randomVector(random, dim, clusters == 0 ? null : centroids[random.nextInt(clusters)]);
+        }
+
+        HnswIndex index = new HnswIndex(m, efConstruction);
+        long start = System.nanoTime();
+        IntStream.range(0, size).parallel().forEach(i -> index.add("v" + i, vectors[i]));
+        double buildSeconds = (System.nanoTime() - start) / 1e9;
+
+        float[][] queryVectors = new float[queries][];
+        for (int q = 0; q < queries; q++) {
+            queryVectors[q] = randomVector(random, dim, clusters == 0 ? null : centroids[random.nextInt(clusters)]);
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Integer>[] truth = new Set[queries];
+        for (float[] query : queryVectors) {
+            HnswIndexTest.exact(index, query, K);
+        }
+        start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            truth[q] = HnswIndexTest.exact(index, queryVectors[q], K);
+        }
+        double exactMicros = (System.nanoTime() - start) / 1e3 / queries;
+
+        System.out.printf("=== HNSW vs exact scan (n=%d, dim=%d, clusters=%d, M=%d, efConstruction=%d, build=%.1fs) ===%n",
+                size, dim, clusters, m, efConstruction, buildSeconds);
+        System.out.printf("exact     : recall@%d=1.000 latency=%.1fus%n", K, exactMicros);
+        int[] nodes = new int[K];
+        float[] scores = new float[K];
+        for (int ef : EF_VALUES) {
+            // 预热一轮，再只对检索本身计时
+            for (float[] query : queryVectors) {
+                index.search(query, K, ef, null, nodes, scores);
+            }
+            start = System.nanoTime();
+            for (float[] query : queryVectors) {
+                index.search(query, K, ef, null, nodes, scores);
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / queries;
+
+            int hits = 0;
+            for (int q = 0; q < queries; q++) {
+                hits += HnswIndexTest.overlap(truth[q], HnswIndexTest.approximate(index, queryVectors[q], K, ef));
+            }
+            System.out.printf("ef=%-6d : recall@%d=%.3f latency=%.1fus speedup=%.1fx%n",
+                    ef, K, (double) hits / (queries * K), micros, exactMicros / micros);
+        }
+    }
+
+    /**
+     * 以 centroid 为中心的随机向量，centroid 为 null 时为各向同性高斯向量
+     */
+    private static float[] randomVector(Random random, int dim, float[] centroid) {
+        float[] v = new float[dim];
+        for (int d = 0; d < dim; d++) {
+            v[d] = centroid == null ? (float) random.nextGaussian() : centroid[d] + 0.05f * (float) random.nextGaussian();
+        }
+        return VectorMath.normalizedCopy(v);
+    }
+}
@@ -0,0 +1,119 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IvfIndexTest {
+
+    private static final int DIM = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRecallAgainstExactScan() {
+        Random random = new Random(3);
+        int n = 8000;
+        VectorArena arena = new VectorArena(DIM);
+        float[][] vectors = clustered(random, n, 40);
+        for (int row = 0; row < n; row++) {
+            arena.write(row, vectors[row]);
+        }
+        // 只用前一半训练，后一半按增量写入分配
+        IvfIndex index = IvfIndex.train(Arrays.copyOf(vectors, n / 2), 64, 10, 1, n / 2);
+        assertEquals(64, index.nlist());
+        index.addAll(arena, 0, n / 2, null);
+        for (int row = n / 2; row < n; row++) {
+            index.add(row, vectors[row]);
+        }
+
+        ExactScanner exact = new ExactScanner(ForkJoinPool.commonPool(), 16_384);
+        int k = 5;
+        int queries = 100;
+        int hits = 0;
+        int[] truthRows = new int[k];
+        int[] rows = new int[k];
+        float[] scores = new float[k];
+        for (int q = 0; q < queries; q++) {
+            float[] query = clustered(random, 1, 40)[0];
+            exact.search(arena, n, query, k, null, truthRows, scores);
+            assertEquals(k, index.search(arena, query, k, 8, null, rows, scores));
+            Set<Integer> truth = new HashSet<>();
+            Arrays.stream(truthRows).forEach(truth::add);
+            hits += (int) Arrays.stream(rows).filter(truth::contains).count();
+        }
+        double recall = (double) hits / (queries * k);
+        assertTrue(recall >= 0.99, "recall@5 " + recall);
+
+        // 探查全部簇即精确检索
+        float[] query = vectors[123];
+        assertEquals(k, index.search(arena, query, k, index.nlist(), row -> row != 123, rows, scores));
+        int[] all = new int[k + 1];
+        exact.search(arena, n, query, k + 1, null, all, new float[k + 1]);
+        assertArrayEquals(Arrays.copyOfRange(all, 1, k + 1), rows);
+    }
+
+    @Test
+    void testWriteAndReadAssignments() throws Exception {
+        Random random = new Random(5);
+        int n = 2000;
+        VectorArena arena = new VectorArena(DIM);
+        float[][] vectors = clustered(random, n, 10);
+        for (int row = 0; row < n; row++) {
+            arena.write(row, vectors[row]);
+        }
+        IvfIndex index = IvfIndex.train(vectors, 16, 5, 2, n);
+        index.addAll(arena, 0, n, row -> row % 10 != 0);
+
+        // 写入前 n - 500 行，读回后补齐其余行，检索结果不变
+        Path file = tempDir.resolve("lists-00000001.ivf");
+        IvfIndex.write(file, index, n - 500);
+        IvfIndex.Loaded loaded = IvfIndex.read(file);
+        assertEquals(n - 500, loaded.rows());
+        assertEquals(16, loaded.index().nlist());
+        assertEquals(n, loaded.index().trainedRows());
+        loaded.index().addAll(arena, loaded.rows(), n, row -> row % 10 != 0);
+
+        int[] expected = new int[10];
+        int[] rows = new int[10];
+        float[] scores = new float[10];
+        for (int q : new int[]{1, 777, 1999}) {
+            int found = index.search(arena, vectors[q], 10, 3, null, expected, scores);
+            assertEquals(found, loaded.index().search(arena, vectors[q], 10, 3, null, rows, scores));
+            assertArrayEquals(expected, rows);
+            assertEquals(q, rows[0]);
+        }
+        // 未分配的行不会出现在结果中
+        index.search(arena, vectors[20], 10, index.nlist(), null, rows, scores);
+        assertFalse(Arrays.stream(rows).anyMatch(row -> row % 10 == 0));
+    }
+
+    private static float[][] clustered(Random random, int n, int clusters) {
+        Random centers = new Random(clusters);
+        float[][] centroids = new float[clusters][DIM];
+        for (float[] centroid : centroids) {
+            for (int d = 0; d < DIM; d++) {
+                centroid[d] = (float) centers.nextGaussian();
+            }
+        }
+        float[][] vectors = new float[n][];
+        for (int i = 0; i < n; i++) {
+            float[] centroid = centroids[random.nextInt(clusters)];
+            float[] v = new float[DIM];
+            for (int d = 0; d < DIM; d++) {
+                v[d] = centroid[d] + 0.3f * (float) random.nextGaussian();
+            }
+            vectors[i] = VectorMath.normalizedCopy(v);
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,54 @@
+package com.novel.splitter.embedding.store.index;
+
+import com.novel.splitter.domain.model.SceneMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetadataIndexTest {
+
+    @Test
+    void testSelect() {
+        MetadataIndex index = new MetadataIndex();
+        for (int row = 0; row < 100; row++) {
+            index.add(row, meta(row < 50 ? "a" : "b", row % 2 == 0 ? "v1" : "v2", row / 10));
+        }
+
+        assertNull(index.select(Map.of()));
+        assertEquals(50, index.select(Map.of("novel", "a")).cardinality());
+        assertEquals(25, index.select(Map.of("novel", "a", "version", "v1")).cardinality());
+        assertTrue(index.select(Map.of("novel", "c")).isEmpty());
+        assertTrue(index.select(Map.of("unknown", "a")).isEmpty());
+
+        // 章节范围: 第 3 ~ 5 章 => 行 30 ~ 59，再限定小说 a => 行 30 ~ 49
+        RowBitmap range = index.select(Map.of("chapter_index", Map.of("$gte", 3, "$lte", 5)));
+        assertEquals(30, range.cardinality());
+        RowBitmap scoped = index.select(Map.of("novel", "a", "chapter_index", Map.of("$gte", 3, "$lte", 5)));
+        assertArrayEquals(IntStream.range(30, 50).toArray(), scoped.toArray());
+        assertEquals(10, index.select(Map.of("chapter_index", 7)).cardinality());
+        assertEquals(20, index.select(Map.of("chapter_index", Map.of("$gt", 7))).cardinality());
+        assertEquals(20, index.select(Map.of("chapter_index", Map.of("$in", List.of(0, 9, 42)))).cardinality());
+        assertEquals(60, index.select(Map.of("novel", Map.of("$in", List.of("a", "b")), "chapter_index", Map.of("$lt", 6))).cardinality());
+
+        assertThrows(IllegalArgumentException.class, () -> index.select(Map.of("novel", Map.of("$regex", "a"))));
+    }
+
+    @Test
+    void testRemove() {
+        MetadataIndex index = new MetadataIndex();
+        SceneMetadata meta = meta("a", "v1", 1);
+        index.add(0, meta);
+        index.add(1, meta);
+        index.remove(0, meta);
+        assertArrayEquals(new int[]{1}, index.select(Map.of("novel", "a")).toArray());
+        assertArrayEquals(new int[]{1}, index.select(Map.of("chapter_index", 1)).toArray());
+    }
+
+    private static SceneMetadata meta(String novel, String version, int chapter) {
+        return SceneMetadata.builder().novel(novel).version(version).chapterIndex(chapter).build();
+    }
+}
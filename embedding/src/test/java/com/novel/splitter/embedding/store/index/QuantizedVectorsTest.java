@@ -0,0 +1,116 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantizedVectorsTest {
+
+    private static final int DIM = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testTableScoreMatchesDecodedVector() {
+        Random random = new Random(7);
+        float[][] samples = clustered(random, 3000, 20);
+        for (boolean rotate : new boolean[]{false, true}) {
+            ProductQuantizer quantizer = ProductQuantizer.train(samples, 16, rotate, 8, 1);
+            assertEquals(16, quantizer.subspaces());
+            assertEquals(rotate, quantizer.isRotated());
+
+            byte[] codes = new byte[16];
+            quantizer.encode(samples[0], codes, 0);
+            float[] decoded = quantizer.decode(codes, 0);
+            float[] query = samples[1];
+            // 查表分数即查询与解码向量的点积 (旋转为正交变换)
+            assertEquals(VectorMath.dot(query, decoded), ProductQuantizer.score(quantizer.table(query), codes, 0, 16), 1e-4);
+            // 量化误差远小于向量本身
+            float error = 0f;
+            for (int d = 0; d < DIM; d++) {
+                error += (decoded[d] - samples[0][d]) * (decoded[d] - samples[0][d]);
+            }
+            assertTrue(error < 0.1f, "squared error " + error);
+        }
+    }
+
+    @Test
+    void testRerankedRecallAndRoundTrip() throws Exception {
+        Random random = new Random(11);
+        int n = 5000;
+        float[][] vectors = clustered(random, n, 50);
+        VectorArena arena = new VectorArena(DIM);
+        for (int row = 0; row < n; row++) {
+            arena.write(row, vectors[row]);
+        }
+        QuantizedVectors codes = new QuantizedVectors(ProductQuantizer.train(vectors, 16, false, 10, 3), n);
+        codes.encodeAll(arena, 0, n);
+
+        ExactScanner exact = new ExactScanner(ForkJoinPool.commonPool(), 16_384);
+        int k = 5;
+        int hits = 0;
+        int queries = 100;
+        int[] truthRows = new int[k];
+        int[] rows = new int[k];
+        float[] scores = new float[k];
+        for (int q = 0; q < queries; q++) {
+            float[] query = clustered(random, 1, 50)[0];
+            exact.search(arena, n, query, k, null, truthRows, scores);
+            codes.search(arena, n, null, query, k, 100, null, rows, scores);
+            Set<Integer> truth = new HashSet<>();
+            Arrays.stream(truthRows).forEach(truth::add);
+            hits += (int) Arrays.stream(rows).filter(truth::contains).count();
+        }
+        double recall = (double) hits / (queries * k);
+        assertTrue(recall >= 0.99, "recall@5 " + recall);
+
+        // 写入前 n - 100 行，读回后补齐其余行，检索结果不变；过滤与候选行同样生效
+        Path file = tempDir.resolve("codes-00000001.pq");
+        QuantizedVectors.write(file, codes, n - 100);
+        QuantizedVectors.Loaded loaded = QuantizedVectors.read(file);
+        assertEquals(n - 100, loaded.rows());
+        loaded.vectors().encodeAll(arena, loaded.rows(), n);
+        float[] query = vectors[42];
+        int[] expected = new int[k];
+        codes.search(arena, n, null, query, k, 50, null, expected, scores);
+        codes.search(arena, n, null, query, k, 50, null, rows, scores);
+        assertArrayEquals(expected, rows);
+        loaded.vectors().search(arena, n, null, query, k, 50, null, rows, scores);
+        assertArrayEquals(expected, rows);
+        assertEquals(42, rows[0]);
+        assertEquals(1.0f, scores[0], 1e-5);
+
+        int found = loaded.vectors().search(arena, n, new int[]{3, 42, 4000}, query, k, 50, row -> row != 3, rows, scores);
+        assertEquals(2, found);
+        assertEquals(42, rows[0]);
+    }
+
+    private static float[][] clustered(Random random, int n, int clusters) {
+        Random centers = new Random(clusters);
+        float[][] centroids = new float[clusters][DIM];
+        for (float[] centroid : centroids) {
+            for (int d = 0; d < DIM; d++) {
+                centroid[d] = (float) centers.nextGaussian();
+            }
+        }
+        float[][] vectors = new float[n][];
+        for (int i = 0; i < n; i++) {
+            float[] centroid = centroids[random.nextInt(clusters)];
+            float[] v = new float[DIM];
+            for (int d = 0; d < DIM; d++) {
+                v[d] = centroid[d] + 0.3f * (float) random.nextGaussian();
+            }
+            vectors[i] = VectorMath.normalizedCopy(v);
+        }
+        return vectors;
+    }
+}
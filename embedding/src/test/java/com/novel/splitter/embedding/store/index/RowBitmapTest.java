@@ -0,0 +1,68 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowBitmapTest {
+
+    @Test
+    void testMatchesBitSet() {
+        Random random = new Random(17);
+        RowBitmap a = new RowBitmap();
+        RowBitmap b = new RowBitmap();
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        // 稠密区间 (位图容器) 与稀疏行 (数组容器) 混合，跨多个桶
+        for (int row = 60_000; row < 75_000; row++) {
+            a.add(row);
+            expectedA.set(row);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            int row = random.nextInt(300_000);
+            b.add(row);
+            expectedB.set(row);
+            if (i % 3 == 0) {
+                int removed = 60_000 + random.nextInt(15_000);
+                a.remove(removed);
+                expectedA.clear(removed);
+            }
+        }
+
+        assertEquals(expectedA.cardinality(), a.cardinality());
+        assertArrayEquals(expectedA.stream().toArray(), a.toArray());
+        assertArrayEquals(expectedB.stream().toArray(), b.toArray());
+
+        BitSet and = (BitSet) expectedA.clone();
+        and.and(expectedB);
+        assertArrayEquals(and.stream().toArray(), a.and(b).toArray());
+
+        BitSet or = (BitSet) expectedA.clone();
+        or.or(expectedB);
+        assertArrayEquals(or.stream().toArray(), a.or(b).toArray());
+        assertArrayEquals(or.stream().toArray(), b.or(a).toArray());
+
+        for (int row = 0; row < 300_000; row += 7) {
+            assertEquals(expectedB.get(row), b.contains(row));
+        }
+    }
+
+    @Test
+    void testRemoveAllAndCopy() {
+        RowBitmap rows = new RowBitmap();
+        for (int row = 0; row < 10_000; row++) {
+            rows.add(row * 3);
+        }
+        RowBitmap copy = rows.copy();
+        for (int row = 0; row < 10_000; row++) {
+            rows.remove(row * 3);
+        }
+        assertTrue(rows.isEmpty());
+        assertEquals(0, rows.toArray().length);
+        assertEquals(10_000, copy.cardinality());
+        assertTrue(copy.contains(29_997));
+    }
+}
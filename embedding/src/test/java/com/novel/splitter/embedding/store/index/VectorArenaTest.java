@@ -0,0 +1,89 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorArenaTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRowsAcrossChunks() {
+        int dim = 8;
+        int rows = VectorArena.CHUNK_ROWS + 100;
+        VectorArena arena = new VectorArena(dim);
+        float[][] vectors = randomVectors(rows, dim, new Random(5));
+        for (int row = 0; row < rows; row++) {
+            arena.write(row, vectors[row]);
+        }
+        // 最后一块按需增长到 128 行，不分配整块
+        assertEquals((VectorArena.CHUNK_ROWS + 128L) * dim * Float.BYTES, arena.offHeapBytes());
+
+        float[] query = vectors[17];
+        // 跨越块边界的批量计算与逐行计算一致
+        int from = VectorArena.CHUNK_ROWS - 50;
+        float[] scores = new float[100];
+        arena.dotRange(query, from, from + 100, scores);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(VectorMath.dot(query, vectors[from + i]), scores[i], 1e-6);
+            assertEquals(scores[i], arena.dot(query, from + i), 1e-6);
+        }
+
+        assertArrayEquals(vectors[rows - 1], arena.copyOf(rows - 1));
+        assertEquals(VectorMath.dot(vectors[3], vectors[rows - 1]), arena.dot(3, rows - 1), 1e-6);
+    }
+
+    @Test
+    void testTailChunkGrowsOnDemand() throws IOException {
+        int dim = 16;
+        VectorArena arena = new VectorArena(dim);
+        float[][] vectors = randomVectors(300, dim, new Random(7));
+        for (int row = 0; row < 10; row++) {
+            arena.write(row, vectors[row]);
+        }
+        assertEquals((long) VectorArena.MIN_TAIL_ROWS * dim * Float.BYTES, arena.offHeapBytes());
+
+        // 映射后的最后一块只按实际行数复制，继续追加时增长且保留已有行
+        Path file = tempDir.resolve("arena.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            arena.writeTo(channel, 10);
+        }
+        VectorArena mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = VectorArena.map(channel, 0, dim, 10);
+        }
+        assertEquals(10L * dim * Float.BYTES, mapped.offHeapBytes());
+        for (int row = 10; row < 300; row++) {
+            mapped.write(row, vectors[row]);
+        }
+        assertEquals(512L * dim * Float.BYTES, mapped.offHeapBytes());
+        for (int row = 0; row < 300; row++) {
+            assertArrayEquals(vectors[row], mapped.copyOf(row));
+        }
+    }
+
+    @Test
+    void testDimensionMismatch() {
+        VectorArena arena = new VectorArena(4);
+        assertThrows(IllegalArgumentException.class, () -> arena.write(0, new float[3]));
+    }
+
+    private static float[][] randomVectors(int count, int dim, Random random) {
+        float[][] vectors = new float[count][dim];
+        for (float[] v : vectors) {
+            for (int d = 0; d < dim; d++) {
+                v[d] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
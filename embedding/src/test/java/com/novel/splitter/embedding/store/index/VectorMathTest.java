@@ -0,0 +1,45 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorMathTest {
+
+    @Test
+    void testSimdMatchesScalar() {
+        VectorKernel simd = new SimdVectorKernel();
+        Random random = new Random(11);
+        // 覆盖不足一个向量宽度、整倍数及带尾部的长度
+        for (int length : new int[]{1, 3, 7, 8, 16, 31, 64, 100, 512, 768}) {
+            float[] a = new float[length + 5];
+            float[] b = new float[length + 5];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = (float) random.nextGaussian();
+                b[i] = (float) random.nextGaussian();
+            }
+            double expected = 0;
+            for (int i = 0; i < length; i++) {
+                expected += (double) a[i + 2] * b[i + 5];
+            }
+            assertEquals(expected, ScalarVectorKernel.INSTANCE.dot(a, 2, b, 5, length), 1e-3, "scalar, length " + length);
+            assertEquals(expected, simd.dot(a, 2, b, 5, length), 1e-3, "simd, length " + length);
+        }
+    }
+
+    @Test
+    void testKernelSelectedWithIncubatorModule() {
+        // surefire 以 --add-modules jdk.incubator.vector 启动
+        assertTrue(VectorMath.kernelName().startsWith("simd"), VectorMath.kernelName());
+    }
+
+    @Test
+    void testCosine() {
+        assertEquals(1f, VectorMath.cosine(new float[]{2f, 0f}, new float[]{5f, 0f}), 1e-6);
+        assertEquals(0f, VectorMath.cosine(new float[]{1f, 0f}, new float[]{0f, 3f}), 1e-6);
+        assertEquals(0f, VectorMath.cosine(new float[]{0f, 0f}, new float[]{1f, 1f}), 1e-6);
+        assertThrows(IllegalArgumentException.class, () -> VectorMath.dot(new float[2], new float[3]));
+    }
+}
@@ -0,0 +1,129 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 精确扫描基准测试：512 维向量，分别使用标量与 SIMD 点积内核，单线程与 ForkJoin 并行，以及 8 条查询逐条扫描与批量扫描
+ * <p>
+ * 每组参数在独立的 JVM 中运行，通过 embedding.vector.simd 系统属性切换内核。
+ * 1M 行需要约 2GB 直接内存 (已在 fork 参数中设置)。
+ * 运行方式：在 IDE 中直接运行 main，或使用 test classpath 执行 org.openjdk.jmh.Main VectorScanBenchmark。
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx1g", "-XX:MaxDirectMemorySize=3g"})
+public class VectorScanBenchmark {
+
+    private static final int DIM = 512;
+    private static final int TOP_K = 10;
+    private static final int BLOCK = 1024;
+    private static final int BATCH = 8;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"scalar", "simd"})
+    public String kernel;
+
+    private VectorArena arena;
+    private float[] query;
+    private float[][] queries;
+    private float[] blockScores;
+    private ExactScanner parallelScanner;
+
+    @Setup
+    public void setup() {
+        // 必须在 VectorMath 初始化之前设置
+        System.setProperty("embedding.vector.simd", Boolean.toString("simd".equals(kernel)));
+        System.out.println("Vector kernel: " + VectorMath.kernelName());
+
+        Random random = new Random(42);
+        arena = new VectorArena(DIM);
+        float[] vector = new float[DIM];
+        for (int row = 0; row < rows; row++) {
+            for (int d = 0; d < DIM; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            arena.write(row, VectorMath.normalizedCopy(vector));
+        }
+        query = arena.copyOf(random.nextInt(rows));
+        queries = new float[BATCH][];
+        for (int q = 0; q < BATCH; q++) {
+            queries[q] = arena.copyOf(random.nextInt(rows));
+        }
+        blockScores = new float[BLOCK];
+        parallelScanner = new ExactScanner(ForkJoinPool.commonPool(), 16_384);
+    }
+
+    @Benchmark
+    public int exactTopK() {
+        ScoredHeap heap = ScoredHeap.minHeap(TOP_K + 1);
+        for (int from = 0; from < rows; from += BLOCK) {
+            int to = Math.min(from + BLOCK, rows);
+            arena.dotRange(query, from, to, blockScores);
+            for (int row = from; row < to; row++) {
+                heap.offer(blockScores[row - from], row, TOP_K);
+            }
+        }
+        return heap.topId();
+    }
+
+    @Benchmark
+    public int parallelExactTopK() {
+        int[] rowsOut = new int[TOP_K];
+        float[] scoresOut = new float[TOP_K];
+        parallelScanner.search(arena, rows, query, TOP_K, null, rowsOut, scoresOut);
+        return rowsOut[0];
+    }
+
+    @Benchmark
+    public int sequentialQueries() {
+        int[] rowsOut = new int[TOP_K];
+        float[] scoresOut = new float[TOP_K];
+        int checksum = 0;
+        for (float[] q : queries) {
+            parallelScanner.search(arena, rows, q, TOP_K, null, rowsOut, scoresOut);
+            checksum += rowsOut[0];
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public int batchedQueries() {
+        int[][] rowsOut = new int[BATCH][TOP_K];
+        float[][] scoresOut = new float[BATCH][TOP_K];
+        parallelScanner.searchBatch(arena, rows, queries, TOP_K, null, rowsOut, scoresOut);
+        int checksum = 0;
+        for (int[] out : rowsOut) {
+            checksum += out[0];
+        }
+        return checksum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VectorScanBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
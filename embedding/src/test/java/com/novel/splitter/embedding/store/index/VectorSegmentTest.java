@@ -0,0 +1,85 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorSegmentTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRoundTripWithGraph() throws Exception {
+        int rows = VectorArena.CHUNK_ROWS + 300;
+        float[][] vectors = HnswIndexTest.randomVectors(rows, new Random(21));
+        HnswIndex index = new HnswIndex(8, 64);
+        for (int i = 0; i < rows; i++) {
+            index.add("场景-" + i, vectors[i]);
+        }
+        index.remove("场景-5");
+        index.add("场景-6", vectors[7]);
+
+        Path file = tempDir.resolve("vectors-00000001.seg");
+        VectorSegment.write(file, index, "{\"meta\":1}".getBytes(StandardCharsets.UTF_8));
+        assertFalse(Files.exists(tempDir.resolve("vectors-00000001.seg.tmp")));
+
+        VectorSegment.Loaded loaded = VectorSegment.read(file, 8, 64, true);
+        HnswIndex restored = loaded.index();
+        assertEquals("{\"meta\":1}", new String(loaded.metadata(), StandardCharsets.UTF_8));
+        assertEquals(index.size(), restored.size());
+        assertEquals(index.nodeCount(), restored.nodeCount());
+        assertFalse(restored.contains("场景-5"));
+        assertArrayEquals(index.vector(rows - 1), restored.vector(rows - 1));
+
+        // 图结构原样恢复，检索结果一致
+        int[] expected = new int[10];
+        int[] actual = new int[10];
+        for (int q = 0; q < 20; q++) {
+            float[] query = vectors[q * 97];
+            index.search(query, 10, 64, null, expected, new float[10]);
+            restored.search(query, 10, 64, null, actual, new float[10]);
+            assertArrayEquals(expected, actual);
+        }
+        int[] top = new int[1];
+        restored.search(vectors[7], 1, 64, null, top, new float[1]);
+        assertTrue(restored.key(top[0]).equals("场景-6") || restored.key(top[0]).equals("场景-7"));
+
+        // 加载后继续写入
+        restored.add("new", vectors[1]);
+        assertTrue(restored.contains("new"));
+        assertEquals(index.size() + 1, restored.size());
+    }
+
+    @Test
+    void testGraphRebuiltWhenMissing() throws Exception {
+        float[][] vectors = HnswIndexTest.randomVectors(500, new Random(4));
+        HnswIndex exactOnly = new HnswIndex(8, 64, false);
+        for (int i = 0; i < vectors.length; i++) {
+            exactOnly.add("v" + i, vectors[i]);
+        }
+        Path file = tempDir.resolve("exact.seg");
+        VectorSegment.write(file, exactOnly, new byte[0]);
+
+        HnswIndex restored = VectorSegment.read(file, 8, 64, true).index();
+        assertEquals(500, restored.size());
+        int[] top = new int[1];
+        assertEquals(1, restored.search(vectors[42], 1, 64, null, top, new float[1]));
+        assertEquals("v42", restored.key(top[0]));
+    }
+
+    @Test
+    void testEmptyIndex() throws Exception {
+        Path file = tempDir.resolve("empty.seg");
+        VectorSegment.write(file, new HnswIndex(8, 64), new byte[0]);
+        VectorSegment.Loaded loaded = VectorSegment.read(file, 8, 64, true);
+        assertEquals(0, loaded.index().size());
+        assertEquals(0, loaded.metadata().length);
+    }
+}
@@ -0,0 +1,239 @@
+package com.novel.splitter.embedding.store.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testAppendCommitAndReplay() throws Exception {
+        Path file = tempDir.resolve("wal-00000000.log");
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            assertTrue(wal.isEmpty());
+            long seq = 0;
+            for (int i = 0; i < 100; i++) {
+                seq = wal.append(("record-" + i).getBytes(StandardCharsets.UTF_8));
+            }
+            wal.commit(seq, false);
+            assertFalse(wal.isEmpty());
+        }
+
+        List<String> replayed = replayAll(file);
+        assertEquals(100, replayed.size());
+        assertEquals("record-0", replayed.get(0));
+        assertEquals("record-99", replayed.get(99));
+    }
+
+    @Test
+    void testConcurrentGroupCommit() throws Exception {
+        Path file = tempDir.resolve("wal.log");
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            IntStream.range(0, 2000).parallel().forEach(i -> {
+                long seq = wal.append(("r" + i).getBytes(StandardCharsets.UTF_8));
+                try {
+                    wal.commit(seq, i % 2 == 0);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        List<String> replayed = replayAll(file);
+        assertEquals(2000, replayed.size());
+        assertEquals(2000, replayed.stream().distinct().count());
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws Exception {
+        Path file = tempDir.resolve("wal.log");
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            wal.commit(wal.append("first".getBytes(StandardCharsets.UTF_8)), false);
+            wal.commit(wal.append("second".getBytes(StandardCharsets.UTF_8)), false);
+        }
+        long intact = Files.size(file);
+        // 模拟写入中断：只写了半条记录
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{20, 0, 0, 0, 1, 2, 3}));
+        }
+
+        assertEquals(List.of("first", "second"), replayAll(file));
+        assertEquals(intact, Files.size(file));
+
+        // 截断后可以继续追加
+        try (WriteAheadLog wal = WriteAheadLog.open(file)) {
+            wal.commit(wal.append("third".getBytes(StandardCharsets.UTF_8)), true);
+        }
+        assertEquals(List.of("first", "second", "third"), replayAll(file));
+    }
+
+    @Test
+    void testRotate() throws Exception {
+        Path first = tempDir.resolve("wal-1.log");
+        Path second = tempDir.resolve("wal-2.log");
+        try (WriteAheadLog wal = WriteAheadLog.open(first)) {
+            wal.append("old".getBytes(StandardCharsets.UTF_8));
+            wal.rotate(second);
+            assertTrue(wal.isEmpty());
+            wal.commit(wal.append("new".getBytes(StandardCharsets.UTF_8)), false);
+        }
+        assertEquals(List.of("old"), replayAll(first));
+        assertEquals(List.of("new"), replayAll(second));
+    }
+
+    @Test
+    void testFailedWriteKeepsUnwrittenRecords() throws Exception {
+        Path file = tempDir.resolve("wal.log");
+        WriteAheadLog.open(file).close();
+        FailingChannel channel = new FailingChannel(FileChannel.open(file, StandardOpenOption.WRITE));
+        channel.position(channel.size());
+        try (WriteAheadLog wal = new WriteAheadLog(channel, channel.size())) {
+            wal.commit(wal.append("first".getBytes(StandardCharsets.UTF_8)), false);
+
+            // 两次写入各写出一部分后失败：提交报错，且序号不能被视为已写出
+            channel.failures = 2;
+            long second = wal.append("second".getBytes(StandardCharsets.UTF_8));
+            long third = wal.append("third".getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> wal.commit(third, false));
+            assertThrows(IOException.class, () -> wal.commit(second, true));
+
+            long fourth = wal.append("fourth".getBytes(StandardCharsets.UTF_8));
+            wal.commit(fourth, true);
+            assertEquals(Files.size(file), wal.size());
+        }
+        assertEquals(List.of("first", "second", "third", "fourth"), replayAll(file));
+    }
+
+    /**
+     * 前若干次 write 只写出 3 个字节后抛出异常的文件通道
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private int failures;
+
+        private FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failures > 0) {
+                failures--;
+                ByteBuffer partial = src.slice(src.position(), Math.min(3, src.remaining()));
+                src.position(src.position() + delegate.write(partial));
+                throw new IOException("No space left on device");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private static List<String> replayAll(Path file) throws Exception {
+        List<String> records = new ArrayList<>();
+        WriteAheadLog.replay(file, record -> {
+            byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            records.add(new String(bytes, StandardCharsets.UTF_8));
+        });
+        return records;
+    }
+}
@@ -0,0 +1,63 @@
+package com.novel.splitter.embedding.tokenizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DoubleArrayTrieTest {
+
+    @Test
+    void testExactLookup() {
+        Map<String, Integer> entries = new HashMap<>();
+        entries.put("he", 1);
+        entries.put("hello", 2);
+        entries.put("楚晨", 3);
+        DoubleArrayTrie trie = DoubleArrayTrie.build(entries);
+
+        assertEquals(1, trie.get("he"));
+        assertEquals(2, trie.get("hello"));
+        assertEquals(3, trie.get("楚晨"));
+        assertEquals(-1, trie.get("hel"));
+        assertEquals(-1, trie.get("楚"));
+        assertEquals(-1, trie.get("world"));
+    }
+
+    @Test
+    void testLongestMatch() {
+        Map<String, Integer> entries = new HashMap<>();
+        entries.put("he", 1);
+        entries.put("hello", 2);
+        entries.put("hell", 4);
+        DoubleArrayTrie trie = DoubleArrayTrie.build(entries);
+
+        long match = trie.longestMatch("xhelloworld", 1, 11);
+        assertEquals(6, DoubleArrayTrie.matchEnd(match));
+        assertEquals(2, DoubleArrayTrie.matchValue(match));
+
+        // 匹配范围受 to 限制
+        match = trie.longestMatch("xhelloworld", 1, 5);
+        assertEquals(5, DoubleArrayTrie.matchEnd(match));
+        assertEquals(4, DoubleArrayTrie.matchValue(match));
+
+        assertEquals(DoubleArrayTrie.NO_MATCH, trie.longestMatch("world", 0, 5));
+    }
+
+    @Test
+    void testDenseRoot() {
+        // 大量单字符键 (类似中文词表) 与多字符键共存
+        Map<String, Integer> entries = new HashMap<>();
+        for (char c = 0x4E00; c < 0x4E00 + 5000; c++) {
+            entries.put(String.valueOf(c), (int) c);
+            entries.put(String.valueOf(c) + "a", c + 100_000);
+        }
+        DoubleArrayTrie trie = DoubleArrayTrie.build(entries);
+
+        for (char c = 0x4E00; c < 0x4E00 + 5000; c++) {
+            assertEquals(c, trie.get(String.valueOf(c)));
+            assertEquals(c + 100_000, trie.get(String.valueOf(c) + "a"));
+        }
+    }
+}
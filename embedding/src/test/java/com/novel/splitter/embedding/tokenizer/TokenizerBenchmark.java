@@ -0,0 +1,133 @@
+package com.novel.splitter.embedding.tokenizer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分词吞吐基准测试 (tokens/s)
+ * <p>
+ * 对比旧实现 (String.valueOf + HashMap + List&lt;Long&gt;) 与当前 {@link Tokenizer}。
+ * 默认使用 test 资源中的样例章节，可通过 -Dbench.chapter=/path/to/chapter.txt 指定真实章节。
+ * 运行方式：在 IDE 中直接运行 main，或使用 test classpath 执行 org.openjdk.jmh.Main TokenizerBenchmark。
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    private Vocabulary vocabulary;
+    private Tokenizer tokenizer;
+    private List<String> segments;
+
+    /**
+     * 以 Token 为单位统计吞吐
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class TokenCounter {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        vocabulary = new Vocabulary();
+        try (InputStream is = TokenizerBenchmark.class.getResourceAsStream("/embedding/vocab.txt")) {
+            vocabulary.load(is);
+        }
+        tokenizer = new Tokenizer(vocabulary);
+
+        String chapter;
+        String chapterPath = System.getProperty("bench.chapter");
+        if (chapterPath != null && !chapterPath.isBlank()) {
+            chapter = Files.readString(Paths.get(chapterPath), StandardCharsets.UTF_8);
+        } else {
+            try (InputStream is = TokenizerBenchmark.class.getResourceAsStream("/bench/chapter.txt")) {
+                chapter = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+
+        // 按模型最大长度切段，保证整章文本都参与分词
+        segments = new ArrayList<>();
+        int window = Tokenizer.MAX_LENGTH - 2;
+        for (int i = 0; i < chapter.length(); i += window) {
+            segments.add(chapter.substring(i, Math.min(chapter.length(), i + window)));
+        }
+    }
+
+    @Benchmark
+    public void legacyTokenize(TokenCounter counter, Blackhole bh) {
+        for (String segment : segments) {
+            long[] ids = legacyTokenize(segment);
+            counter.tokens += ids.length;
+            bh.consume(ids);
+        }
+    }
+
+    @Benchmark
+    public void primitiveTokenize(TokenCounter counter, Blackhole bh) {
+        for (String segment : segments) {
+            TokenizedInput input = tokenizer.tokenize(segment);
+            counter.tokens += input.length();
+            bh.consume(input);
+        }
+    }
+
+    /**
+     * 旧实现：逐字符 String.valueOf + HashMap 查找 + List&lt;Long&gt; 装箱
+     */
+    private long[] legacyTokenize(String text) {
+        List<Long> ids = new ArrayList<>();
+        ids.add(vocabulary.getClsId());
+        for (int i = 0; i < text.length(); i++) {
+            Long id = vocabulary.getId(String.valueOf(text.charAt(i)));
+            ids.add(id != null ? id : vocabulary.getUnkId());
+            if (ids.size() >= Tokenizer.MAX_LENGTH - 1) {
+                break;
+            }
+        }
+        ids.add(vocabulary.getSepId());
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TokenizerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
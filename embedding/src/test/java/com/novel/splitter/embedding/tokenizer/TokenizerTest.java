@@ -0,0 +1,122 @@
+package com.novel.splitter.embedding.tokenizer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenizerTest {
+
+    private static Vocabulary vocabulary;
+    private static Tokenizer tokenizer;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        vocabulary = new Vocabulary();
+        try (InputStream is = TokenizerTest.class.getResourceAsStream("/embedding/vocab.txt")) {
+            vocabulary.load(is);
+        }
+        tokenizer = new Tokenizer(vocabulary);
+    }
+
+    @Test
+    void testChineseCharacters() {
+        TokenizedInput input = tokenizer.tokenize("楚晨是谁");
+
+        long[] ids = input.getInputIds();
+        assertEquals(6, input.length());
+        assertEquals(vocabulary.getClsId(), ids[0]);
+        assertEquals(vocabulary.getId("楚").longValue(), ids[1]);
+        assertEquals(vocabulary.getId("晨").longValue(), ids[2]);
+        assertEquals(vocabulary.getId("是").longValue(), ids[3]);
+        assertEquals(vocabulary.getId("谁").longValue(), ids[4]);
+        assertEquals(vocabulary.getSepId(), ids[5]);
+    }
+
+    @Test
+    void testWordPiece() {
+        // 期望值与 HuggingFace BertTokenizer (bge-small-zh tokenizer.json) 输出一致
+        assertArrayEquals(new long[]{101, 8701, 8572, 102},
+                tokenizer.tokenize("hello world").getInputIds());
+        assertArrayEquals(new long[]{101, 100, 131, 12350, 122, 8205, 8552, 117, 11354, 9636, 119, 122, 113, 8647, 12106, 114, 119, 102},
+                tokenizer.tokenize("Notes: chapter 1 of 1200, version v2.1 (draft).").getInputIds());
+    }
+
+    @Test
+    void testChinesePunctuationAndUnknownWords() {
+        // 中文字符与全角标点各自成词，无法完整切分的英文单词整体输出 [UNK]
+        assertArrayEquals(new long[]{101, 3504, 3247, 3221, 6443, 8043, 100, 100, 102},
+                tokenizer.tokenize("楚晨是谁？Chroma ONNX").getInputIds());
+    }
+
+    @Test
+    void testControlCharactersRemovedInsideWord() {
+        // 零宽空格 (Cf) 被清洗掉，不切分单词
+        assertArrayEquals(new long[]{101, 9386, 102},
+                tokenizer.tokenize("a\u200Bb").getInputIds());
+    }
+
+    @Test
+    void testCharTableMatchesMap() {
+        for (char c : "第一章青云山下，楚晨背着柴。".toCharArray()) {
+            Long expected = vocabulary.getId(String.valueOf(c));
+            int actual = vocabulary.getCharId(c);
+            if (expected == null) {
+                assertEquals(Vocabulary.NO_ID, actual);
+            } else {
+                assertEquals(expected.longValue(), actual);
+            }
+        }
+    }
+
+    @Test
+    void testTruncation() {
+        TokenizedInput input = tokenizer.tokenize("好".repeat(2000));
+
+        assertEquals(Tokenizer.MAX_LENGTH, input.length());
+        assertEquals(vocabulary.getSepId(), input.getInputIds()[Tokenizer.MAX_LENGTH - 1]);
+    }
+
+    @Test
+    void testTokenizeIntoSmallBuffer() {
+        long[] dest = new long[4];
+        int length = tokenizer.tokenizeInto("楚晨是谁", dest);
+
+        assertEquals(4, length);
+        assertEquals(vocabulary.getClsId(), dest[0]);
+        assertEquals(vocabulary.getSepId(), dest[3]);
+
+        // 只放得下 [CLS] [SEP]
+        long[] minimal = new long[2];
+        assertEquals(2, tokenizer.tokenizeInto("楚晨是谁", minimal));
+        assertArrayEquals(new long[]{vocabulary.getClsId(), vocabulary.getSepId()}, minimal);
+
+        assertThrows(IllegalArgumentException.class, () -> tokenizer.tokenizeInto("楚晨", new long[1]));
+        assertThrows(IllegalArgumentException.class, () -> tokenizer.tokenizeInto("楚晨", new long[0]));
+    }
+
+    @Test
+    void testEmptyText() {
+        TokenizedInput input = tokenizer.tokenize(null);
+
+        assertArrayEquals(new long[]{vocabulary.getClsId(), vocabulary.getSepId()}, input.getInputIds());
+        assertArrayEquals(new long[]{1L, 1L}, input.getAttentionMask());
+        assertArrayEquals(new long[]{0L, 0L}, input.getTokenTypeIds());
+    }
+
+    @Test
+    void testTokenizerIdFollowsVocabularyContent() throws Exception {
+        String id = tokenizer.getTokenizerId();
+        assertEquals(16, id.length());
+        assertEquals(id, new Tokenizer(vocabulary).getTokenizerId());
+
+        // 换用另一份词表时标识变化，依赖分词结果的向量缓存随之失效
+        Vocabulary other = new Vocabulary();
+        other.load(new ByteArrayInputStream("{\"[CLS]\": 101, \"[SEP]\": 102, \"好\": 1}".getBytes(StandardCharsets.UTF_8)));
+        assertNotEquals(id, new Tokenizer(other).getTokenizerId());
+    }
+}
@@ -1,6 +1,9 @@
 package com.novel.splitter.repository.api;
 
 import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.infrastructure.json.JsonUtils;
+
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -27,6 +30,16 @@ public interface SceneRepository {
      */
     List<Scene> loadScenes(String novelName, String version);
 
+    /**
+     * 将指定版本的切分结果导出为 JSON 文件（格式化输出，便于人工查看或交给其他工具）
+     * @param novelName 小说名称
+     * @param version 版本
+     * @param target 目标文件
+     */
+    default void exportJson(String novelName, String version, Path target) {
+        JsonUtils.writeToFile(target, loadScenes(novelName, version));
+    }
+
     /**
      * 删除指定小说的指定版本（删除文件产物）
      * @param novelName 小说名称
@@ -0,0 +1,466 @@
+package com.novel.splitter.repository.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 场景二进制文件 (scenes.bin)
+ * <p>
+ * 按列存储：定长字段 (章节号、段落范围、字数、标志、字典引用) 各占一列，章节标题、小说名、版本等重复出现的短字符串
+ * 只在字符串字典中存一次，场景中记录字典下标；ID、正文、前文摘要等变长内容按场景写成记录块 (长度前缀的 UTF-8)，
+ * 由定宽的偏移表定位，可以只解码其中一段场景。
+ * </p>
+ * <p>
+ * 文件格式 (小端)：
+ * <pre>
+ *   头部     : magic | version | count | dictionarySize
+ *   字符串字典: (length | UTF-8) * dictionarySize
+ *   定长列   : 每列 count 项，顺序见 {@link #INT_COLUMNS}、flags (byte)、densityScore / qualityScore (double)
+ *   偏移表   : long * (count + 1)，记录块相对记录区起点的偏移 (最后一项为记录区长度)
+ *   记录区   : id | text | prefixContext | characters (size | 字典下标 * size) | extra (JSON)
+ * </pre>
+ * 前文摘要与上一场景正文的结尾重复，能在上一场景正文中找到时只记录位置。
+ * 字符串长度为 -1 表示 null，字典下标为 -1 表示 null，可空整数以 {@link Integer#MIN_VALUE} 表示 null，可空小数以 NaN 表示 null。
+ * 运行时字段 score 不写入。
+ * </p>
+ */
+public final class BinarySceneFile {
+
+    private static final int MAGIC = 0x43534E53; // "SNSC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+
+    /**
+     * 前文摘要的长度位置写入该值时，后面跟 (字符偏移, 字符长度)，表示上一场景正文中的一段
+     */
+    private static final int PREVIOUS_TEXT_REF = -2;
+
+    /**
+     * 定长整数列 (每列 count 个 int)
+     */
+    private static final int INT_COLUMNS = 16;
+    private static final int CHAPTER_INDEX = 0;
+    private static final int START_PARAGRAPH = 1;
+    private static final int END_PARAGRAPH = 2;
+    private static final int WORD_COUNT = 3;
+    private static final int CHAPTER_TITLE = 4;
+    private static final int META_NOVEL = 5;
+    private static final int META_VERSION = 6;
+    private static final int META_CHAPTER_TITLE = 7;
+    private static final int META_CHAPTER_INDEX = 8;
+    private static final int META_START_PARAGRAPH = 9;
+    private static final int META_END_PARAGRAPH = 10;
+    private static final int META_CHUNK_TYPE = 11;
+    private static final int META_ROLE = 12;
+    private static final int META_LOCATION = 13;
+    private static final int META_TIME = 14;
+    private static final int META_FLAGS = 15;
+
+    private static final byte FLAG_CAN_SPLIT = 1;
+    private static final byte FLAG_HAS_METADATA = 2;
+
+    private static final ObjectMapper EXTRA_MAPPER = new ObjectMapper();
+
+    private BinarySceneFile() {
+    }
+
+    /**
+     * 原子写入场景列表 (先写临时文件再替换)
+     */
+    public static void write(Path file, List<Scene> scenes) throws IOException {
+        int count = scenes.size();
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<byte[]> dictionaryBytes = new ArrayList<>();
+        int[][] columns = new int[INT_COLUMNS][count];
+        byte[] flags = new byte[count];
+        double[] density = new double[count];
+        double[] quality = new double[count];
+        Output records = new Output(1 << 16);
+        long[] offsets = new long[count + 1];
+
+        for (int i = 0; i < count; i++) {
+            Scene scene = scenes.get(i);
+            SceneMetadata meta = scene.getMetadata();
+            columns[CHAPTER_INDEX][i] = scene.getChapterIndex();
+            columns[START_PARAGRAPH][i] = scene.getStartParagraphIndex();
+            columns[END_PARAGRAPH][i] = scene.getEndParagraphIndex();
+            columns[WORD_COUNT][i] = scene.getWordCount();
+            columns[CHAPTER_TITLE][i] = intern(scene.getChapterTitle(), dictionary, dictionaryBytes);
+            flags[i] = (byte) ((scene.isCanSplit() ? FLAG_CAN_SPLIT : 0) | (meta != null ? FLAG_HAS_METADATA : 0));
+            if (meta != null) {
+                columns[META_NOVEL][i] = intern(meta.getNovel(), dictionary, dictionaryBytes);
+                columns[META_VERSION][i] = intern(meta.getVersion(), dictionary, dictionaryBytes);
+                columns[META_CHAPTER_TITLE][i] = intern(meta.getChapterTitle(), dictionary, dictionaryBytes);
+                columns[META_CHAPTER_INDEX][i] = nullableInt(meta.getChapterIndex());
+                columns[META_START_PARAGRAPH][i] = nullableInt(meta.getStartParagraph());
+                columns[META_END_PARAGRAPH][i] = nullableInt(meta.getEndParagraph());
+                columns[META_CHUNK_TYPE][i] = intern(meta.getChunkType(), dictionary, dictionaryBytes);
+                columns[META_ROLE][i] = intern(meta.getRole(), dictionary, dictionaryBytes);
+                columns[META_LOCATION][i] = intern(meta.getLocation(), dictionary, dictionaryBytes);
+                columns[META_TIME][i] = intern(meta.getTime(), dictionary, dictionaryBytes);
+                columns[META_FLAGS][i] = (meta.getCharacters() != null ? 1 : 0) | (meta.getExtra() != null ? 2 : 0);
+                density[i] = meta.getDensityScore() != null ? meta.getDensityScore() : Double.NaN;
+                quality[i] = meta.getQualityScore() != null ? meta.getQualityScore() : Double.NaN;
+            } else {
+                for (int c : new int[]{META_NOVEL, META_VERSION, META_CHAPTER_TITLE, META_CHUNK_TYPE, META_ROLE, META_LOCATION, META_TIME}) {
+                    columns[c][i] = -1;
+                }
+                columns[META_CHAPTER_INDEX][i] = NULL_INT;
+                columns[META_START_PARAGRAPH][i] = NULL_INT;
+                columns[META_END_PARAGRAPH][i] = NULL_INT;
+                density[i] = Double.NaN;
+                quality[i] = Double.NaN;
+            }
+
+            offsets[i] = records.position();
+            records.putString(scene.getId());
+            records.putString(scene.getText());
+            putPrefixContext(records, scene.getPrefixContext(), i > 0 ? scenes.get(i - 1).getText() : null);
+            List<String> characters = meta != null ? meta.getCharacters() : null;
+            records.putInt(characters != null ? characters.size() : 0);
+            if (characters != null) {
+                for (String character : characters) {
+                    records.putInt(intern(character, dictionary, dictionaryBytes));
+                }
+            }
+            Map<String, Object> extra = meta != null ? meta.getExtra() : null;
+            records.putBytes(extra != null ? EXTRA_MAPPER.writeValueAsBytes(extra) : null);
+        }
+        offsets[count] = records.position();
+
+        Output head = new Output(HEADER_BYTES + count * (INT_COLUMNS * Integer.BYTES + 1 + 2 * Double.BYTES + Long.BYTES) + Long.BYTES);
+        head.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(count).putInt(dictionaryBytes.size());
+        for (byte[] value : dictionaryBytes) {
+            head.putBytes(value);
+        }
+        for (int[] column : columns) {
+            for (int value : column) {
+                head.putInt(value);
+            }
+        }
+        head.putBytes(flags, flags.length);
+        for (double value : density) {
+            head.putDouble(value);
+        }
+        for (double value : quality) {
+            head.putDouble(value);
+        }
+        for (long offset : offsets) {
+            head.putLong(offset);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(channel, head.flip());
+            writeFully(channel, records.flip());
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取全部场景
+     */
+    public static List<Scene> read(Path file) throws IOException {
+        return read(file, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 读取 [from, to) 范围内的场景 (超出场景数的部分忽略)，只解码该范围的记录块
+     * <p>
+     * 各场景的记录块由偏移表直接定位，互不依赖，按场景并行解码 (正文的 UTF-8 解码是读取的主要开销)；
+     * 引用上一场景正文的前文摘要在解码后按顺序补齐。
+     * </p>
+     */
+    public static List<Scene> read(Path file, int from, int to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a scene file: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported scene file version " + version + ": " + file);
+        }
+        int count = buffer.getInt();
+        int dictionarySize = buffer.getInt();
+        try {
+            String[] dictionary = new String[dictionarySize];
+            for (int d = 0; d < dictionarySize; d++) {
+                dictionary[d] = getString(buffer);
+            }
+            Layout layout = Layout.of(count, buffer.position());
+            if (layout.recordsStart > buffer.limit()
+                    || layout.recordsStart + buffer.getLong(layout.offsetsStart + count * Long.BYTES) > buffer.limit()) {
+                throw new IOException("Truncated scene file: " + file);
+            }
+
+            int start = Math.max(0, from);
+            int end = Math.min(count, to);
+            Scene[] scenes = new Scene[Math.max(0, end - start)];
+            long[] prefixRefs = new long[scenes.length];
+            IntStream.range(start, end).parallel().forEach(i ->
+                    scenes[i - start] = decode(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN), layout, dictionary, i,
+                            prefixRefs, i - start));
+            for (int k = 0; k < scenes.length; k++) {
+                if (prefixRefs[k] >= 0) {
+                    String previous = k > 0 ? scenes[k - 1].getText()
+                            : decode(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN), layout, dictionary, start - 1, null, 0).getText();
+                    int offset = (int) (prefixRefs[k] >>> 32);
+                    scenes[k].setPrefixContext(previous.substring(offset, offset + (int) prefixRefs[k]));
+                }
+            }
+            return new ArrayList<>(Arrays.asList(scenes));
+        } catch (RuntimeException e) {
+            // 长度或偏移越界
+            throw new IOException("Corrupted scene file: " + file, e);
+        }
+    }
+
+    /**
+     * 解码第 i 个场景
+     *
+     * @param prefixRefs 前文摘要为上一场景正文的引用时，在 prefixRefs[slot] 记录 (偏移 << 32 | 长度)，否则记 -1；
+     *                   为 null 时不解析前文摘要 (只需要正文)
+     */
+    private static Scene decode(ByteBuffer buffer, Layout layout, String[] dictionary, int i, long[] prefixRefs, int slot) {
+        int count = layout.count;
+        int[] row = new int[INT_COLUMNS];
+        for (int c = 0; c < INT_COLUMNS; c++) {
+            row[c] = buffer.getInt(layout.columnsStart + (c * count + i) * Integer.BYTES);
+        }
+        byte flags = buffer.get(layout.flagsStart + i);
+
+        buffer.position(Math.toIntExact(layout.recordsStart + buffer.getLong(layout.offsetsStart + i * Long.BYTES)));
+        String id = getString(buffer);
+        String text = getString(buffer);
+        String prefixContext = null;
+        int prefixLength = buffer.getInt();
+        if (prefixLength == PREVIOUS_TEXT_REF) {
+            long offset = buffer.getInt();
+            long length = buffer.getInt();
+            if (i == 0) {
+                throw new IllegalStateException("Dangling prefix context reference in scene 0");
+            }
+            if (prefixRefs != null) {
+                prefixRefs[slot] = offset << 32 | length;
+            }
+        } else {
+            if (prefixRefs != null) {
+                prefixRefs[slot] = -1;
+            }
+            buffer.position(buffer.position() - Integer.BYTES);
+            prefixContext = getString(buffer);
+        }
+        int characterCount = buffer.getInt();
+        List<String> characters = new ArrayList<>(characterCount);
+        for (int k = 0; k < characterCount; k++) {
+            characters.add(lookup(dictionary, buffer.getInt()));
+        }
+        byte[] extraBytes = getBytes(buffer);
+
+        SceneMetadata meta = null;
+        if ((flags & FLAG_HAS_METADATA) != 0) {
+            double density = buffer.getDouble(layout.densityStart + i * Double.BYTES);
+            double quality = buffer.getDouble(layout.qualityStart + i * Double.BYTES);
+            Map<String, Object> extra = null;
+            if ((row[META_FLAGS] & 2) != 0) {
+                try {
+                    extra = EXTRA_MAPPER.readValue(extraBytes, new TypeReference<Map<String, Object>>() {});
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            meta = SceneMetadata.builder()
+                    .novel(lookup(dictionary, row[META_NOVEL]))
+                    .version(lookup(dictionary, row[META_VERSION]))
+                    .chapterTitle(lookup(dictionary, row[META_CHAPTER_TITLE]))
+                    .chapterIndex(boxed(row[META_CHAPTER_INDEX]))
+                    .startParagraph(boxed(row[META_START_PARAGRAPH]))
+                    .endParagraph(boxed(row[META_END_PARAGRAPH]))
+                    .chunkType(lookup(dictionary, row[META_CHUNK_TYPE]))
+                    .role(lookup(dictionary, row[META_ROLE]))
+                    .location(lookup(dictionary, row[META_LOCATION]))
+                    .time(lookup(dictionary, row[META_TIME]))
+                    .densityScore(Double.isNaN(density) ? null : density)
+                    .qualityScore(Double.isNaN(quality) ? null : quality)
+                    .characters((row[META_FLAGS] & 1) != 0 ? characters : null)
+                    .extra(extra)
+                    .build();
+        }
+        return Scene.builder()
+                .id(id)
+                .chapterTitle(lookup(dictionary, row[CHAPTER_TITLE]))
+                .chapterIndex(row[CHAPTER_INDEX])
+                .startParagraphIndex(row[START_PARAGRAPH])
+                .endParagraphIndex(row[END_PARAGRAPH])
+                .text(text)
+                .wordCount(row[WORD_COUNT])
+                .prefixContext(prefixContext)
+                .canSplit((flags & FLAG_CAN_SPLIT) != 0)
+                .metadata(meta)
+                .build();
+    }
+
+    /**
+     * 各区段的起始位置 (字典之后的部分由场景数决定；整个文件读入一个数组，位置不超过 int)
+     */
+    private record Layout(int count, int columnsStart, int flagsStart, int densityStart, int qualityStart,
+                          int offsetsStart, int recordsStart) {
+        static Layout of(int count, int columnsStart) {
+            int flagsStart = Math.addExact(columnsStart, Math.multiplyExact(INT_COLUMNS * Integer.BYTES, count));
+            int densityStart = Math.addExact(flagsStart, count);
+            int qualityStart = Math.addExact(densityStart, Math.multiplyExact(Double.BYTES, count));
+            int offsetsStart = Math.addExact(qualityStart, Math.multiplyExact(Double.BYTES, count));
+            int recordsStart = Math.addExact(offsetsStart, Math.multiplyExact(Long.BYTES, count + 1));
+            return new Layout(count, columnsStart, flagsStart, densityStart, qualityStart, offsetsStart, recordsStart);
+        }
+    }
+
+    /**
+     * 前文摘要通常取自上一场景正文的结尾，此时只记录它在上一场景正文中的位置
+     */
+    private static void putPrefixContext(Output records, String prefixContext, String previousText) {
+        int offset = prefixContext == null || prefixContext.isEmpty() || previousText == null
+                ? -1 : previousText.lastIndexOf(prefixContext);
+        if (offset < 0) {
+            records.putString(prefixContext);
+            return;
+        }
+        records.putInt(PREVIOUS_TEXT_REF).putInt(offset).putInt(prefixContext.length());
+    }
+
+    private static int intern(String value, Map<String, Integer> dictionary, List<byte[]> dictionaryBytes) {
+        if (value == null) {
+            return -1;
+        }
+        return dictionary.computeIfAbsent(value, v -> {
+            dictionaryBytes.add(v.getBytes(StandardCharsets.UTF_8));
+            return dictionaryBytes.size() - 1;
+        });
+    }
+
+    private static String lookup(String[] dictionary, int index) {
+        return index < 0 ? null : dictionary[index];
+    }
+
+    private static int nullableInt(Integer value) {
+        return value != null ? value : NULL_INT;
+    }
+
+    private static Integer boxed(int value) {
+        return value == NULL_INT ? null : value;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 按需扩容的小端写缓冲
+     */
+    private static final class Output {
+        private ByteBuffer buffer;
+
+        Output(int capacity) {
+            buffer = ByteBuffer.allocate(Math.max(capacity, 64)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        long position() {
+            return buffer.position();
+        }
+
+        Output putInt(int value) {
+            ensure(Integer.BYTES).putInt(value);
+            return this;
+        }
+
+        Output putLong(long value) {
+            ensure(Long.BYTES).putLong(value);
+            return this;
+        }
+
+        Output putDouble(double value) {
+            ensure(Double.BYTES).putDouble(value);
+            return this;
+        }
+
+        void putString(String value) {
+            putBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+        }
+
+        /**
+         * 长度前缀 + 内容，null 写为长度 -1
+         */
+        void putBytes(byte[] value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            putInt(value.length);
+            putBytes(value, value.length);
+        }
+
+        void putBytes(byte[] value, int length) {
+            ensure(length).put(value, 0, length);
+        }
+
+        ByteBuffer flip() {
+            return buffer.flip();
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                long required = (long) buffer.position() + bytes;
+                if (required > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Scene file section exceeds 2GB");
+                }
+                int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, (long) buffer.capacity() * 2));
+                buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN).put(buffer.flip());
+            }
+            return buffer;
+        }
+    }
+}
@@ -20,13 +20,17 @@ import java.util.stream.Stream;
 /**
  * 本地文件系统实现的 Scene 仓库
  * <p>
- * 存储结构：root/scene/{novelName}/{version}/scenes.json
+ * 存储结构：root/scene/{novelName}/{version}/scenes.bin ({@link BinarySceneFile} 二进制列式格式)
  * 作为“文件产物管理器”，只负责文件的存取和管理，不维护细粒度索引。
+ * 旧版本写入的 scenes.json 仍可读取，重新保存该版本时替换为 scenes.bin；需要 JSON 时使用 {@link #exportJson}。
  * </p>
  */
 @Slf4j
 public class LocalFileSceneRepository implements SceneRepository {
 
+    private static final String SCENES_FILE = "scenes.bin";
+    private static final String LEGACY_SCENES_FILE = "scenes.json";
+
     private final Path storageRoot;
 
     public LocalFileSceneRepository(String storageRootPath) {
@@ -40,8 +44,9 @@ public class LocalFileSceneRepository implements SceneRepository {
             if (!Files.exists(dir)) {
                 Files.createDirectories(dir);
             }
-            Path file = dir.resolve("scenes.json");
-            JsonUtils.writeToFile(file, scenes);
+            Path file = dir.resolve(SCENES_FILE);
+            BinarySceneFile.write(file, scenes);
+            Files.deleteIfExists(dir.resolve(LEGACY_SCENES_FILE));
             log.info("Saved {} scenes to {}", scenes.size(), file);
         } catch (IOException e) {
             throw new RuntimeException("Failed to save scenes to " + dir, e);
@@ -50,18 +55,23 @@ public class LocalFileSceneRepository implements SceneRepository {
 
     @Override
     public List<Scene> loadScenes(String novelName, String version) {
-        Path file = storageRoot.resolve("scene").resolve(novelName).resolve(version).resolve("scenes.json");
-        if (!Files.exists(file)) {
-            log.warn("Scenes file not found: {}", file);
-            return new ArrayList<>();
-        }
+        Path dir = storageRoot.resolve("scene").resolve(novelName).resolve(version);
+        Path file = dir.resolve(SCENES_FILE);
         try {
-            Scene[] sceneArray = JsonUtils.readFromFile(file, Scene[].class);
-            return sceneArray != null ? new ArrayList<>(Arrays.asList(sceneArray)) : new ArrayList<>();
+            if (Files.exists(file)) {
+                return BinarySceneFile.read(file);
+            }
+            Path legacy = dir.resolve(LEGACY_SCENES_FILE);
+            if (Files.exists(legacy)) {
+                Scene[] sceneArray = JsonUtils.readFromFile(legacy, Scene[].class);
+                return sceneArray != null ? new ArrayList<>(Arrays.asList(sceneArray)) : new ArrayList<>();
+            }
         } catch (Exception e) {
-            log.error("Failed to load scenes from " + file, e);
-            throw new RuntimeException("Failed to load scenes from " + file, e);
+            log.error("Failed to load scenes from " + dir, e);
+            throw new RuntimeException("Failed to load scenes from " + dir, e);
         }
+        log.warn("Scenes file not found: {}", file);
+        return new ArrayList<>();
     }
 
     @Override
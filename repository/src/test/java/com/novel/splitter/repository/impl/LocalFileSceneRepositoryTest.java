@@ -0,0 +1,104 @@
+package com.novel.splitter.repository.impl;
+
+import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
+import com.novel.splitter.infrastructure.json.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalFileSceneRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBinaryRoundTripKeepsAllFields() throws Exception {
+        List<Scene> scenes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            scenes.add(Scene.builder()
+                    .id("scene-" + i)
+                    .chapterTitle("第" + (i / 3) + "章 风起")
+                    .chapterIndex(i / 3)
+                    .startParagraphIndex(i * 10)
+                    .endParagraphIndex(i * 10 + 9)
+                    .text(text(i))
+                    .wordCount(1200 + i)
+                    // 前文摘要多数取自上一场景正文的结尾 (写为引用)
+                    .prefixContext(i == 0 ? null : i % 5 != 0 ? text(i - 1).substring(3) : "上一场景的结尾 " + (i - 1))
+                    .canSplit(i % 2 == 0)
+                    .metadata(SceneMetadata.builder()
+                            .novel("测试小说")
+                            .version("v1")
+                            .chapterTitle("第" + (i / 3) + "章 风起")
+                            .chapterIndex(i / 3)
+                            .startParagraph(i * 10)
+                            .endParagraph(i == 5 ? null : i * 10 + 9)
+                            .chunkType("scene")
+                            .role(i % 3 == 0 ? "dialogue" : null)
+                            .densityScore(i == 7 ? null : 0.5 + i)
+                            .qualityScore(0.25)
+                            .characters(i == 4 ? List.of("张三", "李四") : null)
+                            .extra(i == 9 ? Map.of("source", "test", "rank", 3) : null)
+                            .build())
+                    .build());
+        }
+        scenes.add(Scene.builder().id("no-metadata").text("").build());
+
+        Path file = tempDir.resolve("scenes.bin");
+        BinarySceneFile.write(file, scenes);
+        assertEquals(scenes, BinarySceneFile.read(file));
+        // 偏移表：只解码中间一段 (第一个场景引用范围外的上一场景正文，后者本身也是引用)
+        assertEquals(scenes.subList(11, 14), BinarySceneFile.read(file, 11, 14));
+        assertEquals(scenes.subList(12, 14), BinarySceneFile.read(file, 12, 14));
+        assertEquals(List.of(scenes.get(30)), BinarySceneFile.read(file, 30, 100));
+
+        // 截断的文件报错而不是返回部分结果
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = tempDir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 5));
+        assertThrows(IOException.class, () -> BinarySceneFile.read(truncated));
+    }
+
+    private static String text(int i) {
+        return "正文内容 " + i + " \"引号\"\n换行";
+    }
+
+    @Test
+    void testRepositoryWritesBinaryReadsLegacyJsonAndExportsJson() {
+        LocalFileSceneRepository repository = new LocalFileSceneRepository(tempDir.toString());
+        List<Scene> scenes = List.of(
+                Scene.builder().id("a").chapterTitle("第一章").text("甲").wordCount(1)
+                        .metadata(SceneMetadata.builder().novel("n").version("v1").build()).build(),
+                Scene.builder().id("b").chapterTitle("第一章").text("乙").wordCount(1).build());
+
+        // 旧版本写入的 scenes.json 仍可读取
+        Path versionDir = tempDir.resolve("scene").resolve("n").resolve("v1");
+        Path legacy = versionDir.resolve("scenes.json");
+        assertDoesNotThrow(() -> Files.createDirectories(versionDir));
+        JsonUtils.writeToFile(legacy, scenes);
+        assertEquals(scenes, repository.loadScenes("n", "v1"));
+
+        // 重新保存后改为二进制文件，旧 JSON 删除
+        repository.saveScenes("n", "v1", scenes);
+        assertTrue(Files.exists(versionDir.resolve("scenes.bin")));
+        assertFalse(Files.exists(legacy));
+        assertEquals(scenes, repository.loadScenes("n", "v1"));
+        assertEquals(List.of("v1"), repository.listVersions("n"));
+
+        Path exported = tempDir.resolve("export.json");
+        repository.exportJson("n", "v1", exported);
+        assertEquals(scenes, List.of(JsonUtils.readFromFile(exported, Scene[].class)));
+
+        assertTrue(repository.loadScenes("n", "missing").isEmpty());
+    }
+}
@@ -41,6 +41,17 @@ public class VectorRetrievalService implements RetrievalService {
         if (query.getVersion() != null && !query.getVersion().isBlank()) {
             filter.put("version", query.getVersion());
         }
+        if (query.getChapterFrom() != null || query.getChapterTo() != null) {
+            // 章节范围 (包含两端)，与 Chroma 的 where 运算符一致
+            Map<String, Object> chapterRange = new LinkedHashMap<>();
+            if (query.getChapterFrom() != null) {
+                chapterRange.put("$gte", query.getChapterFrom());
+            }
+            if (query.getChapterTo() != null) {
+                chapterRange.put("$lte", query.getChapterTo());
+            }
+            filter.put("chapter_index", chapterRange);
+        }
 
         log.info("Executing vector search with filter: {}", filter);
 
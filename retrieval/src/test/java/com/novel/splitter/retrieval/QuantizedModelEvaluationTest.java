@@ -0,0 +1,149 @@
+package com.novel.splitter.retrieval;
+
+import ai.onnxruntime.OrtSession;
+import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.embedding.config.OnnxProperties;
+import com.novel.splitter.embedding.onnx.InferenceExecutor;
+import com.novel.splitter.embedding.onnx.OnnxModelHolder;
+import com.novel.splitter.embedding.service.OnnxEmbeddingService;
+import com.novel.splitter.embedding.tokenizer.Tokenizer;
+import com.novel.splitter.embedding.tokenizer.Vocabulary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * INT8 量化模型离线评估
+ * <p>
+ * 在 {@link RetrievalTestCorpus} 上分别用 FP32 与 INT8 模型做向量化和精确检索，
+ * 输出 recall@k、两种模型向量的平均余弦相似度以及入库吞吐，并在召回率下降超过阈值时失败。
+ * 需要真实模型文件，默认不执行：
+ * </p>
+ * <pre>
+ * mvn -pl retrieval -am test -Dtest=QuantizedModelEvaluationTest -Dsurefire.failIfNoSpecifiedTests=false \
+ *     -Dembedding.eval.int8-model=/path/to/model_int8.onnx \
+ *     [-Dembedding.eval.fp32-model=/path/to/model.onnx] [-Dembedding.eval.max-recall-drop=0.05]
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "embedding.eval.int8-model", matches = ".+")
+class QuantizedModelEvaluationTest {
+
+    private static final int[] K_VALUES = {1, 3, 5};
+
+    @Test
+    void compareInt8WithFp32() throws Exception {
+        double maxRecallDrop = Double.parseDouble(System.getProperty("embedding.eval.max-recall-drop", "0.05"));
+        int rounds = Integer.getInteger("embedding.eval.rounds", 20);
+
+        Tokenizer tokenizer = new Tokenizer(Vocabulary.loadBundled());
+        List<Scene> scenes = RetrievalTestCorpus.scenes();
+        List<RetrievalTestCorpus.LabeledQuery> queries = RetrievalTestCorpus.queries();
+
+        OnnxProperties fp32 = new OnnxProperties();
+        fp32.setModelPath(System.getProperty("embedding.eval.fp32-model"));
+        fp32.setPrecision(OnnxProperties.ModelPrecision.FP32);
+        OnnxProperties int8 = new OnnxProperties();
+        int8.setQuantizedModelPath(System.getProperty("embedding.eval.int8-model"));
+        int8.setPrecision(OnnxProperties.ModelPrecision.INT8);
+
+        Evaluation baseline = evaluate(fp32, tokenizer, scenes, queries, rounds);
+        Evaluation quantized = evaluate(int8, tokenizer, scenes, queries, rounds);
+
+        double cosine = 0;
+        for (int i = 0; i < scenes.size(); i++) {
+            cosine += dot(baseline.sceneVectors[i], quantized.sceneVectors[i]);
+        }
+        cosine /= scenes.size();
+
+        System.out.println("=== INT8 vs FP32 (" + scenes.size() + " scenes, " + queries.size() + " queries) ===");
+        for (int k = 0; k < K_VALUES.length; k++) {
+            System.out.printf("recall@%d : fp32=%.3f int8=%.3f delta=%+.3f%n",
+                    K_VALUES[k], baseline.recall[k], quantized.recall[k], quantized.recall[k] - baseline.recall[k]);
+        }
+        System.out.printf("mean cosine(fp32, int8) : %.4f%n", cosine);
+        System.out.printf("ingest throughput : fp32=%.1f scenes/s int8=%.1f scenes/s speedup=%.2fx%n",
+                baseline.scenesPerSecond, quantized.scenesPerSecond, quantized.scenesPerSecond / baseline.scenesPerSecond);
+
+        for (int k = 0; k < K_VALUES.length; k++) {
+            double drop = baseline.recall[k] - quantized.recall[k];
+            assertTrue(drop <= maxRecallDrop,
+                    "recall@" + K_VALUES[k] + " dropped by " + drop + " (max " + maxRecallDrop + ")");
+        }
+    }
+
+    private static Evaluation evaluate(OnnxProperties properties, Tokenizer tokenizer, List<Scene> scenes,
+                                       List<RetrievalTestCorpus.LabeledQuery> queries, int rounds) throws Exception {
+        OnnxModelHolder modelHolder = new OnnxModelHolder(properties);
+        modelHolder.initialize();
+        try (InferenceExecutor<OrtSession> executor =
+                     new InferenceExecutor<>("eval-" + properties.getPrecision(), modelHolder.getSessions(), properties.getQueueCapacity())) {
+            OnnxEmbeddingService service = new OnnxEmbeddingService(modelHolder, tokenizer, properties, executor);
+            List<String> texts = scenes.stream().map(Scene::getText).toList();
+
+            // 预热一轮，再计时
+            service.embedBatch(texts);
+            long start = System.nanoTime();
+            List<float[]> sceneVectors = null;
+            for (int r = 0; r < rounds; r++) {
+                sceneVectors = service.embedBatch(texts);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Evaluation evaluation = new Evaluation();
+            evaluation.sceneVectors = sceneVectors.toArray(new float[0][]);
+            evaluation.scenesPerSecond = rounds * texts.size() / seconds;
+            evaluation.recall = new double[K_VALUES.length];
+            for (RetrievalTestCorpus.LabeledQuery query : queries) {
+                int rank = rankOf(service.embed(query.question()), evaluation.sceneVectors, scenes, query.expectedChapter());
+                for (int k = 0; k < K_VALUES.length; k++) {
+                    if (rank < K_VALUES[k]) {
+                        evaluation.recall[k] += 1.0 / queries.size();
+                    }
+                }
+            }
+            return evaluation;
+        } finally {
+            modelHolder.close();
+        }
+    }
+
+    /**
+     * 期望场景在精确检索结果中的名次 (从 0 开始)
+     */
+    private static int rankOf(float[] query, float[][] sceneVectors, List<Scene> scenes, int expectedChapter) {
+        Integer[] order = new Integer[sceneVectors.length];
+        double[] scores = new double[sceneVectors.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            scores[i] = dot(query, sceneVectors[i]);
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        for (int r = 0; r < order.length; r++) {
+            if (scenes.get(order[r]).getChapterIndex() == expectedChapter) {
+                return r;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 向量已归一化，点积即余弦相似度
+     */
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static class Evaluation {
+        float[][] sceneVectors;
+        double[] recall;
+        double scenesPerSecond;
+    }
+}
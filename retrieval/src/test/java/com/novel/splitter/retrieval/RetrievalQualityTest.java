@@ -1,7 +1,6 @@
 package com.novel.splitter.retrieval;
 
 import com.novel.splitter.domain.model.Scene;
-import com.novel.splitter.domain.model.SceneMetadata;
 import com.novel.splitter.domain.model.dto.RetrievalQuery;
 import com.novel.splitter.embedding.api.EmbeddingService;
 import com.novel.splitter.embedding.api.VectorStore;
@@ -46,46 +45,23 @@ class RetrievalQualityTest {
     }
 
     private void prepareTestData() {
-        String novelName = "九阳帝尊";
-        String version = "v1";
-
-        // 创建几个模拟 Scene 并存入 Repository 和 VectorStore
-        Scene s1 = createScene(novelName, version, "楚晨无法修炼", "第一章", 1);
-        Scene s2 = createScene(novelName, version, "楚晨遇到小师妹", "第二章", 2);
+        // 使用共享语料 (模拟切分后的 Scene)，存入 Repository 和 VectorStore
+        List<Scene> scenes = RetrievalTestCorpus.scenes();
         
         // 保存到 Repository
-        sceneRepository.saveScenes(novelName, version, List.of(s1, s2));
+        sceneRepository.saveScenes(RetrievalTestCorpus.NOVEL, RetrievalTestCorpus.VERSION, scenes);
         
         // 保存到 VectorStore (模拟 Embedding 过程)
-        vectorStore.save(s1, embeddingService.embed(s1.getText()));
-        vectorStore.save(s2, embeddingService.embed(s2.getText()));
-    }
-
-    private Scene createScene(String novel, String version, String text, String chapterTitle, int index) {
-        return Scene.builder()
-                .id(UUID.randomUUID().toString())
-                .text(text)
-                .chapterTitle(chapterTitle)
-                .chapterIndex(index)
-                .startParagraphIndex(1)
-                .endParagraphIndex(10)
-                .wordCount(text.length())
-                .metadata(SceneMetadata.builder()
-                        .novel(novel)
-                        .version(version)
-                        .chapterTitle(chapterTitle)
-                        .chapterIndex(index)
-                        .role("narration")
-                        .build())
-                .build();
+        for (Scene scene : scenes) {
+            vectorStore.save(scene, embeddingService.embed(scene.getText()));
+        }
     }
 
     @Test
     void retrieval_quality_check() {
-        List<String> queries = List.of(
-                "楚晨为什么无法修炼？",
-                "小师妹是谁？"
-        );
+        List<String> queries = RetrievalTestCorpus.queries().stream()
+                .map(RetrievalTestCorpus.LabeledQuery::question)
+                .collect(Collectors.toList());
 
         System.out.println("=== 开始检索质量检查 (Mock Mode) ===");
         
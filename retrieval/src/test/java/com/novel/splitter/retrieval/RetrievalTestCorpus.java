@@ -0,0 +1,86 @@
+package com.novel.splitter.retrieval;
+
+import com.novel.splitter.domain.model.Scene;
+import com.novel.splitter.domain.model.SceneMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 检索测试语料
+ * <p>
+ * 由 {@link RetrievalQualityTest} (链路验证) 和 {@link QuantizedModelEvaluationTest} (召回率评估) 共用。
+ * 每个问题标注了期望命中的章节序号。
+ * </p>
+ */
+final class RetrievalTestCorpus {
+
+    static final String NOVEL = "九阳帝尊";
+    static final String VERSION = "v1";
+
+    /**
+     * 带标注的问题
+     *
+     * @param question        问题
+     * @param expectedChapter 期望命中的场景所在章节序号
+     */
+    record LabeledQuery(String question, int expectedChapter) {
+    }
+
+    private static final String[][] SCENES = {
+            {"第一章", "楚晨无法修炼"},
+            {"第二章", "楚晨遇到小师妹"},
+            {"第三章", "家族大比之日，楚晨被堂兄当众羞辱，族中长老冷眼旁观，无人替他说话。"},
+            {"第四章", "深夜，楚晨在后山古洞中发现一块残破的玉佩，玉佩内封印着一缕九阳真火。"},
+            {"第五章", "玉佩中的老者自称九阳帝尊，愿意传授楚晨失传已久的九阳神诀。"},
+            {"第六章", "楚晨服下洗髓丹，经脉中的堵塞被真火烧尽，终于踏入炼气一层。"},
+            {"第七章", "坊市之中，楚晨用一株百年血参换来一柄生锈的铁剑，摊主暗自发笑。"},
+            {"第八章", "黑风寨的山贼劫走了商队，小师妹被困在寨中，楚晨孤身上山救人。"},
+    };
+
+    private static final List<LabeledQuery> QUERIES = List.of(
+            new LabeledQuery("楚晨为什么无法修炼？", 1),
+            new LabeledQuery("小师妹是谁？", 2),
+            new LabeledQuery("家族大比上发生了什么？", 3),
+            new LabeledQuery("楚晨在后山发现了什么宝物？", 4),
+            new LabeledQuery("谁传授了楚晨九阳神诀？", 5),
+            new LabeledQuery("楚晨是怎么突破到炼气一层的？", 6),
+            new LabeledQuery("楚晨在坊市买了什么？", 7),
+            new LabeledQuery("楚晨为什么要去黑风寨？", 8)
+    );
+
+    private RetrievalTestCorpus() {
+    }
+
+    static List<Scene> scenes() {
+        List<Scene> scenes = new ArrayList<>(SCENES.length);
+        for (int i = 0; i < SCENES.length; i++) {
+            scenes.add(createScene(SCENES[i][1], SCENES[i][0], i + 1));
+        }
+        return scenes;
+    }
+
+    static List<LabeledQuery> queries() {
+        return QUERIES;
+    }
+
+    private static Scene createScene(String text, String chapterTitle, int index) {
+        return Scene.builder()
+                .id(UUID.randomUUID().toString())
+                .text(text)
+                .chapterTitle(chapterTitle)
+                .chapterIndex(index)
+                .startParagraphIndex(1)
+                .endParagraphIndex(10)
+                .wordCount(text.length())
+                .metadata(SceneMetadata.builder()
+                        .novel(NOVEL)
+                        .version(VERSION)
+                        .chapterTitle(chapterTitle)
+                        .chapterIndex(index)
+                        .role("narration")
+                        .build())
+                .build();
+    }
+}